@@ -47,15 +47,19 @@ import org.openjdk.jmh.annotations.TearDown;
 import io.crate.action.sql.BaseResultReceiver;
 import io.crate.action.sql.SQLOperations;
 import io.crate.data.Row;
+import io.crate.data.Row1;
 import io.crate.metadata.CoordinatorTxnCtx;
 import io.crate.metadata.NodeContext;
 import io.crate.metadata.RoutingProvider;
 import io.crate.planner.Plan;
+import io.crate.planner.PlanCache;
 import io.crate.planner.Planner;
 import io.crate.planner.PlannerContext;
 import io.crate.plugin.SQLPlugin;
 import io.crate.sql.parser.SqlParser;
 import io.crate.sql.tree.Statement;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.MICROSECONDS)
@@ -68,12 +72,15 @@ public class PreExecutionBenchmark {
     private Planner planner;
     private ClusterService clusterService;
     private NodeContext nodeCtx;
+    private AnalyzedStatement preparedSelect;
+    private PlanCache.Key preparedSelectKey;
 
     @Setup
     public void setup() throws Exception {
         Path tempDir = Files.createTempDirectory("");
         Settings settings = Settings.builder()
             .put("path.home", tempDir.toAbsolutePath().toString())
+            .put(PlanCache.SIZE_SETTING.getKey(), 100)
             .build();
         Environment environment = new Environment(settings, tempDir);
         node = new Node(
@@ -97,6 +104,31 @@ public class PreExecutionBenchmark {
         sqlOperations.newSystemSession()
             .quickExec(statement, resultReceiver, Row.EMPTY);
         resultReceiver.completionFuture().get(5, TimeUnit.SECONDS);
+
+        String preparedStatement = "select name from users where id = ?";
+        CoordinatorTxnCtx txnCtx = CoordinatorTxnCtx.systemTransactionContext();
+        preparedSelect = analyzer.analyzedStatement(
+            SqlParser.createStatement(preparedStatement),
+            new Analysis(txnCtx, ParamTypeHints.EMPTY)
+        );
+        preparedSelectKey = PlanCache.createKey(
+            preparedStatement,
+            new DataType<?>[] { DataTypes.INTEGER },
+            preparedSelect,
+            txnCtx.sessionSettings(),
+            clusterService.state().metadata().version()
+        );
+    }
+
+    private PlannerContext newPlannerContext(Row params) {
+        return new PlannerContext(
+            clusterService.state(),
+            new RoutingProvider(Randomness.get().nextInt(), planner.getAwarenessAttributes()),
+            UUID.randomUUID(),
+            CoordinatorTxnCtx.systemTransactionContext(),
+            nodeCtx,
+            0,
+            params);
     }
 
     @TearDown
@@ -137,4 +169,14 @@ public class PreExecutionBenchmark {
             null);
         return planner.plan(analyzedStatement, plannerContext);
     }
+
+    @Benchmark
+    public Plan measure_plan_prepared_select_uncached() throws Exception {
+        return planner.plan(preparedSelect, newPlannerContext(new Row1(1)));
+    }
+
+    @Benchmark
+    public Plan measure_plan_prepared_select_cached() throws Exception {
+        return planner.plan(preparedSelectKey, preparedSelect, newPlannerContext(new Row1(1)));
+    }
 }
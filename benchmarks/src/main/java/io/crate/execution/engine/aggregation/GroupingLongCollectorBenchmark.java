@@ -87,6 +87,7 @@ import io.netty.util.collection.LongObjectHashMap;
 public class GroupingLongCollectorBenchmark {
 
     private GroupingCollector groupBySumCollector;
+    private GroupingCollector groupByTwoKeysSumCollector;
     private List<Row> rows;
     private long[] numbers;
     private IndexSearcher searcher;
@@ -109,6 +110,7 @@ public class GroupingLongCollectorBenchmark {
         );
         var memoryManager = new OnHeapMemoryManager(bytes -> {});
         groupBySumCollector = createGroupBySumCollector(sumAgg, memoryManager);
+        groupByTwoKeysSumCollector = createGroupByTwoKeysSumCollector(sumAgg, memoryManager);
 
         int size = 20_000_000;
         rows = new ArrayList<>(size);
@@ -143,7 +145,32 @@ public class GroupingLongCollectorBenchmark {
             Version.CURRENT,
             keyInputs.get(0),
             DataTypes.LONG,
-            Version.CURRENT
+            Version.CURRENT,
+            null
+        );
+    }
+
+    /**
+     * Groups by the same column twice; multi-column keys are held in a {@link PagedGroupByMap}
+     */
+    private static GroupingCollector createGroupByTwoKeysSumCollector(AggregationFunction sumAgg, MemoryManager memoryManager) {
+        InputCollectExpression keyInput = new InputCollectExpression(0);
+        List<Input<?>> keyInputs = Arrays.<Input<?>>asList(keyInput, keyInput);
+        CollectExpression[] collectExpressions = new CollectExpression[]{keyInput};
+
+        return GroupingCollector.manyKeys(
+            collectExpressions,
+            AggregateMode.ITER_FINAL,
+            new AggregationFunction[] { sumAgg },
+            new Input[][] { new Input[] { keyInput }},
+            new Input[] { Literal.BOOLEAN_TRUE },
+            RamAccounting.NO_ACCOUNTING,
+            memoryManager,
+            Version.CURRENT,
+            keyInputs,
+            List.of(DataTypes.LONG, DataTypes.LONG),
+            Version.CURRENT,
+            null
         );
     }
 
@@ -153,6 +180,12 @@ public class GroupingLongCollectorBenchmark {
         blackhole.consume(BatchIterators.collect(rowsIterator, groupBySumCollector).get());
     }
 
+    @Benchmark
+    public void measureGroupBySumTwoLongKeys(Blackhole blackhole) throws Exception {
+        var rowsIterator = InMemoryBatchIterator.of(rows, SENTINEL, true);
+        blackhole.consume(BatchIterators.collect(rowsIterator, groupByTwoKeysSumCollector).get());
+    }
+
     @Benchmark
     public LongObjectHashMap<Long> measureGroupingOnNumericDocValues() throws Exception {
         Weight weight = searcher.createWeight(new MatchAllDocsQuery(), ScoreMode.COMPLETE_NO_SCORES, 1.0f);
@@ -52,8 +52,10 @@ import org.openjdk.jmh.infra.Blackhole;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import static io.crate.data.SentinelRow.SENTINEL;
@@ -66,6 +68,7 @@ public class GroupingStringCollectorBenchmark {
     private GroupingCollector groupByMinCollector;
     private BatchIterator<Row> rowsIterator;
     private List<Row> rows;
+    private List<String> highCardinalityKeys;
     private OnHeapMemoryManager memoryManager;
 
     @Setup
@@ -73,8 +76,8 @@ public class GroupingStringCollectorBenchmark {
         Functions functions = new ModulesBuilder().add(new AggregationImplModule())
             .createInjector().getInstance(Functions.class);
 
-        groupByMinCollector = createGroupByMinBytesRefCollector(functions);
         memoryManager = new OnHeapMemoryManager(bytes -> {});
+        groupByMinCollector = createGroupByMinBytesRefCollector(functions);
 
         List<String> keys = new ArrayList<>(Locale.getISOCountries().length);
         keys.addAll(Arrays.asList(Locale.getISOCountries()));
@@ -83,6 +86,11 @@ public class GroupingStringCollectorBenchmark {
         for (int i = 0; i < 20_000_000; i++) {
             rows.add(new Row1(keys.get(i % keys.size())));
         }
+
+        highCardinalityKeys = new ArrayList<>(2_000_000);
+        for (int i = 0; i < 2_000_000; i++) {
+            highCardinalityKeys.add("key-" + (i % 1_000_000));
+        }
     }
 
     private GroupingCollector createGroupByMinBytesRefCollector(Functions functions) {
@@ -111,7 +119,8 @@ public class GroupingStringCollectorBenchmark {
             Version.CURRENT,
             keyInputs.get(0),
             DataTypes.STRING,
-            Version.CURRENT
+            Version.CURRENT,
+            null
         );
     }
 
@@ -120,4 +129,32 @@ public class GroupingStringCollectorBenchmark {
         rowsIterator = InMemoryBatchIterator.of(rows, SENTINEL, true);
         blackhole.consume(BatchIterators.collect(rowsIterator, groupByMinCollector).get());
     }
+
+    @Benchmark
+    public Map<String, Object[]> measureHighCardinalityGroupingWithHashMap() {
+        Map<String, Object[]> statesByKey = new HashMap<>();
+        return groupHighCardinalityKeys(statesByKey);
+    }
+
+    @Benchmark
+    public Map<String, Object[]> measureHighCardinalityGroupingWithPagedMap() {
+        Map<String, Object[]> statesByKey = new PagedGroupByMap<>(
+            DataTypes.STRING.streamer(),
+            RamAccounting.NO_ACCOUNTING,
+            memoryManager
+        );
+        return groupHighCardinalityKeys(statesByKey);
+    }
+
+    private Map<String, Object[]> groupHighCardinalityKeys(Map<String, Object[]> statesByKey) {
+        for (String key : highCardinalityKeys) {
+            Object[] states = statesByKey.get(key);
+            if (states == null) {
+                statesByKey.put(key, new Object[] { 1L });
+            } else {
+                states[0] = (long) states[0] + 1;
+            }
+        }
+        return statesByKey;
+    }
 }
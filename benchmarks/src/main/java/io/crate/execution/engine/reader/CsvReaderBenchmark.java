@@ -28,6 +28,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +37,7 @@ import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
@@ -66,17 +68,32 @@ import io.crate.metadata.settings.SessionSettings;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 
+/**
+ * The {@code measureRowsPerSecond*} benchmarks report the throughput in rows.
+ * To also report the allocation rate, run them with the GC profiler:
+ *
+ * <pre>
+ *     ./gradlew :benchmarks:run --args="CsvReaderBenchmark.measureRowsPerSecond -prof gc"
+ * </pre>
+ *
+ * {@code gc.alloc.rate.norm} is then the number of bytes allocated per row.
+ */
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.MICROSECONDS)
 @State(Scope.Benchmark)
 public class CsvReaderBenchmark {
 
+    private static final int NUM_ROWS = 10_000;
+    private static final String[] NAMES = {"Arthur", "Trillian", "Emma", "Emily", "Sarah", "John", "Mical", "Mary"};
+
     private String fileUri;
     private InputFactory inputFactory;
     private TransactionContext txnCtx = TransactionContext.of(
         new SessionSettings("dummyUser",
                             SearchPath.createSearchPathFrom("dummySchema")));
     File tempFile;
+    private String largeFileUri;
+    File largeTempFile;
 
     public static Reference createReference(String columnName, DataType<?> dataType) {
         return new Reference(
@@ -130,6 +147,15 @@ public class CsvReaderBenchmark {
             writer.write("Rory,1\n");
             writer.write("Martin,11\n");
         }
+
+        largeTempFile = File.createTempFile("temp", null);
+        largeFileUri = largeTempFile.toURI().getPath();
+        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(largeTempFile), StandardCharsets.UTF_8)) {
+            writer.write("name,id\n");
+            for (int i = 0; i < NUM_ROWS; i++) {
+                writer.write(NAMES[i % NAMES.length] + "," + i + "\n");
+            }
+        }
     }
 
     @Benchmark()
@@ -156,8 +182,56 @@ public class CsvReaderBenchmark {
         }
     }
 
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(NUM_ROWS)
+    public void measureRowsPerSecondForCsvRaw(Blackhole blackhole) {
+        consumeRows(blackhole, createReference("_raw", DataTypes.STRING));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(NUM_ROWS)
+    public void measureRowsPerSecondForCsvColumns(Blackhole blackhole) {
+        consumeRows(
+            blackhole,
+            createReference("name", DataTypes.STRING),
+            createReference("id", DataTypes.INTEGER));
+    }
+
+    private void consumeRows(Blackhole blackhole, Reference... refs) {
+        InputFactory.Context<LineCollectorExpression<?>> ctx = inputFactory.ctxForRefs(
+            txnCtx, FileLineReferenceResolver::getImplementation);
+        List<Input<?>> inputs = new ArrayList<>(refs.length);
+        for (Reference ref : refs) {
+            inputs.add(ctx.add(ref));
+        }
+        BatchIterator<Row> batchIterator = FileReadingIterator.newInstance(
+            Collections.singletonList(largeFileUri),
+            inputs,
+            ctx.expressions(),
+            null,
+            Map.of(
+                LocalFsFileInputFactory.NAME, new LocalFsFileInputFactory()),
+            false,
+            1,
+            0,
+            CopyFromParserProperties.DEFAULT,
+            CSV);
+
+        while (batchIterator.moveNext()) {
+            Row row = batchIterator.currentElement();
+            for (int i = 0; i < refs.length; i++) {
+                blackhole.consume(row.get(i));
+            }
+        }
+    }
+
     @TearDown
     public void cleanup() throws InterruptedException {
         tempFile.delete();
+        largeTempFile.delete();
     }
 }
@@ -0,0 +1,128 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.sort;
+
+import static io.crate.data.SentinelRow.SENTINEL;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.elasticsearch.common.settings.Settings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.crate.breaker.ConcurrentRamAccounting;
+import io.crate.breaker.RowCellsAccountingWithEstimators;
+import io.crate.data.BatchIterator;
+import io.crate.data.InMemoryBatchIterator;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.execution.engine.collect.InputCollectExpression;
+import io.crate.execution.engine.spill.SpillFile;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+
+/**
+ * Compares sorting all rows in memory with an external sort that spills sorted runs to disk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class SortingProjectorBenchmark {
+
+    private static final Comparator<Object[]> COMPARATOR = OrderingByPosition.arrayOrdering(0, false, false);
+    private static final InputCollectExpression INPUT = new InputCollectExpression(0);
+    private static final List<Input<?>> INPUTS = List.of(INPUT);
+    private static final Iterable<CollectExpression<Row, ?>> COLLECT_EXPRESSIONS = List.of(INPUT);
+    private static final List<DataType<?>> TYPES = List.of(DataTypes.INTEGER);
+    private static final long SPILL_THRESHOLD = 8 * 1024 * 1024;
+
+    private List<Row> rows;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        rows = IntStream.range(0, 2_000_000)
+            .mapToObj(i -> new RowN(random.nextInt()))
+            .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void measureInMemorySort(Blackhole blackhole) throws Exception {
+        ConcurrentRamAccounting ramAccounting = new ConcurrentRamAccounting(bytes -> { }, bytes -> { });
+        SortingProjector projector = new SortingProjector(
+            new RowCellsAccountingWithEstimators(TYPES, ramAccounting, 32),
+            INPUTS,
+            COLLECT_EXPRESSIONS,
+            1,
+            COMPARATOR,
+            0
+        );
+        consume(projector, blackhole);
+    }
+
+    @Benchmark
+    public void measureSpilledSort(Blackhole blackhole) throws Exception {
+        ConcurrentRamAccounting ramAccounting = new ConcurrentRamAccounting(bytes -> { }, bytes -> { });
+        SortingProjector projector = new SortingProjector(
+            new RowCellsAccountingWithEstimators(TYPES, ramAccounting, 32),
+            INPUTS,
+            COLLECT_EXPRESSIONS,
+            1,
+            COMPARATOR,
+            0,
+            new ExternalSorter(
+                DataTypes.getStreamers(TYPES),
+                COMPARATOR,
+                ramAccounting,
+                SPILL_THRESHOLD,
+                SpillFile.directory(Settings.EMPTY)
+            )
+        );
+        consume(projector, blackhole);
+    }
+
+    private void consume(SortingProjector projector, Blackhole blackhole) throws Exception {
+        BatchIterator<Row> it = projector.apply(new InMemoryBatchIterator<>(rows, SENTINEL, false));
+        try {
+            it.loadNextBatch().toCompletableFuture().join();
+            while (it.moveNext()) {
+                blackhole.consume(it.currentElement().get(0));
+            }
+        } finally {
+            it.close();
+        }
+    }
+}
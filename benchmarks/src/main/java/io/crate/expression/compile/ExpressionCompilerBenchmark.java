@@ -0,0 +1,165 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.expression.compile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.expression.InputCondition;
+import io.crate.expression.InputFactory;
+import io.crate.expression.operator.AndOperator;
+import io.crate.expression.operator.EqOperator;
+import io.crate.expression.operator.GtOperator;
+import io.crate.expression.operator.LtOperator;
+import io.crate.expression.operator.Operator;
+import io.crate.expression.operator.OperatorModule;
+import io.crate.expression.operator.OrOperator;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.InputColumn;
+import io.crate.expression.symbol.Literal;
+import io.crate.expression.symbol.Symbol;
+import io.crate.metadata.CoordinatorTxnCtx;
+import io.crate.metadata.Functions;
+import io.crate.metadata.NodeContext;
+import io.crate.metadata.TransactionContext;
+import io.crate.metadata.functions.Signature;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+
+/**
+ * Compares the predicates compiled by the {@link ExpressionCompiler} with the {@link Input} trees
+ * created by the {@link InputFactory} for {@code x > 1 AND i < 3 OR a = 'foo'}.
+ *
+ * <pre>
+ *     ./gradlew :benchmarks:run --args="ExpressionCompilerBenchmark"
+ * </pre>
+ *
+ * The results are reported in rows per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ExpressionCompilerBenchmark {
+
+    private static final int NUM_ROWS = 10_000;
+    private static final String[] NAMES = {"foo", "Foo", "bar", null};
+
+    private final List<Row> rows = new ArrayList<>(NUM_ROWS);
+    private Predicate<Row> compiledPredicate;
+    private List<CollectExpression<Row, ?>> collectExpressions;
+    private Input<Boolean> condition;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void createPredicates() {
+        Functions functions = new ModulesBuilder()
+            .add(new OperatorModule())
+            .createInjector()
+            .getInstance(Functions.class);
+        NodeContext nodeCtx = new NodeContext(functions);
+        TransactionContext txnCtx = CoordinatorTxnCtx.systemTransactionContext();
+
+        InputColumn a = new InputColumn(0, DataTypes.STRING);
+        InputColumn x = new InputColumn(1, DataTypes.INTEGER);
+        InputColumn i = new InputColumn(2, DataTypes.INTEGER);
+        Symbol query = new Function(
+            OrOperator.SIGNATURE,
+            List.of(
+                AndOperator.of(
+                    cmp(GtOperator.NAME, x, Literal.of(1)),
+                    cmp(LtOperator.NAME, i, Literal.of(3))
+                ),
+                new Function(EqOperator.SIGNATURE, List.of(a, Literal.of("foo")), Operator.RETURN_TYPE)
+            ),
+            Operator.RETURN_TYPE
+        );
+
+        compiledPredicate = new ExpressionCompiler(txnCtx, nodeCtx).compilePredicate(query);
+        InputFactory.Context<CollectExpression<Row, ?>> ctx = new InputFactory(nodeCtx).ctxForInputColumns(txnCtx);
+        condition = (Input<Boolean>) ctx.add(query);
+        collectExpressions = ctx.expressions();
+
+        Random random = new Random(42);
+        for (int n = 0; n < NUM_ROWS; n++) {
+            rows.add(new RowN(
+                NAMES[random.nextInt(NAMES.length)],
+                random.nextInt(10) == 0 ? null : random.nextInt(7) - 3,
+                random.nextInt(10) == 0 ? null : random.nextInt(7) - 3
+            ));
+        }
+    }
+
+    private static Function cmp(String name, Symbol left, Symbol right) {
+        DataType<?> type = left.valueType();
+        Signature signature = Signature.scalar(
+            name,
+            type.getTypeSignature(),
+            type.getTypeSignature(),
+            Operator.RETURN_TYPE.getTypeSignature()
+        );
+        return new Function(signature, List.of(left, right), Operator.RETURN_TYPE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_ROWS)
+    public int measureCompiledPredicate() {
+        int matches = 0;
+        for (Row row : rows) {
+            if (compiledPredicate.test(row)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_ROWS)
+    public int measureInputFactoryPredicate() {
+        int matches = 0;
+        for (Row row : rows) {
+            for (CollectExpression<Row, ?> expression : collectExpressions) {
+                expression.setNextRow(row);
+            }
+            if (InputCondition.matches(condition)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -22,6 +22,7 @@
 package io.crate.beans;
 
 import com.google.common.base.Suppliers;
+import io.crate.execution.engine.cache.QueryResultCacheStats;
 import io.crate.execution.engine.collect.stats.JobsLogs;
 import io.crate.metadata.sys.MetricsView;
 import io.crate.planner.Plan.StatementType;
@@ -79,13 +80,15 @@ public class QueryStats implements QueryStatsMBean {
         }
     };
     private final Supplier<Map<StatementType, Metric>> metricByStmtType;
+    private final Supplier<QueryResultCacheStats> resultCacheStats;
 
-    public QueryStats(JobsLogs jobsLogs) {
+    public QueryStats(JobsLogs jobsLogs, Supplier<QueryResultCacheStats> resultCacheStats) {
         metricByStmtType = Suppliers.memoizeWithExpiration(
             () -> createMetricsMap(jobsLogs.metrics()),
             1,
             TimeUnit.SECONDS
         );
+        this.resultCacheStats = resultCacheStats;
     }
 
     static Map<StatementType, Metric> createMetricsMap(Iterable<MetricsView> metrics) {
@@ -230,4 +233,19 @@ public class QueryStats implements QueryStatsMBean {
     public long getUndefinedQueryFailedCount() {
         return metricByStmtType.get().getOrDefault(StatementType.UNDEFINED, DEFAULT_METRIC).failedCount();
     }
+
+    @Override
+    public long getResultCacheHitCount() {
+        return resultCacheStats.get().hits();
+    }
+
+    @Override
+    public long getResultCacheMissCount() {
+        return resultCacheStats.get().misses();
+    }
+
+    @Override
+    public long getResultCacheEvictionCount() {
+        return resultCacheStats.get().evictions();
+    }
 }
@@ -79,4 +79,10 @@ public interface QueryStatsMBean {
     long getCopyQueryFailedCount();
 
     long getUndefinedQueryFailedCount();
+
+    long getResultCacheHitCount();
+
+    long getResultCacheMissCount();
+
+    long getResultCacheEvictionCount();
 }
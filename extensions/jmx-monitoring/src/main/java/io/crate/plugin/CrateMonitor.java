@@ -48,6 +48,7 @@ import io.crate.beans.NodeInfo;
 import io.crate.beans.NodeStatus;
 import io.crate.beans.QueryStats;
 import io.crate.beans.ThreadPools;
+import io.crate.execution.engine.cache.QueryResultCache;
 import io.crate.execution.engine.collect.stats.JobsLogs;
 import io.crate.protocols.ConnectionStats;
 import io.crate.protocols.postgres.PostgresNetty;
@@ -66,9 +67,10 @@ public class CrateMonitor {
                         ClusterService clusterService,
                         ThreadPool threadPool,
                         CircuitBreakerService breakerService,
-                        IndicesService indicesService) {
+                        IndicesService indicesService,
+                        QueryResultCache queryResultCache) {
         logger = LogManager.getLogger(CrateMonitor.class);
-        registerMBean(QueryStats.NAME, new QueryStats(jobsLogs));
+        registerMBean(QueryStats.NAME, new QueryStats(jobsLogs, queryResultCache::stats));
         registerMBean(NodeStatus.NAME, new NodeStatus(sqlOperations::isEnabled));
         registerMBean(NodeInfo.NAME, new NodeInfo(clusterService::state, new NodeInfo.ShardStateAndSizeProvider(indicesService)));
         registerMBean(Connections.NAME, new Connections(
@@ -80,6 +80,30 @@ public final class ConcurrencyLimit {
         private int longWindow = 600;
         private double rttTolerance = 1.5;
 
+        public Builder initialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        public Builder minLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * @param queueSize function returning the number of operations by which the limit may grow
+         *                  during a sampling window, given the current estimated limit.
+         */
+        public Builder queueSize(Function<Integer, Integer> queueSize) {
+            this.queueSize = queueSize;
+            return this;
+        }
+
         public ConcurrencyLimit build() {
             return new ConcurrencyLimit(this);
         }
@@ -23,24 +23,31 @@ package io.crate.action.sql;
 
 import io.crate.analyze.AnalyzedStatement;
 import io.crate.analyze.ParamTypeHints;
+import io.crate.planner.PlanCache;
 import io.crate.sql.tree.Statement;
 import io.crate.types.DataType;
 
+import javax.annotation.Nullable;
+
 public class PreparedStmt {
 
     private final AnalyzedStatement analyzedStatement;
     private final Statement parsedStatement;
     private final String rawStatement;
     private final DataType[] describedParameterTypes;
+    @Nullable
+    private final PlanCache.Key planCacheKey;
 
     PreparedStmt(Statement parsedStatement,
                  AnalyzedStatement analyzedStatement,
                  String query,
-                 DataType[] parameterTypes) {
+                 DataType[] parameterTypes,
+                 @Nullable PlanCache.Key planCacheKey) {
         this.parsedStatement = parsedStatement;
         this.analyzedStatement = analyzedStatement;
         this.rawStatement = query;
         this.describedParameterTypes = parameterTypes;
+        this.planCacheKey = planCacheKey;
     }
 
     public AnalyzedStatement analyzedStatement() {
@@ -71,4 +78,9 @@ public class PreparedStmt {
     public String rawStatement() {
         return rawStatement;
     }
+
+    @Nullable
+    PlanCache.Key planCacheKey() {
+        return planCacheKey;
+    }
 }
@@ -60,6 +60,7 @@ import io.crate.data.RowConsumer;
 import io.crate.data.RowN;
 import io.crate.exceptions.ReadOnlyException;
 import io.crate.exceptions.SQLExceptions;
+import io.crate.execution.engine.cache.QueryResultCache;
 import io.crate.execution.engine.collect.stats.JobsLogs;
 import io.crate.expression.symbol.Symbol;
 import io.crate.expression.symbol.Symbols;
@@ -68,6 +69,7 @@ import io.crate.metadata.RoutingProvider;
 import io.crate.metadata.table.TableInfo;
 import io.crate.planner.DependencyCarrier;
 import io.crate.planner.Plan;
+import io.crate.planner.PlanCache;
 import io.crate.planner.Planner;
 import io.crate.planner.PlannerContext;
 import io.crate.planner.operators.StatementClassifier;
@@ -279,6 +281,9 @@ public class Session implements AutoCloseable {
 
         AnalyzedStatement analyzedStatement;
         DataType[] parameterTypes;
+        PlanCache.Key planCacheKey;
+        // Read before the analysis; the schemas may get updated concurrently
+        long metadataVersion = planner.schemasMetadataVersion();
         try {
             analyzedStatement = analyzer.analyze(
                 statement,
@@ -288,6 +293,13 @@ public class Session implements AutoCloseable {
             parameterTypes = parameterTypeExtractor.getParameterTypes(
                 x -> Relations.traverseDeepSymbols(analyzedStatement, x)
             );
+            planCacheKey = PlanCache.createKey(
+                query,
+                parameterTypes,
+                analyzedStatement,
+                new CoordinatorTxnCtx(sessionContext).sessionSettings(),
+                metadataVersion
+            );
         } catch (Throwable t) {
             jobsLogs.logPreExecutionFailure(
                 UUID.randomUUID(),
@@ -298,7 +310,7 @@ public class Session implements AutoCloseable {
         }
         preparedStatements.put(
             statementName,
-            new PreparedStmt(statement, analyzedStatement, query, parameterTypes));
+            new PreparedStmt(statement, analyzedStatement, query, parameterTypes, planCacheKey));
     }
 
     public void bind(String portalName,
@@ -423,7 +435,7 @@ public class Session implements AutoCloseable {
             resultReceiver.allFinished(false);
         } else if (analyzedStmt instanceof AnalyzedDiscard) {
             AnalyzedDiscard discard = (AnalyzedDiscard) analyzedStmt;
-            // We don't cache plans, don't have sequences or temporary tables
+            // Plans are cached per node and not per session, we don't have sequences or temporary tables
             // See https://www.postgresql.org/docs/current/sql-discard.html
             if (discard.target() == Target.ALL) {
                 close();
@@ -623,7 +635,7 @@ public class Session implements AutoCloseable {
         }
         Plan plan;
         try {
-            plan = planner.plan(analyzedStmt, plannerContext);
+            plan = planner.plan(portal.preparedStmt().planCacheKey(), analyzedStmt, plannerContext);
         } catch (Throwable t) {
             jobsLogs.logPreExecutionFailure(jobId, rawStatement, SQLExceptions.messageOf(t), sessionContext.sessionUser());
             throw t;
@@ -654,7 +666,18 @@ public class Session implements AutoCloseable {
         RowConsumerToResultReceiver consumer = new RowConsumerToResultReceiver(
             resultReceiver, maxRows, new JobsLogsUpdateListener(jobId, jobsLogs));
         portal.setActiveConsumer(consumer);
-        plan.execute(executor, plannerContext, consumer, params, SubQueryResults.EMPTY);
+        QueryResultCache.Key resultCacheKey = QueryResultCache.createKey(
+            portal.preparedStmt().planCacheKey(), analyzedStmt, plan, portal.params());
+        if (resultCacheKey == null) {
+            plan.execute(executor, plannerContext, consumer, params, SubQueryResults.EMPTY);
+        } else {
+            executor.queryResultCache().execute(
+                resultCacheKey,
+                clusterState,
+                consumer,
+                c -> plan.execute(executor, plannerContext, c, params, SubQueryResults.EMPTY)
+            );
+        }
         return resultReceiver.completionFuture();
     }
 
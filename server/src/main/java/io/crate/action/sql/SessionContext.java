@@ -39,6 +39,7 @@ public class SessionContext {
 
     private SearchPath searchPath;
     private boolean hashJoinEnabled = true;
+    private int maxParallelWorkersPerShard = 1;
     private Set<Class<? extends Rule<?>>> excludedOptimizerRules;
 
     /**
@@ -86,6 +87,14 @@ public class SessionContext {
         this.hashJoinEnabled = hashJoinEnabled;
     }
 
+    public int maxParallelWorkersPerShard() {
+        return maxParallelWorkersPerShard;
+    }
+
+    public void setMaxParallelWorkersPerShard(int maxParallelWorkersPerShard) {
+        this.maxParallelWorkersPerShard = maxParallelWorkersPerShard;
+    }
+
     public User authenticatedUser() {
         return authenticatedUser;
     }
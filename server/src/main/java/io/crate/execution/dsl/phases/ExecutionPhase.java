@@ -48,7 +48,8 @@ public interface ExecutionPhase extends Writeable {
         HASH_JOIN(HashJoinPhase::new),
         TABLE_FUNCTION_COLLECT(in -> {
             throw new UnsupportedOperationException("TableFunctionCollectPhase is not streamable"); }),
-        PKLookup(PKLookupPhase::new);
+        PKLookup(PKLookupPhase::new),
+        MERGE_JOIN(MergeJoinPhase::new);
 
         public static final List<Type> VALUES = List.of(values());
 
@@ -0,0 +1,150 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.dsl.phases;
+
+import io.crate.execution.dsl.projection.Projection;
+import io.crate.expression.symbol.Symbol;
+import io.crate.expression.symbol.Symbols;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Join phase for inputs which are sorted ascending by the join keys with nulls last.
+ */
+public class MergeJoinPhase extends JoinPhase {
+
+    private final List<Symbol> leftJoinConditionInputs;
+    private final List<Symbol> rightJoinConditionInputs;
+    private final Collection<DataType<?>> rightOutputTypes;
+
+    public MergeJoinPhase(UUID jobId,
+                          int executionNodeId,
+                          String name,
+                          List<Projection> projections,
+                          @Nullable MergePhase leftMergePhase,
+                          @Nullable MergePhase rightMergePhase,
+                          int numLeftOutputs,
+                          int numRightOutputs,
+                          Collection<String> executionNodes,
+                          JoinType joinType,
+                          Symbol joinCondition,
+                          List<Symbol> leftJoinConditionInputs,
+                          List<Symbol> rightJoinConditionInputs,
+                          Collection<DataType<?>> rightOutputTypes) {
+        super(
+            jobId,
+            executionNodeId,
+            name,
+            projections,
+            leftMergePhase,
+            rightMergePhase,
+            numLeftOutputs,
+            numRightOutputs,
+            executionNodes,
+            joinType,
+            joinCondition);
+        assert leftJoinConditionInputs.size() == rightJoinConditionInputs.size()
+            : "MergeJoin requires the same number of join keys on both sides";
+        this.leftJoinConditionInputs = leftJoinConditionInputs;
+        this.rightJoinConditionInputs = rightJoinConditionInputs;
+        this.rightOutputTypes = rightOutputTypes;
+    }
+
+    public MergeJoinPhase(StreamInput in) throws IOException {
+        super(in);
+        leftJoinConditionInputs = Symbols.listFromStream(in);
+        rightJoinConditionInputs = Symbols.listFromStream(in);
+        rightOutputTypes = DataTypes.listFromStream(in);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        Symbols.toStream(leftJoinConditionInputs, out);
+        Symbols.toStream(rightJoinConditionInputs, out);
+        DataTypes.toStream(rightOutputTypes, out);
+    }
+
+    @Override
+    public Type type() {
+        return Type.MERGE_JOIN;
+    }
+
+    @Override
+    public <C, R> R accept(ExecutionPhaseVisitor<C, R> visitor, C context) {
+        return visitor.visitMergeJoinPhase(this, context);
+    }
+
+    /**
+     * @return the join keys of the left side, the left input is sorted by them
+     */
+    public List<Symbol> leftJoinConditionInputs() {
+        return leftJoinConditionInputs;
+    }
+
+    /**
+     * @return the join keys of the right side, the right input is sorted by them
+     */
+    public List<Symbol> rightJoinConditionInputs() {
+        return rightJoinConditionInputs;
+    }
+
+    /**
+     * @return the types of the right outputs, rows of the right side sharing the same key are buffered
+     */
+    public Collection<DataType<?>> rightOutputTypes() {
+        return rightOutputTypes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        if (!super.equals(o)) {
+            return false;
+        }
+        MergeJoinPhase that = (MergeJoinPhase) o;
+        return leftJoinConditionInputs.equals(that.leftJoinConditionInputs) &&
+               rightJoinConditionInputs.equals(that.rightJoinConditionInputs) &&
+               rightOutputTypes.equals(that.rightOutputTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), leftJoinConditionInputs, rightJoinConditionInputs, rightOutputTypes);
+    }
+}
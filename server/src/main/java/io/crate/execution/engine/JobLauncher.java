@@ -34,6 +34,7 @@ import io.crate.execution.jobs.DownstreamRXTask;
 import io.crate.execution.jobs.InstrumentedIndexSearcher;
 import io.crate.execution.jobs.JobSetup;
 import io.crate.execution.jobs.PageBucketReceiver;
+import io.crate.execution.jobs.QueryAdmissionController;
 import io.crate.execution.jobs.RootTask;
 import io.crate.execution.jobs.SharedShardContexts;
 import io.crate.execution.jobs.Task;
@@ -45,6 +46,7 @@ import io.crate.metadata.TransactionContext;
 import io.crate.profile.ProfilingContext;
 import org.elasticsearch.cluster.service.ClusterService;
 import io.crate.common.collections.Tuple;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.search.profile.query.QueryProfiler;
 
@@ -108,6 +110,7 @@ public final class JobLauncher {
     private final IndicesService indicesService;
     private final boolean enableProfiling;
     private final Executor executor;
+    private final QueryAdmissionController admissionController;
 
     private boolean hasDirectResponse;
 
@@ -120,7 +123,8 @@ public final class JobLauncher {
                 TransportKillJobsNodeAction transportKillJobsNodeAction,
                 List<NodeOperationTree> nodeOperationTrees,
                 boolean enableProfiling,
-                Executor executor) {
+                Executor executor,
+                QueryAdmissionController admissionController) {
         this.jobId = jobId;
         this.clusterService = clusterService;
         this.jobSetup = jobSetup;
@@ -131,6 +135,7 @@ public final class JobLauncher {
         this.nodeOperationTrees = nodeOperationTrees;
         this.enableProfiling = enableProfiling;
         this.executor = executor;
+        this.admissionController = admissionController;
 
         for (NodeOperationTree nodeOperationTree : nodeOperationTrees) {
             for (NodeOperation nodeOperation : nodeOperationTree.nodeOperations()) {
@@ -149,11 +154,18 @@ public final class JobLauncher {
 
         List<ExecutionPhase> handlerPhases = Collections.singletonList(nodeOperationTree.leaf());
         List<RowConsumer> handlerConsumers = Collections.singletonList(consumer);
-        try {
-            setupTasks(txnCtx, operationByServer, handlerPhases, handlerConsumers);
-        } catch (Throwable throwable) {
-            consumer.accept(null, throwable);
-        }
+        admissionController.acquire(jobId, txnCtx.sessionSettings().userName()).whenComplete((admission, err) -> {
+            if (err != null) {
+                consumer.accept(null, err);
+                return;
+            }
+            try {
+                setupTasks(txnCtx, operationByServer, handlerPhases, handlerConsumers, admission);
+            } catch (Throwable throwable) {
+                admission.close();
+                consumer.accept(null, throwable);
+            }
+        });
     }
 
     public List<CompletableFuture<Long>> executeBulk(TransactionContext txnCtx) {
@@ -173,17 +185,22 @@ public final class JobLauncher {
             handlerPhases.add(nodeOperationTree.leaf());
         }
         try {
-            setupTasks(txnCtx, operationByServer, handlerPhases, handlerConsumers);
+            setupTasks(txnCtx, operationByServer, handlerPhases, handlerConsumers, () -> {});
         } catch (Throwable throwable) {
             return Collections.singletonList(CompletableFuture.failedFuture(throwable));
         }
         return results;
     }
 
+    /**
+     * @param admission released once the execution on the handler finished, see {@link QueryAdmissionController}.
+     *                  The caller must release it if this method throws.
+     */
     private void setupTasks(TransactionContext txnCtx,
                             Map<String, Collection<NodeOperation>> operationByServer,
                             List<ExecutionPhase> handlerPhases,
-                            List<RowConsumer> handlerConsumers) throws Throwable {
+                            List<RowConsumer> handlerConsumers,
+                            Releasable admission) throws Throwable {
         assert handlerPhases.size() == handlerConsumers.size() : "handlerPhases size must match handlerConsumers size";
 
         String localNodeId = clusterService.localNode().getId();
@@ -211,6 +228,8 @@ public final class JobLauncher {
             handlerPhaseAndReceiver,
             sharedShardContexts);
         RootTask localTask = tasksService.createTask(builder);
+        // The local task completes once all tasks on the handler finished, failed or were killed
+        localTask.completionFuture().whenComplete((result, failure) -> admission.close());
 
         List<PageBucketReceiver> pageBucketReceivers = getHandlerBucketReceivers(localTask, handlerPhaseAndReceiver);
         int bucketIdx = 0;
@@ -232,6 +251,7 @@ public final class JobLauncher {
 
                 localTask.start();
             } catch (Throwable t) {
+                admission.close();
                 accountFailureForRemoteOperations(operationByServer, initializationTracker, handlerPhaseAndReceiver, t);
                 return;
             }
@@ -240,6 +260,7 @@ public final class JobLauncher {
                 localTask.start();
                 initializationTracker.jobInitialized();
             } catch (Throwable t) {
+                admission.close();
                 initializationTracker.jobInitializationFailed(t);
                 accountFailureForRemoteOperations(operationByServer, initializationTracker, handlerPhaseAndReceiver, t);
                 return;
@@ -23,6 +23,7 @@ package io.crate.execution.engine;
 
 import io.crate.execution.dsl.phases.NodeOperationTree;
 import io.crate.execution.jobs.JobSetup;
+import io.crate.execution.jobs.QueryAdmissionController;
 import io.crate.execution.jobs.TasksService;
 import io.crate.execution.jobs.kill.TransportKillJobsNodeAction;
 import io.crate.execution.jobs.transport.TransportJobAction;
@@ -46,6 +47,7 @@ public final class PhasesTaskFactory {
     private final TransportJobAction jobAction;
     private final TransportKillJobsNodeAction killJobsNodeAction;
     private final Executor searchExecutor;
+    private final QueryAdmissionController admissionController;
 
     @Inject
     public PhasesTaskFactory(ClusterService clusterService,
@@ -54,7 +56,8 @@ public final class PhasesTaskFactory {
                              TasksService tasksService,
                              IndicesService indicesService,
                              TransportJobAction jobAction,
-                             TransportKillJobsNodeAction killJobsNodeAction) {
+                             TransportKillJobsNodeAction killJobsNodeAction,
+                             QueryAdmissionController admissionController) {
         this.clusterService = clusterService;
         this.jobSetup = jobSetup;
         this.tasksService = tasksService;
@@ -62,6 +65,7 @@ public final class PhasesTaskFactory {
         this.jobAction = jobAction;
         this.killJobsNodeAction = killJobsNodeAction;
         this.searchExecutor = threadPool.executor(ThreadPool.Names.SEARCH);
+        this.admissionController = admissionController;
     }
 
     public JobLauncher create(UUID jobId, List<NodeOperationTree> nodeOperationTreeList) {
@@ -79,7 +83,8 @@ public final class PhasesTaskFactory {
             killJobsNodeAction,
             nodeOperationTreeList,
             enableProfiling,
-            searchExecutor
+            searchExecutor,
+            admissionController
         );
     }
 }
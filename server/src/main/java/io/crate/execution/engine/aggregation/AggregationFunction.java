@@ -110,6 +110,16 @@ public abstract class AggregationFunction<TPartial, TFinal> implements FunctionI
         return false;
     }
 
+    /**
+     * Indicates if the states of this aggregation are immutable values, so that {@link #iterate} and {@link #reduce}
+     * never modify the given states. Such states can be shared and merged repeatedly, which allows to compute
+     * sliding window frames by merging pre-aggregated states of sub-ranges of the partition.
+     * The aggregation must also be commutative.
+     */
+    public boolean hasImmutableStates() {
+        return false;
+    }
+
     public TPartial removeFromAggregatedState(RamAccounting ramAccounting,
                                               TPartial previousAggState,
                                               Input[] stateToRemove) {
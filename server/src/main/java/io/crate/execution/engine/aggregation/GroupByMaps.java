@@ -68,6 +68,25 @@ public final class GroupByMaps {
         }
     }
 
+    /**
+     * @return true if keys of the given type should be grouped using a {@link PagedGroupByMap}.
+     *         Types which have a primitive map in {@link #mapForType(DataType)} are excluded, there are no key objects to retain.
+     */
+    public static boolean usePagedMap(DataType<?> type) {
+        switch (type.id()) {
+            case ByteType.ID:
+            case ShortType.ID:
+            case IntegerType.ID:
+            case LongType.ID:
+            case TimestampType.ID_WITH_TZ:
+            case TimestampType.ID_WITHOUT_TZ:
+                return false;
+
+            default:
+                return PagedGroupByMap.supportsKeyType(type);
+        }
+    }
+
     public static <K, V> Supplier<Map<K, V>> mapForType(DataType<K> type) {
         switch (type.id()) {
             case ByteType.ID:
@@ -0,0 +1,244 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.aggregation;
+
+import com.carrotsearch.hppc.BitMixer;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccounting;
+import io.crate.execution.engine.spill.SpillFile;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spills the aggregation states of a GROUP BY operation to disk (hash aggregation with bounded memory).
+ * <p>
+ * The {@link GroupingCollector} accounts for its groups using the {@link RamAccounting} of this spiller.
+ * Once {@link #shouldSpill()} returns true, all groups (the key cells followed by the partial aggregation states)
+ * are written with {@link #add(int, Object[])} into one of {@link #NUM_PARTITIONS} spill files, chosen by the hash
+ * of the key, and {@link #finishSpill()} is called.
+ * <p>
+ * As all states of a key end up in the same partition, the partitions can be merged one by one using
+ * {@link AggregationFunction#reduce(RamAccounting, Object, Object)}, so only a single partition has to fit into memory.
+ * <p>
+ * If the groups of a partition exceed the spill threshold while it is merged, the partition is split into
+ * sub-partitions using {@link #repartition(int)}, up to {@link #MAX_REPARTITION_DEPTH} times.
+ */
+public final class GroupBySpiller implements Closeable {
+
+    /**
+     * Amount of memory the groups of a single GROUP BY operation may use before they are spilled to disk.
+     * Spilling is disabled for values &lt;= 0.
+     */
+    public static final Setting<ByteSizeValue> SPILL_THRESHOLD_SETTING = Setting.byteSizeSetting(
+        "node.sql.group_by.spill_threshold",
+        new ByteSizeValue(-1),
+        Setting.Property.NodeScope
+    );
+
+    static final int NUM_PARTITIONS = 16;
+
+    /**
+     * Max. number of times the groups of a partition are split into sub-partitions. Partitions which still exceed
+     * the spill threshold at this depth are merged in memory.
+     */
+    static final int MAX_REPARTITION_DEPTH = 3;
+
+    /**
+     * Added to the key hash for each repartitioning, so that the groups of a partition are spread over the
+     * sub-partitions instead of ending up in the same sub-partition again.
+     */
+    private static final int REPARTITION_SEED = 0x9E3779B9;
+
+    private final Streamer<?>[] streamers;
+    private final RamAccounting ramAccounting;
+    private final long spillThreshold;
+    private final Path spillDirectory;
+    private final Partitions partitions;
+    private final List<Partitions> subPartitions = new ArrayList<>();
+    private int numSpills = 0;
+
+    /**
+     * @param streamers      streamers for the key cells followed by the streamers of the partial types of the aggregations.
+     * @param ramAccounting  the RamAccounting used by the grouping operation. This must only contain the memory
+     *                       used by the groups, as it is released on each spill.
+     * @param spillThreshold number of bytes after which the groups should be spilled.
+     * @param spillDirectory directory the spill files are created in, see {@link SpillFile#directory}.
+     */
+    public GroupBySpiller(Streamer<?>[] streamers,
+                          RamAccounting ramAccounting,
+                          long spillThreshold,
+                          Path spillDirectory) {
+        if (spillThreshold <= 0) {
+            throw new IllegalArgumentException("Invalid spill threshold: value must be > 0; got: " + spillThreshold);
+        }
+        this.streamers = streamers;
+        this.ramAccounting = ramAccounting;
+        this.spillThreshold = spillThreshold;
+        this.spillDirectory = spillDirectory;
+        this.partitions = new Partitions(0);
+    }
+
+    public boolean shouldSpill() {
+        return ramAccounting.totalBytes() >= spillThreshold;
+    }
+
+    static int partitionFor(int keyHash, int depth) {
+        return Math.floorMod(BitMixer.mix32(keyHash + depth * REPARTITION_SEED), NUM_PARTITIONS);
+    }
+
+    /**
+     * Writes a group to the partition of its key.
+     */
+    public void add(int keyHash, Object[] cells) {
+        partitions.add(keyHash, cells);
+    }
+
+    /**
+     * Must be called after all groups have been written using {@link #add(int, Object[])}
+     * and the caller no longer holds on to them. Releases the memory accounted for the groups.
+     */
+    public void finishSpill() {
+        numSpills++;
+        releaseMemory();
+    }
+
+    public void releaseMemory() {
+        ramAccounting.release();
+    }
+
+    public boolean hasSpilled() {
+        return numSpills > 0;
+    }
+
+    public int numSpills() {
+        return numSpills;
+    }
+
+    /**
+     * Finishes writing and returns the non-empty partitions.
+     */
+    public List<SpillFile> finishWriting() {
+        return partitions.finishWriting();
+    }
+
+    /**
+     * Creates the sub-partitions for the groups of a partition which exceed the spill threshold while the partition
+     * is merged. The sub-partitions use a different hash seed than their parent and are deleted on {@link #close()}.
+     *
+     * @param depth the depth of the sub-partitions; the top-level partitions have depth 0.
+     */
+    public Partitions repartition(int depth) {
+        assert depth > 0 && depth <= MAX_REPARTITION_DEPTH : "depth must be within 1 and " + MAX_REPARTITION_DEPTH;
+        Partitions result = new Partitions(depth);
+        subPartitions.add(result);
+        return result;
+    }
+
+    /**
+     * Deletes all partitions, including the sub-partitions.
+     */
+    @Override
+    public void close() {
+        RuntimeException failure = null;
+        try {
+            partitions.close();
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (Partitions partitionsOfPartition : subPartitions) {
+            try {
+                partitionsOfPartition.close();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        subPartitions.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * {@link #NUM_PARTITIONS} spill files, the file of a group is chosen by the hash of its key.
+     * The files are created once the first group is written into them.
+     */
+    public final class Partitions {
+
+        private final int depth;
+        private final SpillFile[] files = new SpillFile[NUM_PARTITIONS];
+
+        private Partitions(int depth) {
+            this.depth = depth;
+        }
+
+        /**
+         * Writes a group to the partition of its key.
+         */
+        public void add(int keyHash, Object[] cells) {
+            int partition = partitionFor(keyHash, depth);
+            SpillFile spillFile = files[partition];
+            if (spillFile == null) {
+                spillFile = SpillFile.create(streamers, spillDirectory);
+                files[partition] = spillFile;
+            }
+            spillFile.add(cells);
+        }
+
+        /**
+         * Finishes writing and returns the non-empty partitions.
+         */
+        public List<SpillFile> finishWriting() {
+            List<SpillFile> result = new ArrayList<>();
+            for (SpillFile file : files) {
+                if (file != null) {
+                    file.finishWriting();
+                    result.add(file);
+                }
+            }
+            return result;
+        }
+
+        private void close() {
+            RuntimeException failure = null;
+            for (int i = 0; i < files.length; i++) {
+                SpillFile file = files[i];
+                if (file != null) {
+                    try {
+                        file.close();
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    }
+                    files[i] = null;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
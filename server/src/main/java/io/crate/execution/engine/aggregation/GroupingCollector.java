@@ -22,6 +22,7 @@
 package io.crate.execution.engine.aggregation;
 
 import com.google.common.collect.Iterables;
+import io.crate.Streamer;
 import io.crate.breaker.MultiSizeEstimator;
 import io.crate.breaker.RamAccounting;
 import io.crate.breaker.SizeEstimatorFactory;
@@ -29,6 +30,7 @@ import io.crate.data.Input;
 import io.crate.data.Row;
 import io.crate.data.RowN;
 import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.execution.engine.spill.SpillFile;
 import io.crate.expression.InputCondition;
 import io.crate.expression.symbol.AggregateMode;
 import io.crate.memory.MemoryManager;
@@ -37,10 +39,13 @@ import org.elasticsearch.Version;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.BinaryOperator;
@@ -71,6 +76,9 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
     private final BiConsumer<Map<K, Object[]>, Row> accumulator;
     private final Supplier<Map<K, Object[]>> supplier;
     private final Version minNodeVersion;
+    private final Function<Object[], K> keyFromCells;
+    @Nullable
+    private final GroupBySpiller spiller;
 
     static GroupingCollector<Object> singleKey(CollectExpression<Row, ?>[] expressions,
                                                AggregateMode mode,
@@ -82,7 +90,23 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
                                                Version minNodeVersion,
                                                Input<?> keyInput,
                                                DataType keyType,
-                                               Version indexVersionCreated) {
+                                               Version indexVersionCreated,
+                                               @Nullable GroupBySpiller spiller) {
+        BiConsumer<Map<Object, Object[]>, Object> accountForNewEntry;
+        Supplier<Map<Object, Object[]>> mapSupplier;
+        if (GroupByMaps.usePagedMap(keyType)) {
+            // The map accounts for its slots itself, the key pages are accounted by the memory manager
+            Streamer<Object> keyStreamer = keyType.streamer();
+            accountForNewEntry = (map, key) -> { };
+            mapSupplier = () -> new PagedGroupByMap<>(keyStreamer, ramAccounting, memoryManager);
+        } else {
+            accountForNewEntry = GroupByMaps.accountForNewEntry(
+                ramAccounting,
+                SizeEstimatorFactory.create(keyType),
+                keyType
+            );
+            mapSupplier = GroupByMaps.mapForType(keyType);
+        }
         return new GroupingCollector<>(
             expressions,
             aggregations,
@@ -94,14 +118,12 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
             minNodeVersion,
             (key, cells) -> cells[0] = key,
             1,
-            GroupByMaps.accountForNewEntry(
-                ramAccounting,
-                SizeEstimatorFactory.create(keyType),
-                keyType
-            ),
+            accountForNewEntry,
             row -> keyInput.value(),
+            cells -> cells[0],
             indexVersionCreated,
-            GroupByMaps.mapForType(keyType)
+            mapSupplier,
+            spiller
         );
     }
 
@@ -114,8 +136,23 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
                                                     MemoryManager memoryManager,
                                                     Version minNodeVersion,
                                                     List<Input<?>> keyInputs,
-                                                    List<? extends DataType> keyTypes,
-                                                    Version indexVersionCreated) {
+                                                    List<? extends DataType<?>> keyTypes,
+                                                    Version indexVersionCreated,
+                                                    @Nullable GroupBySpiller spiller) {
+        BiConsumer<Map<List<Object>, Object[]>, List<Object>> accountForNewEntry;
+        Supplier<Map<List<Object>, Object[]>> mapSupplier;
+        if (PagedGroupByMap.supportsKeyTypes(keyTypes)) {
+            Streamer<List<Object>> keysStreamer = PagedGroupByMap.keysStreamer(keyTypes);
+            accountForNewEntry = (map, keys) -> { };
+            mapSupplier = () -> new PagedGroupByMap<>(keysStreamer, ramAccountingContext, memoryManager);
+        } else {
+            accountForNewEntry = GroupByMaps.accountForNewEntry(
+                ramAccountingContext,
+                new MultiSizeEstimator(keyTypes),
+                null
+            );
+            mapSupplier = HashMap::new;
+        }
         return new GroupingCollector<>(
             expressions,
             aggregations,
@@ -127,14 +164,12 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
             minNodeVersion,
             GroupingCollector::applyKeysToCells,
             keyInputs.size(),
-            GroupByMaps.accountForNewEntry(
-                ramAccountingContext,
-                new MultiSizeEstimator(keyTypes),
-                null
-            ),
+            accountForNewEntry,
             row -> evalKeyInputs(keyInputs),
+            cells -> keysFromCells(cells, keyInputs.size()),
             indexVersionCreated,
-            HashMap::new
+            mapSupplier,
+            spiller
         );
     }
 
@@ -146,6 +181,14 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
         return key;
     }
 
+    private static List<Object> keysFromCells(Object[] cells, int numKeys) {
+        List<Object> keys = new ArrayList<>(numKeys);
+        for (int i = 0; i < numKeys; i++) {
+            keys.add(cells[i]);
+        }
+        return keys;
+    }
+
     private static void applyKeysToCells(List<Object> keys, Object[] cells) {
         for (int i = 0; i < keys.size(); i++) {
             cells[i] = keys.get(i);
@@ -164,8 +207,10 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
                               int numKeyColumns,
                               BiConsumer<Map<K, Object[]>, K> accountForNewEntry,
                               Function<Row, K> keyExtractor,
+                              Function<Object[], K> keyFromCells,
                               Version indexVersionCreated,
-                              Supplier<Map<K, Object[]>> supplier) {
+                              Supplier<Map<K, Object[]>> supplier,
+                              @Nullable GroupBySpiller spiller) {
         this.expressions = expressions;
         this.aggregations = aggregations;
         this.mode = mode;
@@ -177,10 +222,22 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
         this.numKeyColumns = numKeyColumns;
         this.accountForNewEntry = accountForNewEntry;
         this.keyExtractor = keyExtractor;
+        this.keyFromCells = keyFromCells;
         this.indexVersionCreated = indexVersionCreated;
-        this.accumulator = mode == AggregateMode.PARTIAL_FINAL ? this::reduce : this::iter;
+        BiConsumer<Map<K, Object[]>, Row> accumulate = mode == AggregateMode.PARTIAL_FINAL ? this::reduce : this::iter;
+        if (spiller == null) {
+            this.accumulator = accumulate;
+        } else {
+            this.accumulator = (statesByKey, row) -> {
+                accumulate.accept(statesByKey, row);
+                if (spiller.shouldSpill()) {
+                    spill(statesByKey);
+                }
+            };
+        }
         this.supplier = supplier;
         this.minNodeVersion = minNodeVersion;
+        this.spiller = spiller;
     }
 
     @Override
@@ -202,7 +259,7 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
 
     @Override
     public Function<Map<K, Object[]>, Iterable<Row>> finisher() {
-        return this::mapToRows;
+        return this::finish;
     }
 
     @Override
@@ -269,6 +326,90 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
         addWithAccounting(statesByKey, key, states);
     }
 
+    private Iterable<Row> finish(Map<K, Object[]> statesByKey) {
+        if (spiller == null || !spiller.hasSpilled()) {
+            return mapToRows(statesByKey);
+        }
+        // The remaining groups are spilled as well, so that each key is contained in exactly one partition
+        spill(statesByKey);
+        List<SpillFile> partitions = spiller.finishWriting();
+        return mergePartitions(partitions, 0);
+    }
+
+    private void spill(Map<K, Object[]> statesByKey) {
+        assert spiller != null : "spill must only be called if a spiller is present";
+        for (Map.Entry<K, Object[]> entry : statesByKey.entrySet()) {
+            K key = entry.getKey();
+            spiller.add(Objects.hashCode(key), toCells(key, entry.getValue()));
+        }
+        statesByKey.clear();
+        spiller.finishSpill();
+    }
+
+    private Object[] toCells(K key, Object[] states) {
+        Object[] cells = new Object[numKeyColumns + states.length];
+        applyKeyToCells.accept(key, cells);
+        System.arraycopy(states, 0, cells, numKeyColumns, states.length);
+        return cells;
+    }
+
+    private Iterable<Row> mergePartitions(List<SpillFile> partitions, int depth) {
+        return Iterables.concat(Iterables.transform(partitions, partition -> mergePartition(partition, depth)));
+    }
+
+    /**
+     * Reduces the spilled partial states of a partition. The memory of the previous partition is released first,
+     * the rows of the previous partition must have been consumed at this point.
+     * <p>
+     * If the groups exceed the spill threshold, the partition is split into sub-partitions which are merged
+     * one by one, unless it contains a single group or the max. depth has been reached.
+     */
+    private Iterable<Row> mergePartition(SpillFile partition, int depth) {
+        assert spiller != null : "mergePartition must only be called if a spiller is present";
+        spiller.releaseMemory();
+        Map<K, Object[]> statesByKey = supplier.get();
+        Iterator<Object[]> it = partition.iterator();
+        while (it.hasNext()) {
+            Object[] cells = it.next();
+            K key = keyFromCells.apply(cells);
+            Object[] states = statesByKey.get(key);
+            if (states == null) {
+                addWithAccounting(statesByKey, key, Arrays.copyOfRange(cells, numKeyColumns, cells.length));
+            } else {
+                for (int i = 0; i < aggregations.length; i++) {
+                    states[i] = aggregations[i].reduce(ramAccounting, states[i], cells[numKeyColumns + i]);
+                }
+            }
+            if (depth < GroupBySpiller.MAX_REPARTITION_DEPTH && statesByKey.size() > 1 && spiller.shouldSpill()) {
+                return repartition(partition, statesByKey, it, depth + 1);
+            }
+        }
+        return mapToRows(statesByKey);
+    }
+
+    /**
+     * Writes the groups reduced so far and the remaining spilled groups of the partition into sub-partitions
+     * and deletes the partition.
+     */
+    private Iterable<Row> repartition(SpillFile partition,
+                                      Map<K, Object[]> statesByKey,
+                                      Iterator<Object[]> remainingCells,
+                                      int depth) {
+        assert spiller != null : "repartition must only be called if a spiller is present";
+        GroupBySpiller.Partitions subPartitions = spiller.repartition(depth);
+        for (Map.Entry<K, Object[]> entry : statesByKey.entrySet()) {
+            K key = entry.getKey();
+            subPartitions.add(Objects.hashCode(key), toCells(key, entry.getValue()));
+        }
+        statesByKey.clear();
+        while (remainingCells.hasNext()) {
+            Object[] cells = remainingCells.next();
+            subPartitions.add(Objects.hashCode(keyFromCells.apply(cells)), cells);
+        }
+        partition.close();
+        return mergePartitions(subPartitions.finishWriting(), depth);
+    }
+
     private Iterable<Row> mapToRows(Map<K, Object[]> statesByKey) {
         return Iterables.transform(statesByKey.entrySet(), new com.google.common.base.Function<>() {
 
@@ -21,8 +21,11 @@
 
 package io.crate.execution.engine.aggregation;
 
+import io.crate.Streamer;
+import io.crate.breaker.ConcurrentRamAccounting;
 import io.crate.breaker.RamAccounting;
 import io.crate.data.BatchIterator;
+import io.crate.data.BatchIterators;
 import io.crate.data.CollectingBatchIterator;
 import io.crate.data.Input;
 import io.crate.data.Projector;
@@ -31,11 +34,14 @@ import io.crate.execution.engine.collect.CollectExpression;
 import io.crate.expression.symbol.AggregateMode;
 import io.crate.expression.symbol.Symbol;
 import io.crate.memory.MemoryManager;
+import io.crate.memory.OnHeapMemoryManager;
 import io.crate.types.ArrayType;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import org.elasticsearch.Version;
 
+import javax.annotation.Nullable;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.stream.Collector;
 
@@ -44,6 +50,8 @@ import static io.crate.expression.symbol.Symbols.typeView;
 public class GroupingProjector implements Projector {
 
     private final Collector<Row, ?, Iterable<Row>> collector;
+    @Nullable
+    private final GroupBySpiller spiller;
 
 
     public GroupingProjector(List<? extends Symbol> keys,
@@ -55,6 +63,38 @@ public class GroupingProjector implements Projector {
                              MemoryManager memoryManager,
                              Version minNodeVersion,
                              Version indexVersionCreated) {
+        this(
+            keys,
+            keyInputs,
+            collectExpressions,
+            mode,
+            aggregations,
+            ramAccounting,
+            memoryManager,
+            minNodeVersion,
+            indexVersionCreated,
+            -1L,
+            null
+        );
+    }
+
+    /**
+     * @param spillThreshold if &gt; 0, the groups are spilled to disk once they use more memory than this number
+     *                       of bytes. Spilling operations keep their groups on-heap and account for them in a
+     *                       child of <code>ramAccounting</code>, which is released on each spill.
+     * @param spillDirectory directory for the spill files, only used if <code>spillThreshold</code> is &gt; 0.
+     */
+    public GroupingProjector(List<? extends Symbol> keys,
+                             List<Input<?>> keyInputs,
+                             CollectExpression<Row, ?>[] collectExpressions,
+                             AggregateMode mode,
+                             AggregationContext[] aggregations,
+                             RamAccounting ramAccounting,
+                             MemoryManager memoryManager,
+                             Version minNodeVersion,
+                             Version indexVersionCreated,
+                             long spillThreshold,
+                             @Nullable Path spillDirectory) {
         assert keys.size() == keyInputs.size() : "number of key types must match with number of key inputs";
         ensureAllTypesSupported(keys);
 
@@ -67,6 +107,25 @@ public class GroupingProjector implements Projector {
             inputs[i] = aggregation.inputs();
             filters[i] = aggregation.filter();
         }
+        RamAccounting groupsRamAccounting = ramAccounting;
+        MemoryManager groupsMemoryManager = memoryManager;
+        if (spillThreshold > 0) {
+            groupsRamAccounting = new ConcurrentRamAccounting(
+                ramAccounting::addBytes,
+                bytes -> ramAccounting.addBytes(-bytes)
+            );
+            groupsMemoryManager = new OnHeapMemoryManager(groupsRamAccounting::addBytes);
+            Streamer<?>[] streamers = new Streamer[keys.size() + functions.length];
+            for (int i = 0; i < keys.size(); i++) {
+                streamers[i] = keys.get(i).valueType().streamer();
+            }
+            for (int i = 0; i < functions.length; i++) {
+                streamers[keys.size() + i] = functions[i].partialType().streamer();
+            }
+            spiller = new GroupBySpiller(streamers, groupsRamAccounting, spillThreshold, spillDirectory);
+        } else {
+            spiller = null;
+        }
         if (keys.size() == 1) {
             Symbol key = keys.get(0);
             collector = GroupingCollector.singleKey(
@@ -75,12 +134,13 @@ public class GroupingProjector implements Projector {
                 functions,
                 inputs,
                 filters,
-                ramAccounting,
-                memoryManager,
+                groupsRamAccounting,
+                groupsMemoryManager,
                 minNodeVersion,
                 keyInputs.get(0),
                 key.valueType(),
-                indexVersionCreated
+                indexVersionCreated,
+                spiller
             );
         } else {
             //noinspection unchecked
@@ -90,12 +150,13 @@ public class GroupingProjector implements Projector {
                 functions,
                 inputs,
                 filters,
-                ramAccounting,
-                memoryManager,
+                groupsRamAccounting,
+                groupsMemoryManager,
                 minNodeVersion,
                 keyInputs,
                 typeView(keys),
-                indexVersionCreated
+                indexVersionCreated,
+                spiller
             );
         }
     }
@@ -111,6 +172,18 @@ public class GroupingProjector implements Projector {
 
     @Override
     public BatchIterator<Row> apply(BatchIterator<Row> batchIterator) {
+        if (spiller != null) {
+            GroupBySpiller groupBySpiller = spiller;
+            return CollectingBatchIterator.newInstance(
+                () -> {
+                    batchIterator.close();
+                    groupBySpiller.close();
+                },
+                batchIterator::kill,
+                () -> BatchIterators.collect(batchIterator, collector),
+                true
+            );
+        }
         return CollectingBatchIterator.newInstance(batchIterator, collector);
     }
 
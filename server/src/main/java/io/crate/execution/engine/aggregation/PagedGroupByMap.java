@@ -0,0 +1,393 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.aggregation;
+
+import com.carrotsearch.hppc.BitMixer;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccounting;
+import io.crate.memory.MemoryManager;
+import io.crate.types.BooleanType;
+import io.crate.types.ByteType;
+import io.crate.types.DataType;
+import io.crate.types.DoubleType;
+import io.crate.types.FloatType;
+import io.crate.types.IntegerType;
+import io.crate.types.IpType;
+import io.crate.types.LongType;
+import io.crate.types.ShortType;
+import io.crate.types.StringType;
+import io.crate.types.TimestampType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Open addressing hash map used to hold the GROUP BY states of string and multi-column keys.
+ *
+ * <p>
+ * Instead of retaining a key object and a map entry per group, the keys are serialized using their
+ * {@link Streamer} into {@link ByteBuf} pages allocated via the {@link MemoryManager}. The pages are owned
+ * by the memory manager; depending on the implementation they are on-heap (and accounted by it) or off-heap.
+ * The slot table only consists of primitive arrays and the value array and is accounted whenever it grows.
+ * </p>
+ *
+ * <p>
+ * Two keys are considered equal if their serialized representation is equal, which is why only
+ * types with a canonical serialization are supported, see {@link #supportsKeyType(DataType)}.
+ * Keys returned by {@link #entrySet()} are deserialized on access. Removal of single entries is not supported.
+ * </p>
+ */
+public final class PagedGroupByMap<K, V> extends AbstractMap<K, V> {
+
+    static final int PAGE_SIZE = 32 * 1024;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final long EMPTY = -1L;
+    private static final long BYTES_PER_SLOT = Long.BYTES + Integer.BYTES + RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+
+    private final Streamer<K> keyStreamer;
+    private final RamAccounting ramAccounting;
+    private final MemoryManager memoryManager;
+    private final ArrayList<ByteBuf> pages = new ArrayList<>();
+    private final ByteBuf scratch = Unpooled.buffer(64);
+    private final ByteBufStreamOutput scratchOut = new ByteBufStreamOutput(scratch);
+
+    /**
+     * Address (page index in the upper 32 bits and offset in the lower 32 bits) of the serialized key per slot
+     */
+    private long[] addresses;
+    private int[] hashes;
+    private Object[] values;
+    private int mask;
+    private int size = 0;
+    private int resizeAt;
+
+    public PagedGroupByMap(Streamer<K> keyStreamer, RamAccounting ramAccounting, MemoryManager memoryManager) {
+        this.keyStreamer = keyStreamer;
+        this.ramAccounting = ramAccounting;
+        this.memoryManager = memoryManager;
+        allocateSlots(INITIAL_CAPACITY);
+    }
+
+    public static boolean supportsKeyType(DataType<?> type) {
+        switch (type.id()) {
+            case StringType.ID:
+            case IpType.ID:
+            case BooleanType.ID:
+            case ByteType.ID:
+            case ShortType.ID:
+            case IntegerType.ID:
+            case LongType.ID:
+            case FloatType.ID:
+            case DoubleType.ID:
+            case TimestampType.ID_WITH_TZ:
+            case TimestampType.ID_WITHOUT_TZ:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    public static boolean supportsKeyTypes(List<? extends DataType<?>> types) {
+        for (DataType<?> type : types) {
+            if (!supportsKeyType(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a streamer for multi-column keys which serializes the values of a key one after the other.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Streamer<List<Object>> keysStreamer(List<? extends DataType<?>> types) {
+        Streamer[] streamers = new Streamer[types.size()];
+        for (int i = 0; i < streamers.length; i++) {
+            streamers[i] = types.get(i).streamer();
+        }
+        return new Streamer<>() {
+
+            @Override
+            public List<Object> readValueFrom(StreamInput in) throws IOException {
+                ArrayList<Object> keys = new ArrayList<>(streamers.length);
+                for (Streamer streamer : streamers) {
+                    keys.add(streamer.readValueFrom(in));
+                }
+                return keys;
+            }
+
+            @Override
+            public void writeValueTo(StreamOutput out, List<Object> keys) throws IOException {
+                for (int i = 0; i < streamers.length; i++) {
+                    streamers[i].writeValueTo(out, keys.get(i));
+                }
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int hash = serializeToScratch((K) key);
+        int slot = findSlot(hash);
+        return addresses[slot] == EMPTY ? null : (V) values[slot];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        int hash = serializeToScratch(key);
+        int slot = findSlot(hash);
+        if (addresses[slot] != EMPTY) {
+            V previous = (V) values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        addresses[slot] = appendScratchToPages();
+        hashes[slot] = hash;
+        values[slot] = value;
+        size++;
+        if (size >= resizeAt) {
+            grow();
+        }
+        return null;
+    }
+
+    /**
+     * Removes all entries. The pages are only dropped, they are released by the {@link MemoryManager}.
+     */
+    @Override
+    public void clear() {
+        ramAccounting.addBytes(-addresses.length * BYTES_PER_SLOT);
+        pages.clear();
+        size = 0;
+        allocateSlots(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int serializeToScratch(K key) {
+        scratch.clear();
+        try {
+            keyStreamer.writeValueTo(scratchOut, key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return BitMixer.mix32(scratch.hashCode());
+    }
+
+    /**
+     * @return the slot which contains the key in the scratch buffer or the empty slot where it should be inserted.
+     */
+    private int findSlot(int hash) {
+        int keyLength = scratch.readableBytes();
+        int slot = hash & mask;
+        while (true) {
+            long address = addresses[slot];
+            if (address == EMPTY) {
+                return slot;
+            }
+            if (hashes[slot] == hash) {
+                ByteBuf page = pages.get(pageIndex(address));
+                int offset = pageOffset(address);
+                if (page.getInt(offset) == keyLength
+                    && ByteBufUtil.equals(page, offset + Integer.BYTES, scratch, 0, keyLength)) {
+                    return slot;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private long appendScratchToPages() {
+        int recordLength = Integer.BYTES + scratch.readableBytes();
+        ByteBuf page = pages.isEmpty() ? null : pages.get(pages.size() - 1);
+        if (page == null || page.writableBytes() < recordLength) {
+            page = memoryManager.allocate(Math.max(PAGE_SIZE, recordLength));
+            pages.add(page);
+        }
+        long address = ((long) (pages.size() - 1) << 32) | page.writerIndex();
+        page.writeInt(scratch.readableBytes());
+        page.writeBytes(scratch, 0, scratch.readableBytes());
+        return address;
+    }
+
+    private K readKey(long address) {
+        ByteBuf page = pages.get(pageIndex(address));
+        int offset = pageOffset(address);
+        int keyLength = page.getInt(offset);
+        ByteBuf keyBytes = page.slice(offset + Integer.BYTES, keyLength);
+        try (StreamInput in = new InputStreamStreamInput(new ByteBufInputStream(keyBytes))) {
+            return keyStreamer.readValueFrom(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void grow() {
+        long[] oldAddresses = addresses;
+        int[] oldHashes = hashes;
+        Object[] oldValues = values;
+        allocateSlots(oldAddresses.length << 1);
+        for (int i = 0; i < oldAddresses.length; i++) {
+            if (oldAddresses[i] != EMPTY) {
+                int slot = oldHashes[i] & mask;
+                while (addresses[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                addresses[slot] = oldAddresses[i];
+                hashes[slot] = oldHashes[i];
+                values[slot] = oldValues[i];
+            }
+        }
+        // the old arrays are garbage now
+        ramAccounting.addBytes(-oldAddresses.length * BYTES_PER_SLOT);
+    }
+
+    private void allocateSlots(int capacity) {
+        ramAccounting.addBytes(capacity * BYTES_PER_SLOT);
+        addresses = new long[capacity];
+        Arrays.fill(addresses, EMPTY);
+        hashes = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int pageIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int pageOffset(long address) {
+        return (int) address;
+    }
+
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+
+        private int slot = -1;
+
+        private EntryIterator() {
+            advance();
+        }
+
+        private void advance() {
+            do {
+                slot++;
+            } while (slot < addresses.length && addresses[slot] == EMPTY);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return slot < addresses.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Iterator is exhausted");
+            }
+            var entry = new SimpleImmutableEntry<>(readKey(addresses[slot]), (V) values[slot]);
+            advance();
+            return entry;
+        }
+    }
+
+    /**
+     * {@link StreamOutput} writing into a {@link ByteBuf}, used to serialize keys without intermediate copies.
+     */
+    private static final class ByteBufStreamOutput extends StreamOutput {
+
+        private final ByteBuf buffer;
+
+        ByteBufStreamOutput(ByteBuf buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void writeByte(byte b) {
+            buffer.writeByte(b);
+        }
+
+        @Override
+        public void writeBytes(byte[] b, int offset, int length) {
+            buffer.writeBytes(b, offset, length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void reset() {
+            buffer.clear();
+        }
+    }
+}
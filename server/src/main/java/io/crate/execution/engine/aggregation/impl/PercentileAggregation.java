@@ -24,17 +24,31 @@ package io.crate.execution.engine.aggregation.impl;
 import io.crate.breaker.RamAccounting;
 import io.crate.data.Input;
 import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.aggregation.DocValueAggregator;
+import io.crate.execution.engine.aggregation.impl.templates.SortedNumericDocValueAggregator;
+import io.crate.expression.symbol.Literal;
 import io.crate.memory.MemoryManager;
+import io.crate.metadata.Reference;
+import io.crate.metadata.doc.DocTableInfo;
 import io.crate.metadata.functions.Signature;
 import io.crate.types.ArrayType;
+import io.crate.types.ByteType;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
+import io.crate.types.DoubleType;
+import io.crate.types.FloatType;
+import io.crate.types.IntegerType;
+import io.crate.types.LongType;
+import io.crate.types.ShortType;
+import org.apache.lucene.util.NumericUtils;
 import org.elasticsearch.Version;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.index.mapper.MappedFieldType;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 class PercentileAggregation extends AggregationFunction<TDigestState, Object> {
 
@@ -175,4 +189,53 @@ class PercentileAggregation extends AggregationFunction<TDigestState, Object> {
     public DataType<?> partialType() {
         return TDigestStateType.INSTANCE;
     }
+
+    @Nullable
+    @Override
+    public DocValueAggregator<?> getDocValueAggregator(List<Reference> aggregationReferences,
+                                                       Function<List<String>, List<MappedFieldType>> getMappedFieldTypes,
+                                                       DocTableInfo table,
+                                                       List<Literal<?>> optionalParams) {
+        if (optionalParams.size() != 1) {
+            // fraction isn't a literal
+            return null;
+        }
+        Object fraction = optionalParams.get(0).value();
+        Reference reference = aggregationReferences.get(0);
+        var fieldTypes = getMappedFieldTypes.apply(List.of(reference.column().fqn()));
+        if (fieldTypes == null) {
+            return null;
+        }
+        switch (reference.valueType().id()) {
+            case ByteType.ID:
+            case ShortType.ID:
+            case IntegerType.ID:
+            case LongType.ID:
+                return new SortedNumericDocValueAggregator<>(
+                    fieldTypes.get(0).name(),
+                    (ramAccounting, memoryManager, minNodeVersion) -> newState(fraction),
+                    (values, state) -> state.add(values.nextValue())
+                );
+            case FloatType.ID:
+                return new SortedNumericDocValueAggregator<>(
+                    fieldTypes.get(0).name(),
+                    (ramAccounting, memoryManager, minNodeVersion) -> newState(fraction),
+                    (values, state) -> state.add(NumericUtils.sortableIntToFloat((int) values.nextValue()))
+                );
+            case DoubleType.ID:
+                return new SortedNumericDocValueAggregator<>(
+                    fieldTypes.get(0).name(),
+                    (ramAccounting, memoryManager, minNodeVersion) -> newState(fraction),
+                    (values, state) -> state.add(NumericUtils.sortableLongToDouble(values.nextValue()))
+                );
+            default:
+                return null;
+        }
+    }
+
+    private TDigestState newState(Object fraction) {
+        TDigestState state = TDigestState.createEmptyState();
+        initState(state, fraction);
+        return state;
+    }
 }
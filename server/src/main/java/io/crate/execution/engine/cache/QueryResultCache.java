@@ -0,0 +1,524 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import io.crate.analyze.AnalyzedStatement;
+import io.crate.analyze.QueriedSelectRelation;
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.analyze.relations.AnalyzedRelationVisitor;
+import io.crate.analyze.relations.DocTableRelation;
+import io.crate.analyze.relations.TableFunctionRelation;
+import io.crate.analyze.relations.UnionSelect;
+import io.crate.breaker.ConcurrentRamAccounting;
+import io.crate.breaker.RamAccounting;
+import io.crate.breaker.TypeGuessEstimateRowSize;
+import io.crate.common.collections.Lists2;
+import io.crate.concurrent.CompletableFutures;
+import io.crate.data.BatchIterator;
+import io.crate.data.ForwardingBatchIterator;
+import io.crate.data.InMemoryBatchIterator;
+import io.crate.data.Row;
+import io.crate.data.RowConsumer;
+import io.crate.data.RowN;
+import io.crate.data.SentinelRow;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.SelectSymbol;
+import io.crate.expression.symbol.Symbol;
+import io.crate.expression.symbol.SymbolVisitors;
+import io.crate.planner.Plan;
+import io.crate.planner.PlanCache;
+import io.crate.planner.operators.Get;
+import io.crate.planner.operators.LogicalPlan;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Node level cache for the results of SELECT statements handled by the node.
+ *
+ * <p>
+ * Results are cached per statement (see {@link PlanCache.Key}) and parameter values. Each entry records the
+ * reader versions of all shard copies of the tables the statement reads from. Before a cached result is served,
+ * the current versions are retrieved from the nodes holding the shards; any write which has been made visible by
+ * a refresh, as well as any relocation of a shard, changes the versions and the statement is executed again.
+ * </p>
+ *
+ * <p>
+ * Only statements reading exclusively from user tables are cached, the contents of system tables can change
+ * without a refresh. Primary key lookups ({@link Get}) aren't cached either, they read the latest written
+ * version of a row in realtime which isn't reflected by the reader version.
+ * Statements with non-deterministic functions are never cached.
+ * Results are only cached if the client consumed them completely, and entries are limited to a tenth of the
+ * cache size. While a result is recorded, its rows are accounted for in the query circuit breaker.
+ * </p>
+ */
+@Singleton
+public class QueryResultCache {
+
+    public static final Setting<ByteSizeValue> SIZE_SETTING = Setting.memorySizeSetting(
+        "node.sql.result_cache.size",
+        "0%",
+        Setting.Property.NodeScope
+    );
+
+    private static final int MAX_ENTRY_SIZE_DIVISOR = 10;
+
+    @Nullable
+    private final Cache<Key, Entry> cache;
+    private final long maxEntrySizeInBytes;
+    private final TransportShardVersionsAction shardVersionsAction;
+    private final CircuitBreaker queryBreaker;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder sizeInBytes = new LongAdder();
+
+    @Inject
+    public QueryResultCache(Settings settings,
+                            TransportShardVersionsAction shardVersionsAction,
+                            CircuitBreakerService breakerService) {
+        this(
+            SIZE_SETTING.get(settings).getBytes(),
+            shardVersionsAction,
+            breakerService.getBreaker(HierarchyCircuitBreakerService.QUERY)
+        );
+    }
+
+    QueryResultCache(long maxSizeInBytes,
+                     TransportShardVersionsAction shardVersionsAction,
+                     CircuitBreaker queryBreaker) {
+        this.shardVersionsAction = shardVersionsAction;
+        this.queryBreaker = queryBreaker;
+        this.maxEntrySizeInBytes = Math.min(maxSizeInBytes / MAX_ENTRY_SIZE_DIVISOR, Integer.MAX_VALUE);
+        if (maxSizeInBytes > 0) {
+            this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxSizeInBytes)
+                .weigher((Key key, Entry entry) -> (int) entry.sizeInBytes)
+                .removalListener(this::onRemoval)
+                .build();
+        } else {
+            this.cache = null;
+        }
+    }
+
+    /**
+     * Creates the key for the execution of a statement.
+     *
+     * @param statementKey the key of the statement, see {@link PlanCache#createKey}.
+     * @param plan the plan of the statement
+     * @return the key or null if the result of the statement must not be cached.
+     */
+    @Nullable
+    public static Key createKey(@Nullable PlanCache.Key statementKey,
+                                AnalyzedStatement analyzedStatement,
+                                Plan plan,
+                                List<Object> params) {
+        if (statementKey == null
+            || !(analyzedStatement instanceof AnalyzedRelation)
+            || !(plan instanceof LogicalPlan)
+            || readsInRealtime((LogicalPlan) plan)) {
+            return null;
+        }
+        ArrayList<String> indices = new ArrayList<>();
+        CollectIndices collectIndices = new CollectIndices();
+        if (!((AnalyzedRelation) analyzedStatement).accept(collectIndices, indices) || !collectIndices.hasTables) {
+            return null;
+        }
+        return new Key(statementKey, params.toArray(), indices);
+    }
+
+    private static boolean readsInRealtime(LogicalPlan plan) {
+        if (plan instanceof Get) {
+            return true;
+        }
+        for (LogicalPlan source : plan.sources()) {
+            if (readsInRealtime(source)) {
+                return true;
+            }
+        }
+        for (LogicalPlan subQuery : plan.dependencies().keySet()) {
+            if (readsInRealtime(subQuery)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Serves the cached result for the key if the shards haven't changed since the result has been cached,
+     * otherwise runs {@code execution} and caches its result.
+     *
+     * @param key the key created by {@link #createKey}; if null {@code execution} is run without caching.
+     * @param execution executes the statement using the given consumer.
+     */
+    public void execute(@Nullable Key key,
+                        ClusterState clusterState,
+                        RowConsumer consumer,
+                        Consumer<RowConsumer> execution) {
+        if (cache == null || key == null || key.statementKey.metadataVersion() != clusterState.metadata().version()) {
+            execution.accept(consumer);
+            return;
+        }
+        Map<String, List<ShardRouting>> shardsByNode = new HashMap<>();
+        for (String index : key.indices) {
+            IndexRoutingTable indexRoutingTable = clusterState.routingTable().index(index);
+            if (indexRoutingTable == null) {
+                execution.accept(consumer);
+                return;
+            }
+            for (IndexShardRoutingTable shardRoutingTable : indexRoutingTable) {
+                for (ShardRouting shardRouting : shardRoutingTable.activeShards()) {
+                    shardsByNode.computeIfAbsent(shardRouting.currentNodeId(), k -> new ArrayList<>()).add(shardRouting);
+                }
+            }
+        }
+        shardVersions(shardsByNode).whenComplete((versions, err) -> {
+            if (err != null) {
+                execution.accept(consumer);
+                return;
+            }
+            Entry entry = cache.getIfPresent(key);
+            if (entry != null && entry.shardVersions.equals(versions)) {
+                hits.increment();
+                consumer.accept(InMemoryBatchIterator.of(entry.rows, SentinelRow.SENTINEL, false), null);
+            } else {
+                misses.increment();
+                RamAccounting ramAccounting = ConcurrentRamAccounting.forCircuitBreaker("query-result-cache", queryBreaker);
+                execution.accept(new RecordingRowConsumer(consumer, maxEntrySizeInBytes, ramAccounting, (rows, sizeInBytes) -> {
+                    this.sizeInBytes.add(sizeInBytes);
+                    cache.put(key, new Entry(versions, rows, sizeInBytes));
+                }));
+            }
+        });
+    }
+
+    /**
+     * @return the reader version of each shard copy by its allocation id
+     */
+    private CompletableFuture<Map<String, Long>> shardVersions(Map<String, List<ShardRouting>> shardsByNode) {
+        ArrayList<CompletableFuture<Map<String, Long>>> futures = new ArrayList<>(shardsByNode.size());
+        for (var entry : shardsByNode.entrySet()) {
+            List<ShardRouting> shards = entry.getValue();
+            ShardVersionsRequest request = new ShardVersionsRequest(Lists2.map(shards, ShardRouting::shardId));
+            futures.add(shardVersionsAction.execute(entry.getKey(), request).thenApply(response -> {
+                long[] versions = response.versions();
+                HashMap<String, Long> versionByAllocationId = new HashMap<>();
+                for (int i = 0; i < versions.length; i++) {
+                    versionByAllocationId.put(shards.get(i).allocationId().getId(), versions[i]);
+                }
+                return versionByAllocationId;
+            }));
+        }
+        return CompletableFutures.allAsList(futures).thenApply(versionsPerNode -> {
+            HashMap<String, Long> versions = new HashMap<>();
+            for (Map<String, Long> nodeVersions : versionsPerNode) {
+                versions.putAll(nodeVersions);
+            }
+            return versions;
+        });
+    }
+
+    private void onRemoval(RemovalNotification<Key, Entry> notification) {
+        sizeInBytes.add(-notification.getValue().sizeInBytes);
+        if (notification.wasEvicted()) {
+            evictions.increment();
+        }
+    }
+
+    public QueryResultCacheStats stats() {
+        return new QueryResultCacheStats(
+            hits.sum(),
+            misses.sum(),
+            evictions.sum(),
+            cache == null ? 0L : cache.size(),
+            sizeInBytes.sum()
+        );
+    }
+
+    public static final class Key {
+
+        private final PlanCache.Key statementKey;
+        private final Object[] params;
+        private final List<String> indices;
+
+        private Key(PlanCache.Key statementKey, Object[] params, List<String> indices) {
+            this.statementKey = statementKey;
+            this.params = params;
+            this.indices = indices;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return statementKey.equals(key.statementKey)
+                && Arrays.deepEquals(params, key.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * statementKey.hashCode() + Arrays.deepHashCode(params);
+        }
+    }
+
+    private static final class Entry {
+
+        private final Map<String, Long> shardVersions;
+        private final List<Row> rows;
+        private final long sizeInBytes;
+
+        private Entry(Map<String, Long> shardVersions, List<Row> rows, long sizeInBytes) {
+            this.shardVersions = shardVersions;
+            this.rows = rows;
+            this.sizeInBytes = sizeInBytes;
+        }
+    }
+
+    /**
+     * Collects the concrete indices of the tables a relation reads from.
+     * Returns false if the result of the relation must not be cached.
+     */
+    private static final class CollectIndices extends AnalyzedRelationVisitor<List<String>, Boolean> {
+
+        private boolean hasTables = false;
+
+        @Override
+        protected Boolean visitAnalyzedRelation(AnalyzedRelation relation, List<String> indices) {
+            // System tables, EXPLAIN, SHOW CREATE TABLE, ..
+            return false;
+        }
+
+        @Override
+        public Boolean visitDocTableRelation(DocTableRelation relation, List<String> indices) {
+            hasTables = true;
+            indices.addAll(Arrays.asList(relation.tableInfo().concreteOpenIndices()));
+            return true;
+        }
+
+        @Override
+        public Boolean visitTableFunctionRelation(TableFunctionRelation relation, List<String> indices) {
+            return isCacheable(relation.function(), indices);
+        }
+
+        @Override
+        public Boolean visitUnionSelect(UnionSelect unionSelect, List<String> indices) {
+            return unionSelect.left().accept(this, indices)
+                && unionSelect.right().accept(this, indices)
+                && isCacheable(unionSelect, indices);
+        }
+
+        @Override
+        public Boolean visitQueriedSelectRelation(QueriedSelectRelation relation, List<String> indices) {
+            for (AnalyzedRelation source : relation.from()) {
+                if (!source.accept(this, indices)) {
+                    return false;
+                }
+            }
+            return isCacheable(relation, indices);
+        }
+
+        private boolean isCacheable(AnalyzedRelation relation, List<String> indices) {
+            boolean[] cacheable = new boolean[] { true };
+            relation.visitSymbols(symbol -> {
+                if (cacheable[0] && !isCacheable(symbol, indices)) {
+                    cacheable[0] = false;
+                }
+            });
+            return cacheable[0];
+        }
+
+        private boolean isCacheable(Symbol symbol, List<String> indices) {
+            return !SymbolVisitors.any(
+                s -> (s instanceof Function && !((Function) s).isDeterministic())
+                    || (s instanceof SelectSymbol && !((SelectSymbol) s).relation().accept(this, indices)),
+                symbol
+            );
+        }
+    }
+
+    /**
+     * Forwards the result to the consumer and records the rows
+     */
+    private static final class RecordingRowConsumer implements RowConsumer {
+
+        private final RowConsumer delegate;
+        private final long maxSizeInBytes;
+        private final RamAccounting ramAccounting;
+        private final ResultCallback onResult;
+
+        RecordingRowConsumer(RowConsumer delegate,
+                             long maxSizeInBytes,
+                             RamAccounting ramAccounting,
+                             ResultCallback onResult) {
+            this.delegate = delegate;
+            this.maxSizeInBytes = maxSizeInBytes;
+            this.ramAccounting = ramAccounting;
+            this.onResult = onResult;
+        }
+
+        @Override
+        public void accept(BatchIterator<Row> iterator, @Nullable Throwable failure) {
+            if (failure == null) {
+                delegate.accept(new RecordingBatchIterator(iterator, maxSizeInBytes, ramAccounting, onResult), null);
+            } else {
+                delegate.accept(iterator, failure);
+            }
+        }
+
+        @Override
+        public CompletableFuture<?> completionFuture() {
+            return delegate.completionFuture();
+        }
+
+        @Override
+        public boolean requiresScroll() {
+            return delegate.requiresScroll();
+        }
+    }
+
+    /**
+     * Records the rows while they are consumed. Recording stops, and the recorded rows are dropped, once they
+     * exceed {@code maxSizeInBytes} or the circuit breaker of the {@code ramAccounting}; the query itself continues.
+     */
+    private static final class RecordingBatchIterator extends ForwardingBatchIterator<Row> {
+
+        private final BatchIterator<Row> delegate;
+        private final long maxSizeInBytes;
+        private final RamAccounting ramAccounting;
+        private final ResultCallback onResult;
+        private final TypeGuessEstimateRowSize estimateRowSize = new TypeGuessEstimateRowSize();
+
+        /**
+         * null once the result turned out to be not cacheable
+         */
+        @Nullable
+        private ArrayList<Row> rows = new ArrayList<>();
+        private long sizeInBytes = 0L;
+
+        RecordingBatchIterator(BatchIterator<Row> delegate,
+                               long maxSizeInBytes,
+                               RamAccounting ramAccounting,
+                               ResultCallback onResult) {
+            this.delegate = delegate;
+            this.maxSizeInBytes = maxSizeInBytes;
+            this.ramAccounting = ramAccounting;
+            this.onResult = onResult;
+        }
+
+        @Override
+        protected BatchIterator<Row> delegate() {
+            return delegate;
+        }
+
+        @Override
+        public boolean moveNext() {
+            if (delegate.moveNext()) {
+                if (rows != null) {
+                    record(delegate.currentElement());
+                }
+                return true;
+            }
+            if (rows != null && delegate.allLoaded()) {
+                // The rows are accounted for by the cache from now on
+                onResult.accept(rows, sizeInBytes);
+                stopRecording();
+            }
+            return false;
+        }
+
+        private void record(Row row) {
+            long rowSizeInBytes = estimateRowSize.applyAsLong(row);
+            sizeInBytes += rowSizeInBytes;
+            if (sizeInBytes > maxSizeInBytes) {
+                stopRecording();
+                return;
+            }
+            try {
+                ramAccounting.addBytes(rowSizeInBytes);
+            } catch (CircuitBreakingException e) {
+                stopRecording();
+                return;
+            }
+            rows.add(new RowN(row.materialize()));
+        }
+
+        private void stopRecording() {
+            rows = null;
+            ramAccounting.release();
+        }
+
+        @Override
+        public void moveToStart() {
+            stopRecording();
+            delegate.moveToStart();
+        }
+
+        @Override
+        public void close() {
+            stopRecording();
+            delegate.close();
+        }
+
+        @Override
+        public void kill(@Nonnull Throwable throwable) {
+            stopRecording();
+            delegate.kill(throwable);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResultCallback {
+
+        void accept(List<Row> rows, long sizeInBytes);
+    }
+}
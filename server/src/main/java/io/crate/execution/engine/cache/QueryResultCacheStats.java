@@ -0,0 +1,92 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.cache;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+
+import java.io.IOException;
+
+public final class QueryResultCacheStats implements Writeable {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long entries;
+    private final long sizeInBytes;
+
+    public QueryResultCacheStats(long hits, long misses, long evictions, long entries, long sizeInBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = entries;
+        this.sizeInBytes = sizeInBytes;
+    }
+
+    public QueryResultCacheStats(StreamInput in) throws IOException {
+        this.hits = in.readVLong();
+        this.misses = in.readVLong();
+        this.evictions = in.readVLong();
+        this.entries = in.readVLong();
+        this.sizeInBytes = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVLong(hits);
+        out.writeVLong(misses);
+        out.writeVLong(evictions);
+        out.writeVLong(entries);
+        out.writeVLong(sizeInBytes);
+    }
+
+    /**
+     * @return number of statements which have been served from the cache
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * @return number of cacheable statements which have been executed because no up to date result was cached
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * @return number of entries which have been removed to free space for other entries
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    public long entries() {
+        return entries;
+    }
+
+    public long sizeInBytes() {
+        return sizeInBytes;
+    }
+}
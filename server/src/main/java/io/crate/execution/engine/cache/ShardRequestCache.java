@@ -0,0 +1,317 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+
+package io.crate.execution.engine.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccounting;
+import io.crate.data.BatchIterator;
+import io.crate.data.ForwardingBatchIterator;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.dsl.projection.Projection;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.Symbol;
+import io.crate.expression.symbol.SymbolVisitors;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.index.shard.ShardId;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Node level cache for the partial results computed on a single shard, like the partial states of a global
+ * aggregation or the number of documents matching a count.
+ *
+ * <p>
+ * Entries are keyed by the shard, the version of the reader used to compute the result and the normalized
+ * description of the computation. Any change of a shard which is made visible by a refresh opens a reader with a new
+ * version, so that results of shards receiving writes are recomputed and the outdated entries are eventually
+ * evicted, while the results of shards which don't change, like old partitions of a time-partitioned table, are
+ * re-used.
+ * </p>
+ *
+ * <p>
+ * Rows are kept in their serialized form. Partial aggregation states are mutable and merged into each other, a
+ * cached row must therefore never be handed out twice.
+ * </p>
+ */
+@Singleton
+public class ShardRequestCache {
+
+    public static final Setting<ByteSizeValue> SIZE_SETTING = Setting.memorySizeSetting(
+        "node.sql.shard_request_cache.size",
+        "0%",
+        Setting.Property.NodeScope
+    );
+
+    private static final int MAX_ENTRY_SIZE_DIVISOR = 10;
+
+    @Nullable
+    private final Cache<Key, Entry> cache;
+    private final long maxEntrySizeInBytes;
+
+    @Inject
+    public ShardRequestCache(Settings settings) {
+        this(SIZE_SETTING.get(settings).getBytes());
+    }
+
+    ShardRequestCache(long maxSizeInBytes) {
+        this.maxEntrySizeInBytes = Math.min(maxSizeInBytes / MAX_ENTRY_SIZE_DIVISOR, Integer.MAX_VALUE);
+        if (maxSizeInBytes > 0) {
+            this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxSizeInBytes)
+                .weigher((Key key, Entry entry) -> entry.bytes.length())
+                .build();
+        } else {
+            this.cache = null;
+        }
+    }
+
+    /**
+     * Creates the key for a computation on a shard.
+     *
+     * @param searcher the searcher used for the computation.
+     * @param symbols the normalized symbols the computation depends on, e.g. the columns to collect and the query.
+     * @param projection the projection applied to the collected rows, null if there is none.
+     * @return the key or null if the result must not be cached.
+     */
+    @Nullable
+    public Key createKey(ShardId shardId,
+                         IndexSearcher searcher,
+                         List<? extends Symbol> symbols,
+                         @Nullable Projection projection) {
+        if (cache == null) {
+            return null;
+        }
+        IndexReader reader = searcher.getIndexReader();
+        if (!(reader instanceof DirectoryReader)) {
+            return null;
+        }
+        if (SymbolVisitors.any(s -> s instanceof Function && !((Function) s).isDeterministic(), symbols)) {
+            return null;
+        }
+        return new Key(shardId, ((DirectoryReader) reader).getVersion(), symbols, projection);
+    }
+
+    /**
+     * @param ramAccounting accounts for the deserialized rows, their serialized size is used as estimate.
+     * @return the cached rows or null if there is no entry for the key.
+     */
+    @Nullable
+    public List<Row> get(@Nonnull Key key, Streamer<?>[] streamers, RamAccounting ramAccounting) {
+        assert cache != null : "Key can only be created if the cache is enabled";
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            return null;
+        }
+        ramAccounting.addBytes(entry.bytes.length());
+        try (StreamInput in = entry.bytes.streamInput()) {
+            ArrayList<Row> rows = new ArrayList<>(entry.numRows);
+            for (int i = 0; i < entry.numRows; i++) {
+                Object[] cells = new Object[streamers.length];
+                for (int c = 0; c < streamers.length; c++) {
+                    cells[c] = streamers[c].readValueFrom(in);
+                }
+                rows.add(new RowN(cells));
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void put(@Nonnull Key key, Streamer<?>[] streamers, List<Row> rows) {
+        assert cache != null : "Key can only be created if the cache is enabled";
+        BytesStreamOutput out = new BytesStreamOutput();
+        try {
+            for (Row row : rows) {
+                writeRow(out, streamers, row);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        put(key, rows.size(), out);
+    }
+
+    private void put(Key key, int numRows, BytesStreamOutput out) {
+        if (out.size() <= maxEntrySizeInBytes) {
+            cache.put(key, new Entry(numRows, new BytesArray(BytesReference.toBytes(out.bytes()))));
+        }
+    }
+
+    /**
+     * @return an iterator which forwards the rows of {@code iterator} and caches them once it has been consumed
+     *         completely.
+     */
+    public BatchIterator<Row> recording(@Nonnull Key key, Streamer<?>[] streamers, BatchIterator<Row> iterator) {
+        assert cache != null : "Key can only be created if the cache is enabled";
+        return new RecordingBatchIterator(key, streamers, iterator);
+    }
+
+    /**
+     * Removes all entries of the shard, e.g. if the shard is closed.
+     */
+    public void invalidate(ShardId shardId) {
+        if (cache != null) {
+            cache.asMap().keySet().removeIf(key -> key.shardId.equals(shardId));
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void writeRow(StreamOutput out, Streamer<?>[] streamers, Row row) throws IOException {
+        for (int c = 0; c < streamers.length; c++) {
+            ((Streamer) streamers[c]).writeValueTo(out, row.get(c));
+        }
+    }
+
+    public static final class Key {
+
+        private final ShardId shardId;
+        private final long readerVersion;
+        private final List<? extends Symbol> symbols;
+        @Nullable
+        private final Projection projection;
+
+        private Key(ShardId shardId, long readerVersion, List<? extends Symbol> symbols, @Nullable Projection projection) {
+            this.shardId = shardId;
+            this.readerVersion = readerVersion;
+            this.symbols = symbols;
+            this.projection = projection;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return readerVersion == key.readerVersion
+                && shardId.equals(key.shardId)
+                && symbols.equals(key.symbols)
+                && Objects.equals(projection, key.projection);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(shardId, readerVersion, symbols, projection);
+        }
+    }
+
+    private static final class Entry {
+
+        private final int numRows;
+        private final BytesReference bytes;
+
+        private Entry(int numRows, BytesReference bytes) {
+            this.numRows = numRows;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Serializes each row as soon as it is emitted, the consumer may modify the row values afterwards.
+     */
+    private final class RecordingBatchIterator extends ForwardingBatchIterator<Row> {
+
+        private final Key key;
+        private final Streamer<?>[] streamers;
+        private final BatchIterator<Row> delegate;
+
+        /**
+         * null once the result turned out to be not cacheable
+         */
+        @Nullable
+        private BytesStreamOutput out = new BytesStreamOutput();
+        private int numRows = 0;
+
+        RecordingBatchIterator(Key key, Streamer<?>[] streamers, BatchIterator<Row> delegate) {
+            this.key = key;
+            this.streamers = streamers;
+            this.delegate = delegate;
+        }
+
+        @Override
+        protected BatchIterator<Row> delegate() {
+            return delegate;
+        }
+
+        @Override
+        public boolean moveNext() {
+            if (delegate.moveNext()) {
+                if (out != null) {
+                    try {
+                        writeRow(out, streamers, delegate.currentElement());
+                        numRows++;
+                    } catch (IOException e) {
+                        out = null;
+                        return true;
+                    }
+                    if (out.size() > maxEntrySizeInBytes) {
+                        out = null;
+                    }
+                }
+                return true;
+            }
+            if (out != null && delegate.allLoaded()) {
+                put(key, numRows, out);
+                out = null;
+            }
+            return false;
+        }
+
+        @Override
+        public void moveToStart() {
+            out = null;
+            delegate.moveToStart();
+        }
+
+        @Override
+        public void kill(@Nonnull Throwable throwable) {
+            out = null;
+            delegate.kill(throwable);
+        }
+    }
+}
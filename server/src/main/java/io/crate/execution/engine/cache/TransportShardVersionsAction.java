@@ -0,0 +1,118 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.cache;
+
+import io.crate.action.FutureActionListener;
+import io.crate.execution.support.NodeAction;
+import io.crate.execution.support.NodeActionRequestHandler;
+import io.crate.execution.support.Transports;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.elasticsearch.action.ActionListenerResponseHandler;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.shard.IllegalIndexShardStateException;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Retrieves the versions of the current readers of shards.
+ * The version of a reader changes once a refresh makes changes of the shard visible.
+ */
+@Singleton
+public class TransportShardVersionsAction implements NodeAction<ShardVersionsRequest, ShardVersionsResponse> {
+
+    private static final String ACTION_NAME = "internal:crate:sql/shard/versions";
+
+    /**
+     * Acquiring a searcher is cheap and doesn't block, it must not wait behind queries in the search pool.
+     */
+    private static final String EXECUTOR = ThreadPool.Names.SAME;
+
+    /**
+     * The version reported for shards which are not located on the node or can't be read.
+     */
+    static final long UNKNOWN_VERSION = -1L;
+
+    private final IndicesService indicesService;
+    private final Transports transports;
+
+    @Inject
+    public TransportShardVersionsAction(TransportService transportService,
+                                        IndicesService indicesService,
+                                        Transports transports) {
+        this.indicesService = indicesService;
+        this.transports = transports;
+        transportService.registerRequestHandler(
+            ACTION_NAME,
+            EXECUTOR,
+            ShardVersionsRequest::new,
+            new NodeActionRequestHandler<>(this)
+        );
+    }
+
+    public CompletableFuture<ShardVersionsResponse> execute(String nodeId, ShardVersionsRequest request) {
+        FutureActionListener<ShardVersionsResponse, ShardVersionsResponse> listener = FutureActionListener.newInstance();
+        transports.sendRequest(
+            ACTION_NAME,
+            nodeId,
+            request,
+            listener,
+            new ActionListenerResponseHandler<>(listener, ShardVersionsResponse::new)
+        );
+        return listener;
+    }
+
+    @Override
+    public CompletableFuture<ShardVersionsResponse> nodeOperation(ShardVersionsRequest request) {
+        List<ShardId> shardIds = request.shardIds();
+        long[] versions = new long[shardIds.size()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = readerVersion(shardIds.get(i));
+        }
+        return CompletableFuture.completedFuture(new ShardVersionsResponse(versions));
+    }
+
+    private long readerVersion(ShardId shardId) {
+        IndexService indexService = indicesService.indexService(shardId.getIndex());
+        if (indexService == null) {
+            return UNKNOWN_VERSION;
+        }
+        IndexShard indexShard = indexService.getShardOrNull(shardId.id());
+        if (indexShard == null) {
+            return UNKNOWN_VERSION;
+        }
+        try (Engine.Searcher searcher = indexShard.acquireSearcher("shard-versions")) {
+            return searcher.getDirectoryReader().getVersion();
+        } catch (IllegalIndexShardStateException | AlreadyClosedException e) {
+            return UNKNOWN_VERSION;
+        }
+    }
+}
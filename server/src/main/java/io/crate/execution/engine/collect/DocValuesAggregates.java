@@ -33,6 +33,7 @@ import io.crate.execution.dsl.projection.Projection;
 import io.crate.execution.dsl.projection.Projections;
 import io.crate.execution.engine.aggregation.AggregationFunction;
 import io.crate.execution.engine.aggregation.DocValueAggregator;
+import io.crate.execution.engine.collect.collectors.LeafRange;
 import io.crate.execution.jobs.SharedShardContext;
 import io.crate.expression.scalar.cast.ExplicitCastFunction;
 import io.crate.expression.symbol.Aggregation;
@@ -82,19 +83,7 @@ public class DocValuesAggregates {
                                                  FieldTypeLookup fieldTypeLookup,
                                                  RoutedCollectPhase phase,
                                                  CollectTask collectTask) {
-        var shardProjections = Projections.shardProjections(phase.projections());
-        AggregationProjection aggregateProjection = aggregateProjection(shardProjections);
-        if (aggregateProjection == null) {
-            return null;
-        }
-        var aggregators = createAggregators(
-            functions,
-            aggregateProjection.aggregations(),
-            fieldTypeLookup,
-            phase.toCollect(),
-            collectTask.txnCtx().sessionSettings().searchPath(),
-            table
-        );
+        var aggregators = tryCreateAggregators(functions, table, fieldTypeLookup, phase, collectTask);
         if (aggregators == null) {
             return null;
         }
@@ -112,7 +101,52 @@ public class DocValuesAggregates {
             table,
             shardContext.indexService().cache()
         );
+        return newIterator(
+            collectTask,
+            searcher.item(),
+            queryContext.query(),
+            LeafRange.of(searcher.item().getTopReaderContext().leaves()),
+            aggregators
+        );
+    }
 
+    /**
+     * @return the aggregators to compute the aggregations of the shard projection using doc values,
+     *         or null if the projection isn't a global aggregation or an aggregation can't use doc values.
+     *         Aggregators hold the doc values of the current segment and cannot be shared between iterators.
+     */
+    @Nullable
+    @SuppressWarnings("rawtypes")
+    static List<DocValueAggregator> tryCreateAggregators(Functions functions,
+                                                         DocTableInfo table,
+                                                         FieldTypeLookup fieldTypeLookup,
+                                                         RoutedCollectPhase phase,
+                                                         CollectTask collectTask) {
+        var shardProjections = Projections.shardProjections(phase.projections());
+        AggregationProjection aggregateProjection = aggregateProjection(shardProjections);
+        if (aggregateProjection == null) {
+            return null;
+        }
+        return createAggregators(
+            functions,
+            aggregateProjection.aggregations(),
+            fieldTypeLookup,
+            phase.toCollect(),
+            collectTask.txnCtx().sessionSettings().searchPath(),
+            table
+        );
+    }
+
+    /**
+     * @return iterator emitting a single row with the partial results of the aggregators
+     *         for the documents within {@code ranges} which match the query.
+     */
+    @SuppressWarnings("rawtypes")
+    static BatchIterator<Row> newIterator(CollectTask collectTask,
+                                          IndexSearcher searcher,
+                                          Query query,
+                                          List<LeafRange> ranges,
+                                          List<DocValueAggregator> aggregators) {
         AtomicReference<Throwable> killed = new AtomicReference<>();
         return CollectingBatchIterator.newInstance(
             () -> killed.set(BatchIterator.CLOSED),
@@ -124,8 +158,9 @@ public class DocValuesAggregates {
                         collectTask.memoryManager(),
                         collectTask.minNodeVersion(),
                         killed,
-                        searcher.item(),
-                        queryContext.query(),
+                        searcher,
+                        query,
+                        ranges,
                         aggregators
                     ));
                 } catch (Throwable t) {
@@ -238,14 +273,18 @@ public class DocValuesAggregates {
                                         AtomicReference<Throwable> killed,
                                         IndexSearcher searcher,
                                         Query query,
+                                        List<LeafRange> ranges,
                                         List<DocValueAggregator> aggregators) throws IOException {
         Weight weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1f);
-        List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
         Object[] cells = new Object[aggregators.size()];
         for (int i = 0; i < aggregators.size(); i++) {
             cells[i] = aggregators.get(i).initialState(ramAccounting, memoryManager, minNodeVersion);
         }
-        for (var leaf : leaves) {
+        for (var range : ranges) {
+            if (range.fromDoc() == range.toDoc()) {
+                continue;
+            }
+            LeafReaderContext leaf = range.leaf();
             Scorer scorer = weight.scorer(leaf);
             if (scorer == null) {
                 continue;
@@ -255,7 +294,8 @@ public class DocValuesAggregates {
             }
             DocIdSetIterator docs = scorer.iterator();
             Bits liveDocs = leaf.reader().getLiveDocs();
-            for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+            int toDoc = range.toDoc();
+            for (int doc = docs.advance(range.fromDoc()); doc < toDoc; doc = docs.nextDoc()) {
                 if (liveDocs != null && !liveDocs.get(doc)) {
                     continue;
                 }
@@ -37,6 +37,8 @@ import java.util.function.Function;
 
 import javax.annotation.Nullable;
 
+import com.carrotsearch.hppc.LongObjectHashMap;
+
 import io.crate.execution.engine.fetch.ReaderContext;
 import io.crate.memory.MemoryManager;
 import org.apache.lucene.index.LeafReaderContext;
@@ -208,13 +210,14 @@ final class DocValuesGroupByOptimizedIterator {
                 ),
                 (expressions) -> expressions.get(0).value(),
                 (key, cells) -> cells[0] = key,
+                null,
                 query,
                 new CollectorContext(collectorContext.readerId())
             );
         }
 
         @VisibleForTesting
-        static <K> BatchIterator<Row> forManyKeys(List<DocValueAggregator> aggregators,
+        static BatchIterator<Row> forManyKeys(List<DocValueAggregator> aggregators,
                                                   IndexSearcher indexSearcher,
                                                   List<Reference> keyColumnRefs,
                                                   List<? extends LuceneCollectorExpression<?>> keyExpressions,
@@ -249,6 +252,7 @@ final class DocValuesGroupByOptimizedIterator {
                         cells[i] = keys.get(i);
                     }
                 },
+                PackedSegmentKeys.create(keyColumnRefs),
                 query,
                 new CollectorContext(collectorContext.readerId())
             );
@@ -266,6 +270,39 @@ final class DocValuesGroupByOptimizedIterator {
                                                   BiConsumer<K, Object[]> applyKeyToCells,
                                                   Query query,
                                                   CollectorContext collectorContext) {
+            return getIterator(
+                aggregators,
+                indexSearcher,
+                keyExpressions,
+                ramAccounting,
+                memoryManager,
+                minNodeVersion,
+                accountForNewKeyEntry,
+                keyExtractor,
+                applyKeyToCells,
+                null,
+                query,
+                collectorContext
+            );
+        }
+
+        /**
+         * @param packedKeys if not null, segments whose keys fit into a long are grouped by the
+         *                   packed key and the key values are only looked up once per group and segment.
+         *                   Must produce keys of type {@code K}.
+         */
+        private static <K> BatchIterator<Row> getIterator(List<DocValueAggregator> aggregators,
+                                                          IndexSearcher indexSearcher,
+                                                          List<? extends LuceneCollectorExpression<?>> keyExpressions,
+                                                          RamAccounting ramAccounting,
+                                                          MemoryManager memoryManager,
+                                                          Version minNodeVersion,
+                                                          BiConsumer<Map<K, Object[]>, K> accountForNewKeyEntry,
+                                                          Function<List<? extends LuceneCollectorExpression<?>>, K> keyExtractor,
+                                                          BiConsumer<K, Object[]> applyKeyToCells,
+                                                          @Nullable PackedSegmentKeys packedKeys,
+                                                          Query query,
+                                                          CollectorContext collectorContext) {
             for (int i = 0; i < keyExpressions.size(); i++) {
                 keyExpressions.get(i).startCollect(collectorContext);
             }
@@ -284,6 +321,7 @@ final class DocValuesGroupByOptimizedIterator {
                                     keyExpressions,
                                     accountForNewKeyEntry,
                                     keyExtractor,
+                                    packedKeys,
                                     ramAccounting,
                                     memoryManager,
                                     minNodeVersion,
@@ -335,6 +373,7 @@ final class DocValuesGroupByOptimizedIterator {
             List<? extends LuceneCollectorExpression<?>> keyExpressions,
             BiConsumer<Map<K, Object[]>, K> accountForNewKeyEntry,
             Function<List<? extends LuceneCollectorExpression<?>>, K> keyExtractor,
+            @Nullable PackedSegmentKeys packedKeys,
             RamAccounting ramAccounting,
             MemoryManager memoryManager,
             Version minNodeVersion,
@@ -355,15 +394,48 @@ final class DocValuesGroupByOptimizedIterator {
                 if (scorer == null) {
                     continue;
                 }
-                for (int i = 0; i < keyExpressions.size(); i++) {
-                    keyExpressions.get(i).setNextReader(new ReaderContext(leaf));
-                }
                 for (int i = 0; i < aggregators.size(); i++) {
                     aggregators.get(i).loadDocValues(leaf.reader());
                 }
-
                 DocIdSetIterator docs = scorer.iterator();
                 Bits liveDocs = leaf.reader().getLiveDocs();
+
+                if (packedKeys != null && packedKeys.setNextReader(leaf.reader())) {
+                    // The segment local map holds at most one entry per group of statesByKey,
+                    // it is covered by the accounting of the global groups
+                    LongObjectHashMap<Object[]> segmentStates = new LongObjectHashMap<>();
+                    for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+                        raiseIfClosedOrKilled(killed);
+                        if (docDeleted(liveDocs, doc)) {
+                            continue;
+                        }
+                        long packedKey = packedKeys.pack(doc);
+                        Object[] states = segmentStates.get(packedKey);
+                        if (states == null) {
+                            //noinspection unchecked
+                            K key = (K) packedKeys.unpack(packedKey);
+                            states = getOrCreateStates(
+                                statesByKey,
+                                key,
+                                aggregators,
+                                accountForNewKeyEntry,
+                                ramAccounting,
+                                memoryManager,
+                                minNodeVersion
+                            );
+                            segmentStates.put(packedKey, states);
+                        }
+                        for (int i = 0; i < aggregators.size(); i++) {
+                            //noinspection unchecked
+                            aggregators.get(i).apply(ramAccounting, doc, states[i]);
+                        }
+                    }
+                    continue;
+                }
+
+                for (int i = 0; i < keyExpressions.size(); i++) {
+                    keyExpressions.get(i).setNextReader(new ReaderContext(leaf));
+                }
                 for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
                     raiseIfClosedOrKilled(killed);
                     if (docDeleted(liveDocs, doc)) {
@@ -374,29 +446,43 @@ final class DocValuesGroupByOptimizedIterator {
                         keyExpressions.get(i).setNextDocId(doc);
                     }
                     K key = keyExtractor.apply(keyExpressions);
-
-                    Object[] states = statesByKey.get(key);
-                    if (states == null) {
-                        states = new Object[aggregators.size()];
-                        for (int i = 0; i < aggregators.size(); i++) {
-                            var aggregator = aggregators.get(i);
-                            states[i] = aggregator.initialState(ramAccounting, memoryManager, minNodeVersion);
-                            //noinspection unchecked
-                            aggregator.apply(ramAccounting, doc, states[i]);
-                        }
-                        accountForNewKeyEntry.accept(statesByKey, key);
-                        statesByKey.put(key, states);
-                    } else {
-                        for (int i = 0; i < aggregators.size(); i++) {
-                            //noinspection unchecked
-                            aggregators.get(i).apply(ramAccounting, doc, states[i]);
-                        }
+                    Object[] states = getOrCreateStates(
+                        statesByKey,
+                        key,
+                        aggregators,
+                        accountForNewKeyEntry,
+                        ramAccounting,
+                        memoryManager,
+                        minNodeVersion
+                    );
+                    for (int i = 0; i < aggregators.size(); i++) {
+                        //noinspection unchecked
+                        aggregators.get(i).apply(ramAccounting, doc, states[i]);
                     }
                 }
             }
             return statesByKey;
         }
 
+        private static <K> Object[] getOrCreateStates(Map<K, Object[]> statesByKey,
+                                                      K key,
+                                                      List<DocValueAggregator> aggregators,
+                                                      BiConsumer<Map<K, Object[]>, K> accountForNewKeyEntry,
+                                                      RamAccounting ramAccounting,
+                                                      MemoryManager memoryManager,
+                                                      Version minNodeVersion) {
+            Object[] states = statesByKey.get(key);
+            if (states == null) {
+                states = new Object[aggregators.size()];
+                for (int i = 0; i < aggregators.size(); i++) {
+                    states[i] = aggregators.get(i).initialState(ramAccounting, memoryManager, minNodeVersion);
+                }
+                accountForNewKeyEntry.accept(statesByKey, key);
+                statesByKey.put(key, states);
+            }
+            return states;
+        }
+
         private static boolean docDeleted(@Nullable Bits liveDocs, int doc) {
             return liveDocs != null && !liveDocs.get(doc);
         }
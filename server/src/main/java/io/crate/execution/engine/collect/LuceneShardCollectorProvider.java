@@ -21,18 +21,36 @@
 
 package io.crate.execution.engine.collect;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.IntSupplier;
 import java.util.function.Supplier;
 
 import javax.annotation.Nullable;
 
+import io.crate.analyze.WhereClause;
+import io.crate.data.CompositeBatchIterator;
 import io.crate.data.InMemoryBatchIterator;
 import io.crate.data.SentinelRow;
+import io.crate.execution.dsl.projection.AggregationProjection;
+import io.crate.execution.dsl.projection.GroupProjection;
+import io.crate.execution.dsl.projection.Projection;
+import io.crate.execution.dsl.projection.Projections;
+import io.crate.execution.engine.aggregation.DocValueAggregator;
+import io.crate.execution.engine.cache.ShardRequestCache;
+import io.crate.execution.engine.collect.collectors.LeafRange;
+import io.crate.execution.engine.pipeline.Projectors;
+import io.crate.expression.symbol.AggregateMode;
 import io.crate.metadata.NodeContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.query.QueryShardContext;
 import org.elasticsearch.index.shard.IndexShard;
@@ -64,10 +82,23 @@ import io.crate.metadata.Schemas;
 import io.crate.metadata.doc.DocSysColumns;
 import io.crate.metadata.doc.DocTableInfo;
 
+import static io.crate.execution.support.ThreadPools.numIdleThreads;
+
 public class LuceneShardCollectorProvider extends ShardCollectorProvider {
 
     private static final Logger LOGGER = LogManager.getLogger(LuceneShardCollectorProvider.class);
 
+    /**
+     * Minimum number of documents a thread must collect if a shard is collected by multiple threads.
+     * Smaller shards are collected by a single thread as the overhead would outweigh the gain.
+     */
+    public static final Setting<Integer> MIN_DOCS_PER_SLICE_SETTING = Setting.intSetting(
+        "node.sql.parallel_collect.min_docs_per_slice",
+        250_000,
+        1,
+        Setting.Property.NodeScope
+    );
+
     private final Supplier<String> localNodeId;
     private final LuceneQueryBuilder luceneQueryBuilder;
     private final NodeContext nodeCtx;
@@ -75,6 +106,9 @@ public class LuceneShardCollectorProvider extends ShardCollectorProvider {
     private final BigArrays bigArrays;
     private final FieldTypeLookup fieldTypeLookup;
     private final DocTableInfo table;
+    private final Executor executor;
+    private final IntSupplier availableThreads;
+    private final int minDocsPerSlice;
 
     public LuceneShardCollectorProvider(Schemas schemas,
                                         LuceneQueryBuilder luceneQueryBuilder,
@@ -86,7 +120,8 @@ public class LuceneShardCollectorProvider extends ShardCollectorProvider {
                                         Settings settings,
                                         TransportActionProvider transportActionProvider,
                                         IndexShard indexShard,
-                                        BigArrays bigArrays) {
+                                        BigArrays bigArrays,
+                                        ShardRequestCache shardRequestCache) {
         super(
             clusterService,
             circuitBreakerService,
@@ -97,7 +132,8 @@ public class LuceneShardCollectorProvider extends ShardCollectorProvider {
             settings,
             transportActionProvider,
             indexShard,
-            new ShardRowContext(indexShard, clusterService)
+            new ShardRowContext(indexShard, clusterService),
+            shardRequestCache
         );
         this.luceneQueryBuilder = luceneQueryBuilder;
         this.nodeCtx = nodeCtx;
@@ -119,6 +155,10 @@ public class LuceneShardCollectorProvider extends ShardCollectorProvider {
             )
         );
         this.bigArrays = bigArrays;
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) threadPool.executor(ThreadPool.Names.SEARCH);
+        this.executor = executor;
+        this.availableThreads = numIdleThreads(executor, EsExecutors.numberOfProcessors(settings));
+        this.minDocsPerSlice = MIN_DOCS_PER_SLICE_SETTING.get(settings);
     }
 
     @Override
@@ -163,7 +203,11 @@ public class LuceneShardCollectorProvider extends ShardCollectorProvider {
     @Nullable
     @Override
     protected BatchIterator<Row> getProjectionFusedIterator(RoutedCollectPhase normalizedPhase, CollectTask collectTask) {
-        var it = GroupByOptimizedIterator.tryOptimizeSingleStringKey(
+        var it = tryCollectInParallel(normalizedPhase, collectTask);
+        if (it != null) {
+            return it;
+        }
+        it = GroupByOptimizedIterator.tryOptimizeSingleStringKey(
             indexShard,
             table,
             luceneQueryBuilder,
@@ -201,6 +245,128 @@ public class LuceneShardCollectorProvider extends ShardCollectorProvider {
         );
     }
 
+    /**
+     * Splits the documents of the shard into slices which are collected and aggregated concurrently.
+     * This is only possible if the shard projections compute partial aggregations, as the partial results
+     * of the slices are merged in the same way as the partial results of different shards.
+     *
+     * <pre>
+     *                          shard/searcher
+     *            /                   |                   \
+     *    LuceneBatchIterator  LuceneBatchIterator  LuceneBatchIterator   (or doc value aggregations)
+     *     [seg1, seg2[0:n]]    [seg2[n:], seg3]      [seg4, seg5]
+     *            |                   |                   |
+     *       partial agg         partial agg         partial agg
+     *            \___________________|___________________/
+     *                                |
+     *                   AsyncCompositeBatchIterator
+     * </pre>
+     *
+     * @return null if the shard cannot or should not be collected by multiple threads.
+     */
+    @Nullable
+    private BatchIterator<Row> tryCollectInParallel(RoutedCollectPhase collectPhase, CollectTask collectTask) {
+        int maxWorkers = collectTask.txnCtx().sessionSettings().maxParallelWorkersPerShard();
+        if (maxWorkers <= 1) {
+            return null;
+        }
+        Collection<? extends Projection> shardProjections = Projections.shardProjections(collectPhase.projections());
+        if (!computesPartialAggregations(shardProjections) || !WhereClause.canMatch(collectPhase.where())) {
+            return null;
+        }
+        ShardId shardId = indexShard.shardId();
+        SharedShardContext sharedShardContext = collectTask.sharedShardContexts().getOrCreateContext(shardId);
+        var searcher = sharedShardContext.acquireSearcher("parallel-collect: " + formatSource(collectPhase));
+        List<List<LeafRange>> slices = LeafRange.slices(
+            searcher.item().getTopReaderContext().leaves(),
+            maxWorkers,
+            minDocsPerSlice
+        );
+        if (slices.size() <= 1) {
+            searcher.close();
+            return null;
+        }
+        collectTask.addSearcher(sharedShardContext.readerId(), searcher);
+        IndexShard sharedShardContextShard = sharedShardContext.indexShard();
+        QueryShardContext queryShardContext = sharedShardContext.indexService().newQueryShardContext();
+        LuceneQueryBuilder.Context queryContext = luceneQueryBuilder.convert(
+            collectPhase.where(),
+            collectTask.txnCtx(),
+            sharedShardContextShard.mapperService(),
+            sharedShardContextShard.shardId().getIndexName(),
+            queryShardContext,
+            table,
+            sharedShardContext.indexService().cache()
+        );
+        boolean doScores = Symbols.containsColumn(collectPhase.toCollect(), DocSysColumns.SCORE);
+
+        @SuppressWarnings("unchecked")
+        BatchIterator<Row>[] iterators = new BatchIterator[slices.size()];
+        for (int i = 0; i < slices.size(); i++) {
+            List<LeafRange> slice = slices.get(i);
+            //noinspection rawtypes
+            List<DocValueAggregator> aggregators = DocValuesAggregates.tryCreateAggregators(
+                nodeCtx.functions(),
+                table,
+                fieldTypeLookup,
+                collectPhase,
+                collectTask
+            );
+            if (aggregators != null) {
+                iterators[i] = DocValuesAggregates.newIterator(
+                    collectTask,
+                    searcher.item(),
+                    queryContext.query(),
+                    slice,
+                    aggregators
+                );
+                continue;
+            }
+            InputFactory.Context<? extends LuceneCollectorExpression<?>> docCtx =
+                docInputFactory.extractImplementations(collectTask.txnCtx(), collectPhase);
+            var it = new LuceneBatchIterator(
+                searcher.item(),
+                slice,
+                queryContext.query(),
+                queryContext.minScore(),
+                doScores,
+                new CollectorContext(sharedShardContext.readerId()),
+                docCtx.topLevelInputs(),
+                docCtx.expressions()
+            );
+            iterators[i] = Projectors.wrap(
+                shardProjections,
+                collectPhase.jobId(),
+                collectTask.txnCtx(),
+                collectTask.getRamAccounting(),
+                collectTask.memoryManager(),
+                getProjectorFactory(),
+                it
+            );
+        }
+        return CompositeBatchIterator.asyncComposite(executor, availableThreads, iterators);
+    }
+
+    private static boolean computesPartialAggregations(Collection<? extends Projection> shardProjections) {
+        if (shardProjections.isEmpty()) {
+            return false;
+        }
+        for (Projection projection : shardProjections) {
+            AggregateMode mode;
+            if (projection instanceof AggregationProjection aggregationProjection) {
+                mode = aggregationProjection.mode();
+            } else if (projection instanceof GroupProjection groupProjection) {
+                mode = groupProjection.mode();
+            } else {
+                return false;
+            }
+            if (mode != AggregateMode.ITER_PARTIAL) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public OrderedDocCollector getOrderedCollector(RoutedCollectPhase phase,
                                                    SharedShardContext sharedShardContext,
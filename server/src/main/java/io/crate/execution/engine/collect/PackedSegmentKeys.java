@@ -0,0 +1,286 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.collect;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+
+import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.metadata.Reference;
+import io.crate.types.ByteType;
+import io.crate.types.IntegerType;
+import io.crate.types.LongType;
+import io.crate.types.ShortType;
+import io.crate.types.StringType;
+import io.crate.types.TimestampType;
+
+/**
+ * Packs the values of multiple group keys of a single segment into one {@code long}.
+ *
+ * <p>
+ * Text keys contribute their segment ordinal, numeric keys their offset to the
+ * smallest value of the segment. Each key uses as many bits as the number of
+ * distinct values in the segment requires, with 0 reserved for {@code null}.
+ * This allows to group the documents of a segment without materializing the
+ * key values; they're only looked up once per distinct packed key via {@link #unpack(long)}.
+ * </p>
+ */
+final class PackedSegmentKeys {
+
+    private static final int MAX_BITS = Long.SIZE - 1;
+
+    private final KeyComponent[] components;
+
+    /**
+     * @return the packed keys or null if one of the key types can't be packed.
+     */
+    @Nullable
+    static PackedSegmentKeys create(List<Reference> keyRefs) {
+        KeyComponent[] components = new KeyComponent[keyRefs.size()];
+        for (int i = 0; i < keyRefs.size(); i++) {
+            Reference keyRef = keyRefs.get(i);
+            String columnName = keyRef.column().fqn();
+            switch (keyRef.valueType().id()) {
+                case StringType.ID:
+                    components[i] = new OrdinalComponent(columnName);
+                    break;
+
+                case ByteType.ID:
+                case ShortType.ID:
+                case IntegerType.ID:
+                case LongType.ID:
+                case TimestampType.ID_WITH_TZ:
+                case TimestampType.ID_WITHOUT_TZ:
+                    components[i] = new NumericComponent(columnName, keyRef.valueType().id());
+                    break;
+
+                default:
+                    return null;
+            }
+        }
+        return new PackedSegmentKeys(components);
+    }
+
+    private PackedSegmentKeys(KeyComponent[] components) {
+        this.components = components;
+    }
+
+    /**
+     * @return true if the keys of the segment fit into a long, otherwise the keys
+     *         of the segment must be grouped by their values.
+     */
+    boolean setNextReader(LeafReader reader) throws IOException {
+        int totalBits = 0;
+        for (var component : components) {
+            int bits = component.setNextReader(reader);
+            if (bits < 0) {
+                return false;
+            }
+            totalBits += bits;
+            if (totalBits > MAX_BITS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long pack(int doc) throws IOException {
+        long key = 0;
+        for (var component : components) {
+            key = (key << component.bits) | component.encode(doc);
+        }
+        return key;
+    }
+
+    List<Object> unpack(long key) throws IOException {
+        Object[] values = new Object[components.length];
+        for (int i = components.length - 1; i >= 0; i--) {
+            KeyComponent component = components[i];
+            values[i] = component.decode(key & ((1L << component.bits) - 1));
+            key >>>= component.bits;
+        }
+        return Arrays.asList(values);
+    }
+
+    private abstract static class KeyComponent {
+
+        final String columnName;
+        int bits;
+
+        KeyComponent(String columnName) {
+            this.columnName = columnName;
+        }
+
+        /**
+         * @return the number of bits required for the keys of the segment or -1 if they can't be packed.
+         */
+        abstract int setNextReader(LeafReader reader) throws IOException;
+
+        /**
+         * @return the encoded key of the document, 0 if the document has no value.
+         */
+        abstract long encode(int doc) throws IOException;
+
+        @Nullable
+        abstract Object decode(long encoded) throws IOException;
+
+        static int bitsRequired(long maxValue) {
+            return Math.max(1, Long.SIZE - Long.numberOfLeadingZeros(maxValue));
+        }
+    }
+
+    private static final class OrdinalComponent extends KeyComponent {
+
+        private SortedSetDocValues values;
+
+        OrdinalComponent(String columnName) {
+            super(columnName);
+        }
+
+        @Override
+        int setNextReader(LeafReader reader) throws IOException {
+            values = DocValues.getSortedSet(reader, columnName);
+            bits = bitsRequired(values.getValueCount());
+            return bits;
+        }
+
+        @Override
+        long encode(int doc) throws IOException {
+            if (values.advanceExact(doc)) {
+                long ord = values.nextOrd();
+                if (values.nextOrd() != SortedSetDocValues.NO_MORE_ORDS) {
+                    throw new GroupByOnArrayUnsupportedException(columnName);
+                }
+                return ord + 1;
+            }
+            return 0;
+        }
+
+        @Override
+        Object decode(long encoded) throws IOException {
+            if (encoded == 0) {
+                return null;
+            }
+            return values.lookupOrd(encoded - 1).utf8ToString();
+        }
+    }
+
+    private static final class NumericComponent extends KeyComponent {
+
+        private final int typeId;
+        private SortedNumericDocValues values;
+        private long min;
+
+        NumericComponent(String columnName, int typeId) {
+            super(columnName);
+            this.typeId = typeId;
+        }
+
+        @Override
+        int setNextReader(LeafReader reader) throws IOException {
+            values = DocValues.getSortedNumeric(reader, columnName);
+            long max;
+            PointValues points = reader.getPointValues(columnName);
+            if (points != null && points.size() > 0) {
+                if (typeId == LongType.ID || typeId == TimestampType.ID_WITH_TZ || typeId == TimestampType.ID_WITHOUT_TZ) {
+                    min = LongPoint.decodeDimension(points.getMinPackedValue(), 0);
+                    max = LongPoint.decodeDimension(points.getMaxPackedValue(), 0);
+                } else {
+                    min = IntPoint.decodeDimension(points.getMinPackedValue(), 0);
+                    max = IntPoint.decodeDimension(points.getMaxPackedValue(), 0);
+                }
+            } else {
+                // Not indexed, the range of the type is the only bound we know of
+                switch (typeId) {
+                    case ByteType.ID:
+                        min = Byte.MIN_VALUE;
+                        max = Byte.MAX_VALUE;
+                        break;
+
+                    case ShortType.ID:
+                        min = Short.MIN_VALUE;
+                        max = Short.MAX_VALUE;
+                        break;
+
+                    case IntegerType.ID:
+                        min = Integer.MIN_VALUE;
+                        max = Integer.MAX_VALUE;
+                        break;
+
+                    default:
+                        return -1;
+                }
+            }
+            long range = max - min;
+            if (range < 0 || range == Long.MAX_VALUE) {
+                // overflow, the values span more than 63 bits
+                return -1;
+            }
+            bits = bitsRequired(range + 1);
+            return bits;
+        }
+
+        @Override
+        long encode(int doc) throws IOException {
+            if (values.advanceExact(doc)) {
+                if (values.docValueCount() != 1) {
+                    throw new GroupByOnArrayUnsupportedException(columnName);
+                }
+                return values.nextValue() - min + 1;
+            }
+            return 0;
+        }
+
+        @Override
+        Object decode(long encoded) {
+            if (encoded == 0) {
+                return null;
+            }
+            long value = encoded - 1 + min;
+            switch (typeId) {
+                case ByteType.ID:
+                    return (byte) value;
+
+                case ShortType.ID:
+                    return (short) value;
+
+                case IntegerType.ID:
+                    return (int) value;
+
+                default:
+                    return value;
+            }
+        }
+    }
+}
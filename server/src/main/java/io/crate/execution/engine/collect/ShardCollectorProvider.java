@@ -21,6 +21,8 @@
 
 package io.crate.execution.engine.collect;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import javax.annotation.Nullable;
@@ -32,14 +34,19 @@ import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import io.crate.Streamer;
 import io.crate.analyze.WhereClause;
+import io.crate.common.collections.Lists2;
 import io.crate.data.BatchIterator;
 import io.crate.data.InMemoryBatchIterator;
 import io.crate.data.Row;
 import io.crate.data.SentinelRow;
 import io.crate.execution.TransportActionProvider;
 import io.crate.execution.dsl.phases.RoutedCollectPhase;
+import io.crate.execution.dsl.projection.AggregationProjection;
+import io.crate.execution.dsl.projection.Projection;
 import io.crate.execution.dsl.projection.Projections;
+import io.crate.execution.engine.cache.ShardRequestCache;
 import io.crate.execution.engine.collect.collectors.OrderedDocCollector;
 import io.crate.execution.engine.pipeline.ProjectionToProjectorVisitor;
 import io.crate.execution.engine.pipeline.ProjectorFactory;
@@ -49,9 +56,12 @@ import io.crate.execution.jobs.SharedShardContext;
 import io.crate.expression.InputFactory;
 import io.crate.expression.eval.EvaluatingNormalizer;
 import io.crate.expression.reference.sys.shard.ShardRowContext;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.expression.symbol.Symbols;
 import io.crate.metadata.RowGranularity;
 import io.crate.metadata.Schemas;
 import io.crate.metadata.shard.ShardReferenceResolver;
+import io.crate.types.DataTypes;
 
 public abstract class ShardCollectorProvider {
 
@@ -59,6 +69,8 @@ public abstract class ShardCollectorProvider {
     private final ShardRowContext shardRowContext;
     protected final IndexShard indexShard;
     final EvaluatingNormalizer shardNormalizer;
+    @Nullable
+    private final ShardRequestCache shardRequestCache;
 
     ShardCollectorProvider(ClusterService clusterService,
                            CircuitBreakerService circuitBreakerService,
@@ -69,9 +81,11 @@ public abstract class ShardCollectorProvider {
                            Settings settings,
                            TransportActionProvider transportActionProvider,
                            IndexShard indexShard,
-                           ShardRowContext shardRowContext) {
+                           ShardRowContext shardRowContext,
+                           @Nullable ShardRequestCache shardRequestCache) {
         this.indexShard = indexShard;
         this.shardRowContext = shardRowContext;
+        this.shardRequestCache = shardRequestCache;
         shardNormalizer = new EvaluatingNormalizer(
             nodeCtx,
             RowGranularity.SHARD,
@@ -123,6 +137,43 @@ public abstract class ShardCollectorProvider {
 
         boolean isOpenIndex = indexShard.mapperService() != null;
         RoutedCollectPhase normalizedCollectNode = collectPhase.normalize(shardNormalizer, collectTask.txnCtx());
+        AggregationProjection partialAggregation = isOpenIndex && shardRequestCache != null
+            ? partialAggregation(Projections.shardProjections(collectPhase.projections()))
+            : null;
+        if (partialAggregation == null) {
+            return getProjectedIterator(collectPhase, normalizedCollectNode, isOpenIndex, requiresScroll, collectTask);
+        }
+        // The shared context hands out the same searcher as long as it is referenced. Holding the reference until
+        // the iterator is created ensures that the result is computed with the reader the key is created for.
+        var sharedShardContext = collectTask.sharedShardContexts().getOrCreateContext(indexShard.shardId());
+        try (var searcher = sharedShardContext.acquireSearcher("shard-request-cache")) {
+            ShardRequestCache.Key cacheKey = shardRequestCache.createKey(
+                indexShard.shardId(),
+                searcher.item(),
+                Lists2.concat(normalizedCollectNode.toCollect(), normalizedCollectNode.where()),
+                partialAggregation
+            );
+            if (cacheKey == null) {
+                return getProjectedIterator(collectPhase, normalizedCollectNode, isOpenIndex, requiresScroll, collectTask);
+            }
+            Streamer<?>[] streamers = DataTypes.getStreamers(Symbols.typeView(partialAggregation.outputs()));
+            List<Row> cachedRows = shardRequestCache.get(cacheKey, streamers, collectTask.getRamAccounting());
+            if (cachedRows != null) {
+                return InMemoryBatchIterator.of(cachedRows, SentinelRow.SENTINEL, true);
+            }
+            return shardRequestCache.recording(
+                cacheKey,
+                streamers,
+                getProjectedIterator(collectPhase, normalizedCollectNode, isOpenIndex, requiresScroll, collectTask)
+            );
+        }
+    }
+
+    private BatchIterator<Row> getProjectedIterator(RoutedCollectPhase collectPhase,
+                                                    RoutedCollectPhase normalizedCollectNode,
+                                                    boolean isOpenIndex,
+                                                    boolean requiresScroll,
+                                                    CollectTask collectTask) {
         if (isOpenIndex) {
             BatchIterator<Row> fusedIterator = getProjectionFusedIterator(normalizedCollectNode, collectTask);
             if (fusedIterator != null) {
@@ -146,6 +197,23 @@ public abstract class ShardCollectorProvider {
         );
     }
 
+    /**
+     * @return the projection if the shard computes the partial states of a global aggregation, otherwise null.
+     *         The states are a small result which only depends on the documents of the shard and can be cached.
+     */
+    @Nullable
+    private static AggregationProjection partialAggregation(Collection<? extends Projection> shardProjections) {
+        if (shardProjections.size() != 1) {
+            return null;
+        }
+        Projection projection = shardProjections.iterator().next();
+        if (projection instanceof AggregationProjection aggregationProjection
+            && aggregationProjection.mode() == AggregateMode.ITER_PARTIAL) {
+            return aggregationProjection;
+        }
+        return null;
+    }
+
 
     /**
      * @return A BatchIterator which already applies the transformation described in the shardProjections of the collectPhase.
@@ -0,0 +1,123 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.collect.collectors;
+
+import org.apache.lucene.index.LeafReaderContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A range of doc ids within a single segment.
+ * Used to split the segments of a shard into slices which can be collected concurrently.
+ */
+public final class LeafRange {
+
+    private final LeafReaderContext leaf;
+    private final int fromDoc;
+    private final int toDoc;
+
+    /**
+     * @param fromDoc first doc id of the range, inclusive
+     * @param toDoc last doc id of the range, exclusive
+     */
+    public LeafRange(LeafReaderContext leaf, int fromDoc, int toDoc) {
+        assert fromDoc >= 0 && fromDoc <= toDoc && toDoc <= leaf.reader().maxDoc()
+            : "Range [" + fromDoc + ", " + toDoc + ") must be within the doc ids of the leaf";
+        this.leaf = leaf;
+        this.fromDoc = fromDoc;
+        this.toDoc = toDoc;
+    }
+
+    public LeafReaderContext leaf() {
+        return leaf;
+    }
+
+    public int fromDoc() {
+        return fromDoc;
+    }
+
+    public int toDoc() {
+        return toDoc;
+    }
+
+    /**
+     * @return ranges covering all doc ids of the given leaves
+     */
+    public static List<LeafRange> of(List<LeafReaderContext> leaves) {
+        ArrayList<LeafRange> ranges = new ArrayList<>(leaves.size());
+        for (LeafReaderContext leaf : leaves) {
+            ranges.add(new LeafRange(leaf, 0, leaf.reader().maxDoc()));
+        }
+        return ranges;
+    }
+
+    /**
+     * Splits the leaves into at most {@code maxSlices} slices with roughly the same number of documents.
+     * A leaf is split into several ranges if it doesn't fit into a single slice, so that
+     * a shard consisting of a single large segment can be split as well.
+     *
+     * @param minDocsPerSlice the minimum number of documents in a slice.
+     *                        If there are not enough documents for two slices, a single slice containing
+     *                        all leaves is returned.
+     */
+    public static List<List<LeafRange>> slices(List<LeafReaderContext> leaves, int maxSlices, int minDocsPerSlice) {
+        assert minDocsPerSlice > 0 : "minDocsPerSlice must be greater than 0";
+        long totalDocs = 0;
+        for (LeafReaderContext leaf : leaves) {
+            totalDocs += leaf.reader().maxDoc();
+        }
+        int numSlices = (int) Math.min(maxSlices, totalDocs / minDocsPerSlice);
+        if (numSlices <= 1) {
+            return List.of(of(leaves));
+        }
+        long docsPerSlice = (totalDocs + numSlices - 1) / numSlices;
+        ArrayList<List<LeafRange>> slices = new ArrayList<>(numSlices);
+        ArrayList<LeafRange> slice = new ArrayList<>();
+        long docsInSlice = 0;
+        for (LeafReaderContext leaf : leaves) {
+            int maxDoc = leaf.reader().maxDoc();
+            int fromDoc = 0;
+            while (fromDoc < maxDoc) {
+                int toDoc = (int) Math.min(maxDoc, fromDoc + docsPerSlice - docsInSlice);
+                slice.add(new LeafRange(leaf, fromDoc, toDoc));
+                docsInSlice += toDoc - fromDoc;
+                fromDoc = toDoc;
+                if (docsInSlice == docsPerSlice) {
+                    slices.add(slice);
+                    slice = new ArrayList<>();
+                    docsInSlice = 0;
+                }
+            }
+        }
+        if (slice.isEmpty() == false) {
+            slices.add(slice);
+        }
+        return slices;
+    }
+
+    @Override
+    public String toString() {
+        return "LeafRange{ord=" + leaf.ord + ", from=" + fromDoc + ", to=" + toDoc + '}';
+    }
+}
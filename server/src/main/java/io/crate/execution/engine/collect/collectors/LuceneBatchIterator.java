@@ -52,6 +52,9 @@ import java.util.concurrent.CompletionStage;
  * It supports filtering the data using a lucene {@link Query} or via {@code minScore}.
  * <p>
  * Row data depends on {@code inputs} and {@code expressions}. The data is unordered.
+ * <p>
+ * The iterator can be restricted to a subset of the documents using {@link LeafRange}s, in which case multiple
+ * instances can collect the same index concurrently.
  */
 public class LuceneBatchIterator implements BatchIterator<Row> {
 
@@ -60,13 +63,13 @@ public class LuceneBatchIterator implements BatchIterator<Row> {
     private final CollectorContext collectorContext;
     private final boolean doScores;
     private final LuceneCollectorExpression[] expressions;
-    private final List<LeafReaderContext> leaves;
+    private final List<LeafRange> ranges;
     private final InputRow row;
     private Weight weight;
     private final Float minScore;
 
-    private Iterator<LeafReaderContext> leavesIt;
-    private LeafReaderContext currentLeaf;
+    private Iterator<LeafRange> rangesIt;
+    private LeafRange currentRange;
     private Scorer currentScorer;
     private DocIdSetIterator currentDocIdSetIt;
     private volatile Throwable killed;
@@ -78,6 +81,26 @@ public class LuceneBatchIterator implements BatchIterator<Row> {
                                CollectorContext collectorContext,
                                List<? extends Input<?>> inputs,
                                Collection<? extends LuceneCollectorExpression<?>> expressions) {
+        this(
+            indexSearcher,
+            LeafRange.of(indexSearcher.getTopReaderContext().leaves()),
+            query,
+            minScore,
+            doScores,
+            collectorContext,
+            inputs,
+            expressions
+        );
+    }
+
+    public LuceneBatchIterator(IndexSearcher indexSearcher,
+                               List<LeafRange> ranges,
+                               Query query,
+                               @Nullable Float minScore,
+                               boolean doScores,
+                               CollectorContext collectorContext,
+                               List<? extends Input<?>> inputs,
+                               Collection<? extends LuceneCollectorExpression<?>> expressions) {
         this.indexSearcher = indexSearcher;
         this.query = query;
         this.doScores = doScores || minScore != null;
@@ -85,8 +108,8 @@ public class LuceneBatchIterator implements BatchIterator<Row> {
         this.collectorContext = collectorContext;
         this.row = new InputRow(inputs);
         this.expressions = expressions.toArray(new LuceneCollectorExpression[0]);
-        leaves = indexSearcher.getTopReaderContext().leaves();
-        leavesIt = leaves.iterator();
+        this.ranges = ranges;
+        this.rangesIt = ranges.iterator();
     }
 
     @Override
@@ -97,7 +120,7 @@ public class LuceneBatchIterator implements BatchIterator<Row> {
     @Override
     public void moveToStart() {
         raiseIfKilled();
-        leavesIt = leaves.iterator();
+        rangesIt = ranges.iterator();
     }
 
     @Override
@@ -120,10 +143,11 @@ public class LuceneBatchIterator implements BatchIterator<Row> {
 
     private boolean innerMoveNext() throws IOException {
         while (tryAdvanceDocIdSetIterator()) {
-            LeafReader reader = currentLeaf.reader();
+            LeafReader reader = currentRange.leaf().reader();
             Bits liveDocs = reader.getLiveDocs();
+            int toDoc = currentRange.toDoc();
             int doc;
-            while ((doc = currentDocIdSetIt.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+            while ((doc = nextDoc()) < toDoc) {
                 if (docDeleted(liveDocs, doc) || belowMinScore(currentScorer)) {
                     continue;
                 }
@@ -136,6 +160,14 @@ public class LuceneBatchIterator implements BatchIterator<Row> {
         return false;
     }
 
+    private int nextDoc() throws IOException {
+        int fromDoc = currentRange.fromDoc();
+        if (currentDocIdSetIt.docID() < fromDoc) {
+            return currentDocIdSetIt.advance(fromDoc);
+        }
+        return currentDocIdSetIt.nextDoc();
+    }
+
     private boolean belowMinScore(Scorer currentScorer) throws IOException {
         return minScore != null && currentScorer.score() < minScore;
     }
@@ -144,16 +176,20 @@ public class LuceneBatchIterator implements BatchIterator<Row> {
         if (currentDocIdSetIt != null) {
             return true;
         }
-        while (leavesIt.hasNext()) {
-            LeafReaderContext leaf = leavesIt.next();
+        while (rangesIt.hasNext()) {
+            LeafRange range = rangesIt.next();
+            if (range.fromDoc() == range.toDoc()) {
+                continue;
+            }
+            LeafReaderContext leaf = range.leaf();
             Scorer scorer = weight.scorer(leaf);
             if (scorer == null) {
                 continue;
             }
             currentScorer = scorer;
-            currentLeaf = leaf;
+            currentRange = range;
             currentDocIdSetIt = scorer.iterator();
-            var readerContext = new ReaderContext(currentLeaf);
+            var readerContext = new ReaderContext(leaf);
             for (LuceneCollectorExpression<?> expression : expressions) {
                 expression.setScorer(currentScorer);
                 expression.setNextReader(readerContext);
@@ -166,7 +202,7 @@ public class LuceneBatchIterator implements BatchIterator<Row> {
     private void clearState() {
         currentDocIdSetIt = null;
         currentScorer = null;
-        currentLeaf = null;
+        currentRange = null;
     }
 
     @Override
@@ -24,8 +24,13 @@ package io.crate.execution.engine.collect.count;
 import com.carrotsearch.hppc.IntIndexedContainer;
 import com.carrotsearch.hppc.cursors.IntCursor;
 
+import io.crate.Streamer;
+import io.crate.breaker.RamAccounting;
 import io.crate.concurrent.CompletableFutures;
+import io.crate.data.Row;
+import io.crate.data.Row1;
 import io.crate.exceptions.JobKilledException;
+import io.crate.execution.engine.cache.ShardRequestCache;
 import io.crate.execution.support.ThreadPools;
 import io.crate.expression.symbol.Symbol;
 import io.crate.lucene.LuceneQueryBuilder;
@@ -35,6 +40,7 @@ import io.crate.metadata.Schemas;
 import io.crate.metadata.TransactionContext;
 import io.crate.metadata.doc.DocTableInfo;
 import io.crate.metadata.table.Operation;
+import io.crate.types.DataTypes;
 
 import org.elasticsearch.cluster.metadata.IndexMetadata;
 import org.elasticsearch.cluster.metadata.Metadata;
@@ -64,12 +70,15 @@ import java.util.function.Supplier;
 @Singleton
 public class InternalCountOperation implements CountOperation {
 
+    private static final Streamer<?>[] COUNT_STREAMERS = new Streamer[] { DataTypes.LONG };
+
     private final LuceneQueryBuilder queryBuilder;
     private final IndicesService indicesService;
     private final ClusterService clusterService;
     private final ThreadPoolExecutor executor;
     private final int numProcessors;
     private final Schemas schemas;
+    private final ShardRequestCache shardRequestCache;
 
     @Inject
     public InternalCountOperation(Settings settings,
@@ -77,8 +86,10 @@ public class InternalCountOperation implements CountOperation {
                                   LuceneQueryBuilder queryBuilder,
                                   ClusterService clusterService,
                                   ThreadPool threadPool,
-                                  IndicesService indicesService) {
+                                  IndicesService indicesService,
+                                  ShardRequestCache shardRequestCache) {
         this.schemas = schemas;
+        this.shardRequestCache = shardRequestCache;
         this.queryBuilder = queryBuilder;
         this.clusterService = clusterService;
         executor = (ThreadPoolExecutor) threadPool.executor(ThreadPool.Names.SEARCH);
@@ -145,6 +156,18 @@ public class InternalCountOperation implements CountOperation {
                            TransactionContext txnCtx,
                            Symbol filter) {
         try (Engine.Searcher searcher = indexShard.acquireSearcher("count-operation")) {
+            ShardRequestCache.Key cacheKey = shardRequestCache.createKey(
+                indexShard.shardId(),
+                searcher,
+                List.of(filter),
+                null
+            );
+            if (cacheKey != null) {
+                List<Row> cachedRows = shardRequestCache.get(cacheKey, COUNT_STREAMERS, RamAccounting.NO_ACCOUNTING);
+                if (cachedRows != null) {
+                    return (long) cachedRows.get(0).get(0);
+                }
+            }
             String indexName = indexShard.shardId().getIndexName();
             var relationName = RelationName.fromIndexName(indexName);
             DocTableInfo table = schemas.getTableInfo(relationName, Operation.READ);
@@ -160,7 +183,11 @@ public class InternalCountOperation implements CountOperation {
             if (Thread.interrupted()) {
                 throw JobKilledException.of("thread interrupted during count-operation");
             }
-            return searcher.count(queryCtx.query());
+            long count = searcher.count(queryCtx.query());
+            if (cacheKey != null) {
+                shardRequestCache.put(cacheKey, COUNT_STREAMERS, List.of(new Row1(count)));
+            }
+            return count;
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -43,5 +43,28 @@ public interface FileInput {
 
     InputStream getStream(URI uri) throws IOException;
 
+    /**
+     * Returns a stream of the file starting at the given byte offset.
+     * Implementations which can seek should override the default, which reads and discards the leading bytes.
+     */
+    default InputStream getStream(URI uri, long offset) throws IOException {
+        InputStream stream = getStream(uri);
+        try {
+            stream.skipNBytes(offset);
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+        return stream;
+    }
+
+    /**
+     * @return the size of the file in bytes or -1 if the size is unknown.
+     *         A file can only be read in ranges by several readers if its size is known.
+     */
+    default long size(URI uri) throws IOException {
+        return -1;
+    }
+
     boolean sharedStorageDefault();
 }
@@ -30,6 +30,8 @@ import io.crate.data.Row;
 import io.crate.exceptions.Exceptions;
 import io.crate.execution.dsl.phases.FileUriCollectPhase;
 import io.crate.expression.InputRow;
+import io.crate.expression.reference.file.LineContext;
+import io.crate.expression.reference.file.SourceLineNumberExpression;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -51,22 +53,58 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.IntSupplier;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
 
+import static io.crate.concurrent.CompletableFutures.supplyAsync;
 import static io.crate.exceptions.Exceptions.rethrowUnchecked;
 
+/**
+ * Reads the lines of files.
+ *
+ * <p>
+ * Files on shared storage are distributed across the readers. A large uncompressed file is split into
+ * byte ranges, one per reader, so that a single file is read by all readers. Other files are assigned
+ * to one of the readers as a whole.
+ * </p>
+ *
+ * <p>
+ * If an executor is given, the lines are read in batches and the parsing of a batch is distributed
+ * across the idle threads of the executor.
+ * Otherwise all lines are read and parsed on {@link #moveNext()}.
+ * </p>
+ */
 public class FileReadingIterator implements BatchIterator<Row> {
 
     private static final Logger LOGGER = LogManager.getLogger(FileReadingIterator.class);
     private static final int MAX_SOCKET_TIMEOUT_RETRIES = 5;
+
+    /**
+     * Minimum size of a file on shared storage to read it in byte ranges by all readers
+     */
+    static final long MIN_SPLIT_SIZE_IN_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Number of lines read per batch if the lines are parsed in parallel
+     */
+    static final int BATCH_SIZE = 4096;
+    private static final int MIN_LINES_PER_THREAD = 256;
+
     private final Map<String, FileInputFactory> fileInputFactories;
     private final Boolean shared;
     private final int numReaders;
     private final int readerNumber;
     private final boolean compressed;
+    private final long minSplitSize;
+    private final boolean splitFiles;
+    private final boolean preParseSource;
+    @Nullable
+    private final Executor executor;
+    private final IntSupplier availableThreads;
     private static final Pattern HAS_GLOBS_PATTERN = Pattern.compile("^((s3://|file://|/)[^\\*]*/)[^\\*]*\\*.*");
     private static final Predicate<URI> MATCH_ALL_PREDICATE = (URI input) -> true;
 
@@ -79,24 +117,54 @@ public class FileReadingIterator implements BatchIterator<Row> {
     private final FileUriCollectPhase.InputFormat inputFormat;
     private Iterator<Tuple<FileInput, UriWithGlob>> fileInputsIterator = null;
     private Tuple<FileInput, UriWithGlob> currentInput = null;
-    private Iterator<URI> currentInputIterator = null;
+    private Iterator<FileSplit> currentInputIterator = null;
+    private FileSplit currentSplit;
     private URI currentUri;
     private BufferedReader currentReader = null;
     private long currentLineNumber;
     private final Row row;
     private LineProcessor lineProcessor;
 
-    private FileReadingIterator(Collection<String> fileUris,
-                                List<? extends Input<?>> inputs,
-                                Iterable<LineCollectorExpression<?>> collectorExpressions,
-                                String compression,
-                                Map<String, FileInputFactory> fileInputFactories,
-                                Boolean shared,
-                                int numReaders,
-                                int readerNumber,
-                                CopyFromParserProperties parserProperties,
-                                FileUriCollectPhase.InputFormat inputFormat) {
+    /**
+     * State used if the lines are parsed in parallel:
+     * Lines are read into {@link #readLines} and parsed afterwards. Once parsed they are emitted from {@link #parsedLines}.
+     */
+    private ArrayList<ParsedLine> readLines;
+    private List<ParsedLine> parsedLines = List.of();
+    private int parsedLinesPos = 0;
+    private boolean exhausted = false;
+    @Nullable
+    private URI pendingUri;
+    @Nullable
+    private LineParser currentParser;
+
+    @VisibleForTesting
+    FileReadingIterator(Collection<String> fileUris,
+                        List<? extends Input<?>> inputs,
+                        Iterable<LineCollectorExpression<?>> collectorExpressions,
+                        String compression,
+                        Map<String, FileInputFactory> fileInputFactories,
+                        Boolean shared,
+                        int numReaders,
+                        int readerNumber,
+                        CopyFromParserProperties parserProperties,
+                        FileUriCollectPhase.InputFormat inputFormat,
+                        @Nullable Executor executor,
+                        IntSupplier availableThreads,
+                        long minSplitSize) {
         this.compressed = compression != null && compression.equalsIgnoreCase("gzip");
+        this.executor = executor;
+        this.availableThreads = availableThreads;
+        this.minSplitSize = minSplitSize;
+        boolean collectsLineNumber = false;
+        boolean requiresParsedSource = false;
+        for (LineCollectorExpression<?> expression : collectorExpressions) {
+            // line numbers are counted per reader and would be relative to the start of a range
+            collectsLineNumber |= expression instanceof SourceLineNumberExpression;
+            requiresParsedSource |= expression.requiresParsedSource();
+        }
+        this.splitFiles = numReaders > 1 && compressed == false && collectsLineNumber == false;
+        this.preParseSource = requiresParsedSource;
         this.row = new InputRow(inputs);
         this.fileInputFactories = fileInputFactories;
         this.shared = shared;
@@ -139,7 +207,42 @@ public class FileReadingIterator implements BatchIterator<Row> {
             numReaders,
             readerNumber,
             parserProperties,
-            inputFormat);
+            inputFormat,
+            null,
+            () -> 1,
+            MIN_SPLIT_SIZE_IN_BYTES);
+    }
+
+    /**
+     * Like {@link #newInstance(Collection, List, Iterable, String, Map, Boolean, int, int, CopyFromParserProperties, FileUriCollectPhase.InputFormat)}
+     * but the lines are parsed in parallel using up to {@code availableThreads} threads of the executor.
+     */
+    public static BatchIterator<Row> newInstance(Collection<String> fileUris,
+                                                 List<Input<?>> inputs,
+                                                 Iterable<LineCollectorExpression<?>> collectorExpressions,
+                                                 String compression,
+                                                 Map<String, FileInputFactory> fileInputFactories,
+                                                 Boolean shared,
+                                                 int numReaders,
+                                                 int readerNumber,
+                                                 CopyFromParserProperties parserProperties,
+                                                 FileUriCollectPhase.InputFormat inputFormat,
+                                                 Executor executor,
+                                                 IntSupplier availableThreads) {
+        return new FileReadingIterator(
+            fileUris,
+            inputs,
+            collectorExpressions,
+            compression,
+            fileInputFactories,
+            shared,
+            numReaders,
+            readerNumber,
+            parserProperties,
+            inputFormat,
+            executor,
+            availableThreads,
+            MIN_SPLIT_SIZE_IN_BYTES);
     }
 
     private void initCollectorState() {
@@ -157,64 +260,177 @@ public class FileReadingIterator implements BatchIterator<Row> {
     @Override
     public void moveToStart() {
         raiseIfKilled();
+        closeCurrentReader();
         initCollectorState();
+        parsedLines = List.of();
+        parsedLinesPos = 0;
+        exhausted = false;
+        pendingUri = null;
     }
 
     @Override
     public boolean moveNext() {
         raiseIfKilled();
+        if (executor == null) {
+            return nextLine();
+        }
+        if (parsedLinesPos < parsedLines.size()) {
+            emit(parsedLines.get(parsedLinesPos));
+            parsedLinesPos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Advances to the next line and processes it, or adds it to {@link #readLines} if the lines are parsed in parallel.
+     *
+     * @return false if all files are exhausted.
+     */
+    private boolean nextLine() {
         try {
             if (currentReader != null) {
                 String line = getLine(currentReader, currentLineNumber, 0);
                 if (line == null) {
                     closeCurrentReader();
-                    return moveNext();
+                    return nextLine();
                 }
-                lineProcessor.process(line);
+                processLine(line);
                 return true;
             } else if (currentInputIterator != null && currentInputIterator.hasNext()) {
                 advanceToNextUri(currentInput.v1());
-                return moveNext();
+                return nextLine();
             } else if (fileInputsIterator != null && fileInputsIterator.hasNext()) {
                 advanceToNextFileInput();
-                return moveNext();
+                return nextLine();
             } else {
                 releaseBatchIteratorState();
                 return false;
             }
         } catch (IOException e) {
-            lineProcessor.setFailure(e.getMessage());
+            if (executor == null) {
+                lineProcessor.setFailure(e.getMessage());
+            } else {
+                readLines.add(new ParsedLine(takePendingUri(), null, null, e));
+            }
             return true;
         }
     }
 
+    private void processLine(String line) throws IOException {
+        if (executor == null) {
+            lineProcessor.process(line);
+        } else {
+            readLines.add(new ParsedLine(takePendingUri(), line, currentParser, null));
+        }
+    }
+
+    private void startWithUri(URI uri) {
+        if (executor == null) {
+            lineProcessor.startWithUri(uri);
+        } else {
+            pendingUri = uri;
+        }
+    }
+
+    @Nullable
+    private URI takePendingUri() {
+        URI uri = pendingUri;
+        pendingUri = null;
+        return uri;
+    }
+
+    private void emit(ParsedLine line) {
+        if (line.startsUri != null) {
+            lineProcessor.startWithUri(line.startsUri);
+        }
+        if (line.failure == null) {
+            lineProcessor.process(line.source, line.parsedSource);
+        } else if (line.failure instanceof IOException) {
+            if (line.line == null) {
+                lineProcessor.setFailure(line.failure.getMessage());
+            } else {
+                lineProcessor.processFailure(line.failure.getMessage());
+            }
+        } else {
+            rethrowUnchecked(line.failure);
+        }
+    }
+
     private void advanceToNextUri(FileInput fileInput) throws IOException {
-        currentUri = currentInputIterator.next();
-        initCurrentReader(fileInput, currentUri);
+        currentSplit = currentInputIterator.next();
+        currentUri = currentSplit.uri;
+        initCurrentReader(fileInput, currentSplit);
     }
 
     private void advanceToNextFileInput() throws IOException {
         currentInput = fileInputsIterator.next();
         FileInput fileInput = currentInput.v1();
         UriWithGlob fileUri = currentInput.v2();
-        Predicate<URI> uriPredicate = generateUriPredicate(fileInput, fileUri.globPredicate);
-        List<URI> uris = getUris(fileInput, fileUri.uri, fileUri.preGlobUri, uriPredicate);
+        List<FileSplit> splits;
+        boolean sharedStorage = Objects.requireNonNullElse(shared, fileInput.sharedStorageDefault());
+        if (sharedStorage && splitFiles) {
+            Predicate<URI> uriPredicate = fileUri.globPredicate == null ? MATCH_ALL_PREDICATE : fileUri.globPredicate;
+            splits = assignSplits(fileInput, getUris(fileInput, fileUri.uri, fileUri.preGlobUri, uriPredicate));
+        } else {
+            Predicate<URI> uriPredicate = generateUriPredicate(fileInput, fileUri.globPredicate);
+            List<URI> uris = getUris(fileInput, fileUri.uri, fileUri.preGlobUri, uriPredicate);
+            splits = new ArrayList<>(uris.size());
+            for (URI uri : uris) {
+                splits.add(new FileSplit(uri, 0, -1));
+            }
+        }
 
-        if (uris.size() > 0) {
-            currentInputIterator = uris.iterator();
+        if (splits.size() > 0) {
+            currentInputIterator = splits.iterator();
             advanceToNextUri(fileInput);
         } else if (fileUri.preGlobUri != null) {
-            lineProcessor.startWithUri(fileUri.uri);
+            startWithUri(fileUri.uri);
             throw new IOException("Cannot find any URI matching: " + fileUri.uri.toString());
         }
     }
 
-    private void initCurrentReader(FileInput fileInput, URI uri) throws IOException {
-        lineProcessor.startWithUri(uri);
-        InputStream stream = fileInput.getStream(uri);
+    /**
+     * Assigns a byte range of each large file to this reader, other files are assigned as a whole to one of the readers.
+     */
+    private List<FileSplit> assignSplits(FileInput fileInput, List<URI> uris) throws IOException {
+        List<FileSplit> splits = new ArrayList<>(uris.size());
+        for (URI uri : uris) {
+            long size = fileInput.size(uri);
+            if (size >= minSplitSize) {
+                long start = size / numReaders * readerNumber;
+                long end = readerNumber == numReaders - 1 ? size : size / numReaders * (readerNumber + 1);
+                splits.add(new FileSplit(uri, start, end));
+            } else if (isAssignedToThisReader(uri)) {
+                splits.add(new FileSplit(uri, 0, -1));
+            }
+        }
+        return splits;
+    }
+
+    private void initCurrentReader(FileInput fileInput, FileSplit split) throws IOException {
+        URI uri = split.uri;
+        startWithUri(uri);
+        InputStream stream;
+        if (split.end < 0) {
+            stream = fileInput.getStream(uri);
+        } else {
+            stream = new LineRangeInputStream(
+                fileInput.getStream(uri, Math.max(0, split.start - 1)), split.start, split.end);
+        }
         currentReader = createBufferedReader(stream);
         currentLineNumber = 0;
-        lineProcessor.readFirstLine(currentUri, inputFormat, currentReader);
+        if (split.start > 0 && LineParser.isInputCsv(inputFormat, uri)) {
+            // the header is only part of the first range
+            try (BufferedReader headerReader = createBufferedReader(fileInput.getStream(uri))) {
+                lineProcessor.readFirstLine(uri, inputFormat, headerReader);
+            }
+        } else {
+            lineProcessor.readFirstLine(uri, inputFormat, currentReader);
+        }
+        if (executor != null) {
+            currentParser = lineProcessor.copyParser();
+        }
     }
 
     private void closeCurrentReader() {
@@ -249,7 +465,7 @@ public class FileReadingIterator implements BatchIterator<Row> {
             } else {
                 long startLine = currentLineNumber + 1;
                 closeCurrentReader();
-                initCurrentReader(currentInput.v1(), currentUri);
+                initCurrentReader(currentInput.v1(), currentSplit);
                 return getLine(currentReader, startLine, retry + 1);
             }
         } catch (Exception e) {
@@ -273,17 +489,84 @@ public class FileReadingIterator implements BatchIterator<Row> {
         fileInputsIterator = null;
         currentInputIterator = null;
         currentInput = null;
+        currentSplit = null;
         currentUri = null;
     }
 
     @Override
     public CompletableFuture<?> loadNextBatch() {
-        throw new IllegalStateException("All batches already loaded");
+        if (allLoaded()) {
+            throw new IllegalStateException("All batches already loaded");
+        }
+        try {
+            raiseIfKilled();
+            ArrayList<ParsedLine> lines = new ArrayList<>(BATCH_SIZE);
+            readLines = lines;
+            while (lines.size() < BATCH_SIZE) {
+                if (nextLine() == false) {
+                    exhausted = true;
+                    break;
+                }
+            }
+            readLines = null;
+            return parse(lines).thenRun(() -> {
+                parsedLines = lines;
+                parsedLinesPos = 0;
+            });
+        } catch (Throwable t) {
+            return CompletableFuture.failedFuture(t);
+        }
+    }
+
+    private CompletableFuture<?> parse(List<ParsedLine> lines) {
+        int numThreads = Math.min(availableThreads.getAsInt(), lines.size() / MIN_LINES_PER_THREAD);
+        if (numThreads <= 1) {
+            parse(lines, 0, lines.size());
+            return CompletableFuture.completedFuture(null);
+        }
+        int linesPerThread = (lines.size() + numThreads - 1) / numThreads;
+        ArrayList<CompletableFuture<Void>> futures = new ArrayList<>(numThreads);
+        for (int start = 0; start < lines.size(); start += linesPerThread) {
+            int from = start;
+            int to = Math.min(start + linesPerThread, lines.size());
+            futures.add(supplyAsync(() -> {
+                parse(lines, from, to);
+                return null;
+            }, executor));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    private void parse(List<ParsedLine> lines, int from, int to) {
+        LineParser template = null;
+        LineParser parser = null;
+        for (int i = from; i < to; i++) {
+            ParsedLine line = lines.get(i);
+            if (line.line == null) {
+                continue;
+            }
+            try {
+                if (line.parser != template) {
+                    template = line.parser;
+                    parser = template.copy();
+                }
+                line.source = parser.getByteArray(line.line);
+                if (preParseSource) {
+                    try {
+                        line.parsedSource = LineContext.parse(line.source);
+                    } catch (RuntimeException ignored) {
+                        // raised again if the expressions access the source
+                    }
+                }
+            } catch (Exception e) {
+                line.failure = e;
+            }
+        }
     }
 
     @Override
     public boolean allLoaded() {
-        return true;
+        return executor == null || exhausted;
     }
 
     @Override
@@ -291,6 +574,45 @@ public class FileReadingIterator implements BatchIterator<Row> {
         return true;
     }
 
+    private static final class FileSplit {
+        final URI uri;
+        final long start;
+        /**
+         * End of the byte range (exclusive) or -1 to read the whole file
+         */
+        final long end;
+
+        FileSplit(URI uri, long start, long end) {
+            this.uri = uri;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static final class ParsedLine {
+        /**
+         * The URI if this is the first line (or the failure) of a URI
+         */
+        @Nullable
+        final URI startsUri;
+        /**
+         * The raw line or null if reading the URI failed
+         */
+        @Nullable
+        final String line;
+        final LineParser parser;
+        byte[] source;
+        Map<String, Object> parsedSource;
+        Exception failure;
+
+        ParsedLine(@Nullable URI startsUri, @Nullable String line, LineParser parser, @Nullable Exception failure) {
+            this.startsUri = startsUri;
+            this.line = line;
+            this.parser = parser;
+            this.failure = failure;
+        }
+    }
+
     @VisibleForTesting
     static class UriWithGlob {
         final URI uri;
@@ -396,13 +718,7 @@ public class FileReadingIterator implements BatchIterator<Row> {
         Predicate<URI> moduloPredicate;
         boolean sharedStorage = Objects.requireNonNullElse(shared, fileInput.sharedStorageDefault());
         if (sharedStorage) {
-            moduloPredicate = input -> {
-                int hash = input.hashCode();
-                if (hash == Integer.MIN_VALUE) {
-                    hash = 0; // Math.abs(Integer.MIN_VALUE) == Integer.MIN_VALUE
-                }
-                return Math.abs(hash) % numReaders == readerNumber;
-            };
+            moduloPredicate = this::isAssignedToThisReader;
         } else {
             moduloPredicate = MATCH_ALL_PREDICATE;
         }
@@ -413,6 +729,14 @@ public class FileReadingIterator implements BatchIterator<Row> {
         return moduloPredicate;
     }
 
+    private boolean isAssignedToThisReader(URI uri) {
+        int hash = uri.hashCode();
+        if (hash == Integer.MIN_VALUE) {
+            hash = 0; // Math.abs(Integer.MIN_VALUE) == Integer.MIN_VALUE
+        }
+        return Math.abs(hash) % numReaders == readerNumber;
+    }
+
     private void raiseIfKilled() {
         if (killed != null) {
             Exceptions.rethrowUnchecked(killed);
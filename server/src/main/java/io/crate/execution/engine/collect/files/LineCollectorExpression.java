@@ -27,4 +27,12 @@ import io.crate.expression.reference.file.LineContext;
 public abstract class LineCollectorExpression<ReturnType> implements Input<ReturnType> {
 
     public abstract void startCollect(LineContext context);
+
+    /**
+     * @return true if the expression accesses the source of the line as map,
+     *         in which case the lines can be parsed in advance.
+     */
+    public boolean requiresParsedSource() {
+        return false;
+    }
 }
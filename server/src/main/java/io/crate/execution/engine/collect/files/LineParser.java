@@ -34,6 +34,7 @@ public class LineParser {
 
     private final CopyFromParserProperties parserProperties;
     private CSVLineParser csvLineParser;
+    private String csvHeader;
 
     private InputType inputType;
 
@@ -51,13 +52,29 @@ public class LineParser {
                               BufferedReader currentReader) throws IOException {
         if (isInputCsv(inputFormat, currentUri)) {
             csvLineParser = new CSVLineParser(parserProperties);
-            csvLineParser.parseHeader(currentReader.readLine());
+            csvHeader = currentReader.readLine();
+            csvLineParser.parseHeader(csvHeader);
             inputType = InputType.CSV;
         } else {
             inputType = InputType.JSON;
         }
     }
 
+    /**
+     * Creates a parser for the same input as this parser. Parsers aren't thread-safe,
+     * lines of an input which are parsed concurrently require a parser per thread.
+     */
+    LineParser copy() throws IOException {
+        LineParser copy = new LineParser(parserProperties);
+        copy.inputType = inputType;
+        if (inputType == InputType.CSV) {
+            copy.csvHeader = csvHeader;
+            copy.csvLineParser = new CSVLineParser(parserProperties);
+            copy.csvLineParser.parseHeader(csvHeader);
+        }
+        return copy;
+    }
+
     public byte[] getByteArray(String line) throws IOException {
         if (inputType == InputType.CSV) {
             return csvLineParser.parse(line);
@@ -66,7 +83,7 @@ public class LineParser {
         }
     }
 
-    private boolean isInputCsv(FileUriCollectPhase.InputFormat inputFormat, URI currentUri) {
+    static boolean isInputCsv(FileUriCollectPhase.InputFormat inputFormat, URI currentUri) {
         return (inputFormat == FileUriCollectPhase.InputFormat.CSV) || currentUri.toString().endsWith(".csv");
     }
 }
@@ -25,9 +25,11 @@ import io.crate.analyze.CopyFromParserProperties;
 import io.crate.execution.dsl.phases.FileUriCollectPhase.InputFormat;
 import io.crate.expression.reference.file.LineContext;
 
+import javax.annotation.Nullable;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.net.URI;
+import java.util.Map;
 
 public final class LineProcessor {
 
@@ -59,6 +61,26 @@ public final class LineProcessor {
         lineContext.rawSource(jsonByteArray);
     }
 
+    /**
+     * Like {@link #process(String)} but for a line which has already been parsed.
+     */
+    void process(byte[] source, @Nullable Map<String, Object> parsedSource) {
+        lineContext.incrementCurrentLineNumber();
+        lineContext.rawSource(source, parsedSource);
+    }
+
+    /**
+     * Like {@link #process(String)} for a line whose parsing failed with an {@link IOException}.
+     */
+    void processFailure(String failure) {
+        lineContext.incrementCurrentLineNumber();
+        setFailure(failure);
+    }
+
+    LineParser copyParser() throws IOException {
+        return lineParser.copy();
+    }
+
     public void setFailure(String failure) {
         lineContext.setCurrentUriFailure(failure);
     }
@@ -0,0 +1,119 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.collect.files;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the lines of a file which start within the byte range {@code [start, end)}.
+ * <p>
+ * A line belongs to the range containing its first byte, so splitting a file into adjacent ranges
+ * and reading each range with this stream returns every line exactly once:
+ * <ul>
+ *     <li>If {@code start > 0} the stream is expected to be positioned at {@code start - 1} and skips
+ *     everything up to and including the first line break, as that line belongs to the previous range.</li>
+ *     <li>Once {@code end} is reached the stream continues up to and including the next line break
+ *     to complete the last line which started within the range.</li>
+ * </ul>
+ */
+final class LineRangeInputStream extends InputStream {
+
+    private final InputStream in;
+    private final long end;
+    private long pos;
+    private int lastByte = -1;
+    private boolean finished = false;
+
+    /**
+     * @param in stream positioned at {@code start - 1} if {@code start > 0}, otherwise at 0.
+     */
+    LineRangeInputStream(InputStream in, long start, long end) throws IOException {
+        this.in = new BufferedInputStream(in);
+        this.end = end;
+        if (start > 0) {
+            pos = start - 1;
+            int b;
+            while ((b = this.in.read()) != -1) {
+                pos++;
+                if (b == '\n') {
+                    lastByte = b;
+                    return;
+                }
+            }
+            finished = true;
+        } else {
+            pos = 0;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (finished || (pos >= end && lastByte == '\n')) {
+            finished = true;
+            return -1;
+        }
+        int b = in.read();
+        if (b == -1) {
+            finished = true;
+            return -1;
+        }
+        pos++;
+        lastByte = b;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos < end) {
+            // bulk read within the range, the remaining bytes of the last line are read byte by byte
+            int n = in.read(b, off, (int) Math.min(len, end - pos));
+            if (n == -1) {
+                finished = true;
+                return -1;
+            }
+            pos += n;
+            lastByte = b[off + n - 1];
+            return n;
+        }
+        int n = 0;
+        int c;
+        while (n < len && (c = read()) != -1) {
+            b[off + n] = (byte) c;
+            n++;
+            if (c == '\n') {
+                break;
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
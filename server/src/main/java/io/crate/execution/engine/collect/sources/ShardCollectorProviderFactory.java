@@ -24,6 +24,7 @@ package io.crate.execution.engine.collect.sources;
 import io.crate.blob.v2.BlobIndicesService;
 import io.crate.blob.v2.BlobShard;
 import io.crate.execution.TransportActionProvider;
+import io.crate.execution.engine.cache.ShardRequestCache;
 import io.crate.execution.engine.collect.BlobShardCollectorProvider;
 import io.crate.execution.engine.collect.LuceneShardCollectorProvider;
 import io.crate.execution.engine.collect.ShardCollectorProvider;
@@ -54,6 +55,7 @@ public class ShardCollectorProviderFactory {
     private final BigArrays bigArrays;
     private final Settings settings;
     private final CircuitBreakerService circuitBreakerService;
+    private final ShardRequestCache shardRequestCache;
 
     ShardCollectorProviderFactory(ClusterService clusterService,
                                   CircuitBreakerService circuitBreakerService,
@@ -65,7 +67,8 @@ public class ShardCollectorProviderFactory {
                                   NodeContext nodeCtx,
                                   LuceneQueryBuilder luceneQueryBuilder,
                                   NodeLimits nodeJobsCounter,
-                                  BigArrays bigArrays) {
+                                  BigArrays bigArrays,
+                                  ShardRequestCache shardRequestCache) {
         this.settings = settings;
         this.circuitBreakerService = circuitBreakerService;
         this.schemas = schemas;
@@ -77,6 +80,7 @@ public class ShardCollectorProviderFactory {
         this.luceneQueryBuilder = luceneQueryBuilder;
         this.nodeJobsCounter = nodeJobsCounter;
         this.bigArrays = bigArrays;
+        this.shardRequestCache = shardRequestCache;
     }
 
     public ShardCollectorProvider create(IndexShard indexShard) {
@@ -105,7 +109,8 @@ public class ShardCollectorProviderFactory {
                 settings,
                 transportActionProvider,
                 indexShard,
-                bigArrays);
+                bigArrays,
+                shardRequestCache);
         }
     }
 }
@@ -25,6 +25,8 @@ import io.crate.Streamer;
 import io.crate.breaker.RamAccounting;
 import io.crate.data.Row;
 
+import javax.annotation.Nullable;
+
 /**
  * MultiBucketBuilder that returns N buckets where N is the number of buckets specified in the constructor.
  * Internally only one bucket is built - the same instance is returned N number of times.
@@ -35,8 +37,16 @@ public class BroadcastingBucketBuilder implements MultiBucketBuilder {
     private final StreamBucket.Builder bucketBuilder;
 
     public BroadcastingBucketBuilder(Streamer<?>[] streamers, int numBuckets, RamAccounting ramAccounting) {
+        this(streamers, numBuckets, ramAccounting, false, null);
+    }
+
+    public BroadcastingBucketBuilder(Streamer<?>[] streamers,
+                                     int numBuckets,
+                                     RamAccounting ramAccounting,
+                                     boolean columnar,
+                                     @Nullable PageCompression compression) {
         this.numBuckets = numBuckets;
-        this.bucketBuilder = new StreamBucket.Builder(streamers, ramAccounting);
+        this.bucketBuilder = new StreamBucket.Builder(streamers, ramAccounting, columnar, compression);
     }
 
     @Override
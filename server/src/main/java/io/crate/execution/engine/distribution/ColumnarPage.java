@@ -0,0 +1,543 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.distribution;
+
+import io.crate.Streamer;
+import io.crate.data.Row;
+import io.crate.types.BooleanType;
+import io.crate.types.ByteType;
+import io.crate.types.DoubleType;
+import io.crate.types.FloatType;
+import io.crate.types.IntegerType;
+import io.crate.types.LongType;
+import io.crate.types.ShortType;
+import io.crate.types.StringType;
+import io.crate.types.TimestampType;
+import org.apache.lucene.util.ArrayUtil;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Columnar encoding for the rows of a {@link StreamBucket}.
+ *
+ * <p>
+ * The values are written column by column, each column starts with a byte identifying its encoding:
+ * </p>
+ *
+ * <ul>
+ *     <li>Numeric, timestamp and boolean columns are written as a null bitmap followed by packed values.</li>
+ *     <li>Text columns are written as a null bitmap followed by the values, or dictionary encoded
+ *     if the values repeat often.</li>
+ *     <li>All other columns are written value by value using their {@link Streamer}.</li>
+ * </ul>
+ *
+ * <p>
+ * The receiver decodes a whole column at once into primitive arrays instead of reading the values
+ * row by row with a type dispatch per value.
+ * </p>
+ */
+final class ColumnarPage {
+
+    private static final byte GENERIC = 0;
+    private static final byte LONG = 1;
+    private static final byte INT = 2;
+    private static final byte SHORT = 3;
+    private static final byte BYTE = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte BOOLEAN = 7;
+    private static final byte STRING = 8;
+    private static final byte STRING_DICTIONARY = 9;
+
+    /**
+     * Upper bound for the number of distinct values of a dictionary encoded text column
+     */
+    private static final int MAX_DICTIONARY_SIZE = 4096;
+
+    private ColumnarPage() {
+    }
+
+    static ColumnWriter[] writers(Streamer<?>[] streamers) {
+        ColumnWriter[] writers = new ColumnWriter[streamers.length];
+        for (int i = 0; i < streamers.length; i++) {
+            writers[i] = writer(streamers[i]);
+        }
+        return writers;
+    }
+
+    private static ColumnWriter writer(Streamer<?> streamer) {
+        if (streamer instanceof LongType || streamer instanceof TimestampType) {
+            return new IntegralColumnWriter(LONG);
+        } else if (streamer instanceof IntegerType) {
+            return new IntegralColumnWriter(INT);
+        } else if (streamer instanceof ShortType) {
+            return new IntegralColumnWriter(SHORT);
+        } else if (streamer instanceof ByteType) {
+            return new IntegralColumnWriter(BYTE);
+        } else if (streamer instanceof DoubleType) {
+            return new FloatingPointColumnWriter(DOUBLE);
+        } else if (streamer instanceof FloatType) {
+            return new FloatingPointColumnWriter(FLOAT);
+        } else if (streamer instanceof BooleanType) {
+            return new BooleanColumnWriter();
+        } else if (streamer instanceof StringType) {
+            return new StringColumnWriter();
+        }
+        return new GenericColumnWriter(streamer);
+    }
+
+    /**
+     * Creates an iterator over the rows of a page written by {@link #writers(Streamer[])}.
+     * All columns are decoded up-front, the values are boxed once they're accessed via {@link Row#get(int)}.
+     */
+    static Iterator<Row> iterator(StreamInput in, Streamer<?>[] streamers, int size) throws IOException {
+        Column[] columns = new Column[streamers.length];
+        for (int i = 0; i < streamers.length; i++) {
+            columns[i] = readColumn(in, streamers[i], size);
+        }
+        return new RowIterator(columns, size);
+    }
+
+    abstract static class ColumnWriter {
+
+        final BitSet nulls = new BitSet();
+        int numValues = 0;
+
+        /**
+         * @return the approximate number of bytes the value takes up in the encoded page
+         */
+        final long add(Object value) {
+            int idx = numValues++;
+            if (value == null) {
+                nulls.set(idx);
+                addNull(idx);
+                return 1L;
+            }
+            return addValue(idx, value);
+        }
+
+        abstract void addNull(int idx);
+
+        abstract long addValue(int idx, Object value);
+
+        abstract void writeTo(StreamOutput out) throws IOException;
+
+        void reset() {
+            nulls.clear();
+            numValues = 0;
+        }
+
+        final void writeNulls(StreamOutput out) throws IOException {
+            if (nulls.isEmpty()) {
+                out.writeBoolean(false);
+            } else {
+                out.writeBoolean(true);
+                out.writeLongArray(nulls.toLongArray());
+            }
+        }
+    }
+
+    private static final class IntegralColumnWriter extends ColumnWriter {
+
+        private final byte kind;
+        private long[] values = new long[16];
+
+        IntegralColumnWriter(byte kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        void addNull(int idx) {
+            values = ArrayUtil.grow(values, idx + 1);
+            values[idx] = 0L;
+        }
+
+        @Override
+        long addValue(int idx, Object value) {
+            values = ArrayUtil.grow(values, idx + 1);
+            values[idx] = ((Number) value).longValue();
+            switch (kind) {
+                case INT:
+                    return Integer.BYTES;
+                case SHORT:
+                    return Short.BYTES;
+                case BYTE:
+                    return Byte.BYTES;
+                default:
+                    return Long.BYTES;
+            }
+        }
+
+        @Override
+        void writeTo(StreamOutput out) throws IOException {
+            out.writeByte(kind);
+            writeNulls(out);
+            for (int i = 0; i < numValues; i++) {
+                long value = values[i];
+                switch (kind) {
+                    case INT:
+                        out.writeInt((int) value);
+                        break;
+                    case SHORT:
+                        out.writeShort((short) value);
+                        break;
+                    case BYTE:
+                        out.writeByte((byte) value);
+                        break;
+                    default:
+                        out.writeLong(value);
+                        break;
+                }
+            }
+        }
+    }
+
+    private static final class FloatingPointColumnWriter extends ColumnWriter {
+
+        private final byte kind;
+        private double[] values = new double[16];
+
+        FloatingPointColumnWriter(byte kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        void addNull(int idx) {
+            values = ArrayUtil.grow(values, idx + 1);
+            values[idx] = 0.0d;
+        }
+
+        @Override
+        long addValue(int idx, Object value) {
+            values = ArrayUtil.grow(values, idx + 1);
+            values[idx] = ((Number) value).doubleValue();
+            return kind == FLOAT ? Float.BYTES : Double.BYTES;
+        }
+
+        @Override
+        void writeTo(StreamOutput out) throws IOException {
+            out.writeByte(kind);
+            writeNulls(out);
+            for (int i = 0; i < numValues; i++) {
+                if (kind == FLOAT) {
+                    out.writeFloat((float) values[i]);
+                } else {
+                    out.writeDouble(values[i]);
+                }
+            }
+        }
+    }
+
+    private static final class BooleanColumnWriter extends ColumnWriter {
+
+        private final BitSet values = new BitSet();
+
+        @Override
+        void addNull(int idx) {
+        }
+
+        @Override
+        long addValue(int idx, Object value) {
+            if ((Boolean) value) {
+                values.set(idx);
+            }
+            return 1L;
+        }
+
+        @Override
+        void writeTo(StreamOutput out) throws IOException {
+            out.writeByte(BOOLEAN);
+            writeNulls(out);
+            out.writeLongArray(values.toLongArray());
+        }
+
+        @Override
+        void reset() {
+            super.reset();
+            values.clear();
+        }
+    }
+
+    private static final class StringColumnWriter extends ColumnWriter {
+
+        private String[] values = new String[16];
+        private HashMap<String, Integer> dictionary = new HashMap<>();
+
+        @Override
+        void addNull(int idx) {
+            values = ArrayUtil.grow(values, idx + 1);
+            values[idx] = null;
+        }
+
+        @Override
+        long addValue(int idx, Object value) {
+            String str = (String) value;
+            values = ArrayUtil.grow(values, idx + 1);
+            values[idx] = str;
+            if (dictionary != null) {
+                if (dictionary.containsKey(str)) {
+                    return Integer.BYTES;
+                }
+                if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+                    dictionary.put(str, dictionary.size());
+                } else {
+                    dictionary = null;
+                }
+            }
+            return str.length() + Integer.BYTES;
+        }
+
+        @Override
+        void writeTo(StreamOutput out) throws IOException {
+            // Only worth it if the values repeat
+            if (dictionary != null && dictionary.size() <= (numValues - nulls.cardinality()) / 2) {
+                out.writeByte(STRING_DICTIONARY);
+                writeNulls(out);
+                String[] entries = new String[dictionary.size()];
+                for (var entry : dictionary.entrySet()) {
+                    entries[entry.getValue()] = entry.getKey();
+                }
+                out.writeStringArray(entries);
+                for (int i = 0; i < numValues; i++) {
+                    String value = values[i];
+                    if (value != null) {
+                        out.writeVInt(dictionary.get(value));
+                    }
+                }
+            } else {
+                out.writeByte(STRING);
+                writeNulls(out);
+                for (int i = 0; i < numValues; i++) {
+                    String value = values[i];
+                    if (value != null) {
+                        out.writeString(value);
+                    }
+                }
+            }
+        }
+
+        @Override
+        void reset() {
+            super.reset();
+            Arrays.fill(values, null);
+            dictionary = new HashMap<>();
+        }
+    }
+
+    private static final class GenericColumnWriter extends ColumnWriter {
+
+        private final Streamer<?> streamer;
+        private BytesStreamOutput buffer = new BytesStreamOutput();
+
+        GenericColumnWriter(Streamer<?> streamer) {
+            this.streamer = streamer;
+        }
+
+        @Override
+        void addNull(int idx) {
+            write(null);
+        }
+
+        @Override
+        long addValue(int idx, Object value) {
+            return write(value);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private long write(Object value) {
+            long prevSize = buffer.size();
+            try {
+                ((Streamer) streamer).writeValueTo(buffer, value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return buffer.size() - prevSize;
+        }
+
+        @Override
+        void writeTo(StreamOutput out) throws IOException {
+            out.writeByte(GENERIC);
+            buffer.bytes().writeTo(out);
+        }
+
+        @Override
+        void reset() {
+            super.reset();
+            buffer = new BytesStreamOutput();
+        }
+    }
+
+    private interface Column {
+
+        Object get(int idx);
+    }
+
+    private static Column readColumn(StreamInput in, Streamer<?> streamer, int size) throws IOException {
+        byte kind = in.readByte();
+        if (kind == GENERIC) {
+            Object[] values = new Object[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = streamer.readValueFrom(in);
+            }
+            return idx -> values[idx];
+        }
+        BitSet nulls = in.readBoolean() ? BitSet.valueOf(in.readLongArray()) : null;
+        switch (kind) {
+            case LONG:
+            case INT:
+            case SHORT:
+            case BYTE:
+                return readIntegralColumn(in, kind, nulls, size);
+
+            case DOUBLE: {
+                double[] values = new double[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = in.readDouble();
+                }
+                return idx -> isNull(nulls, idx) ? null : values[idx];
+            }
+
+            case FLOAT: {
+                float[] values = new float[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = in.readFloat();
+                }
+                return idx -> isNull(nulls, idx) ? null : values[idx];
+            }
+
+            case BOOLEAN: {
+                BitSet values = BitSet.valueOf(in.readLongArray());
+                return idx -> isNull(nulls, idx) ? null : values.get(idx);
+            }
+
+            case STRING: {
+                String[] values = new String[size];
+                for (int i = 0; i < size; i++) {
+                    if (!isNull(nulls, i)) {
+                        values[i] = in.readString();
+                    }
+                }
+                return idx -> values[idx];
+            }
+
+            case STRING_DICTIONARY: {
+                String[] dictionary = in.readStringArray();
+                int[] codes = new int[size];
+                for (int i = 0; i < size; i++) {
+                    if (!isNull(nulls, i)) {
+                        codes[i] = in.readVInt();
+                    }
+                }
+                return idx -> isNull(nulls, idx) ? null : dictionary[codes[idx]];
+            }
+
+            default:
+                throw new IllegalStateException("Invalid column encoding: " + kind);
+        }
+    }
+
+    private static Column readIntegralColumn(StreamInput in, byte kind, BitSet nulls, int size) throws IOException {
+        switch (kind) {
+            case LONG: {
+                long[] values = new long[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = in.readLong();
+                }
+                return idx -> isNull(nulls, idx) ? null : values[idx];
+            }
+
+            case INT: {
+                int[] values = new int[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = in.readInt();
+                }
+                return idx -> isNull(nulls, idx) ? null : values[idx];
+            }
+
+            case SHORT: {
+                short[] values = new short[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = in.readShort();
+                }
+                return idx -> isNull(nulls, idx) ? null : values[idx];
+            }
+
+            default: {
+                byte[] values = new byte[size];
+                in.readBytes(values, 0, size);
+                return idx -> isNull(nulls, idx) ? null : values[idx];
+            }
+        }
+    }
+
+    private static boolean isNull(BitSet nulls, int idx) {
+        return nulls != null && nulls.get(idx);
+    }
+
+    private static final class RowIterator implements Iterator<Row> {
+
+        private final Column[] columns;
+        private final int size;
+        private int pos = -1;
+        private final Row row = new Row() {
+
+            @Override
+            public int numColumns() {
+                return columns.length;
+            }
+
+            @Override
+            public Object get(int index) {
+                return columns[index].get(pos);
+            }
+        };
+
+        RowIterator(Column[] columns, int size) {
+            this.columns = columns;
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pos + 1 < size;
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Iterator is exhausted");
+            }
+            pos++;
+            return row;
+        }
+    }
+}
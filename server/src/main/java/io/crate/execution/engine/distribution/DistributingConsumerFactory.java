@@ -26,9 +26,13 @@ import java.util.Collection;
 import java.util.UUID;
 import java.util.concurrent.Executor;
 
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import io.crate.Streamer;
@@ -45,17 +49,29 @@ public class DistributingConsumerFactory {
 
     private static final String RESPONSE_EXECUTOR_NAME = ThreadPool.Names.SEARCH;
 
+    public static final Setting<Boolean> COLUMNAR_PAGES_SETTING = Setting.boolSetting(
+        "node.sql.distribution.columnar_pages",
+        false,
+        Setting.Property.NodeScope
+    );
+
     private final ClusterService clusterService;
     private final Executor responseExecutor;
     private final TransportDistributedResultAction transportDistributedResultAction;
+    private final boolean columnarPages;
+    private final PageCompression pageCompression;
 
     @Inject
-    public DistributingConsumerFactory(ClusterService clusterService,
+    public DistributingConsumerFactory(Settings settings,
+                                       ClusterService clusterService,
                                        ThreadPool threadPool,
-                                       TransportDistributedResultAction transportDistributedResultAction) {
+                                       TransportDistributedResultAction transportDistributedResultAction,
+                                       PageCompression pageCompression) {
         this.clusterService = clusterService;
         this.responseExecutor = threadPool.executor(RESPONSE_EXECUTOR_NAME);
         this.transportDistributedResultAction = transportDistributedResultAction;
+        this.columnarPages = COLUMNAR_PAGES_SETTING.get(settings);
+        this.pageCompression = pageCompression;
     }
 
     public RowConsumer create(NodeOperation nodeOperation,
@@ -70,6 +86,7 @@ public class DistributingConsumerFactory {
 
         byte phaseInputId = nodeOperation.downstreamExecutionPhaseInputId();
         int bucketIdx = getBucketIdx(nodeOperation.executionPhase().nodeIds(), phaseInputId);
+        boolean columnar = columnarPages && supportColumnarPages(nodeOperation.downstreamNodes());
 
         MultiBucketBuilder multiBucketBuilder;
         switch (distributionInfo.distributionType()) {
@@ -78,14 +95,18 @@ public class DistributingConsumerFactory {
                     multiBucketBuilder = new BroadcastingBucketBuilder(
                         streamers,
                         nodeOperation.downstreamNodes().size(),
-                        ramAccounting
+                        ramAccounting,
+                        columnar,
+                        pageCompression
                     );
                 } else {
                     multiBucketBuilder = new ModuloBucketBuilder(
                         streamers,
                         nodeOperation.downstreamNodes().size(),
                         distributionInfo.distributeByColumn(),
-                        ramAccounting
+                        ramAccounting,
+                        columnar,
+                        pageCompression
                     );
                 }
                 break;
@@ -93,7 +114,9 @@ public class DistributingConsumerFactory {
                 multiBucketBuilder = new BroadcastingBucketBuilder(
                     streamers,
                     nodeOperation.downstreamNodes().size(),
-                    ramAccounting
+                    ramAccounting,
+                    columnar,
+                    pageCompression
                 );
                 break;
             default:
@@ -113,6 +136,21 @@ public class DistributingConsumerFactory {
         );
     }
 
+    /**
+     * Columnar pages are only used if all downstream nodes can decode them.
+     * Nodes which left the cluster are treated as not supporting them.
+     */
+    private boolean supportColumnarPages(Collection<String> downstreamNodeIds) {
+        DiscoveryNodes nodes = clusterService.state().nodes();
+        for (String nodeId : downstreamNodeIds) {
+            DiscoveryNode node = nodes.get(nodeId);
+            if (node == null || node.getVersion().before(StreamBucket.COLUMNAR_FORMAT_VERSION)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * @return bucketIdx (= phaseInputID (8bit) | idx of localNode in nodeIds (24bit) )
      *
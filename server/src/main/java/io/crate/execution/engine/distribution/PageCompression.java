@@ -0,0 +1,113 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.distribution;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.CompressorFactory;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compresses the pages ({@link StreamBucket}) of intermediate results sent to other nodes.
+ *
+ * <p>
+ * Only pages larger than {@link #THRESHOLD_SETTING} are compressed, compressing small pages
+ * costs more than it saves. If a page doesn't compress well, it is sent uncompressed.
+ * </p>
+ */
+@Singleton
+public class PageCompression {
+
+    public static final Setting<ByteSizeValue> THRESHOLD_SETTING = Setting.byteSizeSetting(
+        "node.sql.distribution.compression_threshold",
+        new ByteSizeValue(-1),
+        Setting.Property.NodeScope
+    );
+
+    /**
+     * Compressed pages larger than this ratio of the original size are sent uncompressed
+     */
+    private static final double MAX_COMPRESSION_RATIO = 0.9;
+
+    private final long threshold;
+    private final LongAdder pagesCompressed = new LongAdder();
+    private final LongAdder pagesSkipped = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder compressionTimeNanos = new LongAdder();
+
+    @Inject
+    public PageCompression(Settings settings) {
+        this(THRESHOLD_SETTING.get(settings).getBytes());
+    }
+
+    public PageCompression(long threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return the compressed bytes or null if the page should be sent uncompressed.
+     */
+    @Nullable
+    BytesReference compress(BytesReference bytes) throws IOException {
+        int length = bytes.length();
+        if (threshold < 0 || length < threshold) {
+            return null;
+        }
+        long startNanos = System.nanoTime();
+        BytesStreamOutput out = new BytesStreamOutput(length / 2);
+        try (StreamOutput compressedOut = CompressorFactory.COMPRESSOR.streamOutput(out)) {
+            bytes.writeTo(compressedOut);
+        }
+        BytesReference compressed = out.bytes();
+        compressionTimeNanos.add(System.nanoTime() - startNanos);
+        if (compressed.length() > length * MAX_COMPRESSION_RATIO) {
+            pagesSkipped.increment();
+            return null;
+        }
+        pagesCompressed.increment();
+        bytesSaved.add(length - compressed.length());
+        return compressed;
+    }
+
+    static BytesReference uncompress(BytesReference bytes) throws IOException {
+        return CompressorFactory.uncompress(bytes);
+    }
+
+    public PageCompressionStats stats() {
+        return new PageCompressionStats(
+            pagesCompressed.sum(),
+            pagesSkipped.sum(),
+            bytesSaved.sum(),
+            compressionTimeNanos.sum()
+        );
+    }
+}
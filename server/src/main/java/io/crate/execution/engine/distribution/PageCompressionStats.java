@@ -0,0 +1,84 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.distribution;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+
+import java.io.IOException;
+
+public final class PageCompressionStats implements Writeable {
+
+    private final long pagesCompressed;
+    private final long pagesSkipped;
+    private final long bytesSaved;
+    private final long timeNanos;
+
+    public PageCompressionStats(long pagesCompressed, long pagesSkipped, long bytesSaved, long timeNanos) {
+        this.pagesCompressed = pagesCompressed;
+        this.pagesSkipped = pagesSkipped;
+        this.bytesSaved = bytesSaved;
+        this.timeNanos = timeNanos;
+    }
+
+    public PageCompressionStats(StreamInput in) throws IOException {
+        this.pagesCompressed = in.readVLong();
+        this.pagesSkipped = in.readVLong();
+        this.bytesSaved = in.readVLong();
+        this.timeNanos = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVLong(pagesCompressed);
+        out.writeVLong(pagesSkipped);
+        out.writeVLong(bytesSaved);
+        out.writeVLong(timeNanos);
+    }
+
+    /**
+     * @return number of pages which have been sent compressed
+     */
+    public long pagesCompressed() {
+        return pagesCompressed;
+    }
+
+    /**
+     * @return number of pages which have been sent uncompressed because they didn't compress well
+     */
+    public long pagesSkipped() {
+        return pagesSkipped;
+    }
+
+    public long bytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * @return time spent compressing pages, including the pages which have been skipped
+     */
+    public long timeNanos() {
+        return timeNanos;
+    }
+}
@@ -27,6 +27,7 @@ import io.crate.data.Bucket;
 import io.crate.data.Row;
 import io.crate.data.RowN;
 import org.apache.lucene.util.Accountable;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -44,24 +45,58 @@ import static java.util.Objects.requireNonNull;
 
 public class StreamBucket implements Bucket, Writeable {
 
+    /**
+     * Minimum version of nodes able to receive buckets in {@link #COLUMNAR_FORMAT} or compressed buckets
+     */
+    public static final Version COLUMNAR_FORMAT_VERSION = Version.V_4_7_0;
+
+    private static final byte ROW_FORMAT = 0;
+    private static final byte COLUMNAR_FORMAT = 1;
+
     private Streamer<?>[] streamers;
     private int size = -1;
+    private byte format = ROW_FORMAT;
     private BytesReference bytes;
 
+    @Nullable
+    private PageCompression compression;
+    private boolean compressed = false;
+    @Nullable
+    private BytesReference compressedBytes;
+
     public static class Builder implements Accountable {
 
         private static final int INITIAL_PAGE_SIZE = 1024;
         private final RamAccounting ramAccounting;
         private final Streamer<?>[] streamers;
 
+        @Nullable
+        private final ColumnarPage.ColumnWriter[] columnWriters;
+        @Nullable
+        private final PageCompression compression;
+
         private int size = 0;
         private BytesStreamOutput out;
         private int prevOutSize = 0;
 
         public Builder(Streamer<?>[] streamers, RamAccounting ramAccounting) {
+            this(streamers, ramAccounting, false, null);
+        }
+
+        /**
+         * @param columnar if true, the rows are encoded column by column, see {@link ColumnarPage}.
+         *                 Receivers must be on {@link #COLUMNAR_FORMAT_VERSION} or later to benefit from it.
+         * @param compression used to compress the buckets when they're sent to another node; null to never compress.
+         */
+        public Builder(Streamer<?>[] streamers,
+                       RamAccounting ramAccounting,
+                       boolean columnar,
+                       @Nullable PageCompression compression) {
             this.ramAccounting = requireNonNull(ramAccounting, "RamAccounting must not be null");
             assert validStreamers(streamers) : "streamers must not be null and they shouldn't be of undefinedType";
             this.streamers = streamers;
+            this.columnWriters = columnar ? ColumnarPage.writers(streamers) : null;
+            this.compression = compression;
             out = new BytesStreamOutput(INITIAL_PAGE_SIZE);
         }
 
@@ -69,6 +104,14 @@ public class StreamBucket implements Bucket, Writeable {
             assert streamers.length == row.numColumns() : "number of streamer must match row size";
 
             size++;
+            if (columnWriters != null) {
+                long bytes = 0L;
+                for (int i = 0; i < columnWriters.length; i++) {
+                    bytes += columnWriters[i].add(row.get(i));
+                }
+                ramAccounting.addBytes(bytes);
+                return;
+            }
             for (int i = 0; i < row.numColumns(); i++) {
                 try {
                     //noinspection unchecked
@@ -84,6 +127,17 @@ public class StreamBucket implements Bucket, Writeable {
         public StreamBucket build() {
             StreamBucket sb = new StreamBucket(streamers);
             sb.size = size;
+            sb.compression = compression;
+            if (columnWriters != null) {
+                for (ColumnarPage.ColumnWriter columnWriter : columnWriters) {
+                    try {
+                        columnWriter.writeTo(out);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                sb.format = COLUMNAR_FORMAT;
+            }
             sb.bytes = out.bytes();
             return sb;
         }
@@ -91,6 +145,11 @@ public class StreamBucket implements Bucket, Writeable {
         public void reset() {
             out = new BytesStreamOutput(size); // next bucket is probably going to have the same size
             size = 0;
+            if (columnWriters != null) {
+                for (ColumnarPage.ColumnWriter columnWriter : columnWriters) {
+                    columnWriter.reset();
+                }
+            }
         }
 
         public int size() {
@@ -178,7 +237,11 @@ public class StreamBucket implements Bucket, Writeable {
         }
         assert streamers != null : "streamers must not be null";
         try {
-            return new RowIterator(bytes.streamInput(), streamers, size);
+            BytesReference data = uncompressedBytes();
+            if (format == COLUMNAR_FORMAT) {
+                return ColumnarPage.iterator(data.streamInput(), streamers, size);
+            }
+            return new RowIterator(data.streamInput(), streamers, size);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -200,6 +263,10 @@ public class StreamBucket implements Bucket, Writeable {
     public StreamBucket(StreamInput in) throws IOException {
         size = in.readVInt();
         if (size > 0) {
+            if (in.getVersion().onOrAfter(COLUMNAR_FORMAT_VERSION)) {
+                format = in.readByte();
+                compressed = in.readBoolean();
+            }
             bytes = in.readBytesReference();
         }
     }
@@ -216,7 +283,60 @@ public class StreamBucket implements Bucket, Writeable {
         assert size > -1 : "size must be > -1";
         out.writeVInt(size);
         if (size > 0) {
-            out.writeBytesReference(bytes);
+            if (out.getVersion().onOrAfter(COLUMNAR_FORMAT_VERSION)) {
+                out.writeByte(format);
+                BytesReference compressedData = compressedBytes();
+                out.writeBoolean(compressedData != null);
+                out.writeBytesReference(compressedData == null ? bytes : compressedData);
+            } else if (format == COLUMNAR_FORMAT) {
+                out.writeBytesReference(toRowFormat());
+            } else {
+                out.writeBytesReference(uncompressedBytes());
+            }
+        }
+    }
+
+    /**
+     * @return the compressed bytes if the bucket is or should be sent compressed, otherwise null.
+     * The same bucket may be sent to several nodes, so it's compressed only once.
+     */
+    @Nullable
+    private synchronized BytesReference compressedBytes() throws IOException {
+        if (compressed) {
+            return bytes;
+        }
+        if (compression == null) {
+            return null;
+        }
+        if (compressedBytes == null) {
+            compressedBytes = compression.compress(bytes);
+            if (compressedBytes == null) {
+                compression = null;
+            }
+        }
+        return compressedBytes;
+    }
+
+    private synchronized BytesReference uncompressedBytes() throws IOException {
+        if (compressed) {
+            bytes = PageCompression.uncompress(bytes);
+            compressed = false;
+        }
+        return bytes;
+    }
+
+    /**
+     * Re-encodes the rows of a columnar bucket for receivers which only understand the row format.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private BytesReference toRowFormat() throws IOException {
+        assert streamers != null : "streamers must be available to re-encode a columnar bucket";
+        BytesStreamOutput rowOut = new BytesStreamOutput(bytes.length());
+        for (Row row : this) {
+            for (int i = 0; i < streamers.length; i++) {
+                ((Streamer) streamers[i]).writeValueTo(rowOut, row.get(i));
+            }
         }
+        return rowOut.bytes();
     }
 }
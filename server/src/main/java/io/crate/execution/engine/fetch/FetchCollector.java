@@ -24,6 +24,8 @@ package io.crate.execution.engine.fetch;
 import java.io.IOException;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import com.carrotsearch.hppc.IntArrayList;
 
 import org.apache.lucene.codecs.StoredFieldsReader;
@@ -34,6 +36,7 @@ import org.elasticsearch.common.lucene.index.SequentialStoredFieldsLeafReader;
 import io.crate.Streamer;
 import io.crate.breaker.RamAccounting;
 import io.crate.exceptions.Exceptions;
+import io.crate.execution.engine.distribution.PageCompression;
 import io.crate.execution.engine.distribution.StreamBucket;
 import io.crate.expression.InputRow;
 import io.crate.expression.reference.doc.lucene.CollectorContext;
@@ -48,13 +51,17 @@ class FetchCollector {
     private final RamAccounting ramAccounting;
     private final int readerId;
     private final FetchTask fetchTask;
+    @Nullable
+    private final PageCompression pageCompression;
 
     FetchCollector(List<LuceneCollectorExpression<?>> collectorExpressions,
                    Streamer<?>[] streamers,
                    FetchTask fetchTask,
                    RamAccounting ramAccounting,
-                   int readerId) {
+                   int readerId,
+                   @Nullable PageCompression pageCompression) {
         this.fetchTask = fetchTask;
+        this.pageCompression = pageCompression;
         // use toArray to avoid iterator allocations in docIds loop
         this.collectorExpressions = collectorExpressions.toArray(new LuceneCollectorExpression[0]);
         this.streamers = streamers;
@@ -77,7 +84,7 @@ class FetchCollector {
 
     public StreamBucket collect(IntArrayList docIds) {
         boolean collectSequential = isSequential(docIds);
-        StreamBucket.Builder builder = new StreamBucket.Builder(streamers, ramAccounting);
+        StreamBucket.Builder builder = new StreamBucket.Builder(streamers, ramAccounting, false, pageCompression);
         try (var borrowed = fetchTask.searcher(readerId)) {
             var searcher = borrowed.item();
             List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
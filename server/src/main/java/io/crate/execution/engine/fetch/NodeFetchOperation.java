@@ -47,6 +47,7 @@ import io.crate.breaker.ConcurrentRamAccounting;
 import io.crate.breaker.RamAccounting;
 import io.crate.exceptions.SQLExceptions;
 import io.crate.execution.engine.collect.stats.JobsLogs;
+import io.crate.execution.engine.distribution.PageCompression;
 import io.crate.execution.engine.distribution.StreamBucket;
 import io.crate.execution.jobs.RootTask;
 import io.crate.execution.jobs.TasksService;
@@ -64,6 +65,8 @@ public class NodeFetchOperation {
     private final JobsLogs jobsLogs;
     private final TasksService tasksService;
     private final CircuitBreaker circuitBreaker;
+    @Nullable
+    private final PageCompression pageCompression;
 
     private static class TableFetchInfo {
 
@@ -77,7 +80,7 @@ public class NodeFetchOperation {
             this.streamers = Symbols.streamerArray(refs);
         }
 
-        FetchCollector createCollector(int readerId, RamAccounting ramAccounting) {
+        FetchCollector createCollector(int readerId, RamAccounting ramAccounting, @Nullable PageCompression pageCompression) {
             IndexService indexService = fetchTask.indexService(readerId);
             var mapperService = indexService.mapperService();
             LuceneReferenceResolver resolver = new LuceneReferenceResolver(
@@ -94,7 +97,8 @@ public class NodeFetchOperation {
                 streamers,
                 fetchTask,
                 ramAccounting,
-                readerId
+                readerId,
+                pageCompression
             );
         }
     }
@@ -104,11 +108,21 @@ public class NodeFetchOperation {
                               JobsLogs jobsLogs,
                               TasksService tasksService,
                               CircuitBreaker circuitBreaker) {
+        this(executor, numProcessors, jobsLogs, tasksService, circuitBreaker, null);
+    }
+
+    public NodeFetchOperation(ThreadPoolExecutor executor,
+                              int numProcessors,
+                              JobsLogs jobsLogs,
+                              TasksService tasksService,
+                              CircuitBreaker circuitBreaker,
+                              @Nullable PageCompression pageCompression) {
         this.executor = executor;
         this.numProcessors = numProcessors;
         this.jobsLogs = jobsLogs;
         this.tasksService = tasksService;
         this.circuitBreaker = circuitBreaker;
+        this.pageCompression = pageCompression;
     }
 
     public CompletableFuture<? extends IntObjectMap<StreamBucket>> fetch(UUID jobId,
@@ -188,7 +202,8 @@ public class NodeFetchOperation {
                 new BlockBasedRamAccounting(
                     ramAccounting::addBytes,
                     BlockBasedRamAccounting.MAX_BLOCK_SIZE_IN_BYTES
-                )
+                ),
+                pageCompression
             );
             collectors.add(() -> collector.collect(docIds));
         }
@@ -40,6 +40,7 @@ import org.elasticsearch.transport.TransportService;
 import io.crate.Streamer;
 import io.crate.breaker.RamAccounting;
 import io.crate.execution.engine.collect.stats.JobsLogs;
+import io.crate.execution.engine.distribution.PageCompression;
 import io.crate.execution.engine.distribution.StreamBucket;
 import io.crate.execution.jobs.TasksService;
 import io.crate.execution.support.NodeAction;
@@ -62,14 +63,16 @@ public class TransportFetchNodeAction implements NodeAction<NodeFetchRequest, No
                                     ThreadPool threadPool,
                                     JobsLogs jobsLogs,
                                     TasksService tasksService,
-                                    CircuitBreakerService circuitBreakerService) {
+                                    CircuitBreakerService circuitBreakerService,
+                                    PageCompression pageCompression) {
         this.transports = transports;
         this.nodeFetchOperation = new NodeFetchOperation(
             (ThreadPoolExecutor) threadPool.executor(ThreadPool.Names.SEARCH),
             EsExecutors.numberOfProcessors(settings),
             jobsLogs,
             tasksService,
-            circuitBreakerService.getBreaker(HierarchyCircuitBreakerService.QUERY)
+            circuitBreakerService.getBreaker(HierarchyCircuitBreakerService.QUERY),
+            pageCompression
         );
 
         transportService.registerRequestHandler(
@@ -0,0 +1,436 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.join;
+
+import com.carrotsearch.hppc.BitMixer;
+import io.crate.Streamer;
+import io.crate.breaker.RowAccounting;
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.data.UnsafeArrayRow;
+import io.crate.data.join.CombinedRow;
+import io.crate.data.join.JoinBatchIterator;
+import io.crate.exceptions.Exceptions;
+import io.crate.execution.engine.spill.SpillFile;
+import io.netty.util.collection.IntObjectHashMap;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Inner hash join for inputs whose left side doesn't fit into memory (grace hash join).
+ * <pre>
+ *     Partition Phase:
+ *     for (leftRow in left) {
+ *         write leftRow to leftPartitions[hash(leftRow) % numPartitions]
+ *     }
+ *     for (rightRow in right) {
+ *         write rightRow to rightPartitions[hash(rightRow) % numPartitions]
+ *     }
+ *
+ *     Join Phase:
+ *     for (partition in 0..numPartitions) {
+ *         build Buffer (HashMap) from leftPartitions[partition]
+ *         for (rightRow in rightPartitions[partition]) {
+ *             for (row in matchedInBuffer) {
+ *                 if (joinCondition matches) {
+ *                     emmit(combinedRow)
+ *                 }
+ *             }
+ *         }
+ *     }
+ * </pre>
+ * <p>
+ * Rows with the same join key hash always end up in the same partition, so each partition can be joined on its own
+ * and each side is only read once from the source, compared to the {@link HashInnerJoinBatchIterator} which has to
+ * re-scan the right side for every block of the left side.
+ * <p>
+ * If the left side of a partition exceeds the max. number of rows per partition (e.g. because the statistics were
+ * outdated or the join keys are skewed), the partition is split into sub-partitions using a different hash seed,
+ * up to {@link #MAX_REPARTITION_DEPTH} times. Partitions which are still too large, for example because all rows
+ * have the same join key, are joined block-wise: the right side of the partition is read once per block of rows of
+ * the left side.
+ * <p>
+ * Partitions are written to {@link SpillFile}s which are created on the first {@link #moveNext()} and deleted on
+ * {@link #close()}.
+ */
+public class GraceHashJoinBatchIterator extends JoinBatchIterator<Row, Row, Row> {
+
+    /**
+     * All partitions of both sides are open for writing at the same time, up to
+     * {@link HashJoinOperation#MAX_GRACE_PARTITIONS} * 2 files, so they use a smaller buffer than
+     * {@link SpillFile#DEFAULT_BUFFER_SIZE} to bound the memory used by the buffers.
+     */
+    static final int PARTITION_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Max. number of times a partition whose left side exceeds the max. number of rows is split into
+     * sub-partitions. Partitions which are still too large afterwards are joined block-wise.
+     */
+    static final int MAX_REPARTITION_DEPTH = 3;
+
+    /**
+     * Added to the hash for each repartitioning, so that the rows of a partition are spread over the
+     * sub-partitions instead of ending up in the same sub-partition again.
+     */
+    private static final int REPARTITION_SEED = 0x9E3779B9;
+
+    private final RowAccounting<Object[]> leftRowAccounting;
+    private final Predicate<Row> joinCondition;
+    private final ToIntFunction<Row> hashBuilderForLeft;
+    private final ToIntFunction<Row> hashBuilderForRight;
+    private final Streamer<?>[] leftStreamers;
+    private final Streamer<?>[] rightStreamers;
+    private final int numPartitions;
+    private final int maxRowsPerPartition;
+    private final Path spillDirectory;
+    private final IntObjectHashMap<List<Object[]>> buffer = new IntObjectHashMap<>();
+    private final List<Partition> partitions = new ArrayList<>();
+
+    private final UnsafeArrayRow leftRow = new UnsafeArrayRow();
+    private final UnsafeArrayRow rightRow = new UnsafeArrayRow();
+
+    private boolean partitioned = false;
+    private int currentPartition = -1;
+    private Iterator<Object[]> leftPartitionRows = Collections.emptyIterator();
+    private Iterator<Object[]> rightPartitionRows = Collections.emptyIterator();
+    private Iterator<Object[]> leftMatchingRowsIterator = null;
+    private volatile Throwable killed;
+
+    /**
+     * @param maxRowsPerPartition max. number of rows of the left side which are loaded into memory at once.
+     *                            Larger partitions are split into sub-partitions or joined block-wise.
+     */
+    public GraceHashJoinBatchIterator(BatchIterator<Row> left,
+                                      BatchIterator<Row> right,
+                                      RowAccounting<Object[]> leftRowAccounting,
+                                      CombinedRow combiner,
+                                      Predicate<Row> joinCondition,
+                                      ToIntFunction<Row> hashBuilderForLeft,
+                                      ToIntFunction<Row> hashBuilderForRight,
+                                      Streamer<?>[] leftStreamers,
+                                      Streamer<?>[] rightStreamers,
+                                      int numPartitions,
+                                      int maxRowsPerPartition,
+                                      Path spillDirectory) {
+        super(left, right, combiner);
+        if (numPartitions <= 0) {
+            throw new IllegalArgumentException("Invalid number of partitions: value must be > 0; got: " + numPartitions);
+        }
+        if (maxRowsPerPartition <= 0) {
+            throw new IllegalArgumentException(
+                "Invalid max. number of rows per partition: value must be > 0; got: " + maxRowsPerPartition);
+        }
+        this.leftRowAccounting = leftRowAccounting;
+        this.joinCondition = joinCondition;
+        this.hashBuilderForLeft = hashBuilderForLeft;
+        this.hashBuilderForRight = hashBuilderForRight;
+        this.leftStreamers = leftStreamers;
+        this.rightStreamers = rightStreamers;
+        this.numPartitions = numPartitions;
+        this.maxRowsPerPartition = maxRowsPerPartition;
+        this.spillDirectory = spillDirectory;
+    }
+
+    @Override
+    public Row currentElement() {
+        return combiner.currentElement();
+    }
+
+    @Override
+    public void moveToStart() {
+        raiseIfKilled();
+        if (partitioned) {
+            // The partitions contain all rows, no need to consume the sources again
+            currentPartition = -1;
+            leftPartitionRows = Collections.emptyIterator();
+            rightPartitionRows = Collections.emptyIterator();
+            leftMatchingRowsIterator = null;
+            resetBuffer();
+        } else {
+            // The partitions are created again on the next moveNext
+            closePartitions();
+            super.moveToStart();
+        }
+    }
+
+    @Override
+    public boolean moveNext() {
+        raiseIfKilled();
+        if (partitioned == false) {
+            if (partitions.isEmpty()) {
+                partitions.addAll(createPartitions(0));
+                currentPartition = -1;
+                leftPartitionRows = Collections.emptyIterator();
+                rightPartitionRows = Collections.emptyIterator();
+                leftMatchingRowsIterator = null;
+            }
+            if (activeIt == left && partition(left, hashBuilderForLeft, true)) {
+                activeIt = right;
+            }
+            if (activeIt == right && partition(right, hashBuilderForRight, false)) {
+                for (Partition partition : partitions) {
+                    partition.finishWriting();
+                }
+                partitioned = true;
+            }
+            if (partitioned == false) {
+                // the active source needs to load the next batch
+                return false;
+            }
+        }
+        return joinPartitions();
+    }
+
+    @Override
+    public void close() {
+        killed = BatchIterator.CLOSED;
+        try {
+            super.close();
+        } finally {
+            resetBuffer();
+            closePartitions();
+        }
+    }
+
+    @Override
+    public void kill(@Nonnull Throwable throwable) {
+        killed = throwable;
+        super.kill(throwable);
+    }
+
+    private void raiseIfKilled() {
+        if (killed != null) {
+            Exceptions.rethrowUnchecked(killed);
+        }
+    }
+
+    /**
+     * Writes all currently available rows of the source into the partitions.
+     *
+     * @return true if the source is fully consumed
+     */
+    private boolean partition(BatchIterator<Row> source, ToIntFunction<Row> hashBuilder, boolean leftSide) {
+        while (source.moveNext()) {
+            Row row = source.currentElement();
+            Partition partition = partitions.get(partitionFor(hashBuilder.applyAsInt(row), numPartitions, 0));
+            (leftSide ? partition.left : partition.right).add(row.materialize());
+        }
+        return source.allLoaded();
+    }
+
+    static int partitionFor(int hash, int numPartitions, int depth) {
+        // the hash is mixed so that the partition doesn't correlate with the buckets of the in-memory buffer
+        return Math.floorMod(BitMixer.mix32(hash + depth * REPARTITION_SEED), numPartitions);
+    }
+
+    private boolean joinPartitions() {
+        while (true) {
+            // In case of multiple matches on the left side (duplicate values or hash collisions)
+            if (leftMatchingRowsIterator != null && findMatchingRows()) {
+                return true;
+            }
+            leftMatchingRowsIterator = null;
+            while (rightPartitionRows.hasNext()) {
+                rightRow.cells(rightPartitionRows.next());
+                List<Object[]> leftMatchingRows = buffer.get(hashBuilderForRight.applyAsInt(rightRow));
+                if (leftMatchingRows != null) {
+                    leftMatchingRowsIterator = leftMatchingRows.iterator();
+                    combiner.setRight(rightRow);
+                    if (findMatchingRows()) {
+                        return true;
+                    }
+                }
+            }
+            if (leftPartitionRows.hasNext()) {
+                // The partition didn't fit into memory, the right side is read again for the next block of the left side
+                loadBlock(partitions.get(currentPartition));
+                continue;
+            }
+            if (currentPartition + 1 >= partitions.size()) {
+                resetBuffer();
+                return false;
+            }
+            currentPartition++;
+            loadPartition(currentPartition);
+        }
+    }
+
+    private void loadPartition(int index) {
+        resetBuffer();
+        Partition partition = partitions.get(index);
+        while (partition.left.numRows() > maxRowsPerPartition
+               && partition.right.numRows() > 0
+               && partition.depth < MAX_REPARTITION_DEPTH) {
+            List<Partition> subPartitions = repartition(partition);
+            partitions.remove(index);
+            partitions.addAll(index, subPartitions);
+            partition = partitions.get(index);
+        }
+        if (partition.right.numRows() == 0) {
+            // nothing can match, no need to build the buffer
+            leftPartitionRows = Collections.emptyIterator();
+            rightPartitionRows = Collections.emptyIterator();
+            return;
+        }
+        leftPartitionRows = partition.left.iterator();
+        loadBlock(partition);
+    }
+
+    /**
+     * Loads up to {@link #maxRowsPerPartition} rows of the left side of the partition into the buffer.
+     */
+    private void loadBlock(Partition partition) {
+        resetBuffer();
+        int numRows = 0;
+        while (numRows < maxRowsPerPartition && leftPartitionRows.hasNext()) {
+            Object[] row = leftPartitionRows.next();
+            leftRowAccounting.accountForAndMaybeBreak(row);
+            int hash = hashBuilderForLeft.applyAsInt(leftRow.cells(row));
+            List<Object[]> existingRows = buffer.get(hash);
+            if (existingRows == null) {
+                existingRows = new ArrayList<>();
+                buffer.put(hash, existingRows);
+            }
+            existingRows.add(row);
+            numRows++;
+        }
+        rightPartitionRows = buffer.isEmpty() ? Collections.emptyIterator() : partition.right.iterator();
+    }
+
+    /**
+     * Splits the partition into sub-partitions using a different hash seed and deletes the files of the partition.
+     * Sub-partitions which still contain all rows of the left side (all rows have the same join key hash) can't be
+     * split any further and are marked as such.
+     */
+    private List<Partition> repartition(Partition partition) {
+        int depth = partition.depth + 1;
+        List<Partition> subPartitions = createPartitions(depth);
+        try {
+            for (Object[] row : partition.left) {
+                int hash = hashBuilderForLeft.applyAsInt(leftRow.cells(row));
+                subPartitions.get(partitionFor(hash, numPartitions, depth)).left.add(row);
+            }
+            for (Object[] row : partition.right) {
+                int hash = hashBuilderForRight.applyAsInt(rightRow.cells(row));
+                subPartitions.get(partitionFor(hash, numPartitions, depth)).right.add(row);
+            }
+            for (Partition subPartition : subPartitions) {
+                subPartition.finishWriting();
+                if (subPartition.left.numRows() == partition.left.numRows()) {
+                    subPartition.depth = MAX_REPARTITION_DEPTH;
+                }
+            }
+        } catch (RuntimeException e) {
+            for (Partition subPartition : subPartitions) {
+                subPartition.close();
+            }
+            throw e;
+        }
+        partition.close();
+        return subPartitions;
+    }
+
+    private boolean findMatchingRows() {
+        while (leftMatchingRowsIterator.hasNext()) {
+            leftRow.cells(leftMatchingRowsIterator.next());
+            combiner.setLeft(leftRow);
+            if (joinCondition.test(combiner.currentElement())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void resetBuffer() {
+        buffer.clear();
+        leftRowAccounting.release();
+    }
+
+    /**
+     * Creates the files for <code>numPartitions</code> partitions.
+     * If creating a file fails, the files which have already been created are deleted.
+     */
+    private List<Partition> createPartitions(int depth) {
+        ArrayList<Partition> newPartitions = new ArrayList<>(numPartitions);
+        try {
+            for (int i = 0; i < numPartitions; i++) {
+                SpillFile leftPartition = SpillFile.create(leftStreamers, spillDirectory, PARTITION_BUFFER_SIZE);
+                SpillFile rightPartition;
+                try {
+                    rightPartition = SpillFile.create(rightStreamers, spillDirectory, PARTITION_BUFFER_SIZE);
+                } catch (RuntimeException e) {
+                    leftPartition.close();
+                    throw e;
+                }
+                newPartitions.add(new Partition(leftPartition, rightPartition, depth));
+            }
+        } catch (RuntimeException e) {
+            for (Partition partition : newPartitions) {
+                partition.close();
+            }
+            throw e;
+        }
+        return newPartitions;
+    }
+
+    private void closePartitions() {
+        for (Partition partition : partitions) {
+            partition.close();
+        }
+        partitions.clear();
+        partitioned = false;
+    }
+
+    private static final class Partition {
+
+        private final SpillFile left;
+        private final SpillFile right;
+        private int depth;
+
+        Partition(SpillFile left, SpillFile right, int depth) {
+            this.left = left;
+            this.right = right;
+            this.depth = depth;
+        }
+
+        void finishWriting() {
+            left.finishWriting();
+            right.finishWriting();
+        }
+
+        void close() {
+            try {
+                left.close();
+            } finally {
+                right.close();
+            }
+        }
+    }
+}
@@ -21,6 +21,7 @@
 
 package io.crate.execution.engine.join;
 
+import io.crate.breaker.RamAccounting;
 import io.crate.breaker.RowAccounting;
 import io.crate.concurrent.CompletionListenable;
 import io.crate.data.BatchIterator;
@@ -33,8 +34,13 @@ import io.crate.execution.engine.collect.CollectExpression;
 import io.crate.expression.InputFactory;
 import io.crate.expression.symbol.Symbol;
 import io.crate.metadata.TransactionContext;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
@@ -42,6 +48,12 @@ import java.util.function.ToIntFunction;
 
 public class HashJoinOperation implements CompletionListenable {
 
+    /**
+     * Upper bound for the number of partitions of a {@link GraceHashJoinBatchIterator}.
+     * Each partition keeps a buffered file open per side while the inputs are partitioned.
+     */
+    static final int MAX_GRACE_PARTITIONS = 256;
+
     private final CapturingRowConsumer leftConsumer;
     private final CapturingRowConsumer rightConsumer;
     private final RowConsumer resultConsumer;
@@ -50,14 +62,19 @@ public class HashJoinOperation implements CompletionListenable {
                              int numRightCols,
                              RowConsumer nlResultConsumer,
                              Predicate<Row> joinPredicate,
+                             JoinType joinType,
                              List<Symbol> joinLeftInputs,
                              List<Symbol> joinRightInputs,
+                             Collection<? extends DataType<?>> leftOutputTypes,
+                             Collection<? extends DataType<?>> rightOutputTypes,
                              RowAccounting<Object[]> rowAccounting,
+                             RamAccounting ramAccounting,
                              TransactionContext txnCtx,
                              InputFactory inputFactory,
                              CircuitBreaker circuitBreaker,
                              long estimatedRowSizeForLeft,
-                             long numberOfRowsForLeft) {
+                             long numberOfRowsForLeft,
+                             Path spillDirectory) {
 
         this.resultConsumer = nlResultConsumer;
         this.leftConsumer = new CapturingRowConsumer(nlResultConsumer.requiresScroll(), nlResultConsumer.completionFuture());
@@ -67,22 +84,50 @@ public class HashJoinOperation implements CompletionListenable {
                 if (failure == null) {
                     BatchIterator<Row> joinIterator;
                     try {
-                        joinIterator = createHashJoinIterator(
-                            leftConsumer.capturedBatchIterator().join(),
-                            numLeftCols,
-                            rightConsumer.capturedBatchIterator().join(),
-                            numRightCols,
-                            joinPredicate,
-                            getHashBuilderFromSymbols(txnCtx, inputFactory, joinLeftInputs),
-                            getHashBuilderFromSymbols(txnCtx, inputFactory, joinRightInputs),
-                            rowAccounting,
-                            new RamBlockSizeCalculator(
-                                Paging.PAGE_SIZE,
-                                circuitBreaker,
-                                estimatedRowSizeForLeft,
-                                numberOfRowsForLeft
-                            )
-                        );
+                        BatchIterator<Row> left = leftConsumer.capturedBatchIterator().join();
+                        BatchIterator<Row> right = rightConsumer.capturedBatchIterator().join();
+                        ToIntFunction<Row> hashBuilderForLeft = getHashBuilderFromSymbols(txnCtx, inputFactory, joinLeftInputs);
+                        ToIntFunction<Row> hashBuilderForRight = getHashBuilderFromSymbols(txnCtx, inputFactory, joinRightInputs);
+                        // rightOutputTypes is empty if the phase was created by a node which doesn't provide them
+                        // The grace hash join only supports inner joins
+                        int numPartitions = rightOutputTypes.isEmpty() || joinType != JoinType.INNER
+                            ? 0
+                            : numGracePartitions(circuitBreaker, estimatedRowSizeForLeft, numberOfRowsForLeft);
+                        if (numPartitions > 0) {
+                            joinIterator = new GraceHashJoinBatchIterator(
+                                left,
+                                right,
+                                rowAccounting,
+                                new CombinedRow(numLeftCols, numRightCols),
+                                joinPredicate,
+                                hashBuilderForLeft,
+                                hashBuilderForRight,
+                                DataTypes.getStreamers(leftOutputTypes),
+                                DataTypes.getStreamers(rightOutputTypes),
+                                numPartitions,
+                                maxGracePartitionRows(circuitBreaker, estimatedRowSizeForLeft),
+                                spillDirectory
+                            );
+                        } else {
+                            joinIterator = createHashJoinIterator(
+                                left,
+                                numLeftCols,
+                                right,
+                                numRightCols,
+                                joinPredicate,
+                                joinType,
+                                hashBuilderForLeft,
+                                hashBuilderForRight,
+                                rowAccounting,
+                                ramAccounting,
+                                new RamBlockSizeCalculator(
+                                    Paging.PAGE_SIZE,
+                                    circuitBreaker,
+                                    estimatedRowSizeForLeft,
+                                    numberOfRowsForLeft
+                                )
+                            );
+                        }
                         nlResultConsumer.accept(joinIterator, null);
                     } catch (Exception e) {
                         nlResultConsumer.accept(null, e);
@@ -106,6 +151,40 @@ public class HashJoinOperation implements CompletionListenable {
         return rightConsumer;
     }
 
+    /**
+     * Decides, based on the table statistics, whether the left side is expected to fit into the available memory.
+     * If not, the join is executed as grace hash join with enough partitions to make each partition of the left
+     * side fit into half of the available memory.
+     *
+     * @return the number of partitions for a {@link GraceHashJoinBatchIterator},
+     *         or 0 if the left side fits into memory or no statistics are available.
+     */
+    static int numGracePartitions(CircuitBreaker circuitBreaker,
+                                  long estimatedRowSizeForLeft,
+                                  long numberOfRowsForLeft) {
+        if (estimatedRowSizeForLeft <= 0 || numberOfRowsForLeft <= 0 || circuitBreaker.getLimit() == -1) {
+            return 0;
+        }
+        long availableMemory = Math.max(circuitBreaker.getLimit() - circuitBreaker.getUsed(), 0L);
+        double requiredMemory = (double) estimatedRowSizeForLeft * numberOfRowsForLeft;
+        if (requiredMemory <= availableMemory) {
+            return 0;
+        }
+        double memoryPerPartition = Math.max(availableMemory / 2, 1L);
+        long numPartitions = (long) Math.ceil(requiredMemory / memoryPerPartition);
+        return (int) Math.max(2L, Math.min(numPartitions, MAX_GRACE_PARTITIONS));
+    }
+
+    /**
+     * @return the number of rows of the left side of a {@link GraceHashJoinBatchIterator} partition which fit into
+     *         half of the available memory.
+     */
+    static int maxGracePartitionRows(CircuitBreaker circuitBreaker, long estimatedRowSizeForLeft) {
+        long availableMemory = Math.max(circuitBreaker.getLimit() - circuitBreaker.getUsed(), 0L);
+        long memoryPerPartition = Math.max(availableMemory / 2, 1L);
+        return (int) Math.max(1L, Math.min(memoryPerPartition / estimatedRowSizeForLeft, Integer.MAX_VALUE));
+    }
+
     private static ToIntFunction<Row> getHashBuilderFromSymbols(TransactionContext txnCtx,
                                                                 InputFactory inputFactory,
                                                                 List<Symbol> inputs) {
@@ -130,11 +209,26 @@ public class HashJoinOperation implements CompletionListenable {
                                                              BatchIterator<Row> right,
                                                              int rightNumCols,
                                                              Predicate<Row> joinCondition,
+                                                             JoinType joinType,
                                                              ToIntFunction<Row> hashBuilderForLeft,
                                                              ToIntFunction<Row> hashBuilderForRight,
                                                              RowAccounting<Object[]> rowAccounting,
+                                                             RamAccounting ramAccounting,
                                                              RamBlockSizeCalculator blockSizeCalculator) {
         CombinedRow combiner = new CombinedRow(leftNumCols, rightNumCols);
+        if (joinType != JoinType.INNER) {
+            return new HashOuterJoinBatchIterator(
+                left,
+                right,
+                rowAccounting,
+                ramAccounting,
+                combiner,
+                joinCondition,
+                hashBuilderForLeft,
+                hashBuilderForRight,
+                blockSizeCalculator,
+                joinType);
+        }
         return new HashInnerJoinBatchIterator(
             left,
             right,
@@ -0,0 +1,353 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.join;
+
+import com.carrotsearch.hppc.IntArrayList;
+import io.crate.breaker.RamAccounting;
+import io.crate.breaker.RowAccounting;
+import io.crate.data.BatchIterator;
+import io.crate.data.Paging;
+import io.crate.data.Row;
+import io.crate.data.UnsafeArrayRow;
+import io.crate.data.join.CombinedRow;
+import io.crate.data.join.JoinBatchIterator;
+import io.crate.planner.node.dql.join.JoinType;
+import io.netty.util.collection.IntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.CompletionStage;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Hash join for the {@link JoinType#LEFT}, {@link JoinType#RIGHT}, {@link JoinType#FULL}, {@link JoinType#SEMI}
+ * and {@link JoinType#ANTI} join types.
+ * <p>
+ * Like the {@link HashInnerJoinBatchIterator}, the left side is the build side which is read into a buffer in
+ * blocks and the right side is scanned once per block:
+ *
+ * <pre>
+ *     for (block in blocks(left)) {
+ *         for (rightRow in right) {
+ *             for (leftRow in block with hash(rightRow)) {
+ *                 if (joinCondition matches) {
+ *                     mark leftRow and rightRow as matched
+ *                     emit(leftRow, rightRow)          // not for SEMI/ANTI
+ *                 }
+ *             }
+ *             if (last block and rightRow never matched) {
+ *                 emit(null, rightRow)                 // RIGHT/FULL
+ *             }
+ *         }
+ *         for (leftRow in block) {
+ *             emit(leftRow, null) if not matched       // LEFT/FULL
+ *             emit(leftRow) if matched                 // SEMI
+ *             emit(leftRow) if not matched             // ANTI
+ *         }
+ *     }
+ * </pre>
+ * <p>
+ * Whether a right row matched in any of the previous blocks is tracked by its position within the right side, which
+ * is stable because the right side is re-read in the same order for every block. This costs one bit per right row,
+ * which is accounted for with a separate {@link RamAccounting} because the row accounting is released per block.
+ * <p>
+ * SEMI and ANTI joins only output the columns of the left side.
+ * Rows with a join condition evaluating to NULL don't match, so the ANTI join has the semantics of {@code NOT EXISTS}.
+ */
+public class HashOuterJoinBatchIterator extends JoinBatchIterator<Row, Row, Row> {
+
+    private static final IntArrayList NO_CANDIDATES = new IntArrayList(0);
+
+    private enum Phase {
+        BUILD,
+        PROBE,
+        EMIT_BUFFERED,
+        DONE
+    }
+
+    private final RowAccounting<Object[]> leftRowAccounting;
+    private final RamAccounting ramAccounting;
+    private final Predicate<Row> joinCondition;
+    private final ToIntFunction<Row> hashBuilderForLeft;
+    private final ToIntFunction<Row> hashBuilderForRight;
+    private final IntSupplier calculateBlockSize;
+    private final JoinType joinType;
+    private final boolean emitUnmatchedRight;
+    private final boolean leftOutputsOnly;
+
+    private final ArrayList<Object[]> bufferedRows = new ArrayList<>();
+    private final IntObjectHashMap<IntArrayList> buffer = new IntObjectHashMap<>();
+    private final BitSet matchedLeft = new BitSet();
+    private final BitSet matchedRight = new BitSet();
+    private long accountedMatchedRightBits = 0;
+    private final UnsafeArrayRow leftRow = new UnsafeArrayRow();
+    private final UnsafeArrayRow unsafeArrayRow = new UnsafeArrayRow();
+
+    private Phase phase;
+    private int blockSize;
+    private boolean leftBatchHasItems = false;
+    private int numberOfLeftBatchesForBlock;
+    private int numberOfLeftBatchesLoadedForBlock;
+    private boolean lastBlock;
+
+    private int rightPos;
+    private boolean rightMatched;
+    private IntArrayList candidates;
+    private int candidatePos;
+    private int emitPos;
+
+    public HashOuterJoinBatchIterator(BatchIterator<Row> left,
+                                      BatchIterator<Row> right,
+                                      RowAccounting<Object[]> leftRowAccounting,
+                                      RamAccounting ramAccounting,
+                                      CombinedRow combiner,
+                                      Predicate<Row> joinCondition,
+                                      ToIntFunction<Row> hashBuilderForLeft,
+                                      ToIntFunction<Row> hashBuilderForRight,
+                                      IntSupplier calculateBlockSize,
+                                      JoinType joinType) {
+        super(left, right, combiner);
+        assert joinType != JoinType.INNER && joinType != JoinType.CROSS
+            : "Use the HashInnerJoinBatchIterator for join type " + joinType;
+        this.leftRowAccounting = leftRowAccounting;
+        this.ramAccounting = ramAccounting;
+        this.joinCondition = joinCondition;
+        this.hashBuilderForLeft = hashBuilderForLeft;
+        this.hashBuilderForRight = hashBuilderForRight;
+        this.calculateBlockSize = calculateBlockSize;
+        this.joinType = joinType;
+        this.emitUnmatchedRight = joinType == JoinType.RIGHT || joinType == JoinType.FULL;
+        this.leftOutputsOnly = joinType == JoinType.SEMI || joinType == JoinType.ANTI;
+        start();
+    }
+
+    private void start() {
+        phase = Phase.BUILD;
+        activeIt = left;
+        leftBatchHasItems = false;
+        matchedRight.clear();
+        resetBuffer();
+    }
+
+    @Override
+    public Row currentElement() {
+        if (leftOutputsOnly) {
+            return leftRow;
+        }
+        return combiner.currentElement();
+    }
+
+    @Override
+    public void moveToStart() {
+        left.moveToStart();
+        right.moveToStart();
+        start();
+    }
+
+    @Override
+    public CompletionStage<?> loadNextBatch() throws Exception {
+        if (activeIt == left) {
+            numberOfLeftBatchesLoadedForBlock++;
+        }
+        return super.loadNextBatch();
+    }
+
+    @Override
+    public boolean moveNext() {
+        while (true) {
+            switch (phase) {
+                case BUILD:
+                    if (buildBuffer() == false) {
+                        activeIt = left;
+                        return false;
+                    }
+                    activeIt = right;
+                    phase = bufferedRows.isEmpty() && (emitUnmatchedRight == false || lastBlock == false)
+                        ? Phase.EMIT_BUFFERED
+                        : Phase.PROBE;
+                    break;
+
+                case PROBE:
+                    if (probe()) {
+                        return true;
+                    }
+                    if (right.allLoaded() == false) {
+                        return false;
+                    }
+                    emitPos = 0;
+                    phase = Phase.EMIT_BUFFERED;
+                    break;
+
+                case EMIT_BUFFERED:
+                    if (emitBuffered()) {
+                        return true;
+                    }
+                    if (lastBlock) {
+                        // the left side is fully loaded, so allLoaded() reports true from now on
+                        activeIt = left;
+                        phase = Phase.DONE;
+                        return false;
+                    }
+                    right.moveToStart();
+                    resetBuffer();
+                    phase = Phase.BUILD;
+                    break;
+
+                case DONE:
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private void resetBuffer() {
+        blockSize = calculateBlockSize.getAsInt();
+        buffer.clear();
+        bufferedRows.clear();
+        matchedLeft.clear();
+        leftRowAccounting.release();
+        rightPos = -1;
+        candidates = null;
+        lastBlock = false;
+
+        // A batch is not guaranteed to deliver PAGE_SIZE number of rows, see HashInnerJoinBatchIterator
+        numberOfLeftBatchesForBlock = Math.max(1, (int) Math.ceil((double) blockSize / Paging.PAGE_SIZE));
+        numberOfLeftBatchesLoadedForBlock = leftBatchHasItems ? 1 : 0;
+    }
+
+    /**
+     * @return true if the block is complete, false if the next batch of the left side must be loaded.
+     */
+    private boolean buildBuffer() {
+        while (leftBatchHasItems = left.moveNext()) {
+            Object[] row = left.currentElement().materialize();
+            leftRowAccounting.accountForAndMaybeBreak(row);
+            int hash = hashBuilderForLeft.applyAsInt(unsafeArrayRow.cells(row));
+            IntArrayList positions = buffer.get(hash);
+            if (positions == null) {
+                positions = new IntArrayList(1);
+                buffer.put(hash, positions);
+            }
+            positions.add(bufferedRows.size());
+            bufferedRows.add(row);
+            if (bufferedRows.size() == blockSize) {
+                break;
+            }
+        }
+        if (leftBatchHasItems == false
+            && left.allLoaded() == false
+            && numberOfLeftBatchesLoadedForBlock < numberOfLeftBatchesForBlock) {
+            return false;
+        }
+        lastBlock = leftBatchHasItems == false && left.allLoaded();
+        return true;
+    }
+
+    private void setMatchedRight(int pos) {
+        matchedRight.set(pos);
+        // The bit set grows in words and never shrinks, clear() keeps the capacity
+        long bits = matchedRight.size();
+        if (bits > accountedMatchedRightBits) {
+            ramAccounting.addBytes((bits - accountedMatchedRightBits) / Byte.SIZE);
+            accountedMatchedRightBits = bits;
+        }
+    }
+
+    /**
+     * @return true if a row must be emitted, false if the right side is exhausted or must load the next batch.
+     */
+    private boolean probe() {
+        while (true) {
+            if (candidates != null) {
+                while (candidatePos < candidates.size()) {
+                    int pos = candidates.get(candidatePos);
+                    candidatePos++;
+                    if (leftOutputsOnly && matchedLeft.get(pos)) {
+                        continue;
+                    }
+                    leftRow.cells(bufferedRows.get(pos));
+                    combiner.setLeft(leftRow);
+                    if (joinCondition.test(combiner.currentElement())) {
+                        rightMatched = true;
+                        matchedLeft.set(pos);
+                        if (leftOutputsOnly == false) {
+                            return true;
+                        }
+                    }
+                }
+                candidates = null;
+                if (emitUnmatchedRight) {
+                    if (rightMatched) {
+                        setMatchedRight(rightPos);
+                    } else if (lastBlock && matchedRight.get(rightPos) == false) {
+                        combiner.nullLeft();
+                        return true;
+                    }
+                }
+            }
+            if (right.moveNext() == false) {
+                return false;
+            }
+            rightPos++;
+            rightMatched = false;
+            Row row = right.currentElement();
+            combiner.setRight(row);
+            candidates = buffer.get(hashBuilderForRight.applyAsInt(row));
+            if (candidates == null) {
+                candidates = NO_CANDIDATES;
+            }
+            candidatePos = 0;
+        }
+    }
+
+    /**
+     * Emits the rows of the current block which are part of the result independent of the right side.
+     */
+    private boolean emitBuffered() {
+        int pos;
+        switch (joinType) {
+            case LEFT:
+            case FULL:
+            case ANTI:
+                pos = matchedLeft.nextClearBit(emitPos);
+                break;
+
+            case SEMI:
+                pos = matchedLeft.nextSetBit(emitPos);
+                break;
+
+            default:
+                return false;
+        }
+        if (pos < 0 || pos >= bufferedRows.size()) {
+            return false;
+        }
+        emitPos = pos + 1;
+        leftRow.cells(bufferedRows.get(pos));
+        combiner.setLeft(leftRow);
+        combiner.nullRight();
+        return true;
+    }
+}
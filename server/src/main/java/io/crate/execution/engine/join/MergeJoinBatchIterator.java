@@ -0,0 +1,340 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.join;
+
+import io.crate.breaker.RowAccounting;
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.data.UnsafeArrayRow;
+import io.crate.data.join.CombinedRow;
+import io.crate.data.join.JoinBatchIterator;
+import io.crate.planner.node.dql.join.JoinType;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Join of two inputs which are both sorted ascending by their join keys, with nulls last.
+ *
+ * <pre>
+ *     group = next rows of right with the same key
+ *     for (leftRow in left) {
+ *         while (key(group) < key(leftRow)) {
+ *             onRow (left-side-null) for all non matched rows in group    // RIGHT / FULL
+ *             group = next rows of right with the same key
+ *         }
+ *         if (key(group) == key(leftRow)) {
+ *             for (rightRow in group) {
+ *                 match?
+ *                   onRow
+ *             }
+ *         }
+ *         if (noMatches) {
+ *             onRow (right-side-null)                                      // LEFT / FULL
+ *         }
+ *     }
+ *     onRow (left-side-null) for all non matched rows of the remaining groups   // RIGHT / FULL
+ * </pre>
+ *
+ * Only the rows of the right side which share the same key are kept in memory, both sides are
+ * otherwise consumed in a streaming fashion.
+ * <p>
+ * Keys containing a null value never match.
+ * The join condition is evaluated on top of the key comparison, so that it can contain further
+ * conditions which are not covered by the keys.
+ */
+public class MergeJoinBatchIterator extends JoinBatchIterator<Row, Row, Row> {
+
+    private final RowAccounting<Object[]> rightRowAccounting;
+    private final Predicate<Row> joinCondition;
+    private final Function<Row, Object[]> leftKeys;
+    private final Function<Row, Object[]> rightKeys;
+    private final Comparator<Object[]> keyComparator;
+    private final boolean emitUnmatchedLeft;
+    private final boolean emitUnmatchedRight;
+
+    /**
+     * Rows of the right side sharing the same key
+     */
+    private final ArrayList<Object[]> group = new ArrayList<>();
+    private final BitSet matchedInGroup = new BitSet();
+    private final UnsafeArrayRow rightRow = new UnsafeArrayRow();
+
+    @Nullable
+    private Object[] groupKey;
+    private boolean groupComplete = false;
+
+    /**
+     * First row of the right side with a key different to the current group
+     */
+    @Nullable
+    private Object[] nextRightRow;
+    @Nullable
+    private Object[] nextRightKey;
+    private boolean rightExhausted = false;
+
+    /**
+     * Key of the current row of the left side, null if the next left row must be retrieved
+     */
+    @Nullable
+    private Object[] leftKey;
+    private boolean leftMatched = false;
+    private boolean leftExhausted = false;
+
+    /**
+     * Position in {@link #group} while the current left row is matched against the group, otherwise -1
+     */
+    private int groupPos = -1;
+
+    /**
+     * Position in {@link #group} while non-matched rows of the group are emitted, otherwise -1
+     */
+    private int unmatchedGroupPos = -1;
+    private boolean finished = false;
+
+    public MergeJoinBatchIterator(BatchIterator<Row> left,
+                                  BatchIterator<Row> right,
+                                  RowAccounting<Object[]> rightRowAccounting,
+                                  CombinedRow combiner,
+                                  Predicate<Row> joinCondition,
+                                  Function<Row, Object[]> leftKeys,
+                                  Function<Row, Object[]> rightKeys,
+                                  Comparator<Object[]> keyComparator,
+                                  JoinType joinType) {
+        super(left, right, combiner);
+        assert joinType == JoinType.INNER || joinType.isOuter() : "Merge join doesn't support join type " + joinType;
+        this.rightRowAccounting = rightRowAccounting;
+        this.joinCondition = joinCondition;
+        this.leftKeys = leftKeys;
+        this.rightKeys = rightKeys;
+        this.keyComparator = keyComparator;
+        this.emitUnmatchedLeft = joinType == JoinType.LEFT || joinType == JoinType.FULL;
+        this.emitUnmatchedRight = joinType == JoinType.RIGHT || joinType == JoinType.FULL;
+    }
+
+    @Override
+    public void moveToStart() {
+        super.moveToStart();
+        clearGroup();
+        groupComplete = false;
+        nextRightRow = null;
+        nextRightKey = null;
+        rightExhausted = false;
+        leftKey = null;
+        leftMatched = false;
+        leftExhausted = false;
+        groupPos = -1;
+        unmatchedGroupPos = -1;
+        finished = false;
+    }
+
+    @Override
+    public CompletionStage<?> loadNextBatch() throws Exception {
+        if (finished) {
+            throw new IllegalStateException("BatchIterator already fully loaded");
+        }
+        return super.loadNextBatch();
+    }
+
+    @Override
+    public boolean allLoaded() {
+        return finished || super.allLoaded();
+    }
+
+    @Override
+    public boolean moveNext() {
+        if (finished) {
+            return false;
+        }
+        while (true) {
+            if (unmatchedGroupPos >= 0) {
+                if (emitUnmatchedOfGroup()) {
+                    return true;
+                }
+                unmatchedGroupPos = -1;
+                startNextGroup();
+            }
+            if (groupPos >= 0) {
+                if (matchLeftWithGroup()) {
+                    return true;
+                }
+                groupPos = -1;
+                leftKey = null;
+                if (leftMatched == false && emitUnmatchedLeft) {
+                    return emitLeftWithoutMatch();
+                }
+            }
+            if (leftKey == null && leftExhausted == false) {
+                if (left.moveNext()) {
+                    leftKey = leftKeys.apply(left.currentElement());
+                    leftMatched = false;
+                } else if (left.allLoaded()) {
+                    leftExhausted = true;
+                } else {
+                    activeIt = left;
+                    return false;
+                }
+            }
+            if (groupComplete == false && fillGroup() == false) {
+                activeIt = right;
+                return false;
+            }
+            if (group.isEmpty()) {
+                // right side is exhausted, only non-matching left rows are remaining
+                if (leftExhausted || emitUnmatchedLeft == false) {
+                    finished = true;
+                    return false;
+                }
+                leftKey = null;
+                return emitLeftWithoutMatch();
+            }
+            if (leftExhausted) {
+                if (emitUnmatchedRight == false) {
+                    finished = true;
+                    return false;
+                }
+                unmatchedGroupPos = 0;
+                continue;
+            }
+            int cmp = keyComparator.compare(leftKey, groupKey);
+            if (cmp > 0) {
+                discardGroup();
+            } else if (cmp == 0 && containsNoNull(leftKey)) {
+                groupPos = 0;
+                combiner.setLeft(left.currentElement());
+            } else {
+                leftKey = null;
+                if (emitUnmatchedLeft) {
+                    return emitLeftWithoutMatch();
+                }
+            }
+        }
+    }
+
+    private boolean matchLeftWithGroup() {
+        while (groupPos < group.size()) {
+            int pos = groupPos;
+            groupPos++;
+            combiner.setRight(rightRow.cells(group.get(pos)));
+            if (joinCondition.test(combiner.currentElement())) {
+                leftMatched = true;
+                matchedInGroup.set(pos);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean emitLeftWithoutMatch() {
+        combiner.setLeft(left.currentElement());
+        combiner.nullRight();
+        return true;
+    }
+
+    private boolean emitUnmatchedOfGroup() {
+        int pos = matchedInGroup.nextClearBit(unmatchedGroupPos);
+        if (pos < group.size()) {
+            unmatchedGroupPos = pos + 1;
+            combiner.nullLeft();
+            combiner.setRight(rightRow.cells(group.get(pos)));
+            return true;
+        }
+        return false;
+    }
+
+    private void discardGroup() {
+        if (emitUnmatchedRight) {
+            unmatchedGroupPos = 0;
+        } else {
+            startNextGroup();
+        }
+    }
+
+    /**
+     * Reads rows of the right side into the current group until a row with a different key is found.
+     *
+     * @return true if the group is complete, false if the next batch of the right side must be loaded.
+     */
+    private boolean fillGroup() {
+        while (right.moveNext()) {
+            Row row = right.currentElement();
+            Object[] key = rightKeys.apply(row);
+            if (group.isEmpty()) {
+                groupKey = key;
+                addToGroup(row.materialize());
+            } else if (keyComparator.compare(groupKey, key) == 0) {
+                addToGroup(row.materialize());
+            } else {
+                nextRightRow = row.materialize();
+                nextRightKey = key;
+                groupComplete = true;
+                return true;
+            }
+        }
+        if (right.allLoaded()) {
+            rightExhausted = true;
+            groupComplete = true;
+            return true;
+        }
+        return false;
+    }
+
+    private void startNextGroup() {
+        clearGroup();
+        if (nextRightRow != null) {
+            groupKey = nextRightKey;
+            addToGroup(nextRightRow);
+            nextRightRow = null;
+            nextRightKey = null;
+            groupComplete = false;
+        } else {
+            groupComplete = rightExhausted;
+        }
+    }
+
+    private void addToGroup(Object[] row) {
+        rightRowAccounting.accountForAndMaybeBreak(row);
+        group.add(row);
+    }
+
+    private void clearGroup() {
+        group.clear();
+        matchedInGroup.clear();
+        groupKey = null;
+        rightRowAccounting.release();
+    }
+
+    private static boolean containsNoNull(Object[] key) {
+        for (Object value : key) {
+            if (value == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.join;
+
+import io.crate.breaker.RowAccounting;
+import io.crate.concurrent.CompletionListenable;
+import io.crate.data.BatchIterator;
+import io.crate.data.CapturingRowConsumer;
+import io.crate.data.Row;
+import io.crate.data.RowConsumer;
+import io.crate.data.join.CombinedRow;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.execution.engine.sort.OrderingByPosition;
+import io.crate.expression.InputFactory;
+import io.crate.expression.symbol.Symbol;
+import io.crate.metadata.TransactionContext;
+import io.crate.planner.node.dql.join.JoinType;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+public class MergeJoinOperation implements CompletionListenable {
+
+    private final CapturingRowConsumer leftConsumer;
+    private final CapturingRowConsumer rightConsumer;
+    private final RowConsumer resultConsumer;
+
+    public MergeJoinOperation(int numLeftCols,
+                              int numRightCols,
+                              RowConsumer resultConsumer,
+                              Predicate<Row> joinPredicate,
+                              JoinType joinType,
+                              List<Symbol> joinLeftInputs,
+                              List<Symbol> joinRightInputs,
+                              RowAccounting<Object[]> rowAccounting,
+                              TransactionContext txnCtx,
+                              InputFactory inputFactory) {
+        this.resultConsumer = resultConsumer;
+        this.leftConsumer = new CapturingRowConsumer(resultConsumer.requiresScroll(), resultConsumer.completionFuture());
+        // Unlike the other join algorithms, the right side is only read once and doesn't need to support moveToStart
+        this.rightConsumer = new CapturingRowConsumer(resultConsumer.requiresScroll(), resultConsumer.completionFuture());
+        CompletableFuture.allOf(leftConsumer.capturedBatchIterator(), rightConsumer.capturedBatchIterator())
+            .whenComplete((result, failure) -> {
+                if (failure == null) {
+                    BatchIterator<Row> joinIterator;
+                    try {
+                        joinIterator = new MergeJoinBatchIterator(
+                            leftConsumer.capturedBatchIterator().join(),
+                            rightConsumer.capturedBatchIterator().join(),
+                            rowAccounting,
+                            new CombinedRow(numLeftCols, numRightCols),
+                            joinPredicate,
+                            getKeysFromSymbols(txnCtx, inputFactory, joinLeftInputs),
+                            getKeysFromSymbols(txnCtx, inputFactory, joinRightInputs),
+                            keyComparator(joinLeftInputs.size()),
+                            joinType
+                        );
+                        resultConsumer.accept(joinIterator, null);
+                    } catch (Exception e) {
+                        resultConsumer.accept(null, e);
+                    }
+                } else {
+                    resultConsumer.accept(null, failure);
+                }
+            });
+    }
+
+    @Override
+    public CompletableFuture<?> completionFuture() {
+        return resultConsumer.completionFuture();
+    }
+
+    public RowConsumer leftConsumer() {
+        return leftConsumer;
+    }
+
+    public RowConsumer rightConsumer() {
+        return rightConsumer;
+    }
+
+    /**
+     * The inputs are sorted ascending with nulls last by the keys, the keys must be compared the same way.
+     */
+    static Comparator<Object[]> keyComparator(int numKeys) {
+        int[] positions = new int[numKeys];
+        for (int i = 0; i < numKeys; i++) {
+            positions[i] = i;
+        }
+        return OrderingByPosition.arrayOrdering(positions, new boolean[numKeys], new boolean[numKeys]);
+    }
+
+    private static Function<Row, Object[]> getKeysFromSymbols(TransactionContext txnCtx,
+                                                               InputFactory inputFactory,
+                                                               List<Symbol> inputs) {
+        InputFactory.Context<? extends CollectExpression<Row, ?>> ctx = inputFactory.ctxForInputColumns(txnCtx, inputs);
+        var topLevelInputs = ctx.topLevelInputs();
+        var expressions = ctx.expressions();
+        return row -> {
+            for (int i = 0; i < expressions.size(); i++) {
+                expressions.get(i).setNextRow(row);
+            }
+            Object[] keys = new Object[topLevelInputs.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = topLevelInputs.get(i).value();
+            }
+            return keys;
+        };
+    }
+}
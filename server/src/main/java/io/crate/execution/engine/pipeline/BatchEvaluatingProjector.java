@@ -0,0 +1,255 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.pipeline;
+
+import io.crate.data.ArrayRow;
+import io.crate.data.BatchIterator;
+import io.crate.data.Projector;
+import io.crate.data.Row;
+import io.crate.exceptions.Exceptions;
+import io.crate.expression.batch.BatchExpression;
+import io.crate.expression.batch.BooleanVector;
+import io.crate.expression.batch.ColumnVector;
+import io.crate.expression.batch.RowBatch;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Projector which evaluates a filter or scalars on batches of {@link RowBatch#CAPACITY} rows using {@link BatchExpression}s.
+ * This is used instead of {@link FilterProjector} and {@link InputRowProjector} if all functions support batch evaluation.
+ *
+ * If the batch evaluation fails (e.g. due to an overflow or a division by zero in a row), the rows of that batch
+ * are evaluated row-by-row when they're emitted. This ensures that errors are raised for the same rows
+ * as with the row-by-row evaluation, even if a consumer stops early.
+ */
+final class BatchEvaluatingProjector implements Projector {
+
+    @Nullable
+    private final BatchExpression<BooleanVector> filter;
+    @Nullable
+    private final Predicate<Row> rowFilter;
+    @Nullable
+    private final List<BatchExpression<?>> outputs;
+    @Nullable
+    private final Function<Row, Row> rowMapper;
+
+    private BatchEvaluatingProjector(@Nullable BatchExpression<BooleanVector> filter,
+                                     @Nullable Predicate<Row> rowFilter,
+                                     @Nullable List<BatchExpression<?>> outputs,
+                                     @Nullable Function<Row, Row> rowMapper) {
+        this.filter = filter;
+        this.rowFilter = rowFilter;
+        this.outputs = outputs;
+        this.rowMapper = rowMapper;
+    }
+
+    static BatchEvaluatingProjector filter(BatchExpression<BooleanVector> filter, Predicate<Row> rowFilter) {
+        return new BatchEvaluatingProjector(filter, rowFilter, null, null);
+    }
+
+    static BatchEvaluatingProjector eval(List<BatchExpression<?>> outputs, Function<Row, Row> rowMapper) {
+        return new BatchEvaluatingProjector(null, null, outputs, rowMapper);
+    }
+
+    @Override
+    public BatchIterator<Row> apply(BatchIterator<Row> batchIterator) {
+        return new BatchEvaluatingIterator(batchIterator, filter, rowFilter, outputs, rowMapper);
+    }
+
+    @Override
+    public boolean providesIndependentScroll() {
+        return false;
+    }
+
+    static final class BatchEvaluatingIterator implements BatchIterator<Row> {
+
+        private final BatchIterator<Row> source;
+        private final RowBatch batch = new RowBatch();
+        private final ArrayRow inputRow = new ArrayRow();
+
+        @Nullable
+        private final BatchExpression<BooleanVector> filter;
+        @Nullable
+        private final Predicate<Row> rowFilter;
+        @Nullable
+        private final List<BatchExpression<?>> outputs;
+        @Nullable
+        private final Function<Row, Row> rowMapper;
+
+        private final ColumnVector[] outputVectors;
+        private final Object[] outputCells;
+        private final ArrayRow outputRow = new ArrayRow();
+
+        @Nullable
+        private BooleanVector matches;
+        private boolean rowByRow = false;
+        private boolean sourceExhausted = false;
+        private int position = -1;
+        private Row current;
+        private boolean closed = false;
+        @Nullable
+        private Throwable killed;
+
+        BatchEvaluatingIterator(BatchIterator<Row> source,
+                                @Nullable BatchExpression<BooleanVector> filter,
+                                @Nullable Predicate<Row> rowFilter,
+                                @Nullable List<BatchExpression<?>> outputs,
+                                @Nullable Function<Row, Row> rowMapper) {
+            assert (filter == null) != (outputs == null) : "Must either have a filter or outputs";
+            this.source = source;
+            this.filter = filter;
+            this.rowFilter = rowFilter;
+            this.outputs = outputs;
+            this.rowMapper = rowMapper;
+            int numOutputs = outputs == null ? 0 : outputs.size();
+            this.outputVectors = new ColumnVector[numOutputs];
+            this.outputCells = new Object[numOutputs];
+            this.outputRow.cells(outputCells);
+        }
+
+        @Override
+        public Row currentElement() {
+            return current;
+        }
+
+        @Override
+        public void moveToStart() {
+            raiseIfClosedOrKilled();
+            source.moveToStart();
+            batch.clear();
+            position = -1;
+            sourceExhausted = false;
+        }
+
+        @Override
+        public boolean moveNext() {
+            raiseIfClosedOrKilled();
+            while (true) {
+                while (++position < batch.size()) {
+                    if (emit(position)) {
+                        return true;
+                    }
+                }
+                if (sourceExhausted) {
+                    // Propagate the end of the current source batch so that the consumer calls loadNextBatch
+                    sourceExhausted = false;
+                    return false;
+                }
+                fill();
+            }
+        }
+
+        private void fill() {
+            batch.clear();
+            position = -1;
+            while (!batch.isFull()) {
+                if (!source.moveNext()) {
+                    sourceExhausted = true;
+                    break;
+                }
+                batch.add(source.currentElement());
+            }
+            if (batch.size() == 0) {
+                return;
+            }
+            rowByRow = false;
+            try {
+                if (filter == null) {
+                    for (int i = 0; i < outputVectors.length; i++) {
+                        outputVectors[i] = outputs.get(i).evaluate(batch);
+                    }
+                } else {
+                    matches = filter.evaluate(batch);
+                }
+            } catch (RuntimeException e) {
+                rowByRow = true;
+            }
+        }
+
+        private boolean emit(int idx) {
+            if (rowByRow) {
+                inputRow.cells(batch.cells(idx));
+                if (filter == null) {
+                    current = rowMapper.apply(inputRow);
+                    return true;
+                }
+                current = inputRow;
+                return rowFilter.test(inputRow);
+            }
+            if (filter == null) {
+                for (int i = 0; i < outputVectors.length; i++) {
+                    outputCells[i] = outputVectors[i].get(idx);
+                }
+                current = outputRow;
+                return true;
+            }
+            if (matches.isTrue(idx)) {
+                inputRow.cells(batch.cells(idx));
+                current = inputRow;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            source.close();
+        }
+
+        @Override
+        public CompletionStage<?> loadNextBatch() throws Exception {
+            return source.loadNextBatch();
+        }
+
+        @Override
+        public boolean allLoaded() {
+            return source.allLoaded();
+        }
+
+        @Override
+        public void kill(@Nonnull Throwable throwable) {
+            killed = throwable;
+            source.kill(throwable);
+        }
+
+        @Override
+        public boolean hasLazyResultSet() {
+            return source.hasLazyResultSet();
+        }
+
+        private void raiseIfClosedOrKilled() {
+            if (killed != null) {
+                Exceptions.rethrowUnchecked(killed);
+            }
+            if (closed) {
+                throw new IllegalStateException("BatchIterator is closed");
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@ package io.crate.execution.engine.pipeline;
 import com.google.common.collect.Iterables;
 import io.crate.analyze.NumberOfReplicas;
 import io.crate.analyze.SymbolEvaluator;
+import io.crate.breaker.ConcurrentRamAccounting;
 import io.crate.breaker.RamAccounting;
 import io.crate.breaker.RowCellsAccountingWithEstimators;
 import io.crate.common.collections.Lists2;
@@ -58,6 +59,7 @@ import io.crate.execution.dsl.projection.WindowAggProjection;
 import io.crate.execution.dsl.projection.WriterProjection;
 import io.crate.execution.engine.aggregation.AggregationContext;
 import io.crate.execution.engine.aggregation.AggregationPipe;
+import io.crate.execution.engine.aggregation.GroupBySpiller;
 import io.crate.execution.engine.aggregation.GroupingProjector;
 import io.crate.execution.engine.collect.CollectExpression;
 import io.crate.execution.engine.collect.NestableCollectExpression;
@@ -71,14 +73,20 @@ import io.crate.execution.engine.indexing.IndexWriterProjector;
 import io.crate.execution.engine.indexing.ShardDMLExecutor;
 import io.crate.execution.engine.indexing.ShardingUpsertExecutor;
 import io.crate.execution.engine.indexing.UpsertResultContext;
+import io.crate.execution.engine.sort.ExternalSorter;
 import io.crate.execution.engine.sort.OrderingByPosition;
 import io.crate.execution.engine.sort.SortingProjector;
 import io.crate.execution.engine.sort.SortingTopNProjector;
+import io.crate.execution.engine.spill.SpillFile;
 import io.crate.execution.engine.window.WindowProjector;
 import io.crate.execution.jobs.NodeLimits;
 import io.crate.execution.support.ThreadPools;
 import io.crate.expression.InputFactory;
 import io.crate.expression.RowFilter;
+import io.crate.expression.batch.BatchExpression;
+import io.crate.expression.batch.BatchExpressions;
+import io.crate.expression.batch.BooleanVector;
+import io.crate.expression.compile.ExpressionCompiler;
 import io.crate.expression.eval.EvaluatingNormalizer;
 import io.crate.expression.reference.StaticTableDefinition;
 import io.crate.expression.reference.StaticTableReferenceResolver;
@@ -96,6 +104,7 @@ import io.crate.metadata.RowGranularity;
 import io.crate.metadata.TransactionContext;
 import io.crate.metadata.sys.SysNodeChecksTableInfo;
 import io.crate.planner.operators.SubQueryResults;
+import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import io.crate.types.StringType;
 import org.elasticsearch.Version;
@@ -111,7 +120,9 @@ import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -154,6 +165,11 @@ public class ProjectionToProjectorVisitor
     @Nullable
     private final ShardId shardId;
     private final int numProcessors;
+    private final long sortSpillThreshold;
+    private final long groupBySpillThreshold;
+    private final long windowSpillThreshold;
+    private final Path spillDirectory;
+    private final boolean compileExpressions;
 
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
@@ -183,6 +199,11 @@ public class ProjectionToProjectorVisitor
         this.indexVersionCreated = indexVersionCreated;
         this.shardId = shardId;
         this.numProcessors = EsExecutors.numberOfProcessors(settings);
+        this.sortSpillThreshold = ExternalSorter.SPILL_THRESHOLD_SETTING.get(settings).getBytes();
+        this.groupBySpillThreshold = GroupBySpiller.SPILL_THRESHOLD_SETTING.get(settings).getBytes();
+        this.windowSpillThreshold = WindowProjector.SPILL_THRESHOLD_SETTING.get(settings).getBytes();
+        this.spillDirectory = SpillFile.directory(settings);
+        this.compileExpressions = ExpressionCompiler.ENABLED_SETTING.get(settings);
     }
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
@@ -245,9 +266,30 @@ public class ProjectionToProjectorVisitor
         }
 
         int rowMemoryOverhead = 32; // priority queues implementation are backed by an arrayList
+        List<DataType<?>> rowTypes = Symbols.typeView(Lists2.concat(projection.outputs(), projection.orderBy()));
+        Comparator<Object[]> ordering = OrderingByPosition.arrayOrdering(
+            orderByIndices, projection.reverseFlags(), projection.nullsFirst());
+
+        // The sorter releases the memory of spilled rows, so it needs a RamAccounting that only tracks the sort rows.
+        RamAccounting sortRamAccounting = context.ramAccounting;
+        ExternalSorter externalSorter = null;
+        if (sortSpillThreshold > 0) {
+            RamAccounting parentRamAccounting = context.ramAccounting;
+            sortRamAccounting = new ConcurrentRamAccounting(
+                parentRamAccounting::addBytes,
+                bytes -> parentRamAccounting.addBytes(-bytes)
+            );
+            externalSorter = new ExternalSorter(
+                DataTypes.getStreamers(rowTypes),
+                ordering,
+                sortRamAccounting,
+                sortSpillThreshold,
+                spillDirectory
+            );
+        }
         RowCellsAccountingWithEstimators rowAccounting = new RowCellsAccountingWithEstimators(
-            Symbols.typeView(Lists2.concat(projection.outputs(), projection.orderBy())),
-            context.ramAccounting,
+            rowTypes,
+            sortRamAccounting,
             rowMemoryOverhead
         );
         if (projection.limit() > TopN.NO_LIMIT) {
@@ -256,10 +298,11 @@ public class ProjectionToProjectorVisitor
                 inputs,
                 ctx.expressions(),
                 numOutputs,
-                OrderingByPosition.arrayOrdering(orderByIndices, projection.reverseFlags(), projection.nullsFirst()),
+                ordering,
                 projection.limit(),
                 projection.offset(),
-                UNBOUNDED_COLLECTOR_THRESHOLD
+                UNBOUNDED_COLLECTOR_THRESHOLD,
+                externalSorter
             );
         }
         return new SortingProjector(
@@ -267,8 +310,9 @@ public class ProjectionToProjectorVisitor
             inputs,
             ctx.expressions(),
             numOutputs,
-            OrderingByPosition.arrayOrdering(orderByIndices, projection.reverseFlags(), projection.nullsFirst()),
-            projection.offset()
+            ordering,
+            projection.offset(),
+            externalSorter
         );
     }
 
@@ -290,10 +334,42 @@ public class ProjectionToProjectorVisitor
 
     @Override
     public Projector visitEvalProjection(EvalProjection projection, Context context) {
+        Function<Row, Row> compiledRowMapper = compileExpressions
+            ? new ExpressionCompiler(context.txnCtx, nodeCtx).compileRowMapper(projection.outputs())
+            : null;
+        List<BatchExpression<?>> batchOutputs = compileBatchOutputs(projection.outputs());
+        if (compiledRowMapper != null) {
+            return batchOutputs == null
+                ? new RowMappingProjector(compiledRowMapper)
+                : BatchEvaluatingProjector.eval(batchOutputs, compiledRowMapper);
+        }
         InputFactory.Context<CollectExpression<Row, ?>> ctx = inputFactory.ctxForInputColumns(context.txnCtx, projection.outputs());
+        if (batchOutputs != null) {
+            return BatchEvaluatingProjector.eval(batchOutputs, new MapRowUsingInputs(ctx.topLevelInputs(), ctx.expressions()));
+        }
         return new InputRowProjector(ctx.topLevelInputs(), ctx.expressions());
     }
 
+    /**
+     * @return the outputs compiled to {@link BatchExpression}s or null if any output can't be evaluated in batches
+     *         or if there are no functions, in which case the outputs are plain column references and
+     *         batching wouldn't pay off.
+     */
+    @Nullable
+    private static List<BatchExpression<?>> compileBatchOutputs(List<? extends Symbol> outputs) {
+        boolean hasFunction = false;
+        ArrayList<BatchExpression<?>> batchOutputs = new ArrayList<>(outputs.size());
+        for (Symbol output : outputs) {
+            BatchExpression<?> batchOutput = BatchExpressions.compile(output);
+            if (batchOutput == null) {
+                return null;
+            }
+            hasFunction |= output instanceof io.crate.expression.symbol.Function;
+            batchOutputs.add(batchOutput);
+        }
+        return hasFunction ? batchOutputs : null;
+    }
+
     @Override
     public Projector visitGroupProjection(GroupProjection projection, Context context) {
         InputFactory.Context<CollectExpression<Row, ?>> ctx = inputFactory.ctxForAggregations(context.txnCtx);
@@ -311,7 +387,9 @@ public class ProjectionToProjectorVisitor
             context.ramAccounting,
             context.memoryManager,
             clusterService.state().getNodes().getMinNodeVersion(),
-            indexVersionCreated
+            indexVersionCreated,
+            groupBySpillThreshold,
+            spillDirectory
         );
     }
 
@@ -505,7 +583,16 @@ public class ProjectionToProjectorVisitor
 
     @Override
     public Projector visitFilterProjection(FilterProjection projection, Context context) {
-        Predicate<Row> rowFilter = RowFilter.create(context.txnCtx, inputFactory, projection.query());
+        Predicate<Row> rowFilter = compileExpressions
+            ? new ExpressionCompiler(context.txnCtx, nodeCtx).compilePredicate(projection.query())
+            : null;
+        if (rowFilter == null) {
+            rowFilter = RowFilter.create(context.txnCtx, inputFactory, projection.query());
+        }
+        BatchExpression<BooleanVector> batchFilter = BatchExpressions.compilePredicate(projection.query());
+        if (batchFilter != null) {
+            return BatchEvaluatingProjector.filter(batchFilter, rowFilter);
+        }
         return new FilterProjector(rowFilter);
     }
 
@@ -685,7 +772,9 @@ public class ProjectionToProjectorVisitor
             clusterService.state().nodes().getMinNodeVersion(),
             indexVersionCreated,
             ThreadPools.numIdleThreads(searchThreadPool, numProcessors),
-            searchThreadPool
+            searchThreadPool,
+            windowSpillThreshold,
+            spillDirectory
         );
     }
 
@@ -0,0 +1,318 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.sort;
+
+import com.google.common.collect.Iterators;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccounting;
+import io.crate.data.Bucket;
+import io.crate.data.Buckets;
+import io.crate.data.Row;
+import io.crate.execution.engine.spill.SpillFile;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Sorts rows with bounded memory usage (external merge sort).
+ * <p>
+ * Users buffer rows in memory and account for them using the {@link RamAccounting} this sorter was created with.
+ * Once {@link #shouldSpill()} returns true, the buffered rows are sorted and handed to {@link #spill(List)},
+ * which writes them as a sorted run into a {@link SpillFile} and releases the accounted memory.
+ * <p>
+ * {@link #merge(List, int, int, int)} returns a bucket that does a k-way merge over all runs and the rows which
+ * are still in memory.
+ * <p>
+ * A merge reads from at most {@link #MAX_MERGE_FAN_IN} runs at once. If there are more runs, they are first merged
+ * in several passes into intermediate runs, each combining up to {@link #MAX_MERGE_FAN_IN} runs, until the
+ * remaining runs can be merged in a single pass.
+ */
+public final class ExternalSorter implements Closeable {
+
+    /**
+     * Amount of memory a single sort operation may use before rows are spilled to disk. Spilling is disabled for
+     * values &lt;= 0.
+     */
+    public static final Setting<ByteSizeValue> SPILL_THRESHOLD_SETTING = Setting.byteSizeSetting(
+        "node.sql.sort.spill_threshold",
+        new ByteSizeValue(-1),
+        Setting.Property.NodeScope
+    );
+
+    /**
+     * Max. number of runs which are read at once. Each run that is read holds a file handle and a read buffer.
+     */
+    static final int MAX_MERGE_FAN_IN = 64;
+
+    private final Streamer<?>[] streamers;
+    private final Comparator<Object[]> comparator;
+    private final RamAccounting ramAccounting;
+    private final long spillThreshold;
+    private final Path spillDirectory;
+    private final int mergeFanIn;
+    private final List<SpillFile> runs = new ArrayList<>();
+
+    /**
+     * @param streamers      streamers for all cells of a row, used to serialize the rows into the spill files.
+     * @param comparator     the ordering of the rows
+     * @param ramAccounting  the RamAccounting used to account for the rows buffered in memory. This must only
+     *                       contain the memory used by the buffered rows, as it is released on each spill.
+     * @param spillThreshold number of bytes after which the buffered rows should be spilled.
+     * @param spillDirectory directory the spill files are created in, see {@link SpillFile#directory}.
+     */
+    public ExternalSorter(Streamer<?>[] streamers,
+                          Comparator<Object[]> comparator,
+                          RamAccounting ramAccounting,
+                          long spillThreshold,
+                          Path spillDirectory) {
+        this(streamers, comparator, ramAccounting, spillThreshold, spillDirectory, MAX_MERGE_FAN_IN);
+    }
+
+    ExternalSorter(Streamer<?>[] streamers,
+                   Comparator<Object[]> comparator,
+                   RamAccounting ramAccounting,
+                   long spillThreshold,
+                   Path spillDirectory,
+                   int mergeFanIn) {
+        if (spillThreshold <= 0) {
+            throw new IllegalArgumentException("Invalid spill threshold: value must be > 0; got: " + spillThreshold);
+        }
+        assert mergeFanIn > 1 : "mergeFanIn must be > 1";
+        this.streamers = streamers;
+        this.comparator = comparator;
+        this.ramAccounting = ramAccounting;
+        this.spillThreshold = spillThreshold;
+        this.spillDirectory = spillDirectory;
+        this.mergeFanIn = mergeFanIn;
+    }
+
+    public Path spillDirectory() {
+        return spillDirectory;
+    }
+
+    public boolean shouldSpill() {
+        return ramAccounting.totalBytes() >= spillThreshold;
+    }
+
+    /**
+     * Writes the rows as a new run to disk and releases the memory accounted for them.
+     * The caller must no longer hold on to the rows.
+     *
+     * @param sortedRows rows, sorted using the comparator of this sorter.
+     */
+    public void spill(List<Object[]> sortedRows) {
+        SpillFile run = SpillFile.create(streamers, spillDirectory);
+        runs.add(run);
+        for (Object[] row : sortedRows) {
+            run.add(row);
+        }
+        run.finishWriting();
+        ramAccounting.release();
+    }
+
+    public int numRuns() {
+        return runs.size();
+    }
+
+    /**
+     * Creates a bucket which merges all spilled runs with the given in-memory rows.
+     *
+     * @param sortedRows rows that haven't been spilled, sorted using the comparator of this sorter.
+     * @param offset     number of rows to skip
+     * @param limit      max number of rows the bucket should contain after applying the offset
+     * @param numOutputs number of cells (starting at index 0) of each row which are exposed by the bucket.
+     */
+    public Bucket merge(List<Object[]> sortedRows, int offset, int limit, int numOutputs) {
+        mergeRunsToFanIn();
+        long numRows = sortedRows.size();
+        for (SpillFile run : runs) {
+            numRows += run.numRows();
+        }
+        int size = (int) Math.max(0L, Math.min(numRows - offset, limit));
+        return new MergeBucket(sortedRows, offset, size, numOutputs);
+    }
+
+    /**
+     * Returns an iterator which merges all spilled runs with the given in-memory rows.
+     * Each spilled row is a new array, so it is safe to hold on to a row after moving the iterator forward.
+     *
+     * @param sortedRows rows that haven't been spilled, sorted using the comparator of this sorter.
+     */
+    public Iterator<Object[]> mergedIterator(List<Object[]> sortedRows) {
+        mergeRunsToFanIn();
+        return mergeWithRuns(sortedRows);
+    }
+
+    private Iterator<Object[]> mergeWithRuns(List<Object[]> sortedRows) {
+        List<Iterator<Object[]>> iterators = new ArrayList<>(runs.size() + 1);
+        iterators.add(sortedRows.iterator());
+        for (SpillFile run : runs) {
+            iterators.add(run.iterator());
+        }
+        return new MergingIterator(iterators);
+    }
+
+    /**
+     * Merges the oldest runs into intermediate runs until the remaining runs and the in-memory rows can be merged
+     * without exceeding the fan-in. Every pass reads at most <code>mergeFanIn</code> runs at once.
+     */
+    private void mergeRunsToFanIn() {
+        while (runs.size() >= mergeFanIn) {
+            List<SpillFile> mergedRuns = new ArrayList<>(runs.subList(0, mergeFanIn));
+            SpillFile intermediate = SpillFile.create(streamers, spillDirectory);
+            try {
+                List<Iterator<Object[]>> iterators = new ArrayList<>(mergedRuns.size());
+                for (SpillFile run : mergedRuns) {
+                    iterators.add(run.iterator());
+                }
+                Iterator<Object[]> it = new MergingIterator(iterators);
+                while (it.hasNext()) {
+                    intermediate.add(it.next());
+                }
+                intermediate.finishWriting();
+            } catch (RuntimeException e) {
+                intermediate.close();
+                throw e;
+            }
+            runs.subList(0, mergeFanIn).clear();
+            runs.add(intermediate);
+            for (SpillFile run : mergedRuns) {
+                run.close();
+            }
+        }
+    }
+
+    /**
+     * Deletes all spilled runs.
+     */
+    @Override
+    public void close() {
+        RuntimeException failure = null;
+        for (SpillFile run : runs) {
+            try {
+                run.close();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        runs.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private class MergeBucket implements Bucket {
+
+        private final List<Object[]> sortedRows;
+        private final int offset;
+        private final int size;
+        private final int numOutputs;
+
+        MergeBucket(List<Object[]> sortedRows, int offset, int size, int numOutputs) {
+            this.sortedRows = sortedRows;
+            this.offset = offset;
+            this.size = size;
+            this.numOutputs = numOutputs;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        @Nonnull
+        public Iterator<Row> iterator() {
+            Iterator<Object[]> it = mergeWithRuns(sortedRows);
+            Iterators.advance(it, offset);
+            Function<Object[], Row> arrayToSharedRow = Buckets.arrayToSharedRow(numOutputs);
+            return Iterators.transform(Iterators.limit(it, size), arrayToSharedRow::apply);
+        }
+    }
+
+    private static class RunCursor {
+
+        private final Iterator<Object[]> it;
+        private Object[] current;
+
+        RunCursor(Iterator<Object[]> it) {
+            this.it = it;
+            this.current = it.next();
+        }
+
+        boolean advance() {
+            if (it.hasNext()) {
+                current = it.next();
+                return true;
+            }
+            current = null;
+            return false;
+        }
+    }
+
+    private class MergingIterator implements Iterator<Object[]> {
+
+        private final PriorityQueue<RunCursor> cursors;
+
+        MergingIterator(List<Iterator<Object[]>> iterators) {
+            cursors = new PriorityQueue<>(iterators.size(), (c1, c2) -> comparator.compare(c1.current, c2.current));
+            for (Iterator<Object[]> it : iterators) {
+                addCursor(it);
+            }
+        }
+
+        private void addCursor(Iterator<Object[]> it) {
+            if (it.hasNext()) {
+                cursors.add(new RunCursor(it));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !cursors.isEmpty();
+        }
+
+        @Override
+        public Object[] next() {
+            RunCursor cursor = cursors.poll();
+            if (cursor == null) {
+                throw new NoSuchElementException("No more rows to merge");
+            }
+            Object[] row = cursor.current;
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+            return row;
+        }
+    }
+}
@@ -23,6 +23,7 @@ package io.crate.execution.engine.sort;
 
 import io.crate.breaker.RowAccounting;
 import io.crate.data.BatchIterator;
+import io.crate.data.BatchIterators;
 import io.crate.data.Bucket;
 import io.crate.data.CollectingBatchIterator;
 import io.crate.data.CollectionBucket;
@@ -31,6 +32,8 @@ import io.crate.data.Projector;
 import io.crate.data.Row;
 import io.crate.execution.engine.collect.CollectExpression;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
@@ -42,6 +45,9 @@ import java.util.stream.Collectors;
  * <p>
  * Compared to {@link SortingTopNProjector} this projector does not support limiting,
  * while the {@link SortingTopNProjector} does not work WITHOUT a limit.
+ * <p>
+ * If an {@link ExternalSorter} is provided, the buffered rows are spilled to disk as sorted runs whenever the
+ * sorter asks for it and are merged again once all rows have been consumed.
  */
 public class SortingProjector implements Projector {
 
@@ -52,6 +58,17 @@ public class SortingProjector implements Projector {
     private final int offset;
     private final int numOutputs;
     private final RowAccounting<Object[]> rowAccounting;
+    @Nullable
+    private final ExternalSorter externalSorter;
+
+    public SortingProjector(RowAccounting<Object[]> rowAccounting,
+                            Collection<? extends Input<?>> inputs,
+                            Iterable<? extends CollectExpression<Row, ?>> collectExpressions,
+                            int numOutputs,
+                            Comparator<Object[]> comparator,
+                            int offset) {
+        this(rowAccounting, inputs, collectExpressions, numOutputs, comparator, offset, null);
+    }
 
     /**
      * @param rowAccounting               sorting is a pipeline breaker so account for the used memory
@@ -60,13 +77,16 @@ public class SortingProjector implements Projector {
      * @param numOutputs         <code>inputs</code> contains this much output {@link Input}s starting form index 0
      * @param comparator         ordering that is used to compare the rows
      * @param offset             the initial offset, this number of rows are skipped
+     * @param externalSorter     used to spill rows to disk; if null all rows are kept in memory.
+     *                           <code>rowAccounting</code> must account into the RamAccounting of the sorter.
      */
     public SortingProjector(RowAccounting<Object[]> rowAccounting,
                             Collection<? extends Input<?>> inputs,
                             Iterable<? extends CollectExpression<Row, ?>> collectExpressions,
                             int numOutputs,
                             Comparator<Object[]> comparator,
-                            int offset) {
+                            int offset,
+                            @Nullable ExternalSorter externalSorter) {
         if (offset < 0) {
             throw new IllegalArgumentException("invalid offset " + offset);
         }
@@ -76,11 +96,34 @@ public class SortingProjector implements Projector {
         this.collectExpressions = collectExpressions;
         this.comparator = comparator;
         this.offset = offset;
+        this.externalSorter = externalSorter;
     }
 
-
     @Override
     public BatchIterator<Row> apply(BatchIterator<Row> batchIterator) {
+        if (externalSorter != null) {
+            ExternalSorter sorter = externalSorter;
+            Collector<Row, ?, Bucket> collector = Collector.of(
+                ArrayList<Object[]>::new,
+                (rows, row) -> addAndMaybeSpill(sorter, rows, row),
+                (rows1, rows2) -> {
+                    throw new UnsupportedOperationException("combine not supported");
+                },
+                rows -> {
+                    rows.sort(comparator);
+                    return sorter.merge(rows, offset, Integer.MAX_VALUE, numOutputs);
+                }
+            );
+            return CollectingBatchIterator.newInstance(
+                () -> {
+                    batchIterator.close();
+                    sorter.close();
+                },
+                batchIterator::kill,
+                () -> BatchIterators.collect(batchIterator, collector),
+                true
+            );
+        }
         Collector<Row, ?, Bucket> collector = Collectors.mapping(
             this::getCells,
             Collectors.collectingAndThen(Collectors.toList(), this::sortAndCreateBucket));
@@ -105,6 +148,15 @@ public class SortingProjector implements Projector {
         return newRow;
     }
 
+    private void addAndMaybeSpill(ExternalSorter sorter, List<Object[]> rows, Row row) {
+        rows.add(getCells(row));
+        if (sorter.shouldSpill()) {
+            rows.sort(comparator);
+            sorter.spill(rows);
+            rows.clear();
+        }
+    }
+
     private Bucket sortAndCreateBucket(List<Object[]> rows) {
         rows.sort(comparator);
         if (offset == 0) {
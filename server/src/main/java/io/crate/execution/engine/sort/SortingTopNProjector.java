@@ -23,6 +23,7 @@ package io.crate.execution.engine.sort;
 
 import io.crate.breaker.RowAccounting;
 import io.crate.data.BatchIterator;
+import io.crate.data.BatchIterators;
 import io.crate.data.Bucket;
 import io.crate.data.CollectingBatchIterator;
 import io.crate.data.Input;
@@ -30,6 +31,7 @@ import io.crate.data.Projector;
 import io.crate.data.Row;
 import io.crate.execution.engine.collect.CollectExpression;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.stream.Collector;
@@ -37,6 +39,29 @@ import java.util.stream.Collector;
 public class SortingTopNProjector implements Projector {
 
     private final Collector<Row, ?, Bucket> collector;
+    @Nullable
+    private final ExternalSorter externalSorter;
+
+    public SortingTopNProjector(RowAccounting<Object[]> rowAccounting,
+                                Collection<? extends Input<?>> inputs,
+                                Iterable<? extends CollectExpression<Row, ?>> collectExpressions,
+                                int numOutputs,
+                                Comparator<Object[]> ordering,
+                                int limit,
+                                int offset,
+                                int unboundedCollectorThreshold) {
+        this(
+            rowAccounting,
+            inputs,
+            collectExpressions,
+            numOutputs,
+            ordering,
+            limit,
+            offset,
+            unboundedCollectorThreshold,
+            null
+        );
+    }
 
     /**
      * @param rowAccounting               sorting is a pipeline breaker so account for the used memory
@@ -48,6 +73,8 @@ public class SortingTopNProjector implements Projector {
      * @param offset                      the initial offset, this number of rows are skipped
      * @param unboundedCollectorThreshold if (limit + offset) is greater than this threshold an unbounded collector will
      *                                    be used, otherwise a bounded one is used.
+     * @param externalSorter              used by the unbounded collector to spill rows to disk; may be null.
+     *                                    <code>rowAccounting</code> must account into the RamAccounting of the sorter.
      */
     public SortingTopNProjector(RowAccounting<Object[]> rowAccounting,
                                 Collection<? extends Input<?>> inputs,
@@ -56,7 +83,8 @@ public class SortingTopNProjector implements Projector {
                                 Comparator<Object[]> ordering,
                                 int limit,
                                 int offset,
-                                int unboundedCollectorThreshold) {
+                                int unboundedCollectorThreshold,
+                                @Nullable ExternalSorter externalSorter) {
         /**
          * We'll use an unbounded queue with the initial capacity of {@link unboundedCollectorThreshold}
          * if the maximum number of rows we have to accommodate in the queue in order to maintain correctness is
@@ -74,8 +102,10 @@ public class SortingTopNProjector implements Projector {
                 ordering,
                 unboundedCollectorThreshold,
                 limit,
-                offset
+                offset,
+                externalSorter
             );
+            this.externalSorter = externalSorter;
         } else {
             collector = new BoundedSortingTopNCollector(
                 rowAccounting,
@@ -86,11 +116,24 @@ public class SortingTopNProjector implements Projector {
                 limit,
                 offset
             );
+            this.externalSorter = null;
         }
     }
 
     @Override
     public BatchIterator<Row> apply(BatchIterator<Row> batchIterator) {
+        if (externalSorter != null) {
+            ExternalSorter sorter = externalSorter;
+            return CollectingBatchIterator.newInstance(
+                () -> {
+                    batchIterator.close();
+                    sorter.close();
+                },
+                batchIterator::kill,
+                () -> BatchIterators.collect(batchIterator, collector),
+                true
+            );
+        }
         return CollectingBatchIterator.newInstance(batchIterator, collector);
     }
 
@@ -29,9 +29,12 @@ import io.crate.data.Row;
 import io.crate.execution.engine.collect.CollectExpression;
 import org.apache.lucene.util.ArrayUtil;
 
+import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.function.BiConsumer;
@@ -45,6 +48,9 @@ import java.util.stream.Collector;
  * Collector implementation which collects rows into an unbounded priorityQueue in order to sort the rows and apply a
  * limit + offset.
  * The final result is a sorted bucket with limit and offset applied.
+ * <p>
+ * If an {@link ExternalSorter} is provided, the queue is written to disk as a sorted run whenever the sorter asks
+ * for it. Each run contains at most limit + offset rows and the runs are merged in the finisher.
  */
 public class UnboundedSortingTopNCollector implements Collector<Row, PriorityQueue<Object[]>, Bucket> {
 
@@ -56,6 +62,19 @@ public class UnboundedSortingTopNCollector implements Collector<Row, PriorityQue
     private final int offset;
     private final int maxNumberOfRowsInQueue;
     private final RowAccounting<Object[]> rowAccounting;
+    @Nullable
+    private final ExternalSorter externalSorter;
+
+    public UnboundedSortingTopNCollector(RowAccounting<Object[]> rowAccounting,
+                                         Collection<? extends Input<?>> inputs,
+                                         Iterable<? extends CollectExpression<Row, ?>> expressions,
+                                         int numOutputs,
+                                         Comparator<Object[]> comparator,
+                                         int initialCapacity,
+                                         int limit,
+                                         int offset) {
+        this(rowAccounting, inputs, expressions, numOutputs, comparator, initialCapacity, limit, offset, null);
+    }
 
     /**
      * @param rowAccounting   sorting is a pipeline breaker so account for the used memory
@@ -66,6 +85,8 @@ public class UnboundedSortingTopNCollector implements Collector<Row, PriorityQue
      * @param initialCapacity the initial capacity of the backing queue
      * @param limit           the max number of rows the result should contain
      * @param offset          the number of rows to skip (after sort)
+     * @param externalSorter  used to spill rows to disk; if null all rows are kept in memory.
+     *                        <code>rowAccounting</code> must account into the RamAccounting of the sorter.
      */
     public UnboundedSortingTopNCollector(RowAccounting<Object[]> rowAccounting,
                                          Collection<? extends Input<?>> inputs,
@@ -74,7 +95,8 @@ public class UnboundedSortingTopNCollector implements Collector<Row, PriorityQue
                                          Comparator<Object[]> comparator,
                                          int initialCapacity,
                                          int limit,
-                                         int offset) {
+                                         int offset,
+                                         @Nullable ExternalSorter externalSorter) {
         if (initialCapacity <= 0) {
             throw new IllegalArgumentException("Invalid initial capacity: value must be > 0; got: " + initialCapacity);
         }
@@ -92,6 +114,7 @@ public class UnboundedSortingTopNCollector implements Collector<Row, PriorityQue
         this.initialCapacity = initialCapacity;
         this.offset = offset;
         this.maxNumberOfRowsInQueue = limit + offset;
+        this.externalSorter = externalSorter;
 
         if (maxNumberOfRowsInQueue >= ArrayUtil.MAX_ARRAY_LENGTH || maxNumberOfRowsInQueue < 0) {
             // Throw exception to prevent confusing OOME in PriorityQueue
@@ -149,9 +172,26 @@ public class UnboundedSortingTopNCollector implements Collector<Row, PriorityQue
         } else {
             pq.add(rowCells);
         }
+        if (externalSorter != null && externalSorter.shouldSpill()) {
+            externalSorter.spill(drainSorted(pq));
+        }
+    }
+
+    /**
+     * Empties the queue and returns its rows in sort order.
+     */
+    private static List<Object[]> drainSorted(PriorityQueue<Object[]> pq) {
+        Object[][] rows = new Object[pq.size()][];
+        for (int i = rows.length - 1; i >= 0; i--) {
+            rows[i] = pq.poll();
+        }
+        return Arrays.asList(rows);
     }
 
     private Bucket pqToIterable(PriorityQueue<Object[]> pq) {
+        if (externalSorter != null && externalSorter.numRuns() > 0) {
+            return externalSorter.merge(drainSorted(pq), offset, maxNumberOfRowsInQueue - offset, numOutputs);
+        }
         if (offset > pq.size()) {
             return new ArrayBucket(new Object[0][0], numOutputs);
         }
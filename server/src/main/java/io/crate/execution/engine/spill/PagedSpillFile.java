@@ -0,0 +1,173 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.spill;
+
+import io.crate.Streamer;
+import org.elasticsearch.common.io.stream.StreamInput;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A {@link SpillFile} which provides random access to the rows.
+ * <p>
+ * Rows are appended using {@link #add(Object[])}; every <code>rowsPerPage</code> rows the offset of the next page is
+ * recorded. After {@link #finishWriting()} the rows can be accessed by index using {@link #get(int)}. The page
+ * containing the row is read from disk on demand; the most recently used pages are cached, so that accessing rows
+ * which are close to each other is cheap.
+ * <p>
+ * The rows returned by {@link #get(int)} belong to the page cache. Modifications of a row are lost once its page is
+ * evicted from the cache.
+ * <p>
+ * {@link #close()} deletes the file. This class is not thread-safe.
+ */
+public final class PagedSpillFile extends AbstractList<Object[]> implements RandomAccess, Closeable {
+
+    private final Streamer<?>[] streamers;
+    private final SpillFile file;
+    private final int rowsPerPage;
+    private final LinkedHashMap<Integer, Object[][]> cachedPages;
+
+    private long[] pageOffsets = new long[16];
+    private int numPages = 0;
+    private boolean writing = true;
+
+    /**
+     * @param streamers      streamers for all cells of a row
+     * @param directory      directory the file is created in, see {@link SpillFile#directory}
+     * @param rowsPerPage    number of rows which are read together
+     * @param maxCachedPages number of pages which are kept in memory while reading
+     */
+    public static PagedSpillFile create(Streamer<?>[] streamers, Path directory, int rowsPerPage, int maxCachedPages) {
+        if (rowsPerPage <= 0 || maxCachedPages <= 0) {
+            throw new IllegalArgumentException("rowsPerPage and maxCachedPages must be > 0");
+        }
+        return new PagedSpillFile(streamers, SpillFile.create(streamers, directory), rowsPerPage, maxCachedPages);
+    }
+
+    private PagedSpillFile(Streamer<?>[] streamers, SpillFile file, int rowsPerPage, int maxCachedPages) {
+        this.streamers = streamers;
+        this.file = file;
+        this.rowsPerPage = rowsPerPage;
+        this.cachedPages = new LinkedHashMap<>(maxCachedPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+                return size() > maxCachedPages;
+            }
+        };
+    }
+
+    @Override
+    public boolean add(Object[] row) {
+        file.add(row);
+        if (file.numRows() % rowsPerPage == 0) {
+            endPage();
+        }
+        return true;
+    }
+
+    private void endPage() {
+        if (numPages + 1 >= pageOffsets.length) {
+            pageOffsets = Arrays.copyOf(pageOffsets, pageOffsets.length * 2);
+        }
+        numPages++;
+        pageOffsets[numPages] = file.position();
+    }
+
+    /**
+     * Flushes all pending writes. Must be called before the rows can be read.
+     */
+    public void finishWriting() {
+        if (!writing) {
+            return;
+        }
+        writing = false;
+        if (file.numRows() % rowsPerPage != 0) {
+            endPage();
+        }
+        file.finishWriting();
+    }
+
+    @Override
+    public int size() {
+        return file.numRows();
+    }
+
+    /**
+     * @return the size of the file in bytes
+     */
+    public long numBytes() {
+        return file.position();
+    }
+
+    @Override
+    public Object[] get(int index) {
+        assert !writing : "finishWriting() must be called before reading from a PagedSpillFile";
+        int numRows = file.numRows();
+        if (index < 0 || index >= numRows) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + numRows);
+        }
+        int page = index / rowsPerPage;
+        Object[][] rows = cachedPages.get(page);
+        if (rows == null) {
+            rows = readPage(page);
+            cachedPages.put(page, rows);
+        }
+        return rows[index - page * rowsPerPage];
+    }
+
+    private Object[][] readPage(int page) {
+        long offset = pageOffsets[page];
+        byte[] bytes = new byte[(int) (pageOffsets[page + 1] - offset)];
+        file.read(offset, ByteBuffer.wrap(bytes));
+        int numRowsInPage = Math.min(rowsPerPage, file.numRows() - page * rowsPerPage);
+        Object[][] rows = new Object[numRowsInPage][];
+        try {
+            StreamInput in = StreamInput.wrap(bytes);
+            for (int r = 0; r < numRowsInPage; r++) {
+                Object[] row = new Object[streamers.length];
+                for (int i = 0; i < streamers.length; i++) {
+                    row[i] = streamers[i].readValueFrom(in);
+                }
+                rows[r] = row;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() {
+        cachedPages.clear();
+        file.close();
+    }
+}
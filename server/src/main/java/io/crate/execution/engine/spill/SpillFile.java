@@ -0,0 +1,328 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.spill;
+
+import io.crate.Streamer;
+import org.elasticsearch.common.io.PathUtils;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A temporary file containing rows serialized using the {@link Streamer}s of the row columns.
+ * <p>
+ * Rows are appended using {@link #add(Object[])}. After {@link #finishWriting()} the rows can be read
+ * back (in insertion order) any number of times using {@link #iterator()}.
+ * <p>
+ * {@link #close()} closes all open readers and deletes the file.
+ * This class is not thread-safe.
+ */
+public final class SpillFile implements Iterable<Object[]>, Closeable {
+
+    /**
+     * Directory for the spill files of all operations. Defaults to the {@code spill} directory within the first
+     * data path of the node.
+     */
+    public static final Setting<String> SPILL_PATH_SETTING = Setting.simpleString(
+        "node.sql.spill.path",
+        Setting.Property.NodeScope
+    );
+
+    private static final String PREFIX = "crate-spill-";
+    private static final String DEFAULT_DIRECTORY = "spill";
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final Streamer<?>[] streamers;
+    private final Path path;
+    private final int bufferSize;
+    private final List<StreamInput> openInputs = new ArrayList<>();
+
+    private CountingStreamOutput out;
+    private FileChannel channel;
+    private int numRows = 0;
+    private long numBytes = 0;
+    private boolean closed = false;
+
+    /**
+     * Resolves the directory for spill files: {@link #SPILL_PATH_SETTING} if set, otherwise the {@code spill}
+     * directory within the first data path. Falls back to {@code java.io.tmpdir} if no home path is configured,
+     * which is only the case in tests.
+     */
+    public static Path directory(Settings settings) {
+        String spillPath = SPILL_PATH_SETTING.get(settings);
+        if (!spillPath.isEmpty()) {
+            return PathUtils.get(spillPath);
+        }
+        List<String> dataPaths = Environment.PATH_DATA_SETTING.get(settings);
+        if (!dataPaths.isEmpty()) {
+            return PathUtils.get(dataPaths.get(0)).resolve(DEFAULT_DIRECTORY);
+        }
+        if (Environment.PATH_HOME_SETTING.exists(settings)) {
+            return PathUtils.get(Environment.PATH_HOME_SETTING.get(settings)).resolve("data").resolve(DEFAULT_DIRECTORY);
+        }
+        return PathUtils.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    public static SpillFile create(Streamer<?>[] streamers, Path directory) {
+        return create(streamers, directory, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param directory  directory the file is created in, it is created if it doesn't exist.
+     * @param bufferSize size of the write and read buffers.
+     */
+    public static SpillFile create(Streamer<?>[] streamers, Path directory, int bufferSize) {
+        try {
+            Files.createDirectories(directory);
+            return new SpillFile(streamers, Files.createTempFile(directory, PREFIX, ".bin"), bufferSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private SpillFile(Streamer<?>[] streamers, Path path, int bufferSize) throws IOException {
+        this.streamers = streamers;
+        this.path = path;
+        this.bufferSize = bufferSize;
+        this.out = new CountingStreamOutput(new BufferedOutputStream(Files.newOutputStream(path), bufferSize));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void add(Object[] row) {
+        assert out != null : "Cannot add rows to a SpillFile after finishWriting() has been called";
+        try {
+            for (int i = 0; i < streamers.length; i++) {
+                ((Streamer) streamers[i]).writeValueTo(out, row[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        numRows++;
+    }
+
+    /**
+     * Flushes all pending writes. Must be called before the rows can be read.
+     */
+    public void finishWriting() {
+        if (out == null) {
+            return;
+        }
+        try {
+            numBytes = out.position();
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            out = null;
+        }
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    /**
+     * @return the size of the file in bytes; only available after {@link #finishWriting()}
+     */
+    public long numBytes() {
+        return numBytes;
+    }
+
+    /**
+     * @return the number of bytes written so far; rows added afterwards start at this offset.
+     */
+    long position() {
+        return out == null ? numBytes : out.position();
+    }
+
+    /**
+     * Reads the bytes starting at <code>offset</code> into <code>dst</code> until it is full, without
+     * affecting any of the iterators. Only available after {@link #finishWriting()}.
+     */
+    void read(long offset, ByteBuffer dst) {
+        assert out == null : "finishWriting() must be called before reading from a SpillFile";
+        if (closed) {
+            throw new IllegalStateException("SpillFile is closed");
+        }
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+            int start = dst.position();
+            while (dst.hasRemaining()) {
+                if (channel.read(dst, offset + dst.position() - start) < 0) {
+                    throw new EOFException("Unexpected end of spill file " + path);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns a new iterator reading the rows from disk.
+     * Each row is a new array, so it is safe to hold on to a row after moving the iterator forward.
+     * The underlying file handle is released once the iterator is exhausted or the SpillFile is closed.
+     */
+    @Override
+    public Iterator<Object[]> iterator() {
+        assert out == null : "finishWriting() must be called before reading from a SpillFile";
+        if (closed) {
+            throw new IllegalStateException("SpillFile is closed");
+        }
+        if (numRows == 0) {
+            return Collections.emptyIterator();
+        }
+        StreamInput in;
+        try {
+            in = new InputStreamStreamInput(new BufferedInputStream(Files.newInputStream(path), bufferSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        openInputs.add(in);
+        return new Reader(in);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        IOException failure = null;
+        try {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        for (StreamInput in : openInputs) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        openInputs.clear();
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            failure = e;
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    private class Reader implements Iterator<Object[]> {
+
+        private final StreamInput in;
+        private int pos = 0;
+
+        private Reader(StreamInput in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pos < numRows;
+        }
+
+        @Override
+        public Object[] next() {
+            if (pos >= numRows) {
+                throw new NoSuchElementException("SpillFile has no more rows");
+            }
+            Object[] row = new Object[streamers.length];
+            try {
+                for (int i = 0; i < streamers.length; i++) {
+                    row[i] = streamers[i].readValueFrom(in);
+                }
+                pos++;
+                if (pos == numRows) {
+                    in.close();
+                    openInputs.remove(in);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return row;
+        }
+    }
+
+    private static class CountingStreamOutput extends OutputStreamStreamOutput {
+
+        private long position = 0;
+
+        CountingStreamOutput(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void writeByte(byte b) throws IOException {
+            super.writeByte(b);
+            position++;
+        }
+
+        @Override
+        public void writeBytes(byte[] b, int offset, int length) throws IOException {
+            super.writeBytes(b, offset, length);
+            position += length;
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+    }
+}
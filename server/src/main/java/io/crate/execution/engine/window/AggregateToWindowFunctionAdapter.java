@@ -55,6 +55,12 @@ public class AggregateToWindowFunctionAdapter implements WindowFunction {
     private int seenFrameUpperBound = -1;
     private Object resultForCurrentFrame;
 
+    /**
+     * Created for the current partition once the frame starts to slide, if the function is not removable cumulative
+     */
+    @Nullable
+    private SegmentTree segmentTree;
+
     AggregateToWindowFunctionAdapter(AggregationFunction aggregationFunction,
                                      ExpressionsInput<Row, Boolean> filter,
                                      Version indexVersionCreated,
@@ -98,6 +104,7 @@ public class AggregateToWindowFunctionAdapter implements WindowFunction {
                           Input... args) {
         assert ignoreNulls == null;
         if (idxInPartition == 0) {
+            segmentTree = null;
             recomputeFunction(frame, expressions, args);
         } else if (isLowerBoundIncreasing(frame, seenFrameLowerBound)) {
             if (aggregationFunction.isRemovableCumulative()) {
@@ -109,6 +116,8 @@ public class AggregateToWindowFunctionAdapter implements WindowFunction {
                 }
                 seenFrameLowerBound = frame.lowerBound();
                 seenFrameUpperBound = frame.upperBoundExclusive();
+            } else if (aggregationFunction.hasImmutableStates()) {
+                executeUsingSegmentTree(frame, expressions, args);
             } else {
                 recomputeFunction(frame, expressions, args);
             }
@@ -139,6 +148,34 @@ public class AggregateToWindowFunctionAdapter implements WindowFunction {
         }
     }
 
+    /**
+     * Computes the state of the frame by merging the pre-aggregated states of sub-ranges of the partition,
+     * instead of aggregating all rows of the frame again.
+     */
+    private void executeUsingSegmentTree(WindowFrameState frame,
+                                         List<? extends CollectExpression<Row, ?>> expressions,
+                                         Input[] args) {
+        if (segmentTree == null) {
+            segmentTree = new SegmentTree(
+                aggregationFunction,
+                filter,
+                ramAccounting,
+                indexVersionCreated,
+                minNodeVersion,
+                memoryManager,
+                frame,
+                expressions,
+                args
+            );
+        }
+        // The state is immutable, so that following frames which only grow on the upper side can continue to
+        // accumulate on it
+        accumulatedState = segmentTree.query(frame.lowerBound(), frame.upperBoundExclusive());
+        resultForCurrentFrame = aggregationFunction.terminatePartial(ramAccounting, accumulatedState);
+        seenFrameLowerBound = frame.lowerBound();
+        seenFrameUpperBound = frame.upperBoundExclusive();
+    }
+
     private void recomputeFunction(WindowFrameState frame,
                                    List<? extends CollectExpression<Row, ?>> expressions,
                                    Input[] args) {
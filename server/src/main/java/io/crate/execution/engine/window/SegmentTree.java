@@ -0,0 +1,129 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.window;
+
+import io.crate.breaker.RamAccounting;
+import io.crate.data.ArrayRow;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.expression.ExpressionsInput;
+import io.crate.memory.MemoryManager;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.Version;
+
+import java.util.List;
+
+/**
+ * Aggregation states of all ranges of a partition which are aligned to powers of two, used to compute the aggregation
+ * of arbitrary frames of the partition by merging at most {@code 2 * log(n)} states.
+ *
+ * <pre>
+ *  states:   [1]                  = rows 0..3
+ *            [2]         [3]      = rows 0..1, rows 2..3
+ *            [4]  [5]  [6]  [7]   = rows 0, 1, 2, 3
+ *
+ *  frame rows 1..3 = merge([5], [3])
+ * </pre>
+ *
+ * States are shared between frames and merged repeatedly, this is only possible for aggregations which
+ * {@link AggregationFunction#hasImmutableStates() have immutable states}.
+ * Merging is done in an arbitrary order, the aggregation must be commutative.
+ */
+final class SegmentTree {
+
+    private final AggregationFunction<Object, ?> aggregationFunction;
+    private final RamAccounting ramAccounting;
+    private final Version indexVersionCreated;
+    private final Version minNodeVersion;
+    private final MemoryManager memoryManager;
+    private final int numRows;
+    private final Object[] states;
+
+    @SuppressWarnings("unchecked")
+    SegmentTree(AggregationFunction<?, ?> aggregationFunction,
+                ExpressionsInput<Row, Boolean> filter,
+                RamAccounting ramAccounting,
+                Version indexVersionCreated,
+                Version minNodeVersion,
+                MemoryManager memoryManager,
+                WindowFrameState frame,
+                List<? extends CollectExpression<Row, ?>> expressions,
+                Input<?>[] args) {
+        assert aggregationFunction.hasImmutableStates() : "Aggregation states must be immutable to be shared";
+        this.aggregationFunction = (AggregationFunction<Object, ?>) aggregationFunction;
+        this.ramAccounting = ramAccounting;
+        this.indexVersionCreated = indexVersionCreated;
+        this.minNodeVersion = minNodeVersion;
+        this.memoryManager = memoryManager;
+        this.numRows = frame.partitionSize();
+        this.states = new Object[2 * numRows];
+        ramAccounting.addBytes(RamUsageEstimator.shallowSizeOf(states));
+
+        var row = new ArrayRow();
+        for (int i = 0; i < numRows; i++) {
+            Object[] cells = frame.getRowInPartitionAtIndexOrNull(i);
+            assert cells != null : "No row at idx=" + i + " in current partition=" + frame;
+            row.cells(cells);
+            for (int j = 0, expressionsSize = expressions.size(); j < expressionsSize; j++) {
+                expressions.get(j).setNextRow(row);
+            }
+            Object state = newState();
+            if (filter.value(row)) {
+                state = this.aggregationFunction.iterate(ramAccounting, memoryManager, state, args);
+            }
+            states[numRows + i] = state;
+        }
+        for (int i = numRows - 1; i > 0; i--) {
+            states[i] = this.aggregationFunction.reduce(ramAccounting, states[2 * i], states[2 * i + 1]);
+        }
+    }
+
+    /**
+     * @return the aggregation state of the rows from {@code lowerBound} (inclusive) to
+     *         {@code upperBoundExclusive} of the partition.
+     */
+    Object query(int lowerBound, int upperBoundExclusive) {
+        Object state = newState();
+        int lower = lowerBound + numRows;
+        int upper = upperBoundExclusive + numRows;
+        while (lower < upper) {
+            if ((lower & 1) == 1) {
+                state = aggregationFunction.reduce(ramAccounting, state, states[lower]);
+                lower++;
+            }
+            if ((upper & 1) == 1) {
+                upper--;
+                state = aggregationFunction.reduce(ramAccounting, state, states[upper]);
+            }
+            lower >>= 1;
+            upper >>= 1;
+        }
+        return state;
+    }
+
+    private Object newState() {
+        return aggregationFunction.newState(ramAccounting, indexVersionCreated, minNodeVersion, memoryManager);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.window;
+
+import io.crate.Streamer;
+import io.crate.breaker.RowAccounting;
+import io.crate.data.ArrayRow;
+import io.crate.data.Row;
+import io.crate.execution.engine.sort.ExternalSorter;
+import io.crate.execution.engine.spill.PagedSpillFile;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Computes window functions over rows which have been sorted externally by the partition and order by keys.
+ * <p>
+ * The rows are streamed from the sorted runs of the {@link ExternalSorter} one partition at a time.
+ * A partition is buffered in memory, unless it exceeds the spill threshold of the sorter. In that case the partition
+ * is written to a {@link PagedSpillFile}, which provides random access to the rows of the partition for the frame
+ * computations.
+ */
+final class SpilledWindowPartitions implements Iterable<Object[]>, Closeable {
+
+    static final int ROWS_PER_PAGE = 1024;
+    static final int MAX_CACHED_PAGES = 8;
+
+    private final ExternalSorter sorter;
+    private final Streamer<?>[] streamers;
+    private final RowAccounting<Row> rowAccounting;
+    @Nullable
+    private final Comparator<Object[]> cmpPartitionBy;
+    private final int numCellsInSourceRow;
+    private final WindowFunctionBatchIterator.Functions functions;
+    private final ArrayRow sharedRow = new ArrayRow();
+    private final ArrayList<Object[]> partitionRows = new ArrayList<>();
+
+    @Nullable
+    private PagedSpillFile spilledPartition;
+
+    /**
+     * @param sorter        the sorter containing the spilled runs. <code>rowAccounting</code> must account into the
+     *                      RamAccounting of the sorter.
+     * @param streamers     streamers for all cells of a row, including the cells of the window function results.
+     */
+    SpilledWindowPartitions(ExternalSorter sorter,
+                            Streamer<?>[] streamers,
+                            RowAccounting<Row> rowAccounting,
+                            @Nullable Comparator<Object[]> cmpPartitionBy,
+                            int numCellsInSourceRow,
+                            WindowFunctionBatchIterator.Functions functions) {
+        this.sorter = sorter;
+        this.streamers = streamers;
+        this.rowAccounting = rowAccounting;
+        this.cmpPartitionBy = cmpPartitionBy;
+        this.numCellsInSourceRow = numCellsInSourceRow;
+        this.functions = functions;
+    }
+
+    @Override
+    public Iterator<Object[]> iterator() {
+        closePartition();
+        return new PartitionsIterator(sorter.mergedIterator(List.of()));
+    }
+
+    private void addToPartition(Object[] row) {
+        if (spilledPartition != null) {
+            spilledPartition.add(row);
+            return;
+        }
+        sharedRow.cells(row);
+        rowAccounting.accountForAndMaybeBreak(sharedRow);
+        partitionRows.add(row);
+        if (sorter.shouldSpill()) {
+            spilledPartition = PagedSpillFile.create(streamers, sorter.spillDirectory(), ROWS_PER_PAGE, MAX_CACHED_PAGES);
+            for (Object[] partitionRow : partitionRows) {
+                spilledPartition.add(partitionRow);
+            }
+            partitionRows.clear();
+            rowAccounting.release();
+        }
+    }
+
+    private List<Object[]> finishPartition() {
+        if (spilledPartition == null) {
+            return partitionRows;
+        }
+        spilledPartition.finishWriting();
+        return spilledPartition;
+    }
+
+    private void closePartition() {
+        partitionRows.clear();
+        rowAccounting.release();
+        if (spilledPartition != null) {
+            try {
+                spilledPartition.close();
+            } finally {
+                spilledPartition = null;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            closePartition();
+        } finally {
+            sorter.close();
+        }
+    }
+
+    private class PartitionsIterator implements Iterator<Object[]> {
+
+        private final Iterator<Object[]> sortedRows;
+
+        /**
+         * First row of the next partition
+         */
+        @Nullable
+        private Object[] nextRow;
+        private Iterator<Object[]> partition = Collections.emptyIterator();
+
+        PartitionsIterator(Iterator<Object[]> sortedRows) {
+            this.sortedRows = sortedRows;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!partition.hasNext()) {
+                if (!loadNextPartition()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Object[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return partition.next();
+        }
+
+        private boolean loadNextPartition() {
+            closePartition();
+            Object[] firstRow = nextRow;
+            nextRow = null;
+            if (firstRow == null) {
+                if (!sortedRows.hasNext()) {
+                    return false;
+                }
+                firstRow = sortedRows.next();
+            }
+            addToPartition(firstRow);
+            while (sortedRows.hasNext()) {
+                Object[] row = sortedRows.next();
+                if (cmpPartitionBy != null && cmpPartitionBy.compare(firstRow, row) != 0) {
+                    nextRow = row;
+                    break;
+                }
+                addToPartition(row);
+            }
+            List<Object[]> rows = finishPartition();
+            // All rows belong to the same partition, so there is no need to compare the partition keys again
+            partition = WindowFunctionBatchIterator.computeWindowFunctions(
+                rows, 0, rows.size(), null, numCellsInSourceRow, functions).iterator();
+            return true;
+        }
+    }
+}
@@ -53,6 +53,13 @@ public final class WindowFrameState {
         return partitionEnd;
     }
 
+    /**
+     * Returns the number of rows of the current partition.
+     */
+    public int partitionSize() {
+        return partitionEnd - partitionStart;
+    }
+
     public Iterable<Object[]> getRows() {
         return rows;
     }
@@ -22,6 +22,7 @@
 package io.crate.execution.engine.window;
 
 import com.google.common.collect.Iterables;
+import io.crate.Streamer;
 import io.crate.breaker.RowAccounting;
 import io.crate.data.BatchIterator;
 import io.crate.data.BatchIterators;
@@ -30,11 +31,13 @@ import io.crate.data.CollectingBatchIterator;
 import io.crate.data.Input;
 import io.crate.data.Row;
 import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.execution.engine.sort.ExternalSorter;
 import io.crate.execution.engine.sort.Sort;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.common.logging.Loggers;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -44,9 +47,12 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 import static io.crate.common.collections.Lists2.findFirstNonPeer;
+import static io.crate.concurrent.CompletableFutures.supplyAsync;
 
 /**
  * BatchIterator which computes window functions (incl. partitioning + ordering)
@@ -70,11 +76,58 @@ import static io.crate.common.collections.Lists2.findFirstNonPeer;
  *                      - Determine window frame
  *                      - Compute window function over the frame and output tuple
  * </pre>
+ *
+ * <p>
+ * If the rows are partitioned, the sorted rows are split at partition boundaries into ranges which are computed
+ * concurrently, each using its own {@link Functions} instance.
+ * </p>
+ *
+ * <p>
+ * If an {@link ExternalSorter} is provided, rows are spilled to disk as sorted runs once the memory threshold of the
+ * sorter is reached. The runs are then merged and the window functions are computed one partition at a time,
+ * see {@link SpilledWindowPartitions}.
+ * </p>
  */
 public final class WindowFunctionBatchIterator {
 
     private static final Logger LOGGER = Loggers.getLogger(WindowFunctionBatchIterator.class);
 
+    /**
+     * Minimum number of rows a range of partitions must have to be computed on a separate thread.
+     */
+    static final int MIN_ROWS_PER_THREAD = 1 << 13;
+
+    /**
+     * The window functions of a projection together with the frame boundary computations and the expressions and
+     * inputs of the function arguments.
+     * These are stateful, so each concurrent computation requires its own instance.
+     */
+    public static final class Functions {
+
+        private final ComputeFrameBoundary<Object[]> computeFrameStart;
+        private final ComputeFrameBoundary<Object[]> computeFrameEnd;
+        private final List<WindowFunction> windowFunctions;
+        private final List<? extends CollectExpression<Row, ?>> argsExpressions;
+        private final Boolean[] ignoreNulls;
+        private final Input[][] args;
+
+        public Functions(ComputeFrameBoundary<Object[]> computeFrameStart,
+                         ComputeFrameBoundary<Object[]> computeFrameEnd,
+                         List<WindowFunction> windowFunctions,
+                         List<? extends CollectExpression<Row, ?>> argsExpressions,
+                         Boolean[] ignoreNulls,
+                         Input[]... args) {
+            assert windowFunctions.size() == args.length : "arguments must be defined for each window function";
+            assert args.length == ignoreNulls.length : "ignore-nulls option must be defined for each window function";
+            this.computeFrameStart = computeFrameStart;
+            this.computeFrameEnd = computeFrameEnd;
+            this.windowFunctions = windowFunctions;
+            this.argsExpressions = argsExpressions;
+            this.ignoreNulls = ignoreNulls;
+            this.args = args;
+        }
+    }
+
     public static BatchIterator<Row> of(BatchIterator<Row> source,
                                         RowAccounting<Row> rowAccounting,
                                         ComputeFrameBoundary<Object[]> computeFrameStart,
@@ -88,13 +141,63 @@ public final class WindowFunctionBatchIterator {
                                         List<? extends CollectExpression<Row, ?>> argsExpressions,
                                         Boolean[] ignoreNulls,
                                         Input[]... args) {
-        assert windowFunctions.size() == args.length : "arguments must be defined for each window function";
-        assert args.length == ignoreNulls.length : "ignore-nulls option must be defined for each window function";
+        return of(
+            source,
+            rowAccounting,
+            cmpPartitionBy,
+            cmpOrderBy,
+            numCellsInSourceRow,
+            numAvailableThreads,
+            executor,
+            new Functions(computeFrameStart, computeFrameEnd, windowFunctions, argsExpressions, ignoreNulls, args),
+            null,
+            null,
+            null
+        );
+    }
+
+    /**
+     * @param functions used to compute the window functions in the current thread.
+     * @param createFunctions creates additional {@link Functions} instances to compute ranges of partitions
+     *                        concurrently. If null, all partitions are computed using {@code functions}.
+     * @param externalSorter  used to spill rows to disk; if null all rows are kept in memory.
+     *                        <code>rowAccounting</code> must account into the RamAccounting of the sorter.
+     * @param streamers       streamers for all cells of a row, including the window function results;
+     *                        required if an <code>externalSorter</code> is provided.
+     */
+    public static BatchIterator<Row> of(BatchIterator<Row> source,
+                                        RowAccounting<Row> rowAccounting,
+                                        @Nullable Comparator<Object[]> cmpPartitionBy,
+                                        @Nullable Comparator<Object[]> cmpOrderBy,
+                                        int numCellsInSourceRow,
+                                        IntSupplier numAvailableThreads,
+                                        Executor executor,
+                                        Functions functions,
+                                        @Nullable Supplier<Functions> createFunctions,
+                                        @Nullable ExternalSorter externalSorter,
+                                        @Nullable Streamer<?>[] streamers) {
+        int numWindowFunctions = functions.windowFunctions.size();
+        if (externalSorter != null) {
+            assert streamers != null : "streamers are required to spill rows";
+            return spilling(
+                source,
+                rowAccounting,
+                cmpPartitionBy,
+                cmpOrderBy,
+                numCellsInSourceRow,
+                numAvailableThreads,
+                executor,
+                functions,
+                createFunctions,
+                externalSorter,
+                streamers
+            );
+        }
         // As optimization we use 1 list that acts both as inputs(source) and as outputs.
         // The window function results are injected during the computation into spare cells that are eagerly created
         Function<Row, Object[]> materialize = row -> {
             rowAccounting.accountForAndMaybeBreak(row);
-            return materializeWithSpare(row, windowFunctions.size());
+            return materializeWithSpare(row, numWindowFunctions);
         };
         return CollectingBatchIterator.newInstance(
             source,
@@ -102,23 +205,93 @@ public final class WindowFunctionBatchIterator {
                 .collect(src, Collectors.mapping(materialize, Collectors.toList()))
                 .thenCompose(rows -> sortAndComputeWindowFunctions(
                     rows,
-                    computeFrameStart,
-                    computeFrameEnd,
                     cmpPartitionBy,
                     cmpOrderBy,
                     numCellsInSourceRow,
                     numAvailableThreads,
                     executor,
-                    windowFunctions,
-                    argsExpressions,
-                    ignoreNulls,
-                    args
+                    functions,
+                    createFunctions
                 ))
                 .thenApply(rows -> Iterables.transform(rows, Buckets.arrayToSharedRow()::apply)),
             source.hasLazyResultSet()
         );
     }
 
+    private static BatchIterator<Row> spilling(BatchIterator<Row> source,
+                                               RowAccounting<Row> rowAccounting,
+                                               @Nullable Comparator<Object[]> cmpPartitionBy,
+                                               @Nullable Comparator<Object[]> cmpOrderBy,
+                                               int numCellsInSourceRow,
+                                               IntSupplier numAvailableThreads,
+                                               Executor executor,
+                                               Functions functions,
+                                               @Nullable Supplier<Functions> createFunctions,
+                                               ExternalSorter sorter,
+                                               Streamer<?>[] streamers) {
+        int numWindowFunctions = functions.windowFunctions.size();
+        Comparator<Object[]> cmpPartitionThenOrderBy = joinCmp(cmpPartitionBy, cmpOrderBy);
+        SpilledWindowPartitions spilledPartitions = new SpilledWindowPartitions(
+            sorter,
+            streamers,
+            rowAccounting,
+            cmpPartitionBy,
+            numCellsInSourceRow,
+            functions
+        );
+        Collector<Row, ArrayList<Object[]>, ArrayList<Object[]>> collector = Collector.of(
+            ArrayList::new,
+            (rows, row) -> {
+                rowAccounting.accountForAndMaybeBreak(row);
+                rows.add(materializeWithSpare(row, numWindowFunctions));
+                if (sorter.shouldSpill()) {
+                    spill(sorter, rows, cmpPartitionThenOrderBy);
+                }
+            },
+            (rows1, rows2) -> {
+                throw new UnsupportedOperationException("combine not supported");
+            },
+            Collector.Characteristics.IDENTITY_FINISH
+        );
+        return CollectingBatchIterator.newInstance(
+            () -> {
+                source.close();
+                spilledPartitions.close();
+            },
+            source::kill,
+            () -> BatchIterators.collect(source, collector)
+                .thenCompose(rows -> {
+                    if (sorter.numRuns() == 0) {
+                        return sortAndComputeWindowFunctions(
+                            rows,
+                            cmpPartitionBy,
+                            cmpOrderBy,
+                            numCellsInSourceRow,
+                            numAvailableThreads,
+                            executor,
+                            functions,
+                            createFunctions
+                        );
+                    }
+                    // Spill the remaining rows as well, so that the memory is available for the partitions
+                    spill(sorter, rows, cmpPartitionThenOrderBy);
+                    return CompletableFuture.<Iterable<Object[]>>completedFuture(spilledPartitions);
+                })
+                .thenApply(rows -> Iterables.transform(rows, Buckets.arrayToSharedRow()::apply)),
+            true
+        );
+    }
+
+    private static void spill(ExternalSorter sorter,
+                              List<Object[]> rows,
+                              @Nullable Comparator<Object[]> cmpPartitionThenOrderBy) {
+        if (cmpPartitionThenOrderBy != null) {
+            rows.sort(cmpPartitionThenOrderBy);
+        }
+        sorter.spill(rows);
+        rows.clear();
+    }
+
     private static Object[] materializeWithSpare(Row row, int numWindowFunctions) {
         Object[] cells = new Object[row.numColumns() + numWindowFunctions];
         for (int i = 0; i < row.numColumns(); i++) {
@@ -141,46 +314,138 @@ public final class WindowFunctionBatchIterator {
         Boolean[] ignoreNulls,
         Input[]... args) {
 
-        Function<List<Object[]>, Iterable<Object[]>> computeWindowsFn = sortedRows -> computeWindowFunctions(
-            sortedRows,
-            computeFrameStart,
-            computeFrameEnd,
+        return sortAndComputeWindowFunctions(
+            rows,
             cmpPartitionBy,
+            cmpOrderBy,
             numCellsInSourceRow,
-            windowFunctions,
-            argsExpressions,
-            ignoreNulls,
-            args);
+            numAvailableThreads,
+            executor,
+            new Functions(computeFrameStart, computeFrameEnd, windowFunctions, argsExpressions, ignoreNulls, args),
+            null
+        );
+    }
+
+    static CompletableFuture<Iterable<Object[]>> sortAndComputeWindowFunctions(
+        List<Object[]> rows,
+        @Nullable Comparator<Object[]> cmpPartitionBy,
+        @Nullable Comparator<Object[]> cmpOrderBy,
+        int numCellsInSourceRow,
+        IntSupplier numAvailableThreads,
+        Executor executor,
+        Functions functions,
+        @Nullable Supplier<Functions> createFunctions) {
+
         Comparator<Object[]> cmpPartitionThenOrderBy = joinCmp(cmpPartitionBy, cmpOrderBy);
         if (cmpPartitionThenOrderBy == null) {
-            return CompletableFuture.completedFuture(computeWindowsFn.apply(rows));
+            return CompletableFuture.completedFuture(
+                computeWindowFunctions(rows, 0, rows.size(), cmpPartitionBy, numCellsInSourceRow, functions));
+        }
+        int numThreads = numAvailableThreads.getAsInt();
+        Function<List<Object[]>, CompletableFuture<Iterable<Object[]>>> computeWindowsFn;
+        if (cmpPartitionBy == null || createFunctions == null) {
+            computeWindowsFn = sortedRows -> CompletableFuture.completedFuture(
+                computeWindowFunctions(sortedRows, 0, sortedRows.size(), cmpPartitionBy, numCellsInSourceRow, functions));
         } else {
-            int minItemsPerThread = 1 << 13; // Same as Arrays.MIN_ARRAY_SORT_GRAN
-            return Sort
-                .parallelSort(rows, cmpPartitionThenOrderBy, minItemsPerThread, numAvailableThreads.getAsInt(), executor)
-                .thenApply(computeWindowsFn);
+            computeWindowsFn = sortedRows -> computeWindowFunctionsInParallel(
+                sortedRows,
+                cmpPartitionBy,
+                numCellsInSourceRow,
+                numThreads,
+                executor,
+                functions,
+                createFunctions
+            );
+        }
+        int minItemsPerThread = 1 << 13; // Same as Arrays.MIN_ARRAY_SORT_GRAN
+        return Sort
+            .parallelSort(rows, cmpPartitionThenOrderBy, minItemsPerThread, numThreads, executor)
+            .thenCompose(computeWindowsFn);
+    }
+
+    /**
+     * Computes the window functions of ranges of whole partitions concurrently.
+     * The results are injected into the rows, so once all ranges are computed the sorted rows are the result.
+     */
+    private static CompletableFuture<Iterable<Object[]>> computeWindowFunctionsInParallel(
+        List<Object[]> sortedRows,
+        Comparator<Object[]> cmpPartitionBy,
+        int numCellsInSourceRow,
+        int numThreads,
+        Executor executor,
+        Functions functions,
+        Supplier<Functions> createFunctions) {
+
+        List<int[]> ranges = partitionRanges(sortedRows, cmpPartitionBy, numThreads, MIN_ROWS_PER_THREAD);
+        if (ranges.size() <= 1) {
+            return CompletableFuture.completedFuture(
+                computeWindowFunctions(sortedRows, 0, sortedRows.size(), cmpPartitionBy, numCellsInSourceRow, functions));
+        }
+        ArrayList<CompletableFuture<Void>> futures = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            int[] range = ranges.get(i);
+            Functions rangeFunctions = i == 0 ? functions : createFunctions.get();
+            futures.add(supplyAsync(() -> {
+                Iterable<Object[]> rows = computeWindowFunctions(
+                    sortedRows, range[0], range[1], cmpPartitionBy, numCellsInSourceRow, rangeFunctions);
+                for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); ) {
+                    it.next();
+                }
+                return null;
+            }, executor));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .thenApply(ignored -> sortedRows);
+    }
+
+    /**
+     * Splits the sorted rows into at most {@code numThreads} ranges of roughly equal size.
+     * A range always ends at a partition boundary, so a partition is never split across ranges.
+     *
+     * @return the ranges as [start, endExclusive] pairs
+     */
+    static List<int[]> partitionRanges(List<Object[]> sortedRows,
+                                       Comparator<Object[]> cmpPartitionBy,
+                                       int numThreads,
+                                       int minRowsPerThread) {
+        int numRows = sortedRows.size();
+        int numRanges = Math.min(numThreads, numRows / Math.max(1, minRowsPerThread));
+        ArrayList<int[]> ranges = new ArrayList<>(Math.max(1, numRanges));
+        if (numRanges <= 1) {
+            ranges.add(new int[] { 0, numRows });
+            return ranges;
+        }
+        int rowsPerRange = numRows / numRanges;
+        int start = 0;
+        while (start < numRows) {
+            int end = start + rowsPerRange;
+            if (end >= numRows) {
+                end = numRows;
+            } else {
+                end = findFirstNonPeer(sortedRows, end - 1, numRows, cmpPartitionBy);
+            }
+            ranges.add(new int[] { start, end });
+            start = end;
         }
+        return ranges;
     }
 
-    private static Iterable<Object[]> computeWindowFunctions(List<Object[]> sortedRows,
-                                                             ComputeFrameBoundary<Object[]> computeFrameStart,
-                                                             ComputeFrameBoundary<Object[]> computeFrameEnd,
-                                                             @Nullable Comparator<Object[]> cmpPartitionBy,
-                                                             int numCellsInSourceRow,
-                                                             List<WindowFunction> windowFunctions,
-                                                             List<? extends CollectExpression<Row, ?>> argsExpressions,
-                                                             Boolean[] ignoreNulls,
-                                                             Input[]... args) {
+    static Iterable<Object[]> computeWindowFunctions(List<Object[]> sortedRows,
+                                                     int start,
+                                                     int end,
+                                                     @Nullable Comparator<Object[]> cmpPartitionBy,
+                                                     int numCellsInSourceRow,
+                                                     Functions functions) {
+        ComputeFrameBoundary<Object[]> computeFrameStart = functions.computeFrameStart;
+        ComputeFrameBoundary<Object[]> computeFrameEnd = functions.computeFrameEnd;
         return () -> new Iterator<>() {
 
             private boolean isTraceEnabled = LOGGER.isTraceEnabled();
-            private final int start = 0;
-            private final int end = sortedRows.size();
             private final WindowFrameState frame = new WindowFrameState(start, end, sortedRows);
 
             private int pStart = start;
             private int pEnd = findFirstNonPeer(sortedRows, pStart, end, cmpPartitionBy);
-            private int i = 0;
+            private int i = start;
 
             private int idxInPartition = 0;
 
@@ -203,7 +468,7 @@ public final class WindowFunctionBatchIterator {
                 int wEnd = computeFrameEnd.apply(pStart, pEnd, i, sortedRows);
                 frame.updateBounds(pStart, pEnd, wBegin, wEnd);
                 final Object[] row = computeAndInjectResults(
-                    sortedRows, numCellsInSourceRow, windowFunctions, frame, i, idxInPartition, argsExpressions, ignoreNulls, args);
+                    sortedRows, numCellsInSourceRow, functions, frame, i, idxInPartition);
 
                 if (isTraceEnabled) {
                     LOGGER.trace(
@@ -218,7 +483,7 @@ public final class WindowFunctionBatchIterator {
     }
 
     @Nullable
-    private static Comparator<Object[]> joinCmp(@Nullable Comparator<Object[]> cmpPartitionBy,
+    static Comparator<Object[]> joinCmp(@Nullable Comparator<Object[]> cmpPartitionBy,
                                                 @Nullable Comparator<Object[]> cmpOrderBy) {
         if (cmpPartitionBy == null) {
             return cmpOrderBy;
@@ -231,17 +496,16 @@ public final class WindowFunctionBatchIterator {
 
     private static Object[] computeAndInjectResults(List<Object[]> rows,
                                                     int numCellsInSourceRow,
-                                                    List<WindowFunction> windowFunctions,
+                                                    Functions functions,
                                                     WindowFrameState frame,
                                                     int idx,
-                                                    int idxInPartition,
-                                                    List<? extends CollectExpression<Row, ?>> argsExpressions,
-                                                    Boolean[] ignoreNulls,
-                                                    Input[]... args) {
+                                                    int idxInPartition) {
         Object[] row = rows.get(idx);
+        List<WindowFunction> windowFunctions = functions.windowFunctions;
         for (int c = 0; c < windowFunctions.size(); c++) {
             WindowFunction windowFunction = windowFunctions.get(c);
-            Object result = windowFunction.execute(idxInPartition, frame, argsExpressions, ignoreNulls[c], args[c]);
+            Object result = windowFunction.execute(
+                idxInPartition, frame, functions.argsExpressions, functions.ignoreNulls[c], functions.args[c]);
             row[numCellsInSourceRow + c] = result;
         }
         return row;
@@ -22,7 +22,9 @@
 package io.crate.execution.engine.window;
 
 import io.crate.analyze.OrderBy;
+import io.crate.Streamer;
 import io.crate.analyze.WindowDefinition;
+import io.crate.breaker.ConcurrentRamAccounting;
 import io.crate.breaker.RamAccounting;
 import io.crate.breaker.RowAccountingWithEstimators;
 import io.crate.data.Input;
@@ -31,6 +33,7 @@ import io.crate.data.Row;
 import io.crate.execution.dsl.projection.WindowAggProjection;
 import io.crate.execution.engine.aggregation.AggregationFunction;
 import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.execution.engine.sort.ExternalSorter;
 import io.crate.expression.ExpressionsInput;
 import io.crate.expression.InputFactory;
 import io.crate.expression.symbol.InputColumn;
@@ -44,10 +47,15 @@ import io.crate.metadata.NodeContext;
 import io.crate.metadata.TransactionContext;
 import io.crate.sql.tree.WindowFrame;
 import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import io.crate.types.IntervalType;
+import io.netty.buffer.ByteBuf;
 import org.elasticsearch.Version;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.unit.ByteSizeValue;
 
 import javax.annotation.Nullable;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -61,6 +69,16 @@ import static io.crate.execution.engine.sort.Comparators.createComparator;
 
 public class WindowProjector {
 
+    /**
+     * Amount of memory a single window function operation may use for buffering rows before they are spilled to disk.
+     * Spilling is disabled for values &lt;= 0.
+     */
+    public static final Setting<ByteSizeValue> SPILL_THRESHOLD_SETTING = Setting.byteSizeSetting(
+        "node.sql.window.spill_threshold",
+        new ByteSizeValue(-1),
+        Setting.Property.NodeScope
+    );
+
     public static Projector fromProjection(WindowAggProjection projection,
                                            NodeContext nodeCtx,
                                            InputFactory inputFactory,
@@ -70,7 +88,83 @@ public class WindowProjector {
                                            Version minNodeVersion,
                                            Version indexVersionCreated,
                                            IntSupplier numThreads,
-                                           Executor executor) {
+                                           Executor executor,
+                                           long spillThreshold,
+                                           Path spillDirectory) {
+        var windowDefinition = projection.windowDefinition();
+        var partitions = windowDefinition.partitions();
+        if (!partitions.isEmpty()) {
+            // Ranges of partitions may be computed concurrently, see WindowFunctionBatchIterator
+            ramAccounting = new SynchronizedRamAccounting(ramAccounting);
+            memoryManager = new SynchronizedMemoryManager(memoryManager);
+        }
+        Supplier<InputFactory.Context<CollectExpression<Row, ?>>> createInputFactoryContext =
+            () -> inputFactory.ctxForInputColumns(txnCtx);
+        // The sorter releases the memory of spilled rows, so it needs a RamAccounting that only tracks the rows.
+        RamAccounting rowsRamAccounting = ramAccounting;
+        if (spillThreshold > 0) {
+            RamAccounting parentRamAccounting = ramAccounting;
+            rowsRamAccounting = new ConcurrentRamAccounting(
+                parentRamAccounting::addBytes,
+                bytes -> parentRamAccounting.addBytes(-bytes)
+            );
+        }
+        int arrayListElementOverHead = 32;
+        RowAccountingWithEstimators accounting = new RowAccountingWithEstimators(
+            Symbols.typeView(projection.standalone()), rowsRamAccounting, arrayListElementOverHead);
+        Comparator<Object[]> cmpPartitionBy = partitions.isEmpty()
+            ? null
+            : createComparator(createInputFactoryContext, new OrderBy(windowDefinition.partitions()));
+        Comparator<Object[]> cmpOrderBy = createComparator(createInputFactoryContext, windowDefinition.orderBy());
+        int numCellsInSourceRow = projection.standalone().size();
+        RamAccounting functionsRamAccounting = ramAccounting;
+        MemoryManager functionsMemoryManager = memoryManager;
+        Supplier<WindowFunctionBatchIterator.Functions> createFunctions = () -> createFunctions(
+            projection,
+            nodeCtx,
+            inputFactory,
+            txnCtx,
+            functionsRamAccounting,
+            functionsMemoryManager,
+            minNodeVersion,
+            indexVersionCreated,
+            cmpOrderBy
+        );
+        WindowFunctionBatchIterator.Functions functions = createFunctions.get();
+        Streamer<?>[] streamers = DataTypes.getStreamers(Symbols.typeView(projection.outputs()));
+        Comparator<Object[]> cmpPartitionThenOrderBy = WindowFunctionBatchIterator.joinCmp(cmpPartitionBy, cmpOrderBy);
+        Comparator<Object[]> spillComparator = cmpPartitionThenOrderBy == null ? (a, b) -> 0 : cmpPartitionThenOrderBy;
+        RamAccounting sorterRamAccounting = rowsRamAccounting;
+        return sourceRows -> WindowFunctionBatchIterator.of(
+            sourceRows,
+            accounting,
+            cmpPartitionBy,
+            cmpOrderBy,
+            numCellsInSourceRow,
+            numThreads,
+            executor,
+            functions,
+            cmpPartitionBy == null ? null : createFunctions,
+            spillThreshold > 0
+                ? new ExternalSorter(streamers, spillComparator, sorterRamAccounting, spillThreshold, spillDirectory)
+                : null,
+            streamers
+        );
+    }
+
+    /**
+     * Creates new instances of the window functions of the projection, including their argument expressions and the
+     * frame boundary computations.
+     */
+    private static WindowFunctionBatchIterator.Functions createFunctions(WindowAggProjection projection,
+                                                                         NodeContext nodeCtx,
+                                                                         InputFactory inputFactory,
+                                                                         TransactionContext txnCtx,
+                                                                         RamAccounting ramAccounting,
+                                                                         MemoryManager memoryManager,
+                                                                         Version minNodeVersion,
+                                                                         Version indexVersionCreated,
+                                                                         @Nullable Comparator<Object[]> cmpOrderBy) {
         var windowFunctionSymbols = projection.windowFunctions();
         var numWindowFunctions = windowFunctionSymbols.size();
 
@@ -123,16 +217,6 @@ public class WindowProjector {
             ignoreNulls[idx] = windowFunctionSymbol.ignoreNulls();
         }
         var windowDefinition = projection.windowDefinition();
-        var partitions = windowDefinition.partitions();
-        Supplier<InputFactory.Context<CollectExpression<Row, ?>>> createInputFactoryContext =
-            () -> inputFactory.ctxForInputColumns(txnCtx);
-        int arrayListElementOverHead = 32;
-        RowAccountingWithEstimators accounting = new RowAccountingWithEstimators(
-            Symbols.typeView(projection.standalone()), ramAccounting, arrayListElementOverHead);
-        Comparator<Object[]> cmpPartitionBy = partitions.isEmpty()
-            ? null
-            : createComparator(createInputFactoryContext, new OrderBy(windowDefinition.partitions()));
-        Comparator<Object[]> cmpOrderBy = createComparator(createInputFactoryContext, windowDefinition.orderBy());
         int numCellsInSourceRow = projection.standalone().size();
         ComputeFrameBoundary<Object[]> computeFrameStart = createComputeStartFrameBoundary(
             numCellsInSourceRow,
@@ -148,16 +232,9 @@ public class WindowProjector {
             windowDefinition,
             cmpOrderBy
         );
-        return sourceRows -> WindowFunctionBatchIterator.of(
-            sourceRows,
-            accounting,
+        return new WindowFunctionBatchIterator.Functions(
             computeFrameStart,
             computeFrameEnd,
-            cmpPartitionBy,
-            cmpOrderBy,
-            numCellsInSourceRow,
-            numThreads,
-            executor,
             windowFunctions,
             windowFuncArgsExpressions,
             ignoreNulls,
@@ -257,4 +334,52 @@ public class WindowProjector {
             return x;
         };
     }
+
+    private static final class SynchronizedRamAccounting implements RamAccounting {
+
+        private final RamAccounting delegate;
+
+        SynchronizedRamAccounting(RamAccounting delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void addBytes(long bytes) {
+            delegate.addBytes(bytes);
+        }
+
+        @Override
+        public synchronized long totalBytes() {
+            return delegate.totalBytes();
+        }
+
+        @Override
+        public synchronized void release() {
+            delegate.release();
+        }
+
+        @Override
+        public synchronized void close() {
+            delegate.close();
+        }
+    }
+
+    private static final class SynchronizedMemoryManager implements MemoryManager {
+
+        private final MemoryManager delegate;
+
+        SynchronizedMemoryManager(MemoryManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized ByteBuf allocate(int capacity) {
+            return delegate.allocate(capacity);
+        }
+
+        @Override
+        public synchronized void close() {
+            delegate.close();
+        }
+    }
 }
@@ -52,6 +52,7 @@ import io.crate.execution.dsl.phases.ExecutionPhaseVisitor;
 import io.crate.execution.dsl.phases.ExecutionPhases;
 import io.crate.execution.dsl.phases.FetchPhase;
 import io.crate.execution.dsl.phases.HashJoinPhase;
+import io.crate.execution.dsl.phases.MergeJoinPhase;
 import io.crate.execution.dsl.phases.MergePhase;
 import io.crate.execution.dsl.phases.NestedLoopPhase;
 import io.crate.execution.dsl.phases.NodeOperation;
@@ -75,10 +76,12 @@ import io.crate.execution.engine.distribution.StreamBucket;
 import io.crate.execution.engine.distribution.merge.PagingIterator;
 import io.crate.execution.engine.fetch.FetchTask;
 import io.crate.execution.engine.join.HashJoinOperation;
+import io.crate.execution.engine.join.MergeJoinOperation;
 import io.crate.execution.engine.join.NestedLoopOperation;
 import io.crate.execution.engine.pipeline.ProjectingRowConsumer;
 import io.crate.execution.engine.pipeline.ProjectionToProjectorVisitor;
 import io.crate.execution.engine.pipeline.ProjectorFactory;
+import io.crate.execution.engine.spill.SpillFile;
 import io.crate.expression.InputFactory;
 import io.crate.expression.RowFilter;
 import io.crate.expression.eval.EvaluatingNormalizer;
@@ -109,6 +112,7 @@ import org.elasticsearch.node.Node;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
@@ -143,6 +147,7 @@ public class JobSetup {
     private final Executor searchTp;
     private final String nodeName;
     private final Schemas schemas;
+    private final Path spillDirectory;
 
     @Inject
     public JobSetup(Settings settings,
@@ -162,6 +167,7 @@ public class JobSetup {
                     MemoryManagerFactory memoryManagerFactory) {
         this.nodeName = Node.NODE_NAME_SETTING.get(settings);
         this.schemas = schemas;
+        this.spillDirectory = SpillFile.directory(settings);
         this.collectOperation = collectOperation;
         this.clusterService = clusterService;
         this.circuitBreakerService = circuitBreakerService;
@@ -925,18 +931,93 @@ public class JobSetup {
                 phase.numRightOutputs(),
                 firstConsumer,
                 joinCondition,
+                phase.joinType(),
                 phase.leftJoinConditionInputs(),
                 phase.rightJoinConditionInputs(),
+                phase.leftOutputTypes(),
+                phase.rightOutputTypes(),
                 // 110 extra bytes per row =
                 //    96 bytes for each ArrayList +
                 //    7 bytes per key for the IntHashObjectHashMap  (should be 4 but the map pre-allocates more)
                 //    7 bytes perv value (pointer from the map to the list) (should be 4 but the map pre-allocates more)
                 new RowCellsAccountingWithEstimators(phase.leftOutputTypes(), ramAccountingOfOperation, 110),
+                new BlockBasedRamAccounting(ramAccounting::addBytes, ramAccountingBlockSizeInBytes),
                 context.transactionContext,
                 inputFactory,
                 breaker(),
                 phase.estimatedRowSizeForLeft(),
-                phase.numberOfRowsForLeft());
+                phase.numberOfRowsForLeft(),
+                spillDirectory);
+            DistResultRXTask left = pageDownstreamContextForNestedLoop(
+                phase.phaseId(),
+                context,
+                (byte) 0,
+                phase.leftMergePhase(),
+                joinOperation.leftConsumer(),
+                new BlockBasedRamAccounting(ramAccounting::addBytes, ramAccountingBlockSizeInBytes),
+                memoryManager
+            );
+            if (left != null) {
+                context.registerSubContext(left);
+            }
+            DistResultRXTask right = pageDownstreamContextForNestedLoop(
+                phase.phaseId(),
+                context,
+                (byte) 1,
+                phase.rightMergePhase(),
+                joinOperation.rightConsumer(),
+                new BlockBasedRamAccounting(ramAccounting::addBytes, ramAccountingBlockSizeInBytes),
+                memoryManager
+            );
+            if (right != null) {
+                context.registerSubContext(right);
+            }
+            context.registerSubContext(new JoinTask(
+                phase,
+                joinOperation,
+                left != null ? left.getBucketReceiver((byte) 0) : null,
+                right != null ? right.getBucketReceiver((byte) 0) : null
+            ));
+            return null;
+        }
+
+        @Override
+        public Void visitMergeJoinPhase(MergeJoinPhase phase, Context context) {
+            CircuitBreaker breaker = breaker();
+            int ramAccountingBlockSizeInBytes = BlockBasedRamAccounting.blockSizeInBytes(breaker.getLimit());
+            var ramAccounting = ConcurrentRamAccounting.forCircuitBreaker(phase.label(), breaker);
+            var ramAccountingOfOperation = new BlockBasedRamAccounting(
+                ramAccounting::addBytes,
+                ramAccountingBlockSizeInBytes);
+            RowConsumer lastConsumer = context.getRowConsumer(phase, Paging.PAGE_SIZE, ramAccountingOfOperation);
+            var memoryManager = memoryManagerFactory.getMemoryManager(ramAccounting);
+            lastConsumer.completionFuture().whenComplete((result, error) -> {
+                memoryManager.close();
+                ramAccounting.close();
+            });
+
+            RowConsumer firstConsumer = ProjectingRowConsumer.create(
+                lastConsumer,
+                phase.projections(),
+                phase.jobId(),
+                context.txnCtx(),
+                ramAccountingOfOperation,
+                memoryManager,
+                projectorFactory
+            );
+            Predicate<Row> joinCondition = RowFilter.create(context.transactionContext, inputFactory, phase.joinCondition());
+
+            MergeJoinOperation joinOperation = new MergeJoinOperation(
+                phase.numLeftOutputs(),
+                phase.numRightOutputs(),
+                firstConsumer,
+                joinCondition,
+                phase.joinType(),
+                phase.leftJoinConditionInputs(),
+                phase.rightJoinConditionInputs(),
+                new RowCellsAccountingWithEstimators(phase.rightOutputTypes(), ramAccountingOfOperation, 32),
+                context.transactionContext,
+                inputFactory);
             DistResultRXTask left = pageDownstreamContextForNestedLoop(
                 phase.phaseId(),
                 context,
@@ -0,0 +1,342 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.jobs;
+
+import io.crate.common.unit.TimeValue;
+import io.crate.concurrent.limits.ConcurrencyLimit;
+import io.crate.exceptions.JobKilledException;
+import io.crate.execution.jobs.kill.KillAllListener;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+import org.elasticsearch.threadpool.Scheduler;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+/**
+ * Limits the number of queries which are executed concurrently by the handler node.
+ *
+ * <p>
+ * The limit adapts to the observed query latency using a {@link ConcurrencyLimit}: It grows as long as
+ * the latency stays stable and shrinks once queries start to slow each other down.
+ * In addition no further queries are admitted while the memory used by queries exceeds
+ * {@link #MEMORY_THRESHOLD_SETTING} of the query circuit breaker limit.
+ * </p>
+ *
+ * <p>
+ * Queries exceeding the limit are queued and admitted in FIFO order once running queries finish.
+ * If the queue is full or a query isn't admitted within {@link #QUEUE_TIMEOUT_SETTING} the query fails
+ * with a {@link EsRejectedExecutionException}.
+ * Killed queries are removed from the queue and fail with a {@link JobKilledException}.
+ * </p>
+ */
+@Singleton
+public class QueryAdmissionController implements KillAllListener {
+
+    public static final Setting<Boolean> ENABLED_SETTING = Setting.boolSetting(
+        "node.sql.admission.enabled",
+        false,
+        Setting.Property.NodeScope
+    );
+
+    public static final Setting<Integer> INITIAL_CONCURRENCY_SETTING = Setting.intSetting(
+        "node.sql.admission.initial_concurrency",
+        Math.max(4, 2 * Runtime.getRuntime().availableProcessors()),
+        1,
+        Setting.Property.NodeScope
+    );
+
+    public static final Setting<Integer> MAX_CONCURRENCY_SETTING = Setting.intSetting(
+        "node.sql.admission.max_concurrency",
+        200,
+        1,
+        Setting.Property.NodeScope
+    );
+
+    public static final Setting<Integer> QUEUE_SIZE_SETTING = Setting.intSetting(
+        "node.sql.admission.queue_size",
+        1000,
+        0,
+        Setting.Property.NodeScope
+    );
+
+    public static final Setting<TimeValue> QUEUE_TIMEOUT_SETTING = Setting.timeSetting(
+        "node.sql.admission.queue_timeout",
+        TimeValue.timeValueSeconds(5),
+        Setting.Property.NodeScope
+    );
+
+    public static final Setting<Double> MEMORY_THRESHOLD_SETTING = Setting.doubleSetting(
+        "node.sql.admission.memory_threshold",
+        0.9,
+        0.0,
+        1.0,
+        Setting.Property.NodeScope
+    );
+
+    private static final Releasable NO_OP = () -> {};
+
+    private final boolean enabled;
+    private final int queueSize;
+    private final TimeValue queueTimeout;
+    private final double memoryThreshold;
+    private final CircuitBreaker queryBreaker;
+    private final ThreadPool threadPool;
+    private final ConcurrencyLimit limit;
+
+    /**
+     * Guarded by {@code this}
+     */
+    private final ArrayDeque<PendingQuery> queue = new ArrayDeque<>();
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    @Inject
+    public QueryAdmissionController(Settings settings,
+                                    ThreadPool threadPool,
+                                    CircuitBreakerService breakerService,
+                                    TasksService tasksService) {
+        this(
+            ENABLED_SETTING.get(settings),
+            INITIAL_CONCURRENCY_SETTING.get(settings),
+            MAX_CONCURRENCY_SETTING.get(settings),
+            QUEUE_SIZE_SETTING.get(settings),
+            QUEUE_TIMEOUT_SETTING.get(settings),
+            MEMORY_THRESHOLD_SETTING.get(settings),
+            breakerService.getBreaker(HierarchyCircuitBreakerService.QUERY),
+            threadPool
+        );
+        tasksService.addListener(this);
+    }
+
+    QueryAdmissionController(boolean enabled,
+                             int initialConcurrency,
+                             int maxConcurrency,
+                             int queueSize,
+                             TimeValue queueTimeout,
+                             double memoryThreshold,
+                             CircuitBreaker queryBreaker,
+                             ThreadPool threadPool) {
+        this.enabled = enabled;
+        this.queueSize = queueSize;
+        this.queueTimeout = queueTimeout;
+        this.memoryThreshold = memoryThreshold;
+        this.queryBreaker = queryBreaker;
+        this.threadPool = threadPool;
+        this.limit = new ConcurrencyLimit.Builder()
+            .initialLimit(Math.min(initialConcurrency, maxConcurrency))
+            .minLimit(1)
+            .maxConcurrency(maxConcurrency)
+            // Queries are long running compared to the RPCs the default is tuned for, grow slowly.
+            .queueSize(concurrency -> Math.max(1, (int) Math.log10(concurrency)))
+            .build();
+    }
+
+    /**
+     * Requests admission for a query.
+     *
+     * @param jobId the job of the query, used to remove it from the queue if it is killed while queued
+     * @param userName the user running the query, who may kill it
+     * @return a future which completes once the query is admitted. The query must close the returned
+     *         {@link Releasable} once it finished. The future completes exceptionally if the query was rejected
+     *         or killed.
+     */
+    public CompletableFuture<Releasable> acquire(UUID jobId, String userName) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(NO_OP);
+        }
+        synchronized (this) {
+            if (queue.isEmpty() && canAdmit()) {
+                return CompletableFuture.completedFuture(admit());
+            }
+            if (queue.size() >= queueSize) {
+                rejected.increment();
+                return CompletableFuture.failedFuture(new EsRejectedExecutionException(String.format(
+                    Locale.ENGLISH,
+                    "Query rejected, %d queries are running and %d are already queued",
+                    limit.numInflight(),
+                    queue.size()
+                ), false));
+            }
+            PendingQuery pendingQuery = new PendingQuery(jobId, userName);
+            queue.add(pendingQuery);
+            pendingQuery.timeout = threadPool.schedule(
+                () -> onTimeout(pendingQuery),
+                queueTimeout,
+                ThreadPool.Names.GENERIC
+            );
+            return pendingQuery.future;
+        }
+    }
+
+    public QueryAdmissionStats stats() {
+        int queued;
+        synchronized (this) {
+            queued = queue.size();
+        }
+        return new QueryAdmissionStats(
+            enabled ? limit.getLimit() : -1,
+            limit.numInflight(),
+            queued,
+            rejected.sum(),
+            timedOut.sum()
+        );
+    }
+
+    /**
+     * A query is always admitted if no other query is running; the memory might be held by something else
+     * and nothing would ever release it for the queued queries.
+     */
+    private boolean canAdmit() {
+        int numInflight = limit.numInflight();
+        if (numInflight == 0) {
+            return true;
+        }
+        return numInflight < limit.getLimit() && !exceedsMemoryThreshold();
+    }
+
+    private boolean exceedsMemoryThreshold() {
+        long breakerLimit = queryBreaker.getLimit();
+        if (breakerLimit <= 0) {
+            return false;
+        }
+        return queryBreaker.getUsed() >= breakerLimit * memoryThreshold;
+    }
+
+    private Releasable admit() {
+        long startTime = limit.startSample();
+        AtomicBoolean released = new AtomicBoolean(false);
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                limit.onSample(startTime, false);
+                admitQueued();
+            }
+        };
+    }
+
+    private void admitQueued() {
+        ArrayList<PendingQuery> admitted = new ArrayList<>();
+        ArrayList<Releasable> releasables = new ArrayList<>();
+        synchronized (this) {
+            while (!queue.isEmpty() && canAdmit()) {
+                PendingQuery pendingQuery = queue.poll();
+                pendingQuery.timeout.cancel();
+                admitted.add(pendingQuery);
+                releasables.add(admit());
+            }
+        }
+        for (int i = 0; i < admitted.size(); i++) {
+            PendingQuery pendingQuery = admitted.get(i);
+            Releasable releasable = releasables.get(i);
+            // Don't start the query on the thread of the query which just finished, it could be a network thread
+            threadPool.generic().execute(() -> pendingQuery.future.complete(releasable));
+        }
+    }
+
+    private void onTimeout(PendingQuery pendingQuery) {
+        synchronized (this) {
+            if (!queue.remove(pendingQuery)) {
+                return;
+            }
+        }
+        timedOut.increment();
+        pendingQuery.future.completeExceptionally(new EsRejectedExecutionException(String.format(
+            Locale.ENGLISH,
+            "Query wasn't admitted within %s, too many queries are running",
+            queueTimeout
+        ), false));
+    }
+
+    @Override
+    public void killAllJobs() {
+        killQueued(null, null);
+    }
+
+    @Override
+    public void killAllJobs(String userName) {
+        killQueued(null, userName);
+    }
+
+    @Override
+    public void killJob(UUID jobId) {
+        killQueued(jobId, null);
+    }
+
+    @Override
+    public void killJob(UUID jobId, String userName) {
+        killQueued(jobId, userName);
+    }
+
+    /**
+     * @param jobId the job to kill or null to kill all queued queries
+     * @param userName the user whose queries are killed or null to kill the queries of all users
+     */
+    private void killQueued(@Nullable UUID jobId, @Nullable String userName) {
+        ArrayList<PendingQuery> killed = new ArrayList<>();
+        synchronized (this) {
+            Iterator<PendingQuery> it = queue.iterator();
+            while (it.hasNext()) {
+                PendingQuery pendingQuery = it.next();
+                if ((jobId == null || pendingQuery.jobId.equals(jobId))
+                    && (userName == null || pendingQuery.userName.equals(userName))) {
+                    it.remove();
+                    pendingQuery.timeout.cancel();
+                    killed.add(pendingQuery);
+                }
+            }
+        }
+        for (PendingQuery pendingQuery : killed) {
+            pendingQuery.future.completeExceptionally(JobKilledException.of(null));
+        }
+    }
+
+    private static class PendingQuery {
+
+        private final UUID jobId;
+        private final String userName;
+        private final CompletableFuture<Releasable> future = new CompletableFuture<>();
+        private Scheduler.ScheduledCancellable timeout;
+
+        PendingQuery(UUID jobId, String userName) {
+            this.jobId = jobId;
+            this.userName = userName;
+        }
+    }
+}
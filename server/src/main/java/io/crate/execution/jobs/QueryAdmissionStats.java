@@ -0,0 +1,92 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.jobs;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+
+import java.io.IOException;
+
+public final class QueryAdmissionStats implements Writeable {
+
+    private final int limit;
+    private final int running;
+    private final int queued;
+    private final long rejected;
+    private final long timedOut;
+
+    public QueryAdmissionStats(int limit, int running, int queued, long rejected, long timedOut) {
+        this.limit = limit;
+        this.running = running;
+        this.queued = queued;
+        this.rejected = rejected;
+        this.timedOut = timedOut;
+    }
+
+    public QueryAdmissionStats(StreamInput in) throws IOException {
+        this.limit = in.readInt();
+        this.running = in.readVInt();
+        this.queued = in.readVInt();
+        this.rejected = in.readVLong();
+        this.timedOut = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeInt(limit);
+        out.writeVInt(running);
+        out.writeVInt(queued);
+        out.writeVLong(rejected);
+        out.writeVLong(timedOut);
+    }
+
+    /**
+     * @return the current number of queries which may run concurrently, -1 if admission control is disabled
+     */
+    public int limit() {
+        return limit;
+    }
+
+    public int running() {
+        return running;
+    }
+
+    public int queued() {
+        return queued;
+    }
+
+    /**
+     * @return number of queries which have been rejected because the queue was full
+     */
+    public long rejected() {
+        return rejected;
+    }
+
+    /**
+     * @return number of queries which have been rejected because they weren't admitted in time
+     */
+    public long timedOut() {
+        return timedOut;
+    }
+}
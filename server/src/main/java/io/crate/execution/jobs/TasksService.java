@@ -177,13 +177,15 @@ public class TasksService extends AbstractLifecycleComponent {
      */
     public CompletableFuture<Integer> killAll(String userName) {
         boolean isSuperUser = userName.equals(User.CRATE_USER.name());
-        if (isSuperUser) {
-            for (KillAllListener killAllListener : killAllListeners) {
-                try {
+        for (KillAllListener killAllListener : killAllListeners) {
+            try {
+                if (isSuperUser) {
                     killAllListener.killAllJobs();
-                } catch (Throwable t) {
-                    LOGGER.error("Failed to call killAllJobs on listener={} error={}", killAllListener, t);
+                } else {
+                    killAllListener.killAllJobs(userName);
                 }
+            } catch (Throwable t) {
+                LOGGER.error("Failed to call killAllJobs on listener={} error={}", killAllListener, t);
             }
         }
         Collection<UUID> toKill = List.copyOf(activeTasks.keySet());
@@ -222,14 +224,16 @@ public class TasksService extends AbstractLifecycleComponent {
 
     public CompletableFuture<Integer> killJobs(Collection<UUID> toKill, String userName, @Nullable String reason) {
         boolean isSuperUser = userName.equals(User.CRATE_USER.name());
-        if (isSuperUser) {
-            for (KillAllListener killAllListener : killAllListeners) {
-                for (UUID job : toKill) {
-                    try {
+        for (KillAllListener killAllListener : killAllListeners) {
+            for (UUID job : toKill) {
+                try {
+                    if (isSuperUser) {
                         killAllListener.killJob(job);
-                    } catch (Throwable t) {
-                        LOGGER.error("Failed to call killJob on listener={}, err={}", killAllListener, t);
+                    } else {
+                        killAllListener.killJob(job, userName);
                     }
+                } catch (Throwable t) {
+                    LOGGER.error("Failed to call killJob on listener={}, err={}", killAllListener, t);
                 }
             }
         }
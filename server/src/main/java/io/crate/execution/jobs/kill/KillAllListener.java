@@ -28,4 +28,18 @@ public interface KillAllListener {
     void killAllJobs();
 
     void killJob(UUID job);
+
+    /**
+     * Called if a user who isn't a superuser kills all jobs; only the jobs of that user must be killed.
+     * Listeners which can't tell the user of a job ignore it.
+     */
+    default void killAllJobs(String userName) {
+    }
+
+    /**
+     * Called if a user who isn't a superuser kills a job; it must only be killed if it belongs to that user.
+     * Listeners which can't tell the user of a job ignore it.
+     */
+    default void killJob(UUID job, String userName) {
+    }
 }
@@ -0,0 +1,217 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.batch;
+
+import io.crate.expression.scalar.arithmetic.ArithmeticFunctions;
+import io.crate.types.DataType;
+
+import javax.annotation.Nullable;
+
+/**
+ * Arithmetic on {@link LongVector}s and {@link DoubleVector}s.
+ *
+ * Each operator has its own loop so that the loop body doesn't contain any dispatch.
+ * Null handling matches {@link io.crate.expression.scalar.arithmetic.BinaryScalar}: If either side is null, the result is null.
+ */
+final class Arithmetic {
+
+    enum Operator {
+        ADD,
+        SUBTRACT,
+        MULTIPLY,
+        DIVIDE,
+        MODULUS;
+
+        @Nullable
+        static Operator of(String functionName) {
+            switch (functionName) {
+                case ArithmeticFunctions.Names.ADD:
+                    return ADD;
+                case ArithmeticFunctions.Names.SUBTRACT:
+                    return SUBTRACT;
+                case ArithmeticFunctions.Names.MULTIPLY:
+                    return MULTIPLY;
+                case ArithmeticFunctions.Names.DIVIDE:
+                    return DIVIDE;
+                case ArithmeticFunctions.Names.MODULUS:
+                case ArithmeticFunctions.Names.MOD:
+                    return MODULUS;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private Arithmetic() {
+    }
+
+    /**
+     * Arithmetic on long values. Uses the exact variants for ADD, SUBTRACT and MULTIPLY
+     * to raise on overflow like the row-by-row implementation does.
+     */
+    static final class LongArithmetic implements BatchExpression<LongVector> {
+
+        private final Operator operator;
+        private final BatchExpression<LongVector> left;
+        private final BatchExpression<LongVector> right;
+        private final LongVector result;
+
+        LongArithmetic(Operator operator,
+                       BatchExpression<LongVector> left,
+                       BatchExpression<LongVector> right,
+                       DataType<?> type) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+            this.result = new LongVector(type);
+        }
+
+        @Override
+        public LongVector evaluate(RowBatch batch) {
+            LongVector l = left.evaluate(batch);
+            LongVector r = right.evaluate(batch);
+            int size = batch.size();
+            long[] lv = l.values;
+            long[] rv = r.values;
+            long[] values = result.values;
+            boolean[] nulls = result.nulls;
+            for (int i = 0; i < size; i++) {
+                nulls[i] = l.nulls[i] || r.nulls[i];
+            }
+            switch (operator) {
+                case ADD:
+                    for (int i = 0; i < size; i++) {
+                        if (!nulls[i]) {
+                            values[i] = Math.addExact(lv[i], rv[i]);
+                        }
+                    }
+                    break;
+
+                case SUBTRACT:
+                    for (int i = 0; i < size; i++) {
+                        if (!nulls[i]) {
+                            values[i] = Math.subtractExact(lv[i], rv[i]);
+                        }
+                    }
+                    break;
+
+                case MULTIPLY:
+                    for (int i = 0; i < size; i++) {
+                        if (!nulls[i]) {
+                            values[i] = Math.multiplyExact(lv[i], rv[i]);
+                        }
+                    }
+                    break;
+
+                case DIVIDE:
+                    for (int i = 0; i < size; i++) {
+                        if (!nulls[i]) {
+                            values[i] = lv[i] / rv[i];
+                        }
+                    }
+                    break;
+
+                case MODULUS:
+                    for (int i = 0; i < size; i++) {
+                        if (!nulls[i]) {
+                            values[i] = lv[i] % rv[i];
+                        }
+                    }
+                    break;
+
+                default:
+                    throw new AssertionError("Unexpected operator: " + operator);
+            }
+            return result;
+        }
+    }
+
+    static final class DoubleArithmetic implements BatchExpression<DoubleVector> {
+
+        private final Operator operator;
+        private final BatchExpression<DoubleVector> left;
+        private final BatchExpression<DoubleVector> right;
+        private final DoubleVector result;
+
+        DoubleArithmetic(Operator operator,
+                         BatchExpression<DoubleVector> left,
+                         BatchExpression<DoubleVector> right,
+                         DataType<?> type) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+            this.result = new DoubleVector(type);
+        }
+
+        @Override
+        public DoubleVector evaluate(RowBatch batch) {
+            DoubleVector l = left.evaluate(batch);
+            DoubleVector r = right.evaluate(batch);
+            int size = batch.size();
+            double[] lv = l.values;
+            double[] rv = r.values;
+            double[] values = result.values;
+            boolean[] nulls = result.nulls;
+            for (int i = 0; i < size; i++) {
+                nulls[i] = l.nulls[i] || r.nulls[i];
+            }
+            // Values of null entries are computed as well, they're ignored and
+            // computing them keeps the loops free of branches.
+            switch (operator) {
+                case ADD:
+                    for (int i = 0; i < size; i++) {
+                        values[i] = lv[i] + rv[i];
+                    }
+                    break;
+
+                case SUBTRACT:
+                    for (int i = 0; i < size; i++) {
+                        values[i] = lv[i] - rv[i];
+                    }
+                    break;
+
+                case MULTIPLY:
+                    for (int i = 0; i < size; i++) {
+                        values[i] = lv[i] * rv[i];
+                    }
+                    break;
+
+                case DIVIDE:
+                    for (int i = 0; i < size; i++) {
+                        values[i] = lv[i] / rv[i];
+                    }
+                    break;
+
+                case MODULUS:
+                    for (int i = 0; i < size; i++) {
+                        values[i] = lv[i] % rv[i];
+                    }
+                    break;
+
+                default:
+                    throw new AssertionError("Unexpected operator: " + operator);
+            }
+            return result;
+        }
+    }
+}
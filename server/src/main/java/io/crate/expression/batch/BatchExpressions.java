@@ -0,0 +1,340 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.batch;
+
+import io.crate.expression.operator.AndOperator;
+import io.crate.expression.operator.LikeOperators;
+import io.crate.expression.operator.OrOperator;
+import io.crate.expression.predicate.IsNullPredicate;
+import io.crate.expression.predicate.NotPredicate;
+import io.crate.expression.scalar.cast.ExplicitCastFunction;
+import io.crate.expression.scalar.cast.ImplicitCastFunction;
+import io.crate.expression.scalar.cast.TryCastFunction;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.InputColumn;
+import io.crate.expression.symbol.Literal;
+import io.crate.expression.symbol.Symbol;
+import io.crate.metadata.FunctionType;
+import io.crate.types.BooleanType;
+import io.crate.types.ByteType;
+import io.crate.types.DataType;
+import io.crate.types.DoubleType;
+import io.crate.types.FloatType;
+import io.crate.types.IntegerType;
+import io.crate.types.LongType;
+import io.crate.types.ShortType;
+import io.crate.types.StringType;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Compiles symbols into {@link BatchExpression}s.
+ *
+ * Supported are input columns, literals, arithmetic on long and double values,
+ * comparisons on numeric and string values, AND, OR, NOT, IS NULL, LIKE/ILIKE with a literal pattern
+ * and widening numeric casts.
+ *
+ * If a symbol tree contains anything else the compile methods return null
+ * and the caller must fall back to the row-by-row evaluation using {@link io.crate.expression.InputFactory}.
+ */
+public final class BatchExpressions {
+
+    private BatchExpressions() {
+    }
+
+    /**
+     * Compile a predicate, e.g. the query of a filter.
+     *
+     * @return the compiled predicate or null if the symbol tree contains unsupported functions or types.
+     */
+    @Nullable
+    public static BatchExpression<BooleanVector> compilePredicate(Symbol symbol) {
+        if (symbol.valueType().id() != BooleanType.ID) {
+            return null;
+        }
+        return compileBoolean(symbol);
+    }
+
+    /**
+     * Compile a symbol of any type.
+     * Symbols of types without primitive vector representation are only supported as input column or literal.
+     *
+     * @return the compiled expression or null if the symbol tree contains unsupported functions or types.
+     */
+    @Nullable
+    public static BatchExpression<?> compile(Symbol symbol) {
+        DataType<?> type = symbol.valueType();
+        if (isIntegral(type)) {
+            return compileLong(symbol);
+        }
+        if (isFloatingPoint(type)) {
+            return compileDouble(symbol);
+        }
+        if (type.id() == BooleanType.ID) {
+            return compileBoolean(symbol);
+        }
+        return compileObject(symbol);
+    }
+
+    @Nullable
+    private static BatchExpression<LongVector> compileLong(Symbol symbol) {
+        DataType<?> type = symbol.valueType();
+        if (!isIntegral(type)) {
+            return null;
+        }
+        if (symbol instanceof InputColumn) {
+            return new Inputs.LongInput(((InputColumn) symbol).index(), type);
+        }
+        if (symbol instanceof Literal) {
+            return Inputs.Constant.ofLong(type, ((Literal<?>) symbol).value());
+        }
+        Function function = asScalar(symbol);
+        if (function == null) {
+            return null;
+        }
+        List<Symbol> args = function.arguments();
+        if (isCast(function)) {
+            DataType<?> sourceType = args.get(0).valueType();
+            if (!isIntegral(sourceType) || integralWidth(sourceType) > integralWidth(type)) {
+                return null;
+            }
+            BatchExpression<LongVector> argument = compileLong(args.get(0));
+            return argument == null ? null : new Casts.LongToLong(argument, type);
+        }
+        // Integer arithmetic can overflow on int boundaries which would need range checks; only long is supported
+        Arithmetic.Operator operator = Arithmetic.Operator.of(function.name());
+        if (operator == null || type.id() != LongType.ID || args.size() != 2) {
+            return null;
+        }
+        BatchExpression<LongVector> left = compileLong(args.get(0));
+        BatchExpression<LongVector> right = compileLong(args.get(1));
+        if (left == null || right == null) {
+            return null;
+        }
+        return new Arithmetic.LongArithmetic(operator, left, right, type);
+    }
+
+    @Nullable
+    private static BatchExpression<DoubleVector> compileDouble(Symbol symbol) {
+        DataType<?> type = symbol.valueType();
+        if (!isFloatingPoint(type)) {
+            return null;
+        }
+        if (symbol instanceof InputColumn) {
+            return new Inputs.DoubleInput(((InputColumn) symbol).index(), type);
+        }
+        if (symbol instanceof Literal) {
+            return Inputs.Constant.ofDouble(type, ((Literal<?>) symbol).value());
+        }
+        Function function = asScalar(symbol);
+        if (function == null) {
+            return null;
+        }
+        List<Symbol> args = function.arguments();
+        if (isCast(function)) {
+            // long to float would round, only casts to double are exact
+            if (type.id() != DoubleType.ID) {
+                return null;
+            }
+            Symbol source = args.get(0);
+            if (isIntegral(source.valueType())) {
+                BatchExpression<LongVector> argument = compileLong(source);
+                return argument == null ? null : new Casts.LongToDouble(argument, type);
+            }
+            BatchExpression<DoubleVector> argument = compileDouble(source);
+            return argument == null ? null : new Casts.DoubleToDouble(argument, type);
+        }
+        // Float arithmetic would need rounding after each operation; only double is supported
+        Arithmetic.Operator operator = Arithmetic.Operator.of(function.name());
+        if (operator == null || type.id() != DoubleType.ID || args.size() != 2) {
+            return null;
+        }
+        BatchExpression<DoubleVector> left = compileDouble(args.get(0));
+        BatchExpression<DoubleVector> right = compileDouble(args.get(1));
+        if (left == null || right == null) {
+            return null;
+        }
+        return new Arithmetic.DoubleArithmetic(operator, left, right, type);
+    }
+
+    @Nullable
+    private static BatchExpression<BooleanVector> compileBoolean(Symbol symbol) {
+        if (symbol.valueType().id() != BooleanType.ID) {
+            return null;
+        }
+        if (symbol instanceof InputColumn) {
+            return new Inputs.BooleanInput(((InputColumn) symbol).index());
+        }
+        if (symbol instanceof Literal) {
+            return Inputs.Constant.ofBoolean(((Literal<?>) symbol).value());
+        }
+        Function function = asScalar(symbol);
+        if (function == null) {
+            return null;
+        }
+        List<Symbol> args = function.arguments();
+        String name = function.name();
+        switch (name) {
+            case AndOperator.NAME:
+            case OrOperator.NAME: {
+                BatchExpression<BooleanVector> left = compileBoolean(args.get(0));
+                BatchExpression<BooleanVector> right = compileBoolean(args.get(1));
+                if (left == null || right == null) {
+                    return null;
+                }
+                return name.equals(AndOperator.NAME) ? new Logical.And(left, right) : new Logical.Or(left, right);
+            }
+
+            case NotPredicate.NAME: {
+                BatchExpression<BooleanVector> argument = compileBoolean(args.get(0));
+                return argument == null ? null : new Logical.Not(argument);
+            }
+
+            case IsNullPredicate.NAME: {
+                BatchExpression<?> argument = compile(args.get(0));
+                return argument == null ? null : new Logical.IsNull(argument);
+            }
+
+            case LikeOperators.OP_LIKE:
+            case LikeOperators.OP_ILIKE:
+                return compileLike(name, args);
+
+            default:
+                return compileComparison(function);
+        }
+    }
+
+    @Nullable
+    private static BatchExpression<BooleanVector> compileLike(String name, List<Symbol> args) {
+        if (args.size() != 2 || !(args.get(1) instanceof Literal)) {
+            return null;
+        }
+        Object pattern = ((Literal<?>) args.get(1)).value();
+        if (pattern == null) {
+            return Inputs.Constant.ofBoolean(null);
+        }
+        BatchExpression<ObjectVector> argument = compileString(args.get(0));
+        if (argument == null) {
+            return null;
+        }
+        int flags = name.equals(LikeOperators.OP_LIKE) ? LikeOperators.CASE_SENSITIVE : LikeOperators.CASE_INSENSITIVE;
+        return new Logical.Like(argument, LikeOperators.makePattern((String) pattern, flags));
+    }
+
+    @Nullable
+    private static BatchExpression<BooleanVector> compileComparison(Function function) {
+        int acceptedOutcomes = Comparison.acceptedOutcomes(function.name());
+        List<Symbol> args = function.arguments();
+        if (acceptedOutcomes == -1 || args.size() != 2) {
+            return null;
+        }
+        DataType<?> leftType = args.get(0).valueType();
+        DataType<?> rightType = args.get(1).valueType();
+        if (isIntegral(leftType) && isIntegral(rightType)) {
+            BatchExpression<LongVector> left = compileLong(args.get(0));
+            BatchExpression<LongVector> right = compileLong(args.get(1));
+            return left == null || right == null ? null : new Comparison.LongComparison(acceptedOutcomes, left, right);
+        }
+        if (leftType.id() == DoubleType.ID && rightType.id() == DoubleType.ID
+            || leftType.id() == FloatType.ID && rightType.id() == FloatType.ID) {
+            BatchExpression<DoubleVector> left = compileDouble(args.get(0));
+            BatchExpression<DoubleVector> right = compileDouble(args.get(1));
+            return left == null || right == null ? null : new Comparison.DoubleComparison(acceptedOutcomes, left, right);
+        }
+        if (leftType.id() == StringType.ID && rightType.id() == StringType.ID) {
+            BatchExpression<ObjectVector> left = compileString(args.get(0));
+            BatchExpression<ObjectVector> right = compileString(args.get(1));
+            return left == null || right == null ? null : new Comparison.StringComparison(acceptedOutcomes, left, right);
+        }
+        return null;
+    }
+
+    @Nullable
+    private static BatchExpression<ObjectVector> compileString(Symbol symbol) {
+        if (symbol.valueType().id() != StringType.ID) {
+            return null;
+        }
+        return compileObject(symbol);
+    }
+
+    @Nullable
+    private static BatchExpression<ObjectVector> compileObject(Symbol symbol) {
+        if (symbol instanceof InputColumn) {
+            return new Inputs.ObjectInput(((InputColumn) symbol).index(), symbol.valueType());
+        }
+        if (symbol instanceof Literal) {
+            return Inputs.Constant.ofObject(symbol.valueType(), ((Literal<?>) symbol).value());
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Function asScalar(Symbol symbol) {
+        if (!(symbol instanceof Function)) {
+            return null;
+        }
+        Function function = (Function) symbol;
+        if (function.type() != FunctionType.SCALAR || function.filter() != null) {
+            return null;
+        }
+        return function;
+    }
+
+    private static boolean isCast(Function function) {
+        switch (function.name()) {
+            case ImplicitCastFunction.NAME:
+            case ExplicitCastFunction.NAME:
+            case TryCastFunction.NAME:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isIntegral(DataType<?> type) {
+        return integralWidth(type) > 0;
+    }
+
+    private static boolean isFloatingPoint(DataType<?> type) {
+        return type.id() == DoubleType.ID || type.id() == FloatType.ID;
+    }
+
+    /**
+     * @return the width in bytes of an integral type or -1 for other types
+     */
+    private static int integralWidth(DataType<?> type) {
+        switch (type.id()) {
+            case ByteType.ID:
+                return 1;
+            case ShortType.ID:
+                return 2;
+            case IntegerType.ID:
+                return 4;
+            case LongType.ID:
+                return 8;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.batch;
+
+import io.crate.types.DataType;
+
+/**
+ * Widening casts. They cannot fail, so the source vector can be re-interpreted or converted without checks.
+ */
+final class Casts {
+
+    private Casts() {
+    }
+
+    /**
+     * Cast between integral types where the target is at least as wide as the source.
+     * Only the type used to box the values changes.
+     */
+    static final class LongToLong implements BatchExpression<LongVector> {
+
+        private final BatchExpression<LongVector> argument;
+        private final LongVector result;
+
+        LongToLong(BatchExpression<LongVector> argument, DataType<?> targetType) {
+            this.argument = argument;
+            this.result = new LongVector(targetType);
+        }
+
+        @Override
+        public LongVector evaluate(RowBatch batch) {
+            LongVector arg = argument.evaluate(batch);
+            int size = batch.size();
+            System.arraycopy(arg.nulls, 0, result.nulls, 0, size);
+            System.arraycopy(arg.values, 0, result.values, 0, size);
+            return result;
+        }
+    }
+
+    static final class LongToDouble implements BatchExpression<DoubleVector> {
+
+        private final BatchExpression<LongVector> argument;
+        private final DoubleVector result;
+
+        LongToDouble(BatchExpression<LongVector> argument, DataType<?> targetType) {
+            this.argument = argument;
+            this.result = new DoubleVector(targetType);
+        }
+
+        @Override
+        public DoubleVector evaluate(RowBatch batch) {
+            LongVector arg = argument.evaluate(batch);
+            int size = batch.size();
+            System.arraycopy(arg.nulls, 0, result.nulls, 0, size);
+            long[] values = arg.values;
+            for (int i = 0; i < size; i++) {
+                result.values[i] = (double) values[i];
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Float to double; Float values are already stored as double.
+     */
+    static final class DoubleToDouble implements BatchExpression<DoubleVector> {
+
+        private final BatchExpression<DoubleVector> argument;
+        private final DoubleVector result;
+
+        DoubleToDouble(BatchExpression<DoubleVector> argument, DataType<?> targetType) {
+            this.argument = argument;
+            this.result = new DoubleVector(targetType);
+        }
+
+        @Override
+        public DoubleVector evaluate(RowBatch batch) {
+            DoubleVector arg = argument.evaluate(batch);
+            int size = batch.size();
+            System.arraycopy(arg.nulls, 0, result.nulls, 0, size);
+            System.arraycopy(arg.values, 0, result.values, 0, size);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.batch;
+
+import io.crate.expression.operator.EqOperator;
+import io.crate.expression.operator.GtOperator;
+import io.crate.expression.operator.GteOperator;
+import io.crate.expression.operator.LtOperator;
+import io.crate.expression.operator.LteOperator;
+
+/**
+ * Comparison operators (=, <, <=, >, >=).
+ *
+ * An operator is encoded as a bit mask of the comparison outcomes (less, equal, greater) it accepts,
+ * this allows to use the same branch free loop for all operators.
+ */
+final class Comparison {
+
+    private static final int LT = 1;
+    private static final int EQ = 1 << 1;
+    private static final int GT = 1 << 2;
+
+    private Comparison() {
+    }
+
+    /**
+     * @return the mask of accepted comparison outcomes or -1 if the function is not a comparison
+     */
+    static int acceptedOutcomes(String functionName) {
+        switch (functionName) {
+            case EqOperator.NAME:
+                return EQ;
+            case LtOperator.NAME:
+                return LT;
+            case LteOperator.NAME:
+                return LT | EQ;
+            case GtOperator.NAME:
+                return GT;
+            case GteOperator.NAME:
+                return GT | EQ;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @param cmp the result of a compare call, normalized to -1, 0 or 1.
+     */
+    private static boolean matches(int acceptedOutcomes, int cmp) {
+        return (acceptedOutcomes & (1 << (cmp + 1))) != 0;
+    }
+
+    static final class LongComparison implements BatchExpression<BooleanVector> {
+
+        private final int acceptedOutcomes;
+        private final BatchExpression<LongVector> left;
+        private final BatchExpression<LongVector> right;
+        private final BooleanVector result = new BooleanVector();
+
+        LongComparison(int acceptedOutcomes, BatchExpression<LongVector> left, BatchExpression<LongVector> right) {
+            this.acceptedOutcomes = acceptedOutcomes;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public BooleanVector evaluate(RowBatch batch) {
+            LongVector l = left.evaluate(batch);
+            LongVector r = right.evaluate(batch);
+            long[] lv = l.values;
+            long[] rv = r.values;
+            for (int i = 0; i < batch.size(); i++) {
+                result.nulls[i] = l.nulls[i] || r.nulls[i];
+                result.values[i] = matches(acceptedOutcomes, Long.compare(lv[i], rv[i]));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Uses {@link Double#compare(double, double)} which is also used by {@link Double#compareTo(Double)}
+     * to get the same results for NaN and -0.0 as the row-by-row implementation.
+     */
+    static final class DoubleComparison implements BatchExpression<BooleanVector> {
+
+        private final int acceptedOutcomes;
+        private final BatchExpression<DoubleVector> left;
+        private final BatchExpression<DoubleVector> right;
+        private final BooleanVector result = new BooleanVector();
+
+        DoubleComparison(int acceptedOutcomes, BatchExpression<DoubleVector> left, BatchExpression<DoubleVector> right) {
+            this.acceptedOutcomes = acceptedOutcomes;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public BooleanVector evaluate(RowBatch batch) {
+            DoubleVector l = left.evaluate(batch);
+            DoubleVector r = right.evaluate(batch);
+            double[] lv = l.values;
+            double[] rv = r.values;
+            for (int i = 0; i < batch.size(); i++) {
+                result.nulls[i] = l.nulls[i] || r.nulls[i];
+                result.values[i] = matches(acceptedOutcomes, Double.compare(lv[i], rv[i]));
+            }
+            return result;
+        }
+    }
+
+    static final class StringComparison implements BatchExpression<BooleanVector> {
+
+        private final int acceptedOutcomes;
+        private final BatchExpression<ObjectVector> left;
+        private final BatchExpression<ObjectVector> right;
+        private final BooleanVector result = new BooleanVector();
+
+        StringComparison(int acceptedOutcomes, BatchExpression<ObjectVector> left, BatchExpression<ObjectVector> right) {
+            this.acceptedOutcomes = acceptedOutcomes;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public BooleanVector evaluate(RowBatch batch) {
+            ObjectVector l = left.evaluate(batch);
+            ObjectVector r = right.evaluate(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                boolean isNull = l.nulls[i] || r.nulls[i];
+                result.nulls[i] = isNull;
+                if (!isNull) {
+                    int cmp = ((String) l.values[i]).compareTo((String) r.values[i]);
+                    result.values[i] = matches(acceptedOutcomes, Integer.signum(cmp));
+                }
+            }
+            return result;
+        }
+    }
+}
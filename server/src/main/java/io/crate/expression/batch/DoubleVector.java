@@ -0,0 +1,49 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.batch;
+
+import io.crate.types.DataType;
+import io.crate.types.FloatType;
+
+/**
+ * Vector for floating point types. Float values are stored losslessly as double.
+ */
+public final class DoubleVector extends ColumnVector {
+
+    public final double[] values = new double[RowBatch.CAPACITY];
+
+    public DoubleVector(DataType<?> type) {
+        super(type);
+    }
+
+    @Override
+    public Object get(int idx) {
+        if (nulls[idx]) {
+            return null;
+        }
+        if (type.id() == FloatType.ID) {
+            return (float) values[idx];
+        }
+        return values[idx];
+    }
+}
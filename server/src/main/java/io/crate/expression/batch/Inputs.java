@@ -0,0 +1,194 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.batch;
+
+import io.crate.types.DataType;
+
+import java.util.Arrays;
+
+/**
+ * {@link BatchExpression}s reading the cells of an input column or producing a constant value.
+ */
+final class Inputs {
+
+    private Inputs() {
+    }
+
+    static final class LongInput implements BatchExpression<LongVector> {
+
+        private final int index;
+        private final LongVector result;
+
+        LongInput(int index, DataType<?> type) {
+            this.index = index;
+            this.result = new LongVector(type);
+        }
+
+        @Override
+        public LongVector evaluate(RowBatch batch) {
+            long[] values = result.values;
+            boolean[] nulls = result.nulls;
+            for (int i = 0; i < batch.size(); i++) {
+                Object value = batch.get(i, index);
+                if (value == null) {
+                    nulls[i] = true;
+                } else {
+                    nulls[i] = false;
+                    values[i] = ((Number) value).longValue();
+                }
+            }
+            return result;
+        }
+    }
+
+    static final class DoubleInput implements BatchExpression<DoubleVector> {
+
+        private final int index;
+        private final DoubleVector result;
+
+        DoubleInput(int index, DataType<?> type) {
+            this.index = index;
+            this.result = new DoubleVector(type);
+        }
+
+        @Override
+        public DoubleVector evaluate(RowBatch batch) {
+            double[] values = result.values;
+            boolean[] nulls = result.nulls;
+            for (int i = 0; i < batch.size(); i++) {
+                Object value = batch.get(i, index);
+                if (value == null) {
+                    nulls[i] = true;
+                } else {
+                    nulls[i] = false;
+                    values[i] = ((Number) value).doubleValue();
+                }
+            }
+            return result;
+        }
+    }
+
+    static final class BooleanInput implements BatchExpression<BooleanVector> {
+
+        private final int index;
+        private final BooleanVector result = new BooleanVector();
+
+        BooleanInput(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public BooleanVector evaluate(RowBatch batch) {
+            boolean[] values = result.values;
+            boolean[] nulls = result.nulls;
+            for (int i = 0; i < batch.size(); i++) {
+                Object value = batch.get(i, index);
+                if (value == null) {
+                    nulls[i] = true;
+                } else {
+                    nulls[i] = false;
+                    values[i] = (Boolean) value;
+                }
+            }
+            return result;
+        }
+    }
+
+    static final class ObjectInput implements BatchExpression<ObjectVector> {
+
+        private final int index;
+        private final ObjectVector result;
+
+        ObjectInput(int index, DataType<?> type) {
+            this.index = index;
+            this.result = new ObjectVector(type);
+        }
+
+        @Override
+        public ObjectVector evaluate(RowBatch batch) {
+            Object[] values = result.values;
+            boolean[] nulls = result.nulls;
+            for (int i = 0; i < batch.size(); i++) {
+                Object value = batch.get(i, index);
+                values[i] = value;
+                nulls[i] = value == null;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns the same vector for every batch. The vector is filled once on creation.
+     */
+    static final class Constant<V extends ColumnVector> implements BatchExpression<V> {
+
+        private final V vector;
+
+        private Constant(V vector) {
+            this.vector = vector;
+        }
+
+        @Override
+        public V evaluate(RowBatch batch) {
+            return vector;
+        }
+
+        static Constant<LongVector> ofLong(DataType<?> type, Object value) {
+            LongVector vector = new LongVector(type);
+            fillNulls(vector, value);
+            if (value != null) {
+                Arrays.fill(vector.values, ((Number) value).longValue());
+            }
+            return new Constant<>(vector);
+        }
+
+        static Constant<DoubleVector> ofDouble(DataType<?> type, Object value) {
+            DoubleVector vector = new DoubleVector(type);
+            fillNulls(vector, value);
+            if (value != null) {
+                Arrays.fill(vector.values, ((Number) value).doubleValue());
+            }
+            return new Constant<>(vector);
+        }
+
+        static Constant<BooleanVector> ofBoolean(Object value) {
+            BooleanVector vector = new BooleanVector();
+            fillNulls(vector, value);
+            if (value != null) {
+                Arrays.fill(vector.values, (Boolean) value);
+            }
+            return new Constant<>(vector);
+        }
+
+        static Constant<ObjectVector> ofObject(DataType<?> type, Object value) {
+            ObjectVector vector = new ObjectVector(type);
+            fillNulls(vector, value);
+            Arrays.fill(vector.values, value);
+            return new Constant<>(vector);
+        }
+
+        private static void fillNulls(ColumnVector vector, Object value) {
+            Arrays.fill(vector.nulls, value == null);
+        }
+    }
+}
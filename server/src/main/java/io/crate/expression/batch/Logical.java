@@ -0,0 +1,152 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.batch;
+
+import java.util.regex.Pattern;
+
+/**
+ * Boolean operators and predicates following the three-valued logic of SQL.
+ */
+final class Logical {
+
+    private Logical() {
+    }
+
+    static final class And implements BatchExpression<BooleanVector> {
+
+        private final BatchExpression<BooleanVector> left;
+        private final BatchExpression<BooleanVector> right;
+        private final BooleanVector result = new BooleanVector();
+
+        And(BatchExpression<BooleanVector> left, BatchExpression<BooleanVector> right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public BooleanVector evaluate(RowBatch batch) {
+            BooleanVector l = left.evaluate(batch);
+            BooleanVector r = right.evaluate(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                boolean leftFalse = !l.nulls[i] && !l.values[i];
+                boolean rightFalse = !r.nulls[i] && !r.values[i];
+                boolean isFalse = leftFalse || rightFalse;
+                result.nulls[i] = !isFalse && (l.nulls[i] || r.nulls[i]);
+                result.values[i] = !isFalse;
+            }
+            return result;
+        }
+    }
+
+    static final class Or implements BatchExpression<BooleanVector> {
+
+        private final BatchExpression<BooleanVector> left;
+        private final BatchExpression<BooleanVector> right;
+        private final BooleanVector result = new BooleanVector();
+
+        Or(BatchExpression<BooleanVector> left, BatchExpression<BooleanVector> right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public BooleanVector evaluate(RowBatch batch) {
+            BooleanVector l = left.evaluate(batch);
+            BooleanVector r = right.evaluate(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                boolean isTrue = l.isTrue(i) || r.isTrue(i);
+                result.nulls[i] = !isTrue && (l.nulls[i] || r.nulls[i]);
+                result.values[i] = isTrue;
+            }
+            return result;
+        }
+    }
+
+    static final class Not implements BatchExpression<BooleanVector> {
+
+        private final BatchExpression<BooleanVector> argument;
+        private final BooleanVector result = new BooleanVector();
+
+        Not(BatchExpression<BooleanVector> argument) {
+            this.argument = argument;
+        }
+
+        @Override
+        public BooleanVector evaluate(RowBatch batch) {
+            BooleanVector arg = argument.evaluate(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                result.nulls[i] = arg.nulls[i];
+                result.values[i] = !arg.values[i];
+            }
+            return result;
+        }
+    }
+
+    static final class IsNull implements BatchExpression<BooleanVector> {
+
+        private final BatchExpression<?> argument;
+        private final BooleanVector result = new BooleanVector();
+
+        IsNull(BatchExpression<?> argument) {
+            this.argument = argument;
+        }
+
+        @Override
+        public BooleanVector evaluate(RowBatch batch) {
+            ColumnVector arg = argument.evaluate(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                result.nulls[i] = false;
+                result.values[i] = arg.nulls[i];
+            }
+            return result;
+        }
+    }
+
+    /**
+     * LIKE/ILIKE with a constant pattern. The pattern is compiled once.
+     */
+    static final class Like implements BatchExpression<BooleanVector> {
+
+        private final BatchExpression<ObjectVector> argument;
+        private final Pattern pattern;
+        private final BooleanVector result = new BooleanVector();
+
+        Like(BatchExpression<ObjectVector> argument, Pattern pattern) {
+            this.argument = argument;
+            this.pattern = pattern;
+        }
+
+        @Override
+        public BooleanVector evaluate(RowBatch batch) {
+            ObjectVector arg = argument.evaluate(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                boolean isNull = arg.nulls[i];
+                result.nulls[i] = isNull;
+                if (!isNull) {
+                    result.values[i] = pattern.matcher((String) arg.values[i]).matches();
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.batch;
+
+import io.crate.data.Row;
+
+/**
+ * A batch of up to {@link #CAPACITY} rows which is the unit of work for {@link BatchExpression}s.
+ *
+ * Rows are copied into re-used cell arrays, so filling a batch doesn't allocate once
+ * every slot has been used once.
+ */
+public final class RowBatch {
+
+    public static final int CAPACITY = 1024;
+
+    private final Object[][] rows = new Object[CAPACITY][];
+    private int size = 0;
+
+    public void add(Row row) {
+        assert size < CAPACITY : "RowBatch is full";
+        int numColumns = row.numColumns();
+        Object[] cells = rows[size];
+        if (cells == null || cells.length != numColumns) {
+            cells = new Object[numColumns];
+            rows[size] = cells;
+        }
+        for (int i = 0; i < numColumns; i++) {
+            cells[i] = row.get(i);
+        }
+        size++;
+    }
+
+    public Object get(int row, int column) {
+        return rows[row][column];
+    }
+
+    public Object[] cells(int row) {
+        return rows[row];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == CAPACITY;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
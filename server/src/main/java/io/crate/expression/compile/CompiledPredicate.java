@@ -0,0 +1,68 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.compile;
+
+import io.crate.data.Row;
+import io.crate.exceptions.Exceptions;
+
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.function.Predicate;
+
+/**
+ * Template for the predicates created by the {@link ExpressionCompiler}.
+ *
+ * This class itself is never initialized. For each template the {@link ExpressionCompiler} defines a hidden class
+ * from its bytes with the handle of the predicate as class data. {@link #ROOT} is therefore a constant per hidden
+ * class and the JVM can inline the whole handle tree into {@link #test(Row)}.
+ */
+final class CompiledPredicate implements Predicate<Row> {
+
+    private static final MethodHandle ROOT;
+
+    static {
+        try {
+            ROOT = MethodHandles.classData(MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME, MethodHandle.class);
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object[] state;
+
+    CompiledPredicate(Object[] state) {
+        this.state = state;
+    }
+
+    @Override
+    public boolean test(Row row) {
+        state[Nodes.ROW_SLOT] = row;
+        try {
+            return (boolean) ROOT.invokeExact(state, row);
+        } catch (Throwable t) {
+            Exceptions.rethrowUnchecked(t);
+            return false;
+        }
+    }
+}
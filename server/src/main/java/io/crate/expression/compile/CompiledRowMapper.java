@@ -0,0 +1,73 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.compile;
+
+import io.crate.data.ArrayRow;
+import io.crate.data.Row;
+import io.crate.exceptions.Exceptions;
+
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.function.Function;
+
+/**
+ * Template for the row mappers created by the {@link ExpressionCompiler}, see {@link CompiledPredicate}.
+ *
+ * Evaluates all outputs eagerly when a row is mapped,
+ * unlike {@link io.crate.expression.InputRow} which evaluates them on access.
+ */
+final class CompiledRowMapper implements Function<Row, Row> {
+
+    private static final MethodHandle COMPUTE_CELLS;
+
+    static {
+        try {
+            COMPUTE_CELLS = MethodHandles.classData(
+                MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME, MethodHandle.class);
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object[] state;
+    private final Object[] cells;
+    private final ArrayRow resultRow = new ArrayRow();
+
+    CompiledRowMapper(Object[] state, int numOutputs) {
+        this.state = state;
+        this.cells = new Object[numOutputs];
+        this.resultRow.cells(cells);
+    }
+
+    @Override
+    public Row apply(Row row) {
+        state[Nodes.ROW_SLOT] = row;
+        try {
+            COMPUTE_CELLS.invokeExact(state, row, cells);
+        } catch (Throwable t) {
+            Exceptions.rethrowUnchecked(t);
+        }
+        return resultRow;
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.compile;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.crate.common.annotations.VisibleForTesting;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.exceptions.Exceptions;
+import io.crate.expression.operator.AndOperator;
+import io.crate.expression.operator.EqOperator;
+import io.crate.expression.operator.GtOperator;
+import io.crate.expression.operator.GteOperator;
+import io.crate.expression.operator.LtOperator;
+import io.crate.expression.operator.LteOperator;
+import io.crate.expression.operator.OrOperator;
+import io.crate.expression.predicate.IsNullPredicate;
+import io.crate.expression.predicate.NotPredicate;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.InputColumn;
+import io.crate.expression.symbol.Literal;
+import io.crate.expression.symbol.Symbol;
+import io.crate.metadata.FunctionImplementation;
+import io.crate.metadata.FunctionType;
+import io.crate.metadata.NodeContext;
+import io.crate.metadata.Scalar;
+import io.crate.metadata.TransactionContext;
+import org.elasticsearch.common.settings.Setting;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+
+/**
+ * Compiles symbol trees into {@link MethodHandle} trees, as alternative to the {@link Input} trees
+ * created by {@link io.crate.expression.InputFactory}.
+ *
+ * <ul>
+ *     <li>Input columns are read directly from the row, there are no collect expressions.</li>
+ *     <li>Boolean operators and comparisons are replaced by static methods, see {@link Nodes}.</li>
+ *     <li>All other scalars are called with {@link LazyInput} arguments.</li>
+ * </ul>
+ *
+ * The handle trees are cached by the shape of the symbol tree: Literal values and scalar instances are
+ * held in a state array per compiled expression. Expressions which only differ in their literals share
+ * the same handles, and with them the code the JVM generated for them.
+ *
+ * Each template defines its own hidden class from {@link CompiledPredicate} or {@link CompiledRowMapper}
+ * which holds the root of the handle tree in a static final field. Unlike a handle read from a field of
+ * the template, this is a constant for the JIT compiler.
+ *
+ * The compiled expressions are not thread-safe, like the {@link Input} trees they replace.
+ */
+public final class ExpressionCompiler {
+
+    public static final Setting<Boolean> ENABLED_SETTING = Setting.boolSetting(
+        "node.sql.expression_compiler.enabled",
+        false,
+        Setting.Property.NodeScope
+    );
+
+    private static final int MAX_CACHED_TEMPLATES = 1000;
+
+    private static final Cache<List<Object>, Template> TEMPLATES = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_TEMPLATES)
+        .build();
+
+    private static final MethodType PREDICATE_TYPE = MethodType.methodType(boolean.class, Object[].class, Row.class);
+    private static final MethodType ROW_MAPPER_TYPE =
+        MethodType.methodType(void.class, Object[].class, Row.class, Object[].class);
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private static final byte[] PREDICATE_CLASS_BYTES = classBytes(CompiledPredicate.class);
+    private static final byte[] ROW_MAPPER_CLASS_BYTES = classBytes(CompiledRowMapper.class);
+
+    private enum Kind {
+        PREDICATE,
+        ROW_MAPPER
+    }
+
+    private enum Intrinsic {
+        AND,
+        OR,
+        NOT,
+        IS_NULL,
+        EQ,
+        LT,
+        LTE,
+        GT,
+        GTE
+    }
+
+    private final TransactionContext txnCtx;
+    private final NodeContext nodeCtx;
+
+    public ExpressionCompiler(TransactionContext txnCtx, NodeContext nodeCtx) {
+        this.txnCtx = txnCtx;
+        this.nodeCtx = nodeCtx;
+    }
+
+    /**
+     * @return a predicate evaluating {@code query} or null if the query contains symbols which can't be compiled.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public Predicate<Row> compilePredicate(Symbol query) {
+        return (Predicate<Row>) compile(Kind.PREDICATE, List.of(query));
+    }
+
+    /**
+     * @return a function computing {@code outputs} from an input row or null if any output can't be compiled.
+     *         Like {@link io.crate.execution.engine.pipeline.MapRowUsingInputs} the returned row is shared.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public java.util.function.Function<Row, Row> compileRowMapper(List<? extends Symbol> outputs) {
+        return (java.util.function.Function<Row, Row>) compile(Kind.ROW_MAPPER, outputs);
+    }
+
+    @VisibleForTesting
+    static long numCachedTemplates() {
+        return TEMPLATES.size();
+    }
+
+    /**
+     * @return a {@link CompiledPredicate} or {@link CompiledRowMapper}, depending on {@code kind}
+     */
+    @Nullable
+    private Object compile(Kind kind, List<? extends Symbol> symbols) {
+        ShapeCollector collector = new ShapeCollector(kind);
+        for (Symbol symbol : symbols) {
+            if (!collector.collect(symbol)) {
+                return null;
+            }
+        }
+        Template template;
+        try {
+            template = TEMPLATES.get(collector.shape, () -> TemplateBuilder.build(kind, symbols));
+        } catch (ExecutionException e) {
+            throw Exceptions.toRuntimeException(e.getCause());
+        }
+        Object[] state = collector.state.toArray();
+        for (GenericCall call : template.genericCalls) {
+            Input<?>[] arguments = new Input[call.arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = new LazyInput(call.arguments[i], state);
+            }
+            state[call.slot + 1] = arguments;
+        }
+        try {
+            return (Object) template.factory.invokeExact(state);
+        } catch (Throwable t) {
+            Exceptions.rethrowUnchecked(t);
+            return null;
+        }
+    }
+
+    private static byte[] classBytes(Class<?> clazz) {
+        try (InputStream in = clazz.getResourceAsStream(clazz.getSimpleName() + ".class")) {
+            if (in == null) {
+                throw new ExceptionInInitializerError("Class file of " + clazz.getName() + " not found");
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Defines a hidden class from {@code templateClass} with {@code root} as class data
+     *
+     * @return a factory for instances of the hidden class, taking the state as argument
+     */
+    private static MethodHandle defineFactory(byte[] templateClass,
+                                              MethodHandle root,
+                                              MethodType constructorType) throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup()
+            .defineHiddenClassWithClassData(templateClass, root, true);
+        return lookup.findConstructor(lookup.lookupClass(), constructorType);
+    }
+
+    @Nullable
+    private static Intrinsic intrinsic(Function function) {
+        int numArgs = function.arguments().size();
+        switch (function.name()) {
+            case AndOperator.NAME:
+                return numArgs == 2 ? Intrinsic.AND : null;
+            case OrOperator.NAME:
+                return numArgs == 2 ? Intrinsic.OR : null;
+            case NotPredicate.NAME:
+                return numArgs == 1 ? Intrinsic.NOT : null;
+            case IsNullPredicate.NAME:
+                return numArgs == 1 ? Intrinsic.IS_NULL : null;
+            case EqOperator.NAME:
+                return numArgs == 2 ? Intrinsic.EQ : null;
+            case LtOperator.NAME:
+                return numArgs == 2 ? Intrinsic.LT : null;
+            case LteOperator.NAME:
+                return numArgs == 2 ? Intrinsic.LTE : null;
+            case GtOperator.NAME:
+                return numArgs == 2 ? Intrinsic.GT : null;
+            case GteOperator.NAME:
+                return numArgs == 2 ? Intrinsic.GTE : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Computes the shape of a symbol tree, which is the cache key for the {@link Template},
+     * and the state holding everything which isn't part of the shape.
+     *
+     * Slots are assigned in pre-order, {@link TemplateBuilder} must use the same order.
+     */
+    private final class ShapeCollector {
+
+        private final List<Object> shape = new ArrayList<>();
+        private final List<Object> state = new ArrayList<>();
+
+        ShapeCollector(Kind kind) {
+            shape.add(kind);
+            state.add(null); // ROW_SLOT
+            state.add(txnCtx);
+            state.add(nodeCtx);
+        }
+
+        boolean collect(Symbol symbol) {
+            if (symbol instanceof InputColumn) {
+                shape.add(InputColumn.class);
+                shape.add(((InputColumn) symbol).index());
+                return true;
+            }
+            if (symbol instanceof Literal) {
+                shape.add(Literal.class);
+                state.add(((Literal<?>) symbol).value());
+                return true;
+            }
+            if (!(symbol instanceof Function)) {
+                return false;
+            }
+            Function function = (Function) symbol;
+            if (function.type() != FunctionType.SCALAR || function.filter() != null) {
+                return false;
+            }
+            Intrinsic intrinsic = intrinsic(function);
+            if (intrinsic == null) {
+                FunctionImplementation impl = nodeCtx.functions().getQualified(
+                    function,
+                    txnCtx.sessionSettings().searchPath()
+                );
+                if (!(impl instanceof Scalar)) {
+                    return false;
+                }
+                shape.add(Scalar.class);
+                shape.add(function.arguments().size());
+                state.add(((Scalar<?, ?>) impl).compile(function.arguments()));
+                state.add(null); // arguments; Created once the template is available
+            } else {
+                shape.add(intrinsic);
+            }
+            for (Symbol argument : function.arguments()) {
+                if (!collect(argument)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class TemplateBuilder {
+
+        private final List<GenericCall> genericCalls = new ArrayList<>();
+        private int nextSlot = Nodes.NUM_FIXED_SLOTS;
+
+        static Template build(Kind kind, List<? extends Symbol> symbols) throws ReflectiveOperationException {
+            TemplateBuilder builder = new TemplateBuilder();
+            MethodHandle factory;
+            if (kind == Kind.PREDICATE) {
+                assert symbols.size() == 1 : "A predicate must consist of a single symbol";
+                MethodHandle root = MethodHandles.filterReturnValue(builder.build(symbols.get(0)), Nodes.IS_TRUE);
+                assert root.type().equals(PREDICATE_TYPE) : "Predicate must have type " + PREDICATE_TYPE;
+                factory = defineFactory(
+                    PREDICATE_CLASS_BYTES,
+                    root,
+                    MethodType.methodType(void.class, Object[].class)
+                );
+            } else {
+                // One handle computing all outputs:
+                //   (state, row, cells) -> { cells[0] = out0(state, row); cells[1] = out1(state, row); ... }
+                MethodHandle[] setters = new MethodHandle[symbols.size()];
+                for (int i = 0; i < symbols.size(); i++) {
+                    MethodHandle setCell = MethodHandles.insertArguments(
+                        MethodHandles.arrayElementSetter(Object[].class), 1, i);
+                    MethodHandle output = builder.build(symbols.get(i));
+                    MethodHandle computeAndSet = MethodHandles.collectArguments(setCell, 1, output);
+                    setters[i] = MethodHandles.permuteArguments(computeAndSet, ROW_MAPPER_TYPE, 2, 0, 1);
+                }
+                MethodHandle root = MethodHandles.empty(ROW_MAPPER_TYPE);
+                for (int i = setters.length - 1; i >= 0; i--) {
+                    root = MethodHandles.foldArguments(root, setters[i]);
+                }
+                MethodHandle constructor = defineFactory(
+                    ROW_MAPPER_CLASS_BYTES,
+                    root,
+                    MethodType.methodType(void.class, Object[].class, int.class)
+                );
+                factory = MethodHandles.insertArguments(constructor, 1, symbols.size());
+            }
+            return new Template(factory.asType(FACTORY_TYPE), builder.genericCalls);
+        }
+
+        private MethodHandle build(Symbol symbol) {
+            if (symbol instanceof InputColumn) {
+                return MethodHandles.insertArguments(Nodes.INPUT, 0, ((InputColumn) symbol).index());
+            }
+            if (symbol instanceof Literal) {
+                return MethodHandles.insertArguments(Nodes.LITERAL, 0, nextSlot++);
+            }
+            assert symbol instanceof Function : "Only functions, input columns and literals can be compiled";
+            Function function = (Function) symbol;
+            List<Symbol> arguments = function.arguments();
+            Intrinsic intrinsic = intrinsic(function);
+            if (intrinsic == null) {
+                int slot = nextSlot;
+                nextSlot += 2;
+                MethodHandle[] argumentHandles = new MethodHandle[arguments.size()];
+                for (int i = 0; i < argumentHandles.length; i++) {
+                    argumentHandles[i] = build(arguments.get(i));
+                }
+                genericCalls.add(new GenericCall(slot, argumentHandles));
+                return MethodHandles.insertArguments(Nodes.SCALAR, 0, slot);
+            }
+            MethodHandle first = build(arguments.get(0));
+            switch (intrinsic) {
+                case NOT:
+                    return Nodes.unary(Nodes.NOT, first);
+                case IS_NULL:
+                    return Nodes.unary(Nodes.IS_NULL, first);
+                default:
+                    break;
+            }
+            MethodHandle second = build(arguments.get(1));
+            switch (intrinsic) {
+                case AND:
+                    return Nodes.binary(Nodes.AND, first, second);
+                case OR:
+                    return Nodes.binary(Nodes.OR, first, second);
+                case EQ:
+                    return Nodes.eq(first, second);
+                case LT:
+                    return cmp(0b001, first, second);
+                case LTE:
+                    return cmp(0b011, first, second);
+                case GT:
+                    return cmp(0b100, first, second);
+                case GTE:
+                    return cmp(0b110, first, second);
+                default:
+                    throw new AssertionError("Unexpected intrinsic: " + intrinsic);
+            }
+        }
+
+        private static MethodHandle cmp(int acceptedOutcomes, MethodHandle left, MethodHandle right) {
+            return Nodes.binary(MethodHandles.insertArguments(Nodes.CMP, 0, acceptedOutcomes), left, right);
+        }
+    }
+
+    private static final class Template {
+
+        /**
+         * Creates instances of the hidden class of this template, {@code (Object[] state) -> Object}
+         */
+        private final MethodHandle factory;
+        private final List<GenericCall> genericCalls;
+
+        Template(MethodHandle factory, List<GenericCall> genericCalls) {
+            this.factory = factory;
+            this.genericCalls = genericCalls;
+        }
+    }
+
+    private static final class GenericCall {
+
+        private final int slot;
+        private final MethodHandle[] arguments;
+
+        GenericCall(int slot, MethodHandle[] arguments) {
+            this.slot = slot;
+            this.arguments = arguments;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.compile;
+
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.exceptions.Exceptions;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Argument of a scalar which isn't replaced by a node of {@link Nodes}.
+ *
+ * Arguments are evaluated on {@link #value()} calls, so that scalars which don't evaluate all of their
+ * arguments (e.g. CASE or COALESCE) behave the same as with {@link io.crate.expression.InputFactory} inputs.
+ */
+final class LazyInput implements Input<Object> {
+
+    private final MethodHandle handle;
+    private final Object[] state;
+
+    LazyInput(MethodHandle handle, Object[] state) {
+        this.handle = handle;
+        this.state = state;
+    }
+
+    @Override
+    public Object value() {
+        try {
+            return (Object) handle.invokeExact(state, (Row) state[Nodes.ROW_SLOT]);
+        } catch (Throwable t) {
+            Exceptions.rethrowUnchecked(t);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.compile;
+
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.metadata.NodeContext;
+import io.crate.metadata.Scalar;
+import io.crate.metadata.TransactionContext;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * The building blocks of compiled expressions.
+ *
+ * Leaf nodes read a value from the row or from the state of the compiled expression. Once the
+ * {@link ExpressionCompiler} bound their leading slot argument using
+ * {@link MethodHandles#insertArguments(MethodHandle, int, Object...)}, they have the type {@link #EXPRESSION_TYPE}.
+ *
+ * Operator nodes are static methods on the values of their children. {@link #unary}, {@link #binary} and
+ * {@link #eq} bind the children using {@link MethodHandles#collectArguments} and {@link MethodHandles#foldArguments},
+ * so a compiled expression is a single handle tree of type {@link #EXPRESSION_TYPE} which doesn't invoke any handles
+ * itself. Invoked from a constant root, see {@link CompiledPredicate}, the JVM can inline the whole tree.
+ *
+ * The nodes for operators must evaluate their arguments exactly like the {@link Scalar} implementation they replace,
+ * including the order and which arguments are evaluated in case of null values.
+ */
+final class Nodes {
+
+    static final MethodType EXPRESSION_TYPE = MethodType.methodType(Object.class, Object[].class, Row.class);
+
+    static final int ROW_SLOT = 0;
+    static final int TXN_CTX_SLOT = 1;
+    static final int NODE_CTX_SLOT = 2;
+    static final int NUM_FIXED_SLOTS = 3;
+
+    static final MethodHandle INPUT;
+    static final MethodHandle LITERAL;
+    static final MethodHandle SCALAR;
+    static final MethodHandle AND;
+    static final MethodHandle OR;
+    static final MethodHandle NOT;
+    static final MethodHandle IS_NULL;
+    static final MethodHandle CMP;
+    static final MethodHandle IS_TRUE;
+    private static final MethodHandle EQ_NON_NULL_LEFT;
+    private static final MethodHandle IS_NULL_VALUE;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodType withSlot = MethodType.methodType(Object.class, int.class, Object[].class, Row.class);
+        MethodType unary = MethodType.methodType(Object.class, Object.class);
+        MethodType binary = MethodType.methodType(Object.class, Object.class, Object.class);
+        try {
+            INPUT = lookup.findStatic(Nodes.class, "input", withSlot);
+            LITERAL = lookup.findStatic(Nodes.class, "literal", withSlot);
+            SCALAR = lookup.findStatic(Nodes.class, "scalar", withSlot);
+            AND = lookup.findStatic(Nodes.class, "and", binary);
+            OR = lookup.findStatic(Nodes.class, "or", binary);
+            NOT = lookup.findStatic(Nodes.class, "not", unary);
+            IS_NULL_VALUE = lookup.findStatic(Nodes.class, "isNull", MethodType.methodType(boolean.class, Object.class));
+            IS_NULL = IS_NULL_VALUE.asType(unary);
+            EQ_NON_NULL_LEFT = lookup.findStatic(Nodes.class, "eqNonNullLeft", binary);
+            CMP = lookup.findStatic(
+                Nodes.class,
+                "cmp",
+                MethodType.methodType(Object.class, int.class, Object.class, Object.class)
+            );
+            IS_TRUE = lookup.findStatic(Nodes.class, "isTrue", MethodType.methodType(boolean.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Nodes() {
+    }
+
+    /**
+     * @param operator operator of type {@code (Object) -> Object}
+     * @return {@code (state, row) -> operator(arg(state, row))}
+     */
+    static MethodHandle unary(MethodHandle operator, MethodHandle arg) {
+        return MethodHandles.collectArguments(operator, 0, arg);
+    }
+
+    /**
+     * Evaluates both arguments, the left one first.
+     *
+     * @param operator operator of type {@code (Object, Object) -> Object}
+     * @return {@code (state, row) -> operator(left(state, row), right(state, row))}
+     */
+    static MethodHandle binary(MethodHandle operator, MethodHandle left, MethodHandle right) {
+        // (left, right, state, row)
+        MethodHandle withInputs = MethodHandles.dropArguments(operator, 2, Object[].class, Row.class);
+        // (left, state, row)
+        MethodHandle withRight = MethodHandles.foldArguments(withInputs, 1, right);
+        return MethodHandles.foldArguments(withRight, 0, left);
+    }
+
+    /**
+     * Same as {@link io.crate.expression.operator.EqOperator}; The right side isn't evaluated if the left side is null.
+     *
+     * @return {@code (state, row) -> eq(left(state, row), right(state, row))}
+     */
+    static MethodHandle eq(MethodHandle left, MethodHandle right) {
+        // (left, state, row)
+        MethodHandle compareWithRight = MethodHandles.collectArguments(EQ_NON_NULL_LEFT, 1, right);
+        MethodHandle returnNull = MethodHandles.dropArguments(
+            MethodHandles.constant(Object.class, null), 0, Object.class, Object[].class, Row.class);
+        MethodHandle leftIsNull = MethodHandles.dropArguments(IS_NULL_VALUE, 1, Object[].class, Row.class);
+        MethodHandle body = MethodHandles.guardWithTest(leftIsNull, returnNull, compareWithRight);
+        return MethodHandles.foldArguments(body, left);
+    }
+
+    static Object input(int index, Object[] state, Row row) {
+        return row.get(index);
+    }
+
+    static Object literal(int slot, Object[] state, Row row) {
+        return state[slot];
+    }
+
+    /**
+     * Evaluates any scalar. The scalar is stored at {@code slot}, its lazily evaluated arguments at {@code slot + 1}.
+     */
+    @SuppressWarnings("unchecked")
+    static Object scalar(int slot, Object[] state, Row row) {
+        Scalar<?, Object> scalar = (Scalar<?, Object>) state[slot];
+        return scalar.evaluate(
+            (TransactionContext) state[TXN_CTX_SLOT],
+            (NodeContext) state[NODE_CTX_SLOT],
+            (Input<Object>[]) state[slot + 1]
+        );
+    }
+
+    /**
+     * Same as {@link io.crate.expression.operator.AndOperator}
+     */
+    static Object and(Object leftValue, Object rightValue) {
+        Boolean left = (Boolean) leftValue;
+        Boolean right = (Boolean) rightValue;
+        if (left == null && right == null) {
+            return null;
+        }
+        if (left == null) {
+            return (!right) ? false : null;
+        }
+        if (right == null) {
+            return (!left) ? false : null;
+        }
+        return left && right;
+    }
+
+    /**
+     * Same as {@link io.crate.expression.operator.OrOperator}
+     */
+    static Object or(Object leftValue, Object rightValue) {
+        Boolean left = (Boolean) leftValue;
+        Boolean right = (Boolean) rightValue;
+        if (left == null && right == null) {
+            return null;
+        }
+        if (left == null) {
+            return (right) ? true : null;
+        }
+        if (right == null) {
+            return (left) ? true : null;
+        }
+        return left || right;
+    }
+
+    static Object not(Object value) {
+        return value != null ? !(Boolean) value : null;
+    }
+
+    static boolean isNull(Object value) {
+        return value == null;
+    }
+
+    static Object eqNonNullLeft(Object left, Object right) {
+        if (right == null) {
+            return null;
+        }
+        return left.equals(right);
+    }
+
+    /**
+     * Same as {@link io.crate.expression.operator.CmpOperator} for the primitive types it is registered for.
+     *
+     * @param acceptedOutcomes bit mask of the accepted outcomes of {@code compareTo}; 1 = less, 2 = equal, 4 = greater
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object cmp(int acceptedOutcomes, Object left, Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        int cmp = Integer.signum(((Comparable) left).compareTo(right));
+        return (acceptedOutcomes & (1 << (cmp + 1))) != 0;
+    }
+
+    /**
+     * Same as {@link io.crate.expression.InputCondition#matches(Input)}
+     */
+    static boolean isTrue(Object value) {
+        return value != null && (Boolean) value;
+    }
+}
@@ -56,8 +56,8 @@ public class LikeOperators {
         return name;
     }
 
-    private static final int CASE_SENSITIVE = Pattern.DOTALL;
-    private static final int CASE_INSENSITIVE = Pattern.DOTALL | Pattern.CASE_INSENSITIVE;
+    public static final int CASE_SENSITIVE = Pattern.DOTALL;
+    public static final int CASE_INSENSITIVE = Pattern.DOTALL | Pattern.CASE_INSENSITIVE;
 
     public static void register(OperatorModule module) {
         module.register(
@@ -142,7 +142,7 @@ public class LikeOperators {
         );
     }
 
-    static final Pattern makePattern(String pattern, int flags) {
+    public static Pattern makePattern(String pattern, int flags) {
         return Pattern.compile(patternToRegex(pattern, DEFAULT_ESCAPE, true), flags);
     }
 
@@ -26,6 +26,8 @@ import io.crate.common.collections.Lists2;
 import io.crate.expression.operator.LikeOperators;
 import io.crate.expression.operator.Operator;
 import io.crate.expression.operator.OperatorModule;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.Symbol;
 import io.crate.metadata.functions.Signature;
 import io.crate.sql.tree.ComparisonExpression;
 
@@ -86,12 +88,7 @@ public final class AnyOperators {
     public static void register(OperatorModule module) {
         for (var type : Type.values()) {
             module.register(
-                Signature.scalar(
-                    type.opName,
-                    parseTypeSignature("E"),
-                    parseTypeSignature("array(E)"),
-                    Operator.RETURN_TYPE.getTypeSignature()
-                ).withTypeVariableConstraints(typeVariable("E")),
+                signature(type),
                 (signature, boundSignature) ->
                     new AnyOperator(
                         signature,
@@ -102,6 +99,22 @@ public final class AnyOperators {
         }
     }
 
+    private static Signature signature(Type type) {
+        return Signature.scalar(
+            type.opName,
+            parseTypeSignature("E"),
+            parseTypeSignature("array(E)"),
+            Operator.RETURN_TYPE.getTypeSignature()
+        ).withTypeVariableConstraints(typeVariable("E"));
+    }
+
+    /**
+     * Creates a {@code value <op> ANY(array)} function
+     */
+    public static Function of(Type type, Symbol value, Symbol array) {
+        return new Function(signature(type), List.of(value, array), Operator.RETURN_TYPE);
+    }
+
     public static Iterable<?> collectionValueToIterable(Object collectionRef) throws IllegalArgumentException {
         if (collectionRef instanceof Object[]) {
             return Arrays.asList((Object[]) collectionRef);
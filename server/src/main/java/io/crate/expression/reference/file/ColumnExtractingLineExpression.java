@@ -45,4 +45,9 @@ public class ColumnExtractingLineExpression extends LineCollectorExpression<Obje
     public void startCollect(LineContext context) {
         this.context = context;
     }
+
+    @Override
+    public boolean requiresParsedSource() {
+        return true;
+    }
 }
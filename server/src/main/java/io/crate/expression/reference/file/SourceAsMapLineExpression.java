@@ -40,4 +40,9 @@ public class SourceAsMapLineExpression extends LineCollectorExpression<Map<Strin
     public void startCollect(LineContext context) {
         this.context = context;
     }
+
+    @Override
+    public boolean requiresParsedSource() {
+        return true;
+    }
 }
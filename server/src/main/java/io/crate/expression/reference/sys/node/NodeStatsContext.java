@@ -21,6 +21,9 @@
 
 package io.crate.expression.reference.sys.node;
 
+import io.crate.execution.engine.cache.QueryResultCacheStats;
+import io.crate.execution.engine.distribution.PageCompressionStats;
+import io.crate.execution.jobs.QueryAdmissionStats;
 import io.crate.monitor.ExtendedOsStats;
 import io.crate.protocols.ConnectionStats;
 import io.crate.types.DataTypes;
@@ -61,6 +64,9 @@ public class NodeStatsContext implements Writeable {
     private ThreadPoolStats threadPools;
     private HttpStats httpStats;
     private ConnectionStats psqlStats;
+    private PageCompressionStats pageCompressionStats;
+    private QueryAdmissionStats queryAdmissionStats;
+    private QueryResultCacheStats queryResultCacheStats;
 
     private String osName;
     private String osArch;
@@ -198,6 +204,18 @@ public class NodeStatsContext implements Writeable {
         return openTransportConnections;
     }
 
+    public PageCompressionStats pageCompressionStats() {
+        return pageCompressionStats;
+    }
+
+    public QueryAdmissionStats queryAdmissionStats() {
+        return queryAdmissionStats;
+    }
+
+    public QueryResultCacheStats queryResultCacheStats() {
+        return queryResultCacheStats;
+    }
+
     public Integer httpPort() {
         return httpPort;
     }
@@ -294,6 +312,18 @@ public class NodeStatsContext implements Writeable {
         this.openTransportConnections = openTransportConnections;
     }
 
+    void pageCompressionStats(PageCompressionStats pageCompressionStats) {
+        this.pageCompressionStats = pageCompressionStats;
+    }
+
+    void queryAdmissionStats(QueryAdmissionStats queryAdmissionStats) {
+        this.queryAdmissionStats = queryAdmissionStats;
+    }
+
+    void queryResultCacheStats(QueryResultCacheStats queryResultCacheStats) {
+        this.queryResultCacheStats = queryResultCacheStats;
+    }
+
     public NodeStatsContext(StreamInput in, boolean complete) throws IOException {
         this.complete = complete;
         this.id = DataTypes.STRING.readValueFrom(in);
@@ -325,6 +355,11 @@ public class NodeStatsContext implements Writeable {
         this.jvmName = DataTypes.STRING.readValueFrom(in);
         this.jvmVendor = DataTypes.STRING.readValueFrom(in);
         this.jvmVersion = DataTypes.STRING.readValueFrom(in);
+        if (in.getVersion().onOrAfter(Version.V_4_7_0)) {
+            this.pageCompressionStats = in.readOptionalWriteable(PageCompressionStats::new);
+            this.queryAdmissionStats = in.readOptionalWriteable(QueryAdmissionStats::new);
+            this.queryResultCacheStats = in.readOptionalWriteable(QueryResultCacheStats::new);
+        }
     }
 
     @Override
@@ -364,5 +399,10 @@ public class NodeStatsContext implements Writeable {
         DataTypes.STRING.writeValueTo(out, jvmName);
         DataTypes.STRING.writeValueTo(out, jvmVendor);
         DataTypes.STRING.writeValueTo(out, jvmVersion);
+        if (out.getVersion().onOrAfter(Version.V_4_7_0)) {
+            out.writeOptionalWriteable(pageCompressionStats);
+            out.writeOptionalWriteable(queryAdmissionStats);
+            out.writeOptionalWriteable(queryResultCacheStats);
+        }
     }
 }
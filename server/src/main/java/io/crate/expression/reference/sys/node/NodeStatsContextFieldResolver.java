@@ -22,6 +22,12 @@
 package io.crate.expression.reference.sys.node;
 
 import io.crate.common.annotations.VisibleForTesting;
+import io.crate.execution.engine.cache.QueryResultCache;
+import io.crate.execution.engine.cache.QueryResultCacheStats;
+import io.crate.execution.engine.distribution.PageCompression;
+import io.crate.execution.engine.distribution.PageCompressionStats;
+import io.crate.execution.jobs.QueryAdmissionController;
+import io.crate.execution.jobs.QueryAdmissionStats;
 import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.sys.SysNodesTableInfo;
 import io.crate.monitor.ExtendedNodeInfo;
@@ -73,6 +79,9 @@ public class NodeStatsContextFieldResolver {
     private final Supplier<ConnectionStats> psqlStats;
     private final Supplier<TransportAddress> boundPostgresAddress;
     private final LongSupplier numOpenTransportConnections;
+    private final Supplier<PageCompressionStats> pageCompressionStats;
+    private final Supplier<QueryAdmissionStats> queryAdmissionStats;
+    private final Supplier<QueryResultCacheStats> queryResultCacheStats;
     private final ProcessService processService;
     private final OsService osService;
     private final JvmService jvmService;
@@ -87,7 +96,10 @@ public class NodeStatsContextFieldResolver {
                                          TransportService transportService,
                                          ThreadPool threadPool,
                                          ExtendedNodeInfo extendedNodeInfo,
-                                         PostgresNetty postgresNetty) {
+                                         PostgresNetty postgresNetty,
+                                         PageCompression pageCompression,
+                                         QueryAdmissionController queryAdmissionController,
+                                         QueryResultCache queryResultCache) {
         this(
             clusterService::localNode,
             nodeService.getMonitorService(),
@@ -104,6 +116,9 @@ public class NodeStatsContextFieldResolver {
                 return boundTransportAddress.publishAddress();
             },
             () -> transportService.stats().getServerOpen(),
+            pageCompression::stats,
+            queryAdmissionController::stats,
+            queryResultCache::stats,
             () -> clusterService.state().version()
         );
     }
@@ -118,6 +133,9 @@ public class NodeStatsContextFieldResolver {
                                   Supplier<ConnectionStats> psqlStats,
                                   Supplier<TransportAddress> boundPostgresAddress,
                                   LongSupplier numOpenTransportConnections,
+                                  Supplier<PageCompressionStats> pageCompressionStats,
+                                  Supplier<QueryAdmissionStats> queryAdmissionStats,
+                                  Supplier<QueryResultCacheStats> queryResultCacheStats,
                                   LongSupplier clusterStateVersion) {
         this.localNode = localNode;
         processService = monitorService.processService();
@@ -131,6 +149,9 @@ public class NodeStatsContextFieldResolver {
         this.psqlStats = psqlStats;
         this.boundPostgresAddress = boundPostgresAddress;
         this.numOpenTransportConnections = numOpenTransportConnections;
+        this.pageCompressionStats = pageCompressionStats;
+        this.queryAdmissionStats = queryAdmissionStats;
+        this.queryResultCacheStats = queryResultCacheStats;
         this.clusterStateVersion = clusterStateVersion;
     }
 
@@ -239,6 +260,19 @@ public class NodeStatsContextFieldResolver {
                 nodeStatsContext.httpStats(httpStatsSupplier.get());
                 nodeStatsContext.psqlStats(psqlStats.get());
                 nodeStatsContext.openTransportConnections(numOpenTransportConnections.getAsLong());
+                nodeStatsContext.pageCompressionStats(pageCompressionStats.get());
+            }
+        }),
+        entry(SysNodesTableInfo.Columns.QUERY_ADMISSION, new Consumer<>() {
+            @Override
+            public void accept(NodeStatsContext context) {
+                context.queryAdmissionStats(queryAdmissionStats.get());
+            }
+        }),
+        entry(SysNodesTableInfo.Columns.QUERY_RESULT_CACHE, new Consumer<>() {
+            @Override
+            public void accept(NodeStatsContext context) {
+                context.queryResultCacheStats(queryResultCacheStats.get());
             }
         }),
         entry(SysNodesTableInfo.Columns.OS, new Consumer<>() {
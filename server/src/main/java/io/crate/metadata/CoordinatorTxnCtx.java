@@ -63,6 +63,7 @@ public final class CoordinatorTxnCtx implements TransactionContext {
         return new SessionSettings(sessionContext.sessionUser().name(),
                                    sessionContext.searchPath(),
                                    sessionContext.isHashJoinEnabled(),
+                                   sessionContext.maxParallelWorkersPerShard(),
                                    sessionContext.excludedOptimizerRules());
     }
 
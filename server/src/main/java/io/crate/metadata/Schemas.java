@@ -96,6 +96,7 @@ public class Schemas extends AbstractLifecycleComponent implements Iterable<Sche
     private final DocSchemaInfoFactory docSchemaInfoFactory;
     private final Map<String, SchemaInfo> schemas = new ConcurrentHashMap<>();
     private final Map<String, SchemaInfo> builtInSchemas;
+    private volatile long metadataVersion = -1L;
 
     @Inject
     public Schemas(Map<String, SchemaInfo> builtInSchemas,
@@ -340,6 +341,15 @@ public class Schemas extends AbstractLifecycleComponent implements Iterable<Sche
                 schemaInfo.update(event);
             }
         }
+        metadataVersion = event.state().metadata().version();
+    }
+
+    /**
+     * @return the version of the cluster metadata the schemas have been updated to, or -1 if no
+     *         cluster state has been applied yet.
+     */
+    public long metadataVersion() {
+        return metadataVersion;
     }
 
     @VisibleForTesting
@@ -24,6 +24,7 @@ package io.crate.metadata.settings;
 import io.crate.common.annotations.VisibleForTesting;
 import io.crate.metadata.SearchPath;
 import io.crate.planner.optimizer.Rule;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
@@ -37,12 +38,18 @@ public final class SessionSettings implements Writeable {
     private final String userName;
     private final SearchPath searchPath;
     private final boolean hashJoinsEnabled;
+    private final int maxParallelWorkersPerShard;
     private final Set<Class<? extends Rule<?>>> excludedOptimizerRules;
 
     public SessionSettings(StreamInput in) throws IOException {
         this.userName = in.readString();
         this.searchPath = SearchPath.createSearchPathFrom(in);
         this.hashJoinsEnabled = in.readBoolean();
+        if (in.getVersion().onOrAfter(Version.V_4_7_0)) {
+            this.maxParallelWorkersPerShard = in.readVInt();
+        } else {
+            this.maxParallelWorkersPerShard = 1;
+        }
         // excludedOptimizerRules are only used on the coordinator node
         // and never needed any other node and therefore are excluded from
         // serialization on purpose.
@@ -55,9 +62,18 @@ public final class SessionSettings implements Writeable {
     }
 
     public SessionSettings(String userName, SearchPath searchPath, boolean hashJoinsEnabled, Set<Class<? extends Rule<?>>> rules) {
+        this(userName, searchPath, hashJoinsEnabled, 1, rules);
+    }
+
+    public SessionSettings(String userName,
+                           SearchPath searchPath,
+                           boolean hashJoinsEnabled,
+                           int maxParallelWorkersPerShard,
+                           Set<Class<? extends Rule<?>>> rules) {
         this.userName = userName;
         this.searchPath = searchPath;
         this.hashJoinsEnabled = hashJoinsEnabled;
+        this.maxParallelWorkersPerShard = maxParallelWorkersPerShard;
         this.excludedOptimizerRules = rules;
     }
 
@@ -77,6 +93,13 @@ public final class SessionSettings implements Writeable {
         return hashJoinsEnabled;
     }
 
+    /**
+     * @return the maximum number of threads used to collect the documents of a single shard
+     */
+    public int maxParallelWorkersPerShard() {
+        return maxParallelWorkersPerShard;
+    }
+
     public Set<Class<? extends Rule<?>>> excludedOptimizerRules() {
         return excludedOptimizerRules;
     }
@@ -86,6 +109,9 @@ public final class SessionSettings implements Writeable {
         out.writeString(userName);
         searchPath.writeTo(out);
         out.writeBoolean(hashJoinsEnabled);
+        if (out.getVersion().onOrAfter(Version.V_4_7_0)) {
+            out.writeVInt(maxParallelWorkersPerShard);
+        }
     }
 
     @Override
@@ -99,11 +125,12 @@ public final class SessionSettings implements Writeable {
         SessionSettings that = (SessionSettings) o;
         return Objects.equals(userName, that.userName) &&
                Objects.equals(searchPath, that.searchPath) &&
-               Objects.equals(hashJoinsEnabled, that.hashJoinsEnabled);
+               Objects.equals(hashJoinsEnabled, that.hashJoinsEnabled) &&
+               maxParallelWorkersPerShard == that.maxParallelWorkersPerShard;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(userName, searchPath, hashJoinsEnabled);
+        return Objects.hash(userName, searchPath, hashJoinsEnabled, maxParallelWorkersPerShard);
     }
 }
@@ -43,6 +43,7 @@ public class SessionSettingRegistry {
     private static final String SEARCH_PATH_KEY = "search_path";
     public static final String HASH_JOIN_KEY = "enable_hashjoin";
     static final String MAX_INDEX_KEYS = "max_index_keys";
+    public static final String MAX_PARALLEL_WORKERS_PER_SHARD_KEY = "max_parallel_workers_per_shard";
     private static final String SERVER_VERSION_NUM = "server_version_num";
     private static final String SERVER_VERSION = "server_version";
     private final Map<String, SessionSetting<?>> settings;
@@ -86,6 +87,28 @@ public class SessionSettingRegistry {
                      () -> String.valueOf(32),
                      "Shows the maximum number of index keys.",
                      DataTypes.INTEGER))
+            .put(MAX_PARALLEL_WORKERS_PER_SHARD_KEY,
+                 new SessionSetting<>(
+                     MAX_PARALLEL_WORKERS_PER_SHARD_KEY,
+                     objects -> {
+                         if (objects.length != 1) {
+                             throw new IllegalArgumentException(
+                                 MAX_PARALLEL_WORKERS_PER_SHARD_KEY + " should have only one argument.");
+                         }
+                     },
+                     objects -> {
+                         Integer workers = DataTypes.INTEGER.implicitCast(objects[0]);
+                         if (workers == null || workers < 1) {
+                             throw new IllegalArgumentException(
+                                 MAX_PARALLEL_WORKERS_PER_SHARD_KEY + " must be greater than or equal to 1.");
+                         }
+                         return workers;
+                     },
+                     SessionContext::setMaxParallelWorkersPerShard,
+                     s -> Integer.toString(s.maxParallelWorkersPerShard()),
+                     () -> String.valueOf(1),
+                     "Sets the maximum number of threads used to collect a single shard.",
+                     DataTypes.INTEGER))
             .put(SERVER_VERSION_NUM,
                  new SessionSetting<>(
                      SERVER_VERSION_NUM,
@@ -21,6 +21,9 @@
 
 package io.crate.metadata.sys;
 
+import io.crate.execution.engine.cache.QueryResultCacheStats;
+import io.crate.execution.engine.distribution.PageCompressionStats;
+import io.crate.execution.jobs.QueryAdmissionStats;
 import io.crate.expression.reference.sys.node.NodeStatsContext;
 import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.RelationName;
@@ -33,6 +36,8 @@ import org.elasticsearch.monitor.fs.FsInfo;
 import org.elasticsearch.monitor.jvm.JvmStats;
 import org.elasticsearch.threadpool.ThreadPoolStats;
 
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 import static io.crate.types.DataTypes.DOUBLE;
 import static io.crate.types.DataTypes.INTEGER;
@@ -61,6 +66,8 @@ public class SysNodesTableInfo {
     private static final String SYS_COL_OS_INFO = "os_info";
     private static final String SYS_COL_PROCESS = "process";
     private static final String SYS_COL_FS = "fs";
+    private static final String SYS_COL_QUERY_ADMISSION = "query_admission";
+    private static final String SYS_COL_QUERY_RESULT_CACHE = "query_result_cache";
 
     public static class Columns {
         public static final ColumnIdent ID = new ColumnIdent(SYS_COL_ID);
@@ -92,6 +99,10 @@ public class SysNodesTableInfo {
         public static final ColumnIdent PROCESS = new ColumnIdent(SYS_COL_PROCESS);
 
         public static final ColumnIdent FS = new ColumnIdent(SYS_COL_FS);
+
+        public static final ColumnIdent QUERY_ADMISSION = new ColumnIdent(SYS_COL_QUERY_ADMISSION);
+
+        public static final ColumnIdent QUERY_RESULT_CACHE = new ColumnIdent(SYS_COL_QUERY_RESULT_CACHE);
     }
 
 
@@ -175,6 +186,12 @@ public class SysNodesTableInfo {
                 .endObject()
                 .startObject("transport")
                     .add("open", LONG, NodeStatsContext::openTransportConnections)
+                    .startObject("page_compression")
+                        .add("pages_compressed", LONG, pageCompressionStat(PageCompressionStats::pagesCompressed))
+                        .add("pages_skipped", LONG, pageCompressionStat(PageCompressionStats::pagesSkipped))
+                        .add("bytes_saved", LONG, pageCompressionStat(PageCompressionStats::bytesSaved))
+                        .add("time_nanos", LONG, pageCompressionStat(PageCompressionStats::timeNanos))
+                    .endObject()
                 .endObject()
             .endObject()
             .startObject("os")
@@ -250,7 +267,51 @@ public class SysNodesTableInfo {
                     .add("path", STRING, FsInfo.Path::getPath)
                 .endObjectArray()
             .endObject()
+            .startObject("query_admission")
+                .add("concurrency_limit", INTEGER, queryAdmissionStat(QueryAdmissionStats::limit))
+                .add("running", INTEGER, queryAdmissionStat(QueryAdmissionStats::running))
+                .add("queued", INTEGER, queryAdmissionStat(QueryAdmissionStats::queued))
+                .add("rejected", LONG, queryAdmissionStat(QueryAdmissionStats::rejected))
+                .add("timed_out", LONG, queryAdmissionStat(QueryAdmissionStats::timedOut))
+            .endObject()
+            .startObject("query_result_cache")
+                .add("hits", LONG, queryResultCacheStat(QueryResultCacheStats::hits))
+                .add("misses", LONG, queryResultCacheStat(QueryResultCacheStats::misses))
+                .add("evictions", LONG, queryResultCacheStat(QueryResultCacheStats::evictions))
+                .add("entries", LONG, queryResultCacheStat(QueryResultCacheStats::entries))
+                .add("size", LONG, queryResultCacheStat(QueryResultCacheStats::sizeInBytes))
+            .endObject()
             .setPrimaryKeys(new ColumnIdent("id"))
             .build();
     }
+
+    /**
+     * Nodes before 4.7.0 don't provide page compression stats
+     */
+    private static Function<NodeStatsContext, Long> pageCompressionStat(ToLongFunction<PageCompressionStats> getStat) {
+        return x -> {
+            PageCompressionStats stats = x.pageCompressionStats();
+            return stats == null ? null : getStat.applyAsLong(stats);
+        };
+    }
+
+    /**
+     * Nodes before 4.7.0 don't provide query result cache stats
+     */
+    private static Function<NodeStatsContext, Long> queryResultCacheStat(ToLongFunction<QueryResultCacheStats> getStat) {
+        return x -> {
+            QueryResultCacheStats stats = x.queryResultCacheStats();
+            return stats == null ? null : getStat.applyAsLong(stats);
+        };
+    }
+
+    /**
+     * Nodes before 4.7.0 don't provide query admission stats
+     */
+    private static <T> Function<NodeStatsContext, T> queryAdmissionStat(Function<QueryAdmissionStats, T> getStat) {
+        return x -> {
+            QueryAdmissionStats stats = x.queryAdmissionStats();
+            return stats == null ? null : getStat.apply(stats);
+        };
+    }
 }
@@ -19,64 +19,264 @@
  * software solely pursuant to the terms of the relevant commercial agreement.
  */
 
+
 package io.crate.operation.collect.files;
 
-import com.fasterxml.jackson.databind.MappingIterator;
-import com.fasterxml.jackson.databind.ObjectReader;
-import com.fasterxml.jackson.dataformat.csv.CsvMapper;
-import com.fasterxml.jackson.dataformat.csv.CsvParser;
 import io.crate.analyze.CopyFromParserProperties;
-import org.elasticsearch.common.xcontent.XContentBuilder;
-import org.elasticsearch.common.xcontent.json.JsonXContent;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 
+/**
+ * Converts CSV lines into JSON objects using the values of the header as keys.
+ * <p>
+ * A line is tokenized in a single pass and the values are encoded as UTF-8 straight into a reused buffer.
+ * Apart from the resulting byte array no objects are allocated per line.
+ * <p>
+ * Values are trimmed and can be enclosed in double quotes, a double quote within a quoted value is escaped
+ * by another double quote. All values are strings, empty values are null if
+ * {@link CopyFromParserProperties#emptyStringAsNull()} is set.
+ * <p>
+ * Not thread-safe.
+ */
 public class CSVLineParser {
 
+    private static final char QUOTE = '"';
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
     private final ArrayList<String> keyList = new ArrayList<>();
-    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
-    private final ObjectReader csvReader;
+    private final char separator;
+    private final boolean emptyStringAsNull;
+
+    /**
+     * The keys encoded as {@code "key":}
+     */
+    private byte[][] encodedKeys = new byte[0][];
+
+    /**
+     * The unescaped chars of the current value
+     */
+    private char[] value = new char[64];
+    private int valueLength;
+
+    private byte[] out = new byte[256];
+    private int outPos;
 
     public CSVLineParser(CopyFromParserProperties properties) {
-        var mapper = new CsvMapper().enable(CsvParser.Feature.TRIM_SPACES);
-        if (properties.emptyStringAsNull()) {
-            mapper.enable(CsvParser.Feature.EMPTY_STRING_AS_NULL);
-        }
-        var csvSchema = mapper
-            .typedSchemaFor(String.class)
-            .withColumnSeparator(properties.columnSeparator());
-        csvReader = mapper
-            .readerWithTypedSchemaFor(String.class)
-            .with(csvSchema);
+        this.separator = properties.columnSeparator();
+        this.emptyStringAsNull = properties.emptyStringAsNull();
     }
 
     public void parseHeader(String header) throws IOException {
-        MappingIterator<String> iterator = csvReader.readValues(header.getBytes(StandardCharsets.UTF_8));
-        iterator.readAll(keyList);
+        int pos = skipLineBreaks(header, 0);
+        while (pos != -1) {
+            pos = readValue(header, pos);
+            keyList.add(new String(value, 0, valueLength));
+        }
         HashSet<String> keySet = new HashSet<>(keyList);
         keySet.remove("");
         if (keySet.size() != keyList.size() || keySet.size() == 0) {
             throw new IllegalArgumentException("Invalid header: duplicate entries or no entries present");
         }
+        encodedKeys = new byte[keyList.size()][];
+        for (int i = 0; i < keyList.size(); i++) {
+            String key = keyList.get(i);
+            outPos = 0;
+            writeString(key.toCharArray(), key.length());
+            ensureCapacity(1);
+            out[outPos++] = ':';
+            encodedKeys[i] = Arrays.copyOf(out, outPos);
+        }
     }
 
     public byte[] parse(String row) throws IOException {
-        MappingIterator<Object> iterator = csvReader.readValues(row.getBytes(StandardCharsets.UTF_8));
-        out.reset();
-        XContentBuilder jsonBuilder = new XContentBuilder(JsonXContent.JSON_XCONTENT, out).startObject();
+        outPos = 0;
+        ensureCapacity(1);
+        out[outPos++] = '{';
+        int pos = skipLineBreaks(row, 0);
         int i = 0;
-        while (iterator.hasNext()) {
-            if (i >= keyList.size()) {
+        while (pos != -1) {
+            pos = readValue(row, pos);
+            if (i >= encodedKeys.length) {
                 throw new IllegalArgumentException("Number of values exceeds number of keys");
             }
-            jsonBuilder.field(keyList.get(i), iterator.next());
+            byte[] key = encodedKeys[i];
+            ensureCapacity(key.length + 1);
+            if (i > 0) {
+                out[outPos++] = ',';
+            }
+            System.arraycopy(key, 0, out, outPos, key.length);
+            outPos += key.length;
+            if (valueLength == 0 && emptyStringAsNull) {
+                ensureCapacity(NULL.length);
+                System.arraycopy(NULL, 0, out, outPos, NULL.length);
+                outPos += NULL.length;
+            } else {
+                writeString(value, valueLength);
+            }
             i++;
         }
-        jsonBuilder.endObject().close();
-        return out.toByteArray();
+        ensureCapacity(1);
+        out[outPos++] = '}';
+        return Arrays.copyOf(out, outPos);
+    }
+
+    /**
+     * Reads the value starting at {@code start} into {@link #value}.
+     *
+     * @return the position after the separator following the value or -1 if the value is the last one of the line.
+     */
+    private int readValue(String line, int start) {
+        int length = line.length();
+        int pos = start;
+        valueLength = 0;
+        while (pos < length && isSpace(line.charAt(pos))) {
+            pos++;
+        }
+        int trimStart = 0;
+        if (pos < length && line.charAt(pos) == QUOTE) {
+            pos++;
+            while (pos < length) {
+                char c = line.charAt(pos);
+                pos++;
+                if (c == QUOTE) {
+                    if (pos < length && line.charAt(pos) == QUOTE) {
+                        pos++;
+                    } else {
+                        break;
+                    }
+                }
+                append(c);
+            }
+            // only spaces following the closing quote are trimmed
+            trimStart = valueLength;
+        }
+        int next = -1;
+        while (pos < length) {
+            char c = line.charAt(pos);
+            if (c == separator) {
+                next = pos + 1;
+                break;
+            }
+            if (c == '\n' || c == '\r') {
+                next = skipLineBreaks(line, pos);
+                break;
+            }
+            append(c);
+            pos++;
+        }
+        while (valueLength > trimStart && isSpace(value[valueLength - 1])) {
+            valueLength--;
+        }
+        return next;
+    }
+
+    /**
+     * @return the position of the first char which isn't a line break or -1 if the line ends with line breaks.
+     */
+    private static int skipLineBreaks(String line, int start) {
+        int pos = start;
+        while (pos < line.length()) {
+            char c = line.charAt(pos);
+            if (c != '\n' && c != '\r') {
+                return pos;
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+    private boolean isSpace(char c) {
+        return (c == ' ' || c == '\t') && c != separator;
+    }
+
+    private void append(char c) {
+        if (valueLength == value.length) {
+            value = Arrays.copyOf(value, value.length * 2);
+        }
+        value[valueLength++] = c;
+    }
+
+    /**
+     * Writes the chars as quoted and escaped JSON string encoded as UTF-8.
+     */
+    private void writeString(char[] chars, int length) {
+        // a char results in at most 6 bytes, if escaped as unicode sequence
+        ensureCapacity(length * 6 + 2);
+        byte[] out = this.out;
+        int pos = outPos;
+        out[pos++] = QUOTE;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c < 0x80) {
+                if (c == QUOTE || c == '\\') {
+                    out[pos++] = '\\';
+                    out[pos++] = (byte) c;
+                } else if (c < 0x20) {
+                    pos = writeControlChar(c, out, pos);
+                } else {
+                    out[pos++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                out[pos++] = (byte) (0xC0 | (c >> 6));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars[i + 1])) {
+                    int codePoint = Character.toCodePoint(c, chars[i + 1]);
+                    i++;
+                    out[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                    out[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    out[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    out[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    // unpaired surrogate, same replacement as String.getBytes(UTF_8)
+                    out[pos++] = '?';
+                }
+            } else {
+                out[pos++] = (byte) (0xE0 | (c >> 12));
+                out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        out[pos++] = QUOTE;
+        outPos = pos;
+    }
+
+    private static int writeControlChar(char c, byte[] out, int pos) {
+        out[pos++] = '\\';
+        switch (c) {
+            case '\b':
+                out[pos++] = 'b';
+                break;
+            case '\t':
+                out[pos++] = 't';
+                break;
+            case '\n':
+                out[pos++] = 'n';
+                break;
+            case '\f':
+                out[pos++] = 'f';
+                break;
+            case '\r':
+                out[pos++] = 'r';
+                break;
+            default:
+                out[pos++] = 'u';
+                out[pos++] = '0';
+                out[pos++] = '0';
+                out[pos++] = HEX[c >> 4];
+                out[pos++] = HEX[c & 0xF];
+        }
+        return pos;
+    }
+
+    private void ensureCapacity(int numBytes) {
+        int required = outPos + numBytes;
+        if (required > out.length) {
+            out = Arrays.copyOf(out, Math.max(required, out.length * 2));
+        }
     }
 }
@@ -34,6 +34,7 @@ import io.crate.execution.ddl.views.TransportCreateViewAction;
 import io.crate.execution.ddl.views.TransportDropViewAction;
 import io.crate.execution.dsl.projection.builder.ProjectionBuilder;
 import io.crate.execution.engine.PhasesTaskFactory;
+import io.crate.execution.engine.cache.QueryResultCache;
 import io.crate.execution.jobs.NodeLimits;
 import io.crate.expression.udf.TransportCreateUserDefinedFunctionAction;
 import io.crate.expression.udf.TransportDropUserDefinedFunctionAction;
@@ -77,6 +78,7 @@ public class DependencyCarrier {
     private final RepositoryService repositoryService;
     private final RepositoryParamValidator repositoryParamValidator;
     private final NodeLimits nodeLimits;
+    private final QueryResultCache queryResultCache;
 
     @Inject
     public DependencyCarrier(Settings settings,
@@ -99,7 +101,8 @@ public class DependencyCarrier {
                              AlterTableOperation alterTableOperation,
                              FulltextAnalyzerResolver fulltextAnalyzerResolver,
                              RepositoryService repositoryService,
-                             RepositoryParamValidator repositoryParamValidator) {
+                             RepositoryParamValidator repositoryParamValidator,
+                             QueryResultCache queryResultCache) {
         this.settings = settings;
         this.transportActionProvider = transportActionProvider;
         this.phasesTaskFactory = phasesTaskFactory;
@@ -122,6 +125,7 @@ public class DependencyCarrier {
         this.fulltextAnalyzerResolver = fulltextAnalyzerResolver;
         this.repositoryService = repositoryService;
         this.repositoryParamValidator = repositoryParamValidator;
+        this.queryResultCache = queryResultCache;
     }
 
     public Schemas schemas() {
@@ -219,4 +223,8 @@ public class DependencyCarrier {
     public NodeLimits nodeLimits() {
         return nodeLimits;
     }
+
+    public QueryResultCache queryResultCache() {
+        return queryResultCache;
+    }
 }
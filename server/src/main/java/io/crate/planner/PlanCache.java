@@ -0,0 +1,250 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.planner;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.crate.analyze.AnalyzedStatement;
+import io.crate.analyze.Relations;
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.Symbol;
+import io.crate.expression.symbol.SymbolVisitors;
+import io.crate.metadata.SearchPath;
+import io.crate.metadata.settings.SessionSettings;
+import io.crate.statistics.TableStats;
+import io.crate.types.DataType;
+import org.elasticsearch.common.settings.Setting;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Node level cache for the plans of prepared SELECT statements.
+ *
+ * <p>
+ * Plans of SELECT statements don't contain parameter values or routing information;
+ * parameters and sub-query results are bound and shards are resolved when the plan is executed.
+ * A plan can therefore be re-used by any execution of the same statement which has been analyzed with the same
+ * parameter types, session settings and cluster metadata version. The metadata version is part of the {@link Key},
+ * so any change to tables, mappings or views invalidates the cached plans; stale entries are evicted over time.
+ * </p>
+ *
+ * <p>
+ * The cost estimates of a plan (for example for the join order) are based on the table statistics, and may also
+ * be based on parameter values. Plans are therefore cached per version of the {@link TableStats}, and cached plans
+ * are created without parameter values so that their estimates treat parameters as unknown values instead of
+ * depending on the parameters of the execution which created the plan.
+ * Statements with non-deterministic functions are never cached.
+ * </p>
+ */
+public final class PlanCache {
+
+    public static final Setting<Integer> SIZE_SETTING = Setting.intSetting(
+        "node.sql.plan_cache.size",
+        0,
+        0,
+        Setting.Property.NodeScope
+    );
+
+    @Nullable
+    private final Cache<VersionedKey, Plan> cache;
+    private final TableStats tableStats;
+
+    public PlanCache(int size, TableStats tableStats) {
+        this.tableStats = tableStats;
+        if (size > 0) {
+            this.cache = CacheBuilder.newBuilder()
+                .maximumSize(size)
+                .recordStats()
+                .build();
+        } else {
+            this.cache = null;
+        }
+    }
+
+    /**
+     * Creates the key for a prepared statement.
+     *
+     * @param metadataVersion the version of the cluster metadata the statement has been analyzed with.
+     * @return the key or null if the plan of the statement must not be cached.
+     */
+    @Nullable
+    public static Key createKey(String statement,
+                                DataType<?>[] parameterTypes,
+                                AnalyzedStatement analyzedStatement,
+                                SessionSettings sessionSettings,
+                                long metadataVersion) {
+        if (metadataVersion < 0 || !isCacheable(analyzedStatement)) {
+            return null;
+        }
+        return new Key(statement, Arrays.asList(parameterTypes), sessionSettings, metadataVersion);
+    }
+
+    /**
+     * Returns the cached plan for the key, or creates a new plan without parameter values using {@code planner}
+     * and caches it.
+     * The plan is neither looked up nor cached if the cluster metadata or session settings of the
+     * planner context differ from those the statement has been analyzed with.
+     */
+    public Plan getOrPlan(@Nullable Key key,
+                          AnalyzedStatement analyzedStatement,
+                          PlannerContext plannerContext,
+                          BiFunction<AnalyzedStatement, PlannerContext, Plan> planner) {
+        if (cache == null
+            || key == null
+            || key.metadataVersion != plannerContext.clusterState().metadata().version()
+            || !key.matches(plannerContext.transactionContext().sessionSettings())) {
+            return planner.apply(analyzedStatement, plannerContext);
+        }
+        VersionedKey versionedKey = new VersionedKey(key, tableStats.version());
+        Plan plan = cache.getIfPresent(versionedKey);
+        if (plan == null) {
+            plan = planner.apply(analyzedStatement, PlannerContext.withoutParams(plannerContext));
+            cache.put(versionedKey, plan);
+        }
+        return plan;
+    }
+
+    public long size() {
+        return cache == null ? 0L : cache.size();
+    }
+
+    public long hitCount() {
+        return cache == null ? 0L : cache.stats().hitCount();
+    }
+
+    private static boolean isCacheable(AnalyzedStatement analyzedStatement) {
+        if (!(analyzedStatement instanceof AnalyzedRelation)) {
+            return false;
+        }
+        boolean[] deterministic = new boolean[] { true };
+        Relations.traverseDeepSymbols(analyzedStatement, symbol -> {
+            if (deterministic[0] && SymbolVisitors.any(PlanCache::isNonDeterministicFunction, symbol)) {
+                deterministic[0] = false;
+            }
+        });
+        return deterministic[0];
+    }
+
+    private static boolean isNonDeterministicFunction(Symbol symbol) {
+        return symbol instanceof Function && !((Function) symbol).isDeterministic();
+    }
+
+    public static final class Key {
+
+        private final String statement;
+        private final List<DataType<?>> parameterTypes;
+        private final String userName;
+        private final SearchPath searchPath;
+        private final boolean hashJoinsEnabled;
+        private final Set<?> excludedOptimizerRules;
+        private final long metadataVersion;
+
+        private Key(String statement,
+                    List<DataType<?>> parameterTypes,
+                    SessionSettings sessionSettings,
+                    long metadataVersion) {
+            this.statement = statement;
+            this.parameterTypes = parameterTypes;
+            this.userName = sessionSettings.userName();
+            this.searchPath = sessionSettings.searchPath();
+            this.hashJoinsEnabled = sessionSettings.hashJoinsEnabled();
+            // The session may modify its set of rules later on, the key must not change
+            this.excludedOptimizerRules = Set.copyOf(sessionSettings.excludedOptimizerRules());
+            this.metadataVersion = metadataVersion;
+        }
+
+        /**
+         * @return the version of the cluster metadata the statement has been analyzed with.
+         */
+        public long metadataVersion() {
+            return metadataVersion;
+        }
+
+        private boolean matches(SessionSettings sessionSettings) {
+            return userName.equals(sessionSettings.userName())
+                && searchPath.equals(sessionSettings.searchPath())
+                && hashJoinsEnabled == sessionSettings.hashJoinsEnabled()
+                && excludedOptimizerRules.equals(sessionSettings.excludedOptimizerRules());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hashJoinsEnabled == key.hashJoinsEnabled
+                && metadataVersion == key.metadataVersion
+                && statement.equals(key.statement)
+                && parameterTypes.equals(key.parameterTypes)
+                && userName.equals(key.userName)
+                && searchPath.equals(key.searchPath)
+                && excludedOptimizerRules.equals(key.excludedOptimizerRules);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(statement, parameterTypes, userName, searchPath, metadataVersion);
+        }
+    }
+
+    /**
+     * The key of a statement combined with the version of the table statistics its plan is based on.
+     */
+    private static final class VersionedKey {
+
+        private final Key key;
+        private final long tableStatsVersion;
+
+        private VersionedKey(Key key, long tableStatsVersion) {
+            this.key = key;
+            this.tableStatsVersion = tableStatsVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            VersionedKey that = (VersionedKey) o;
+            return tableStatsVersion == that.tableStatsVersion && key.equals(that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + Long.hashCode(tableStatsVersion);
+        }
+    }
+}
@@ -34,6 +34,7 @@ import io.crate.execution.dsl.phases.ExecutionPhaseVisitor;
 import io.crate.execution.dsl.phases.FetchPhase;
 import io.crate.execution.dsl.phases.HashJoinPhase;
 import io.crate.execution.dsl.phases.JoinPhase;
+import io.crate.execution.dsl.phases.MergeJoinPhase;
 import io.crate.execution.dsl.phases.MergePhase;
 import io.crate.execution.dsl.phases.NestedLoopPhase;
 import io.crate.execution.dsl.phases.PKLookupPhase;
@@ -190,6 +191,11 @@ public final class PlanPrinter {
             return getBuilderForJoinPhase(phase);
         }
 
+        @Override
+        public MapBuilder<String, Object> visitMergeJoinPhase(MergeJoinPhase phase, Void context) {
+            return getBuilderForJoinPhase(phase);
+        }
+
         private MapBuilder<String, Object> getBuilderForJoinPhase(JoinPhase phase) {
             MapBuilder<String, Object> b = upstreamPhase(
                 phase,
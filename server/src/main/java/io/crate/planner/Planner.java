@@ -79,6 +79,7 @@ import io.crate.analyze.ExplainAnalyzedStatement;
 import io.crate.analyze.NumberOfShards;
 import io.crate.analyze.relations.AnalyzedRelation;
 import io.crate.user.UserManager;
+import io.crate.common.annotations.VisibleForTesting;
 import io.crate.execution.ddl.tables.TableCreator;
 import io.crate.metadata.NodeContext;
 import io.crate.metadata.Schemas;
@@ -136,6 +137,7 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
 import org.elasticsearch.common.settings.Settings;
 
+import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Locale;
 
@@ -152,6 +154,7 @@ public class Planner extends AnalyzedStatementVisitor<PlannerContext, Plan> {
     private final Schemas schemas;
     private final UserManager userManager;
     private final SessionSettingRegistry sessionSettingRegistry;
+    private final PlanCache planCache;
 
     private List<String> awarenessAttributes;
 
@@ -173,6 +176,7 @@ public class Planner extends AnalyzedStatementVisitor<PlannerContext, Plan> {
         this.schemas = schemas;
         this.userManager = userManager;
         this.sessionSettingRegistry = sessionSettingRegistry;
+        this.planCache = new PlanCache(PlanCache.SIZE_SETTING.get(settings), tableStats);
         initAwarenessAttributes(settings);
     }
 
@@ -206,6 +210,30 @@ public class Planner extends AnalyzedStatementVisitor<PlannerContext, Plan> {
         return analyzedStatement.accept(this, plannerContext);
     }
 
+    /**
+     * Like {@link #plan(AnalyzedStatement, PlannerContext)} but re-uses a cached plan if available.
+     *
+     * @param planCacheKey key created by {@link PlanCache#createKey}
+     *                     when the statement was analyzed; null if the plan must not be cached.
+     */
+    public Plan plan(@Nullable PlanCache.Key planCacheKey,
+                     AnalyzedStatement analyzedStatement,
+                     PlannerContext plannerContext) {
+        return planCache.getOrPlan(planCacheKey, analyzedStatement, plannerContext, this::plan);
+    }
+
+    /**
+     * @return the version of the cluster metadata the schemas used for analysis are based on.
+     */
+    public long schemasMetadataVersion() {
+        return schemas.metadataVersion();
+    }
+
+    @VisibleForTesting
+    PlanCache planCache() {
+        return planCache;
+    }
+
     @Override
     protected Plan visitAnalyzedStatement(AnalyzedStatement analyzedStatement, PlannerContext context) {
         throw new UnsupportedOperationException(String.format(Locale.ENGLISH,
@@ -55,6 +55,21 @@ public class PlannerContext {
         );
     }
 
+    /**
+     * @return a context like {@code context} but without parameter values, to create plans which don't depend on them.
+     */
+    public static PlannerContext withoutParams(PlannerContext context) {
+        return new PlannerContext(
+            context.clusterState,
+            context.routingProvider,
+            context.jobId,
+            context.coordinatorTxnCtx,
+            context.nodeCtx,
+            context.fetchSize,
+            null
+        );
+    }
+
     private final UUID jobId;
     private final CoordinatorTxnCtx coordinatorTxnCtx;
     private final int fetchSize;
@@ -90,7 +90,7 @@ public class Collect implements LogicalPlan {
     private final long numExpectedRows;
     private final long estimatedRowSize;
 
-    WhereClause where;
+    final WhereClause where;
 
     public static Collect create(AbstractTableRelation<?> relation,
                                  List<Symbol> toCollect,
@@ -134,14 +134,7 @@ public class Collect implements LogicalPlan {
                                @Nullable Integer pageSizeHint,
                                Row params,
                                SubQueryResults subQueryResults) {
-        EvaluatingNormalizer normalizer = new EvaluatingNormalizer(
-            plannerContext.nodeContext(),
-            RowGranularity.CLUSTER,
-            null,
-            relation
-        );
-        var binder = new SubQueryAndParamBinder(params, subQueryResults)
-            .andThen(x -> normalizer.normalize(x, plannerContext.transactionContext()));
+        var binder = binder(plannerContext, params, subQueryResults);
         RoutedCollectPhase collectPhase = createPhase(plannerContext, hints, binder);
         PositionalOrderBy positionalOrderBy = getPositionalOrderBy(order, outputs);
         if (positionalOrderBy != null) {
@@ -228,9 +221,29 @@ public class Collect implements LogicalPlan {
         }
     }
 
-    private RoutedCollectPhase createPhase(PlannerContext plannerContext,
-                                           Set<PlanHint> planHints,
-                                           java.util.function.Function<Symbol, Symbol> binder) {
+    private java.util.function.Function<Symbol, Symbol> binder(PlannerContext plannerContext,
+                                                               Row params,
+                                                               SubQueryResults subQueryResults) {
+        EvaluatingNormalizer normalizer = new EvaluatingNormalizer(
+            plannerContext.nodeContext(),
+            RowGranularity.CLUSTER,
+            null,
+            relation
+        );
+        return new SubQueryAndParamBinder(params, subQueryResults)
+            .andThen(x -> normalizer.normalize(x, plannerContext.transactionContext()));
+    }
+
+    /**
+     * @return the where clause with bound parameters and sub-query values and resolved partitions, as it is used
+     *         by the collect phase created by {@link #build}.
+     */
+    WhereClause resolveWhere(PlannerContext plannerContext, Row params, SubQueryResults subQueryResults) {
+        return resolveWhere(plannerContext, binder(plannerContext, params, subQueryResults));
+    }
+
+    private WhereClause resolveWhere(PlannerContext plannerContext,
+                                     java.util.function.Function<Symbol, Symbol> binder) {
         WhereClause boundWhere = where.map(binder);
         if (tableInfo instanceof DocTableInfo) {
             DocTableInfo docTable = (DocTableInfo) tableInfo;
@@ -247,16 +260,23 @@ public class Collect implements LogicalPlan {
 
         // bind all parameters and possible subQuery values and re-analyze the query
         // (could result in a NO_MATCH, routing could've changed, etc).
-        // the <p>where</p> instance variable must be overwritten as the plan creation of outer operators relies on it
-        // (e.g. GroupHashAggregate will build different plans based on the collect routing)
-        where = WhereClauseAnalyzer.resolvePartitions(
+        return WhereClauseAnalyzer.resolvePartitions(
             boundWhere,
             relation,
             plannerContext.transactionContext(),
             plannerContext.nodeContext());
-        if (where.hasVersions()) {
+    }
+
+    private RoutedCollectPhase createPhase(PlannerContext plannerContext,
+                                           Set<PlanHint> planHints,
+                                           java.util.function.Function<Symbol, Symbol> binder) {
+        // The plan may be cached and built again with other parameters, the <p>where</p> instance variable
+        // must therefore not be modified. Outer operators which depend on the resolved where clause
+        // (e.g. GroupHashAggregate) use #resolveWhere.
+        WhereClause resolvedWhere = resolveWhere(plannerContext, binder);
+        if (resolvedWhere.hasVersions()) {
             throw VersioninigValidationException.versionInvalidUsage();
-        } else if (where.hasSeqNoAndPrimaryTerm()) {
+        } else if (resolvedWhere.hasSeqNoAndPrimaryTerm()) {
             throw VersioninigValidationException.seqNoAndPrimaryTermUsage();
         }
 
@@ -268,7 +288,7 @@ public class Collect implements LogicalPlan {
             COLLECT_PHASE_NAME,
             plannerContext.allocateRouting(
                 tableInfo,
-                where,
+                resolvedWhere,
                 RoutingProvider.ShardSelection.ANY,
                 sessionContext),
             tableInfo.rowGranularity(),
@@ -276,7 +296,7 @@ public class Collect implements LogicalPlan {
                 ? Lists2.map(boundOutputs, DocReferences::toSourceLookup)
                 : boundOutputs,
             Collections.emptyList(),
-            Optimizer.optimizeCasts(where.queryOrFallback(), plannerContext),
+            Optimizer.optimizeCasts(resolvedWhere.queryOrFallback(), plannerContext),
             DistributionInfo.DEFAULT_BROADCAST
         );
     }
@@ -33,6 +33,7 @@ import io.crate.metadata.RelationName;
 import io.crate.planner.node.dql.join.JoinType;
 
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 
 /**
@@ -40,7 +41,7 @@ import java.util.Set;
  * <p>
  * Using hash join is possible under following assumptions:
  * <ul>
- * <li>it's a {@link JoinType#INNER} join type</li>
+ * <li>it's not a {@link JoinType#CROSS} join</li>
  * <li>the join condition contains no {@link OrOperator}</li>
  * <li>the join condition contains at least one {@link EqOperator}</li>
  * <li>at least one argument of the {@link EqOperator} must NOT contain fields to multiple tables</li>
@@ -51,14 +52,44 @@ public class EquiJoinDetector {
     private static final Visitor VISITOR = new Visitor();
 
     public static boolean isHashJoinPossible(JoinType joinType, Symbol joinCondition) {
-        if (joinType != JoinType.INNER) {
+        if (joinType == JoinType.CROSS) {
             return false;
         }
         return isEquiJoin(joinCondition);
     }
 
+    /**
+     * Like {@link #isHashJoinPossible(JoinType, Symbol)}, but additionally requires that each {@link EqOperator}
+     * compares a symbol of the lhs with a symbol of the rhs, so that the arguments can be used as join keys.
+     * This isn't guaranteed for the conditions of outer joins, which can contain conditions like
+     * {@code t2.x = t2.y} or refer to any relation of the lhs.
+     */
+    public static boolean isHashJoinPossible(JoinType joinType,
+                                             Symbol joinCondition,
+                                             Set<RelationName> lhsRelations,
+                                             Set<RelationName> rhsRelations) {
+        if (isHashJoinPossible(joinType, joinCondition) == false) {
+            return false;
+        }
+        for (Symbol eq : AndOperator.split(joinCondition)) {
+            Set<RelationName> relations = HashJoinConditionSymbolsExtractor.extract(eq).keySet();
+            if (relations.size() != 2) {
+                return false;
+            }
+            Iterator<RelationName> it = relations.iterator();
+            RelationName first = it.next();
+            RelationName second = it.next();
+            boolean firstLhsSecondRhs = lhsRelations.contains(first) && rhsRelations.contains(second);
+            boolean firstRhsSecondLhs = rhsRelations.contains(first) && lhsRelations.contains(second);
+            if (!firstLhsSecondRhs && !firstRhsSecondLhs) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static boolean isEquiJoin(Symbol joinCondition) {
-        assert joinCondition != null : "join condition must not be null on inner joins";
+        assert joinCondition != null : "join condition must not be null on non-cross joins";
         Context context = new Context();
         joinCondition.accept(VISITOR, context);
         return context.isHashJoinPossible;
@@ -66,26 +66,75 @@ import io.crate.statistics.TableStats;
 
 public class HashJoin implements LogicalPlan {
 
+    private final JoinType joinType;
     private final Symbol joinCondition;
     @VisibleForTesting
+    @Nullable
     final AnalyzedRelation concreteRelation;
     private final List<Symbol> outputs;
     final LogicalPlan rhs;
     final LogicalPlan lhs;
 
+    /**
+     * Estimated fraction of the cross product of lhs and rhs matching the join condition,
+     * or {@link #UNKNOWN_SELECTIVITY}
+     */
+    private final double joinSelectivity;
+
+    /**
+     * The build side is the left side of the join phase, which is buffered into the hash table by
+     * {@link io.crate.execution.engine.join.HashInnerJoinBatchIterator}; the right side is the probe side.
+     * By default the larger side is used as build side. If true, the smaller side is used instead.
+     */
+    private final boolean buildOnSmallerSide;
+
+    static final double UNKNOWN_SELECTIVITY = -1.0;
+
+    public HashJoin(LogicalPlan lhs,
+                    LogicalPlan rhs,
+                    Symbol joinCondition,
+                    AnalyzedRelation concreteRelation,
+                    double joinSelectivity) {
+        this(lhs, rhs, JoinType.INNER, joinCondition, concreteRelation, joinSelectivity);
+    }
+
+    /**
+     * @param concreteRelation the relation of the rhs, used to assign the symbols of the join condition to the sides
+     *                         of the join. If null, the relation names of the rhs plan are used instead.
+     */
     public HashJoin(LogicalPlan lhs,
                     LogicalPlan rhs,
+                    JoinType joinType,
                     Symbol joinCondition,
-                    AnalyzedRelation concreteRelation) {
-        this.outputs = Lists2.concat(lhs.outputs(), rhs.outputs());
+                    @Nullable AnalyzedRelation concreteRelation,
+                    double joinSelectivity) {
+        this(lhs, rhs, joinType, joinCondition, concreteRelation, joinSelectivity, false);
+    }
+
+    private HashJoin(LogicalPlan lhs,
+                     LogicalPlan rhs,
+                     JoinType joinType,
+                     Symbol joinCondition,
+                     @Nullable AnalyzedRelation concreteRelation,
+                     double joinSelectivity,
+                     boolean buildOnSmallerSide) {
+        assert joinType != JoinType.CROSS : "HashJoin requires a join condition";
+        if (joinType == JoinType.SEMI || joinType == JoinType.ANTI) {
+            this.outputs = lhs.outputs();
+        } else {
+            this.outputs = Lists2.concat(lhs.outputs(), rhs.outputs());
+        }
         this.lhs = lhs;
         this.rhs = rhs;
+        this.joinType = joinType;
         this.concreteRelation = concreteRelation;
         this.joinCondition = joinCondition;
+        this.joinSelectivity = joinSelectivity;
+        this.buildOnSmallerSide = buildOnSmallerSide;
     }
 
     public JoinType joinType() {
-        return JoinType.INNER;
+        return joinType;
     }
 
     public Symbol joinCondition() {
@@ -100,6 +149,10 @@ public class HashJoin implements LogicalPlan {
         return rhs;
     }
 
+    public boolean buildOnSmallerSide() {
+        return buildOnSmallerSide;
+    }
+
     @Override
     public Map<LogicalPlan, SelectSymbol> dependencies() {
         Map<LogicalPlan, SelectSymbol> leftDeps = lhs.dependencies();
@@ -129,10 +182,16 @@ public class HashJoin implements LogicalPlan {
         LogicalPlan rightLogicalPlan = rhs;
 
         boolean tablesSwitched = false;
+        JoinType phaseJoinType = joinType;
         // We move smaller table to the right side since benchmarking
         // revealed that this improves performance in most cases.
-        if (lhs.numExpectedRows() < rhs.numExpectedRows()) {
+        // Unless buildOnSmallerSide is set, then the smaller table is moved to the left side.
+        boolean switchSides = buildOnSmallerSide
+            ? lhs.numExpectedRows() > rhs.numExpectedRows()
+            : lhs.numExpectedRows() < rhs.numExpectedRows();
+        if (switchSides && joinType.supportsInversion()) {
             tablesSwitched = true;
+            phaseJoinType = joinType.invert();
             leftLogicalPlan = rhs;
             rightLogicalPlan = lhs;
 
@@ -202,10 +261,12 @@ public class HashJoin implements LogicalPlan {
             leftOutputs.size(),
             rightOutputs.size(),
             joinExecutionNodes,
+            phaseJoinType,
             InputColumns.create(paramBinder.apply(joinCondition), joinOutputs),
             InputColumns.create(Lists2.map(hashSymbols.v1(), paramBinder), new InputColumns.SourceSymbols(leftOutputs)),
             InputColumns.create(Lists2.map(hashSymbols.v2(), paramBinder), new InputColumns.SourceSymbols(rightOutputs)),
             Symbols.typeView(leftOutputs),
+            Symbols.typeView(rightOutputs),
             leftLogicalPlan.estimatedRowSize(),
             leftLogicalPlan.numExpectedRows());
         return new Join(
@@ -237,11 +298,18 @@ public class HashJoin implements LogicalPlan {
 
     @Override
     public LogicalPlan replaceSources(List<LogicalPlan> sources) {
+        return replaceSources(sources, buildOnSmallerSide);
+    }
+
+    public LogicalPlan replaceSources(List<LogicalPlan> sources, boolean buildOnSmallerSide) {
         return new HashJoin(
             sources.get(0),
             sources.get(1),
+            joinType,
             joinCondition,
-            concreteRelation
+            concreteRelation,
+            joinSelectivity,
+            buildOnSmallerSide
         );
     }
 
@@ -263,8 +331,11 @@ public class HashJoin implements LogicalPlan {
         return new HashJoin(
             newLhs,
             newRhs,
+            joinType,
             joinCondition,
-            concreteRelation
+            concreteRelation,
+            joinSelectivity,
+            buildOnSmallerSide
         );
     }
 
@@ -292,8 +363,11 @@ public class HashJoin implements LogicalPlan {
             new HashJoin(
                 lhsFetchRewrite == null ? lhs : lhsFetchRewrite.newPlan(),
                 rhsFetchRewrite == null ? rhs : rhsFetchRewrite.newPlan(),
+                joinType,
                 joinCondition,
-                concreteRelation
+                concreteRelation,
+                joinSelectivity,
+                buildOnSmallerSide
             )
         );
     }
@@ -302,7 +376,16 @@ public class HashJoin implements LogicalPlan {
         Map<RelationName, List<Symbol>> hashJoinSymbols = HashJoinConditionSymbolsExtractor.extract(joinCondition);
 
         // First extract the symbols that belong to the concrete relation
-        List<Symbol> hashJoinSymbolsForConcreteRelation = hashJoinSymbols.remove(concreteRelation.relationName());
+        Set<RelationName> concreteRelationNames = concreteRelation == null
+            ? rhs.getRelationNames()
+            : Set.of(concreteRelation.relationName());
+        List<Symbol> hashJoinSymbolsForConcreteRelation = new ArrayList<>();
+        for (RelationName relationName : concreteRelationNames) {
+            List<Symbol> symbols = hashJoinSymbols.remove(relationName);
+            if (symbols != null) {
+                hashJoinSymbolsForConcreteRelation.addAll(symbols);
+            }
+        }
 
         // All leftover extracted symbols belong to the other relation which might be a
         // "concrete" relation too but can already be a tree of relation.
@@ -317,12 +400,30 @@ public class HashJoin implements LogicalPlan {
 
     @Override
     public long numExpectedRows() {
-        // We don't have any cardinality estimates, so just take the bigger table
-        return Math.max(lhs.numExpectedRows(), rhs.numExpectedRows());
+        long lhsRows = lhs.numExpectedRows();
+        long rhsRows = rhs.numExpectedRows();
+        if (joinType == JoinType.SEMI || joinType == JoinType.ANTI) {
+            return lhsRows;
+        }
+        if (joinSelectivity < 0 || lhsRows < 0 || rhsRows < 0) {
+            // We don't have any cardinality estimates, so just take the bigger table
+            return Math.max(lhsRows, rhsRows);
+        }
+        long matchingRows = (long) Math.max(1.0, (double) lhsRows * rhsRows * joinSelectivity);
+        return switch (joinType) {
+            // Outer joins emit every row of the preserved side at least once
+            case LEFT -> Math.max(matchingRows, lhsRows);
+            case RIGHT -> Math.max(matchingRows, rhsRows);
+            case FULL -> Math.max(matchingRows, Math.max(lhsRows, rhsRows));
+            default -> matchingRows;
+        };
     }
 
     @Override
     public long estimatedRowSize() {
+        if (joinType == JoinType.SEMI || joinType == JoinType.ANTI) {
+            return lhs.estimatedRowSize();
+        }
         return lhs.estimatedRowSize() + rhs.estimatedRowSize();
     }
 
@@ -333,8 +434,13 @@ public class HashJoin implements LogicalPlan {
 
     @Override
     public void print(PrintContext printContext) {
+        printContext.text("HashJoin[");
+        if (joinType != JoinType.INNER) {
+            printContext
+                .text(joinType.toString())
+                .text(" | ");
+        }
         printContext
-            .text("HashJoin[")
             .text(joinCondition.toString())
             .text("]")
             .nest(
@@ -343,9 +449,9 @@ public class HashJoin implements LogicalPlan {
             );
     }
 
-    private List<Symbol> setModuloDistribution(List<Symbol> joinSymbols,
-                                               List<Symbol> planOutputs,
-                                               ExecutionPlan executionPlan) {
+    static List<Symbol> setModuloDistribution(List<Symbol> joinSymbols,
+                                              List<Symbol> planOutputs,
+                                              ExecutionPlan executionPlan) {
         List<Symbol> outputs = planOutputs;
         Symbol firstJoinSymbol = joinSymbols.get(0);
         int distributeBySymbolPos = planOutputs.indexOf(firstJoinSymbol);
@@ -358,9 +464,9 @@ public class HashJoin implements LogicalPlan {
         return outputs;
     }
 
-    private List<Symbol> createEvalProjectionForDistributionJoinSymbol(Symbol firstJoinSymbol,
-                                                                       List<Symbol> outputs,
-                                                                       ExecutionPlan executionPlan) {
+    private static List<Symbol> createEvalProjectionForDistributionJoinSymbol(Symbol firstJoinSymbol,
+                                                                              List<Symbol> outputs,
+                                                                              ExecutionPlan executionPlan) {
         List<Symbol> projectionOutputs = new ArrayList<>(outputs.size() + 1);
         projectionOutputs.addAll(outputs);
         projectionOutputs.add(firstJoinSymbol);
@@ -23,13 +23,25 @@ package io.crate.planner.operators;
 
 import com.carrotsearch.hppc.ObjectIntHashMap;
 import io.crate.common.annotations.VisibleForTesting;
+import io.crate.expression.operator.AndOperator;
+import io.crate.expression.operator.EqOperator;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.ScopedSymbol;
+import io.crate.expression.symbol.Symbol;
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.Reference;
 import io.crate.metadata.RelationName;
+import io.crate.statistics.ColumnStats;
+import io.crate.statistics.Stats;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -38,6 +50,18 @@ import java.util.Set;
  */
 final class JoinOrdering {
 
+    /**
+     * Up to this number of relations all left-deep join orders are evaluated,
+     * above it the join order is built greedily.
+     */
+    @VisibleForTesting
+    static final int MAX_RELATIONS_FOR_EXHAUSTIVE_SEARCH = 10;
+
+    /**
+     * Selectivity of join conditions which aren't an equality between two columns
+     */
+    private static final double DEFAULT_JOIN_SEL = 0.333;
+
     private JoinOrdering() {
     }
 
@@ -130,4 +154,211 @@ final class JoinOrdering {
         // Add the rest of the relations to the end of the collection
         sets.forEach(bestOrder::addAll);
     }
+
+    /**
+     * Returns the left-deep join order of the relations with the smallest sum of intermediate result sizes.
+     * <p>
+     * The size of the join of a set of relations is the product of their number of rows and the selectivity
+     * of all join conditions between them, so it is independent of the order in which they're joined.
+     * Cross joins aren't excluded, but are naturally avoided by their large result sizes.
+     *
+     * @param relations              all relations, in query order which is kept if orders have equal costs
+     * @param numRowsByRelation      estimated number of rows of each relation, after applying its filters
+     * @param selectivityByRelations selectivity of the join conditions by pair of relations, see {@link #joinSelectivity}
+     */
+    static List<RelationName> orderByCost(List<RelationName> relations,
+                                          Map<RelationName, Long> numRowsByRelation,
+                                          Map<? extends Set<RelationName>, Double> selectivityByRelations) {
+        int numRelations = relations.size();
+        double[] numRows = new double[numRelations];
+        double[][] selectivity = new double[numRelations][numRelations];
+        for (int i = 0; i < numRelations; i++) {
+            numRows[i] = Math.max(1.0, numRowsByRelation.getOrDefault(relations.get(i), 1L));
+            Arrays.fill(selectivity[i], 1.0);
+        }
+        for (var entry : selectivityByRelations.entrySet()) {
+            Iterator<RelationName> it = entry.getKey().iterator();
+            int left = relations.indexOf(it.next());
+            int right = it.hasNext() ? relations.indexOf(it.next()) : -1;
+            if (left >= 0 && right >= 0 && left != right) {
+                selectivity[left][right] *= entry.getValue();
+                selectivity[right][left] = selectivity[left][right];
+            }
+        }
+        int[] order = numRelations <= MAX_RELATIONS_FOR_EXHAUSTIVE_SEARCH
+            ? exhaustiveOrder(numRows, selectivity)
+            : greedyOrder(numRows, selectivity);
+        ArrayList<RelationName> result = new ArrayList<>(numRelations);
+        for (int idx : order) {
+            result.add(relations.get(idx));
+        }
+        return result;
+    }
+
+    /**
+     * Dynamic programming over all subsets of relations
+     */
+    private static int[] exhaustiveOrder(double[] numRows, double[][] selectivity) {
+        int numRelations = numRows.length;
+        int numSubsets = 1 << numRelations;
+        double[] joinSize = new double[numSubsets];
+        double[] cost = new double[numSubsets];
+        int[] lastRelation = new int[numSubsets];
+        joinSize[0] = 1.0;
+        for (int subset = 1; subset < numSubsets; subset++) {
+            int first = Integer.numberOfTrailingZeros(subset);
+            int rest = subset & ~(1 << first);
+            joinSize[subset] = joinSize[rest] * numRows[first] * selectivityBetween(first, rest, selectivity);
+            if (rest == 0) {
+                cost[subset] = 0.0;
+                lastRelation[subset] = first;
+                continue;
+            }
+            cost[subset] = Double.POSITIVE_INFINITY;
+            // Iterate backwards so that ties keep the query order
+            for (int i = numRelations - 1; i >= 0; i--) {
+                int bit = 1 << i;
+                if ((subset & bit) == 0) {
+                    continue;
+                }
+                double candidateCost = cost[subset & ~bit] + joinSize[subset];
+                if (candidateCost < cost[subset]) {
+                    cost[subset] = candidateCost;
+                    lastRelation[subset] = i;
+                }
+            }
+        }
+        int[] order = new int[numRelations];
+        int subset = numSubsets - 1;
+        for (int i = numRelations - 1; i >= 0; i--) {
+            order[i] = lastRelation[subset];
+            subset &= ~(1 << order[i]);
+        }
+        return order;
+    }
+
+    /**
+     * Starts with the pair of relations with the smallest join result and
+     * adds the relation which leads to the smallest intermediate result next.
+     */
+    private static int[] greedyOrder(double[] numRows, double[][] selectivity) {
+        int numRelations = numRows.length;
+        int[] order = new int[numRelations];
+        boolean[] joined = new boolean[numRelations];
+        double bestSize = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < numRelations; i++) {
+            for (int j = i + 1; j < numRelations; j++) {
+                double size = numRows[i] * numRows[j] * selectivity[i][j];
+                if (size < bestSize) {
+                    bestSize = size;
+                    order[0] = i;
+                    order[1] = j;
+                }
+            }
+        }
+        joined[order[0]] = true;
+        joined[order[1]] = true;
+        double joinSize = bestSize;
+        for (int pos = 2; pos < numRelations; pos++) {
+            int next = -1;
+            double nextSize = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < numRelations; i++) {
+                if (joined[i]) {
+                    continue;
+                }
+                double size = joinSize * numRows[i];
+                for (int j = 0; j < numRelations; j++) {
+                    if (joined[j]) {
+                        size *= selectivity[i][j];
+                    }
+                }
+                if (size < nextSize) {
+                    nextSize = size;
+                    next = i;
+                }
+            }
+            order[pos] = next;
+            joined[next] = true;
+            joinSize = nextSize;
+        }
+        return order;
+    }
+
+    private static double selectivityBetween(int relation, int subset, double[][] selectivity) {
+        double result = 1.0;
+        for (int i = 0; subset != 0; i++, subset >>>= 1) {
+            if ((subset & 1) == 1) {
+                result *= selectivity[relation][i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the fraction of the cross product of two relations which matches the join condition.
+     * <p>
+     * An equality between columns of both relations is estimated as {@code 1 / max(ndv(a), ndv(b))}, using the
+     * number of distinct values from the column statistics or, if missing, the number of rows of the relation.
+     * The latter assumes that the column is a key, which is the common case for joins.
+     *
+     * @param statsByRelation column statistics by the name used for the relation in the query
+     */
+    static double joinSelectivity(@Nullable Symbol condition,
+                                  Map<RelationName, Stats> statsByRelation,
+                                  Map<RelationName, Long> numRowsByRelation) {
+        if (condition == null) {
+            return 1.0;
+        }
+        if (condition instanceof Function function) {
+            switch (function.name()) {
+                case AndOperator.NAME: {
+                    double selectivity = 1.0;
+                    for (Symbol argument : function.arguments()) {
+                        selectivity *= joinSelectivity(argument, statsByRelation, numRowsByRelation);
+                    }
+                    return selectivity;
+                }
+
+                case EqOperator.NAME: {
+                    List<Symbol> arguments = function.arguments();
+                    double leftDistinct = numDistinct(arguments.get(0), statsByRelation, numRowsByRelation);
+                    double rightDistinct = numDistinct(arguments.get(1), statsByRelation, numRowsByRelation);
+                    if (leftDistinct > 0 && rightDistinct > 0) {
+                        return 1.0 / Math.max(leftDistinct, rightDistinct);
+                    }
+                    return DEFAULT_JOIN_SEL;
+                }
+
+                default:
+                    return DEFAULT_JOIN_SEL;
+            }
+        }
+        return DEFAULT_JOIN_SEL;
+    }
+
+    /**
+     * @return the number of distinct values of the column or -1 if the symbol isn't a column
+     */
+    private static double numDistinct(Symbol symbol,
+                                      Map<RelationName, Stats> statsByRelation,
+                                      Map<RelationName, Long> numRowsByRelation) {
+        RelationName relation;
+        ColumnIdent column;
+        if (symbol instanceof ScopedSymbol scopedSymbol) {
+            relation = scopedSymbol.relation();
+            column = scopedSymbol.column();
+        } else if (symbol instanceof Reference ref) {
+            relation = ref.ident().tableIdent();
+            column = ref.column();
+        } else {
+            return -1;
+        }
+        Stats stats = statsByRelation.get(relation);
+        ColumnStats<?> columnStats = stats == null ? null : stats.statsByColumn().get(column);
+        if (columnStats != null) {
+            return Math.max(1.0, columnStats.approxDistinct());
+        }
+        Long numRows = numRowsByRelation.get(relation);
+        return numRows == null ? -1 : Math.max(1.0, numRows);
+    }
 }
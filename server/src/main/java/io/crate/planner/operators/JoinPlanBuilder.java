@@ -21,6 +21,8 @@
 
 package io.crate.planner.operators;
 
+import io.crate.analyze.relations.AbstractTableRelation;
+import io.crate.analyze.relations.AliasedAnalyzedRelation;
 import io.crate.analyze.relations.AnalyzedRelation;
 import io.crate.analyze.relations.JoinPair;
 import io.crate.analyze.relations.QuerySplitter;
@@ -30,11 +32,15 @@ import io.crate.expression.operator.AndOperator;
 import io.crate.expression.symbol.Symbol;
 import io.crate.metadata.RelationName;
 import io.crate.planner.node.dql.join.JoinType;
+import io.crate.planner.selectivity.SelectivityFunctions;
+import io.crate.statistics.Stats;
+import io.crate.statistics.TableStats;
 import org.elasticsearch.common.util.set.Sets;
 
 import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -43,6 +49,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -54,7 +61,12 @@ import static io.crate.planner.operators.EquiJoinDetector.isHashJoinPossible;
  * <p>
  * We currently support the {@link NestedLoopJoin} and {@link HashJoin} operators (the hash join operator is
  * enabled by the {@link io.crate.metadata.settings.session.SessionSettingRegistry#HASH_JOIN_KEY} setting and its
- * application is mandated by {@link EquiJoinDetector}).
+ * application is mandated by {@link EquiJoinDetector}). Inner equi-joins are planned as {@link HashJoin} right away,
+ * equi-joins of other types are converted by
+ * {@link io.crate.planner.optimizer.rule.RewriteNestedLoopJoinToHashJoin}.
+ * <p>
+ * If statistics are available for all tables, inner joins of more than two relations are ordered by
+ * their estimated cost, see {@link JoinOrdering#orderByCost}.
  */
 public class JoinPlanBuilder {
 
@@ -62,7 +74,8 @@ public class JoinPlanBuilder {
                                      Symbol whereClause,
                                      List<JoinPair> joinPairs,
                                      Function<AnalyzedRelation, LogicalPlan> plan,
-                                     boolean hashJoinEnabled) {
+                                     boolean hashJoinEnabled,
+                                     TableStats tableStats) {
         if (from.size() == 1) {
             return Filter.create(plan.apply(from.get(0)), whereClause);
         }
@@ -71,11 +84,37 @@ public class JoinPlanBuilder {
             JoinOperations.buildRelationsToJoinPairsMap(
                 JoinOperations.convertImplicitJoinConditionsToJoinPairs(joinPairs, queryParts));
 
-        Collection<RelationName> orderedRelationNames = JoinOrdering.getOrderedRelationNames(
-            Lists2.map(from, AnalyzedRelation::relationName),
-            joinPairsByRelations.keySet(),
-            queryParts.keySet()
-        );
+        Map<RelationName, LogicalPlan> plans = new HashMap<>();
+        for (AnalyzedRelation relation : from) {
+            plans.put(relation.relationName(), plan.apply(relation));
+        }
+        Function<AnalyzedRelation, LogicalPlan> plannedRelation = rel -> plans.get(rel.relationName());
+
+        Map<RelationName, Stats> statsByRelation = new HashMap<>();
+        Map<RelationName, Long> numRowsByRelation = new HashMap<>();
+        boolean hasStats = collectStats(from, plans, queryParts, tableStats, statsByRelation, numRowsByRelation);
+        ToDoubleFunction<Symbol> joinSelectivity = condition -> hasStats
+            ? JoinOrdering.joinSelectivity(condition, statsByRelation, numRowsByRelation)
+            : HashJoin.UNKNOWN_SELECTIVITY;
+
+        Collection<RelationName> orderedRelationNames;
+        if (hasStats && from.size() > 2 && onlyInnerJoins(joinPairsByRelations.values())) {
+            HashMap<Set<RelationName>, Double> selectivityByRelations = new HashMap<>();
+            for (var entry : joinPairsByRelations.entrySet()) {
+                selectivityByRelations.put(entry.getKey(), joinSelectivity.applyAsDouble(entry.getValue().condition()));
+            }
+            orderedRelationNames = JoinOrdering.orderByCost(
+                Lists2.map(from, AnalyzedRelation::relationName),
+                numRowsByRelation,
+                selectivityByRelations
+            );
+        } else {
+            orderedRelationNames = JoinOrdering.getOrderedRelationNames(
+                Lists2.map(from, AnalyzedRelation::relationName),
+                joinPairsByRelations.keySet(),
+                queryParts.keySet()
+            );
+        }
 
         Iterator<RelationName> it = orderedRelationNames.iterator();
 
@@ -100,8 +139,8 @@ public class JoinPlanBuilder {
             .collect(Collectors.toMap(AnalyzedRelation::relationName, rel -> rel));
         AnalyzedRelation lhs = sources.get(lhsName);
         AnalyzedRelation rhs = sources.get(rhsName);
-        LogicalPlan lhsPlan = plan.apply(lhs);
-        LogicalPlan rhsPlan = plan.apply(rhs);
+        LogicalPlan lhsPlan = plannedRelation.apply(lhs);
+        LogicalPlan rhsPlan = plannedRelation.apply(rhs);
         Symbol query = removeParts(queryParts, lhsName, rhsName);
         LogicalPlan joinPlan = createJoinPlan(
             lhsPlan,
@@ -111,21 +150,23 @@ public class JoinPlanBuilder {
             lhs,
             rhs,
             query,
-            hashJoinEnabled
+            hashJoinEnabled,
+            joinSelectivity
         );
 
         joinPlan = Filter.create(joinPlan, query);
         while (it.hasNext()) {
             AnalyzedRelation nextRel = sources.get(it.next());
             joinPlan = joinWithNext(
-                plan,
+                plannedRelation,
                 joinPlan,
                 nextRel,
                 joinNames,
                 joinPairsByRelations,
                 queryParts,
                 lhs,
-                hashJoinEnabled
+                hashJoinEnabled,
+                joinSelectivity
             );
             joinNames.add(nextRel.relationName());
         }
@@ -138,6 +179,54 @@ public class JoinPlanBuilder {
         return joinPlan;
     }
 
+    /**
+     * Resolves the statistics and the estimated number of rows, after applying the filters
+     * of the WHERE clause which only refer to the relation, of all relations.
+     *
+     * @return true if statistics are available for all tables.
+     */
+    private static boolean collectStats(List<AnalyzedRelation> from,
+                                        Map<RelationName, LogicalPlan> plans,
+                                        Map<Set<RelationName>, Symbol> queryParts,
+                                        TableStats tableStats,
+                                        Map<RelationName, Stats> statsByRelation,
+                                        Map<RelationName, Long> numRowsByRelation) {
+        boolean hasStats = true;
+        for (AnalyzedRelation relation : from) {
+            RelationName name = relation.relationName();
+            LogicalPlan plan = plans.get(name);
+            for (AbstractTableRelation<?> baseTable : plan.baseTables()) {
+                if (tableStats.numDocs(baseTable.tableInfo().ident()) < 0) {
+                    hasStats = false;
+                }
+            }
+            Stats stats = Stats.EMPTY;
+            if (relation instanceof AbstractTableRelation<?> tableRelation) {
+                stats = tableStats.getStats(tableRelation.tableInfo().ident());
+            } else if (relation instanceof AliasedAnalyzedRelation aliased
+                       && aliased.relation() instanceof AbstractTableRelation<?> tableRelation) {
+                stats = tableStats.getStats(tableRelation.tableInfo().ident());
+            }
+            statsByRelation.put(name, stats);
+            long numRows = plan.numExpectedRows();
+            Symbol filter = queryParts.get(Collections.singleton(name));
+            if (filter != null) {
+                numRows = (long) (numRows * SelectivityFunctions.selectivity(stats, filter, null));
+            }
+            numRowsByRelation.put(name, numRows);
+        }
+        return hasStats;
+    }
+
+    private static boolean onlyInnerJoins(Collection<JoinPair> joinPairs) {
+        for (JoinPair joinPair : joinPairs) {
+            if (joinPair.joinType() != JoinType.INNER && joinPair.joinType() != JoinType.CROSS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static LogicalPlan createJoinPlan(LogicalPlan lhsPlan,
                                               LogicalPlan rhsPlan,
                                               JoinType joinType,
@@ -145,13 +234,17 @@ public class JoinPlanBuilder {
                                               AnalyzedRelation lhs,
                                               AnalyzedRelation rhs,
                                               Symbol query,
-                                              boolean hashJoinEnabled) {
-        if (hashJoinEnabled && isHashJoinPossible(joinType, joinCondition)) {
+                                              boolean hashJoinEnabled,
+                                              ToDoubleFunction<Symbol> joinSelectivity) {
+        // Other join types start as NestedLoopJoin, so that filters can still turn outer joins into inner joins.
+        // They're converted to a HashJoin by RewriteNestedLoopJoinToHashJoin after the filters were pushed down.
+        if (hashJoinEnabled && joinType == JoinType.INNER && isHashJoinPossible(joinType, joinCondition)) {
             return new HashJoin(
                 lhsPlan,
                 rhsPlan,
                 joinCondition,
-                rhs);
+                rhs,
+                joinSelectivity.applyAsDouble(joinCondition));
         } else {
             return new NestedLoopJoin(
                 lhsPlan,
@@ -159,7 +252,8 @@ public class JoinPlanBuilder {
                 joinType,
                 joinCondition,
                 !query.symbolType().isValueSymbol(),
-                lhs);
+                lhs,
+                joinSelectivity.applyAsDouble(joinCondition));
         }
     }
 
@@ -181,7 +275,8 @@ public class JoinPlanBuilder {
                                             Map<Set<RelationName>, JoinPair> joinPairs,
                                             Map<Set<RelationName>, Symbol> queryParts,
                                             AnalyzedRelation leftRelation,
-                                            boolean hashJoinEnabled) {
+                                            boolean hashJoinEnabled,
+                                            ToDoubleFunction<Symbol> joinSelectivity) {
         RelationName nextName = nextRel.relationName();
 
         JoinPair joinPair = removeMatch(joinPairs, joinNames, nextName);
@@ -211,7 +306,8 @@ public class JoinPlanBuilder {
                 leftRelation,
                 nextRel,
                 query,
-                hashJoinEnabled),
+                hashJoinEnabled,
+                joinSelectivity),
             query
         );
     }
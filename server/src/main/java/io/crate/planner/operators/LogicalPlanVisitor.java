@@ -75,6 +75,10 @@ public class LogicalPlanVisitor<C, R> {
         return visitPlan(logicalPlan, context);
     }
 
+    public R visitMergeJoin(MergeJoin logicalPlan, C context) {
+        return visitPlan(logicalPlan, context);
+    }
+
     public R visitLimit(Limit logicalPlan, C context) {
         return visitPlan(logicalPlan, context);
     }
@@ -78,6 +78,7 @@ import io.crate.planner.SubqueryPlanner;
 import io.crate.planner.consumer.InsertFromSubQueryPlanner;
 import io.crate.planner.optimizer.Optimizer;
 import io.crate.planner.optimizer.rule.DeduplicateOrder;
+import io.crate.planner.optimizer.rule.FilterHashJoinProbeSideByBuildSideKeys;
 import io.crate.planner.optimizer.rule.MergeAggregateAndCollectToCount;
 import io.crate.planner.optimizer.rule.MergeAggregateRenameAndCollectToCount;
 import io.crate.planner.optimizer.rule.MergeFilterAndCollect;
@@ -101,6 +102,9 @@ import io.crate.planner.optimizer.rule.RemoveRedundantFetchOrEval;
 import io.crate.planner.optimizer.rule.RewriteCollectToGet;
 import io.crate.planner.optimizer.rule.RewriteFilterOnOuterJoinToInnerJoin;
 import io.crate.planner.optimizer.rule.RewriteGroupByKeysLimitToTopNDistinct;
+import io.crate.planner.optimizer.rule.RewriteHashJoinToMergeJoin;
+import io.crate.planner.optimizer.rule.RewriteNestedLoopJoinToHashJoin;
+import io.crate.planner.optimizer.rule.RewriteNestedLoopJoinToMergeJoin;
 import io.crate.planner.optimizer.rule.RewriteToQueryThenFetch;
 import io.crate.statistics.TableStats;
 import io.crate.types.DataTypes;
@@ -117,6 +121,7 @@ public class LogicalPlanner {
     private final Visitor statementVisitor = new Visitor();
     private final Optimizer writeOptimizer;
     private final Optimizer fetchOptimizer;
+    private final Optimizer joinOptimizer;
 
     public LogicalPlanner(NodeContext nodeCtx, TableStats tableStats, Supplier<Version> minNodeVersionInCluster) {
         this.optimizer = new Optimizer(
@@ -149,6 +154,17 @@ public class LogicalPlanner {
                 new RewriteGroupByKeysLimitToTopNDistinct()
             )
         );
+        // Rules which must run once all filters have been pushed down
+        this.joinOptimizer = new Optimizer(
+            nodeCtx,
+            minNodeVersionInCluster,
+            List.of(
+                new RewriteNestedLoopJoinToHashJoin(),
+                new RewriteNestedLoopJoinToMergeJoin(),
+                new RewriteHashJoinToMergeJoin(),
+                new FilterHashJoinProbeSideByBuildSideKeys()
+            )
+        );
         this.fetchOptimizer = new Optimizer(
             nodeCtx,
             minNodeVersionInCluster,
@@ -229,7 +245,11 @@ public class LogicalPlanner {
             plannerContext.params()
         );
         LogicalPlan logicalPlan = relation.accept(planBuilder, relation.outputs());
-        LogicalPlan optimizedPlan = optimizer.optimize(logicalPlan, tableStats, coordinatorTxnCtx);
+        LogicalPlan optimizedPlan = joinOptimizer.optimize(
+            optimizer.optimize(logicalPlan, tableStats, coordinatorTxnCtx),
+            tableStats,
+            coordinatorTxnCtx
+        );
         assert logicalPlan.outputs().equals(optimizedPlan.outputs()) : "Optimized plan must have the same outputs as original plan";
         LogicalPlan prunedPlan = optimizedPlan.pruneOutputsExcept(tableStats, relation.outputs());
         assert logicalPlan.outputs().equals(optimizedPlan.outputs()) : "Pruned plan must have the same outputs as original plan";
@@ -371,7 +391,8 @@ public class LogicalPlanner {
                         return rel.accept(this, List.copyOf(toCollect));
                     }
                 },
-                txnCtx.sessionContext().isHashJoinEnabled()
+                txnCtx.sessionContext().isHashJoinEnabled(),
+                tableStats
             );
             return MultiPhase.createIfNeeded(
                 Eval.create(
@@ -0,0 +1,355 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.planner.operators;
+
+import static io.crate.planner.operators.LogicalPlanner.NO_LIMIT;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import io.crate.analyze.OrderBy;
+import io.crate.analyze.relations.AbstractTableRelation;
+import io.crate.common.collections.Lists2;
+import io.crate.common.collections.Maps;
+import io.crate.data.Row;
+import io.crate.execution.dsl.phases.MergeJoinPhase;
+import io.crate.execution.dsl.phases.MergePhase;
+import io.crate.execution.dsl.projection.builder.InputColumns;
+import io.crate.execution.dsl.projection.builder.ProjectionBuilder;
+import io.crate.execution.engine.join.JoinOperations;
+import io.crate.execution.engine.pipeline.TopN;
+import io.crate.expression.symbol.SelectSymbol;
+import io.crate.expression.symbol.Symbol;
+import io.crate.expression.symbol.SymbolVisitors;
+import io.crate.expression.symbol.Symbols;
+import io.crate.metadata.Reference;
+import io.crate.metadata.RelationName;
+import io.crate.metadata.RowGranularity;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.planner.ExecutionPlan;
+import io.crate.planner.PlannerContext;
+import io.crate.planner.ResultDescription;
+import io.crate.planner.distribution.DistributionInfo;
+import io.crate.planner.node.dql.join.Join;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.statistics.TableStats;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+
+/**
+ * Equi-join of two inputs which are sorted by their join keys.
+ * <p>
+ * The sources are ordered by the join keys; if they are {@link Collect} operators on columns
+ * with doc values, the sorting is done by Lucene and the sorted results of the shards are merged
+ * while they are received. The join can then stream both inputs and only needs to keep the rows
+ * of the right side sharing the same key in memory.
+ */
+public class MergeJoin implements LogicalPlan {
+
+    private final LogicalPlan lhs;
+    private final LogicalPlan rhs;
+    private final JoinType joinType;
+    private final Symbol joinCondition;
+    private final List<Symbol> lhsKeys;
+    private final List<Symbol> rhsKeys;
+    private final List<Symbol> outputs;
+
+    /**
+     * Creates a {@link MergeJoin} if both sources can be sorted by the keys of the join condition in Lucene.
+     *
+     * @return the merge join or null if it's not possible or would require sorting in memory.
+     */
+    @Nullable
+    public static MergeJoin createIfSortedByLucene(LogicalPlan lhs,
+                                                   LogicalPlan rhs,
+                                                   JoinType joinType,
+                                                   @Nullable Symbol joinCondition) {
+        if (joinType != JoinType.INNER && joinType.isOuter() == false) {
+            return null;
+        }
+        if (!(lhs instanceof Collect lhsCollect && rhs instanceof Collect rhsCollect)) {
+            return null;
+        }
+        if (joinCondition == null
+            || !EquiJoinDetector.isHashJoinPossible(
+                joinType,
+                joinCondition,
+                Set.of(lhsCollect.relation().relationName()),
+                Set.of(rhsCollect.relation().relationName()))) {
+            return null;
+        }
+        if (!(lhsCollect.relation().tableInfo() instanceof DocTableInfo)
+            || !(rhsCollect.relation().tableInfo() instanceof DocTableInfo)
+            || lhsCollect.relation().relationName().equals(rhsCollect.relation().relationName())) {
+            return null;
+        }
+        Map<RelationName, List<Symbol>> keysByRelation = HashJoinConditionSymbolsExtractor.extract(joinCondition);
+        List<Symbol> lhsKeys = keysByRelation.get(lhsCollect.relation().relationName());
+        List<Symbol> rhsKeys = keysByRelation.get(rhsCollect.relation().relationName());
+        if (lhsKeys == null || rhsKeys == null || lhsKeys.isEmpty() || lhsKeys.size() != rhsKeys.size()) {
+            return null;
+        }
+        for (int i = 0; i < lhsKeys.size(); i++) {
+            Symbol lhsKey = lhsKeys.get(i);
+            Symbol rhsKey = rhsKeys.get(i);
+            if (!lhsKey.valueType().equals(rhsKey.valueType())
+                || !isSortableByLucene(lhsKey, lhs.outputs())
+                || !isSortableByLucene(rhsKey, rhs.outputs())) {
+                return null;
+            }
+        }
+        return new MergeJoin(lhs, rhs, joinType, joinCondition, List.copyOf(lhsKeys), List.copyOf(rhsKeys));
+    }
+
+    /**
+     * The Lucene sort order must be the same as the one of the values compared in the join, this is
+     * not the case for text (UTF-8 vs. UTF-16 order), so only numeric and timestamp columns are supported.
+     */
+    private static boolean isSortableByLucene(Symbol key, List<Symbol> outputs) {
+        if (!(key instanceof Reference ref) || !outputs.contains(key)) {
+            return false;
+        }
+        DataType<?> type = ref.valueType();
+        boolean supportedType = DataTypes.isNumericPrimitive(type)
+                                || type.id() == DataTypes.TIMESTAMPZ.id()
+                                || type.id() == DataTypes.TIMESTAMP.id();
+        return supportedType
+               && ref.granularity() == RowGranularity.DOC
+               && ref.indexType() != Reference.IndexType.FULLTEXT
+               && ref.isColumnStoreDisabled() == false;
+    }
+
+    public MergeJoin(LogicalPlan lhs,
+                     LogicalPlan rhs,
+                     JoinType joinType,
+                     Symbol joinCondition,
+                     List<Symbol> lhsKeys,
+                     List<Symbol> rhsKeys) {
+        this.lhs = lhs;
+        this.rhs = rhs;
+        this.joinType = joinType;
+        this.joinCondition = joinCondition;
+        this.lhsKeys = lhsKeys;
+        this.rhsKeys = rhsKeys;
+        this.outputs = Lists2.concat(lhs.outputs(), rhs.outputs());
+    }
+
+    public JoinType joinType() {
+        return joinType;
+    }
+
+    public Symbol joinCondition() {
+        return joinCondition;
+    }
+
+    @Override
+    public ExecutionPlan build(PlannerContext plannerContext,
+                               Set<PlanHint> hints,
+                               ProjectionBuilder projectionBuilder,
+                               int limit,
+                               int offset,
+                               @Nullable OrderBy order,
+                               @Nullable Integer pageSizeHint,
+                               Row params,
+                               SubQueryResults subQueryResults) {
+        ExecutionPlan leftExecutionPlan = new Order(lhs, new OrderBy(lhsKeys)).build(
+            plannerContext, hints, projectionBuilder, NO_LIMIT, 0, null, null, params, subQueryResults);
+        ExecutionPlan rightExecutionPlan = new Order(rhs, new OrderBy(rhsKeys)).build(
+            plannerContext, hints, projectionBuilder, NO_LIMIT, 0, null, null, params, subQueryResults);
+
+        SubQueryAndParamBinder paramBinder = new SubQueryAndParamBinder(params, subQueryResults);
+        ResultDescription leftResultDesc = leftExecutionPlan.resultDescription();
+        ResultDescription rightResultDesc = rightExecutionPlan.resultDescription();
+        Collection<String> joinExecutionNodes = leftResultDesc.nodeIds();
+
+        List<Symbol> leftOutputs = lhs.outputs();
+        List<Symbol> rightOutputs = rhs.outputs();
+        MergePhase leftMerge = null;
+        MergePhase rightMerge = null;
+
+        // Same distribution as used by the HashJoin: Rows with the same key end up on the same node
+        // and the sorted rows received from the upstreams are merged in order by the MergePhase.
+        boolean isDistributed = leftResultDesc.hasRemainingLimitOrOffset() == false
+                                && rightResultDesc.hasRemainingLimitOrOffset() == false
+                                && joinExecutionNodes.isEmpty() == false;
+        if (joinExecutionNodes.size() == 1
+            && joinExecutionNodes.equals(rightResultDesc.nodeIds())
+            && !rightResultDesc.hasRemainingLimitOrOffset()) {
+            leftExecutionPlan.setDistributionInfo(DistributionInfo.DEFAULT_SAME_NODE);
+            rightExecutionPlan.setDistributionInfo(DistributionInfo.DEFAULT_SAME_NODE);
+        } else {
+            if (isDistributed) {
+                leftOutputs = HashJoin.setModuloDistribution(
+                    Lists2.map(lhsKeys, paramBinder), lhs.outputs(), leftExecutionPlan);
+                rightOutputs = HashJoin.setModuloDistribution(
+                    Lists2.map(rhsKeys, paramBinder), rhs.outputs(), rightExecutionPlan);
+            } else {
+                joinExecutionNodes = Collections.singletonList(plannerContext.handlerNode());
+                leftExecutionPlan.setDistributionInfo(DistributionInfo.DEFAULT_BROADCAST);
+                rightExecutionPlan.setDistributionInfo(DistributionInfo.DEFAULT_BROADCAST);
+            }
+            leftMerge = JoinOperations.buildMergePhaseForJoin(plannerContext, leftResultDesc, joinExecutionNodes);
+            rightMerge = JoinOperations.buildMergePhaseForJoin(plannerContext, rightResultDesc, joinExecutionNodes);
+        }
+
+        List<Symbol> joinOutputs = Lists2.concat(leftOutputs, rightOutputs);
+        MergeJoinPhase joinPhase = new MergeJoinPhase(
+            plannerContext.jobId(),
+            plannerContext.nextExecutionPhaseId(),
+            "merge-join",
+            Collections.singletonList(JoinOperations.createJoinProjection(outputs, joinOutputs)),
+            leftMerge,
+            rightMerge,
+            leftOutputs.size(),
+            rightOutputs.size(),
+            joinExecutionNodes,
+            joinType,
+            InputColumns.create(paramBinder.apply(joinCondition), joinOutputs),
+            InputColumns.create(Lists2.map(lhsKeys, paramBinder), new InputColumns.SourceSymbols(leftOutputs)),
+            InputColumns.create(Lists2.map(rhsKeys, paramBinder), new InputColumns.SourceSymbols(rightOutputs)),
+            Symbols.typeView(rightOutputs)
+        );
+        return new Join(
+            joinPhase,
+            leftExecutionPlan,
+            rightExecutionPlan,
+            TopN.NO_LIMIT,
+            0,
+            TopN.NO_LIMIT,
+            outputs.size(),
+            null
+        );
+    }
+
+    @Override
+    public List<Symbol> outputs() {
+        return outputs;
+    }
+
+    @Override
+    public List<AbstractTableRelation<?>> baseTables() {
+        return Lists2.concat(lhs.baseTables(), rhs.baseTables());
+    }
+
+    @Override
+    public List<LogicalPlan> sources() {
+        return List.of(lhs, rhs);
+    }
+
+    @Override
+    public LogicalPlan replaceSources(List<LogicalPlan> sources) {
+        return new MergeJoin(sources.get(0), sources.get(1), joinType, joinCondition, lhsKeys, rhsKeys);
+    }
+
+    @Override
+    public LogicalPlan pruneOutputsExcept(TableStats tableStats, Collection<Symbol> outputsToKeep) {
+        LinkedHashSet<Symbol> lhsToKeep = new LinkedHashSet<>();
+        LinkedHashSet<Symbol> rhsToKeep = new LinkedHashSet<>();
+        for (Symbol outputToKeep : outputsToKeep) {
+            SymbolVisitors.intersection(outputToKeep, lhs.outputs(), lhsToKeep::add);
+            SymbolVisitors.intersection(outputToKeep, rhs.outputs(), rhsToKeep::add);
+        }
+        SymbolVisitors.intersection(joinCondition, lhs.outputs(), lhsToKeep::add);
+        SymbolVisitors.intersection(joinCondition, rhs.outputs(), rhsToKeep::add);
+        LogicalPlan newLhs = lhs.pruneOutputsExcept(tableStats, lhsToKeep);
+        LogicalPlan newRhs = rhs.pruneOutputsExcept(tableStats, rhsToKeep);
+        if (newLhs == lhs && newRhs == rhs) {
+            return this;
+        }
+        return new MergeJoin(newLhs, newRhs, joinType, joinCondition, lhsKeys, rhsKeys);
+    }
+
+    @Nullable
+    @Override
+    public FetchRewrite rewriteToFetch(TableStats tableStats, Collection<Symbol> usedColumns) {
+        LinkedHashSet<Symbol> usedFromLeft = new LinkedHashSet<>();
+        LinkedHashSet<Symbol> usedFromRight = new LinkedHashSet<>();
+        for (Symbol usedColumn : usedColumns) {
+            SymbolVisitors.intersection(usedColumn, lhs.outputs(), usedFromLeft::add);
+            SymbolVisitors.intersection(usedColumn, rhs.outputs(), usedFromRight::add);
+        }
+        SymbolVisitors.intersection(joinCondition, lhs.outputs(), usedFromLeft::add);
+        SymbolVisitors.intersection(joinCondition, rhs.outputs(), usedFromRight::add);
+        FetchRewrite lhsFetchRewrite = lhs.rewriteToFetch(tableStats, usedFromLeft);
+        FetchRewrite rhsFetchRewrite = rhs.rewriteToFetch(tableStats, usedFromRight);
+        if (lhsFetchRewrite == null && rhsFetchRewrite == null) {
+            return null;
+        }
+        LinkedHashMap<Symbol, Symbol> allReplacedOutputs = new LinkedHashMap<>();
+        NestedLoopJoin.setReplacedOutputs(lhs, lhsFetchRewrite, allReplacedOutputs);
+        NestedLoopJoin.setReplacedOutputs(rhs, rhsFetchRewrite, allReplacedOutputs);
+        return new FetchRewrite(
+            allReplacedOutputs,
+            new MergeJoin(
+                lhsFetchRewrite == null ? lhs : lhsFetchRewrite.newPlan(),
+                rhsFetchRewrite == null ? rhs : rhsFetchRewrite.newPlan(),
+                joinType,
+                joinCondition,
+                lhsKeys,
+                rhsKeys
+            )
+        );
+    }
+
+    @Override
+    public Map<LogicalPlan, SelectSymbol> dependencies() {
+        return Maps.concat(lhs.dependencies(), rhs.dependencies());
+    }
+
+    @Override
+    public long numExpectedRows() {
+        // We don't have any cardinality estimates, so just take the bigger table
+        return Math.max(lhs.numExpectedRows(), rhs.numExpectedRows());
+    }
+
+    @Override
+    public long estimatedRowSize() {
+        return lhs.estimatedRowSize() + rhs.estimatedRowSize();
+    }
+
+    @Override
+    public <C, R> R accept(LogicalPlanVisitor<C, R> visitor, C context) {
+        return visitor.visitMergeJoin(this, context);
+    }
+
+    @Override
+    public void print(PrintContext printContext) {
+        printContext
+            .text("MergeJoin[")
+            .text(joinType.toString())
+            .text(" | ")
+            .text(joinCondition.toString())
+            .text("]")
+            .nest(
+                lhs::print,
+                rhs::print
+            );
+    }
+}
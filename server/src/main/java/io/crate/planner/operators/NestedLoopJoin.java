@@ -68,6 +68,11 @@ public class NestedLoopJoin implements LogicalPlan {
     private final AnalyzedRelation topMostLeftRelation;
     private final JoinType joinType;
     private final boolean isFiltered;
+    /**
+     * Estimated fraction of the cross product of lhs and rhs matching the join condition,
+     * or {@link HashJoin#UNKNOWN_SELECTIVITY}. Kept for the {@link HashJoin} an equi-join is rewritten to.
+     */
+    private final double joinSelectivity;
     final LogicalPlan lhs;
     final LogicalPlan rhs;
     private final List<Symbol> outputs;
@@ -82,6 +87,16 @@ public class NestedLoopJoin implements LogicalPlan {
                    @Nullable Symbol joinCondition,
                    boolean isFiltered,
                    AnalyzedRelation topMostLeftRelation) {
+        this(lhs, rhs, joinType, joinCondition, isFiltered, topMostLeftRelation, HashJoin.UNKNOWN_SELECTIVITY);
+    }
+
+    NestedLoopJoin(LogicalPlan lhs,
+                   LogicalPlan rhs,
+                   JoinType joinType,
+                   @Nullable Symbol joinCondition,
+                   boolean isFiltered,
+                   AnalyzedRelation topMostLeftRelation,
+                   double joinSelectivity) {
         this.joinType = joinType;
         this.isFiltered = isFiltered || joinCondition != null;
         this.lhs = lhs;
@@ -94,6 +109,7 @@ public class NestedLoopJoin implements LogicalPlan {
         this.baseTables = Lists2.concat(lhs.baseTables(), rhs.baseTables());
         this.topMostLeftRelation = topMostLeftRelation;
         this.joinCondition = joinCondition;
+        this.joinSelectivity = joinSelectivity;
         this.dependencies = Maps.concat(lhs.dependencies(), rhs.dependencies());
     }
 
@@ -105,7 +121,29 @@ public class NestedLoopJoin implements LogicalPlan {
                           AnalyzedRelation topMostLeftRelation,
                           boolean orderByWasPushedDown,
                           boolean rewriteFilterOnOuterJoinToInnerJoinDone) {
-        this(lhs, rhs, joinType, joinCondition, isFiltered, topMostLeftRelation);
+        this(
+            lhs,
+            rhs,
+            joinType,
+            joinCondition,
+            isFiltered,
+            topMostLeftRelation,
+            orderByWasPushedDown,
+            rewriteFilterOnOuterJoinToInnerJoinDone,
+            HashJoin.UNKNOWN_SELECTIVITY
+        );
+    }
+
+    public NestedLoopJoin(LogicalPlan lhs,
+                          LogicalPlan rhs,
+                          JoinType joinType,
+                          @Nullable Symbol joinCondition,
+                          boolean isFiltered,
+                          AnalyzedRelation topMostLeftRelation,
+                          boolean orderByWasPushedDown,
+                          boolean rewriteFilterOnOuterJoinToInnerJoinDone,
+                          double joinSelectivity) {
+        this(lhs, rhs, joinType, joinCondition, isFiltered, topMostLeftRelation, joinSelectivity);
         this.orderByWasPushedDown = orderByWasPushedDown;
         this.rewriteFilterOnOuterJoinToInnerJoinDone = rewriteFilterOnOuterJoinToInnerJoinDone;
     }
@@ -254,7 +292,8 @@ public class NestedLoopJoin implements LogicalPlan {
             isFiltered,
             topMostLeftRelation,
             orderByWasPushedDown,
-            rewriteFilterOnOuterJoinToInnerJoinDone
+            rewriteFilterOnOuterJoinToInnerJoinDone,
+            joinSelectivity
         );
     }
 
@@ -283,7 +322,8 @@ public class NestedLoopJoin implements LogicalPlan {
             isFiltered,
             topMostLeftRelation,
             orderByWasPushedDown,
-            rewriteFilterOnOuterJoinToInnerJoinDone
+            rewriteFilterOnOuterJoinToInnerJoinDone,
+            joinSelectivity
         );
     }
 
@@ -318,7 +358,8 @@ public class NestedLoopJoin implements LogicalPlan {
                 isFiltered,
                 topMostLeftRelation,
                 orderByWasPushedDown,
-                rewriteFilterOnOuterJoinToInnerJoinDone
+                rewriteFilterOnOuterJoinToInnerJoinDone,
+                joinSelectivity
             )
         );
     }
@@ -402,6 +443,10 @@ public class NestedLoopJoin implements LogicalPlan {
         return orderByWasPushedDown;
     }
 
+    public double joinSelectivity() {
+        return joinSelectivity;
+    }
+
     @Override
     public void print(PrintContext printContext) {
         printContext
@@ -85,15 +85,20 @@ public class WindowAgg extends ForwardingLogicalPlan {
             ArrayList<WindowFunction> functions = entry.getValue();
             WindowDefinition windowDefinition = entry.getKey();
             OrderBy orderBy = windowDefinition.orderBy();
-            if (orderBy == null || lastWindowAgg.outputs().containsAll(orderBy.orderBySymbols())) {
-                lastWindowAgg = new WindowAgg(lastWindowAgg, windowDefinition, functions, lastWindowAgg.outputs());
+            List<Symbol> partitions = windowDefinition.partitions();
+            List<Symbol> orderBySymbols = orderBy == null ? List.of() : orderBy.orderBySymbols();
+            List<Symbol> sourceOutputs = lastWindowAgg.outputs();
+            if (sourceOutputs.containsAll(partitions) && sourceOutputs.containsAll(orderBySymbols)) {
+                lastWindowAgg = new WindowAgg(lastWindowAgg, windowDefinition, functions, sourceOutputs);
             } else {
                 // ``WindowProjector.createUpdateProbeValueFunction` expects that all OrderBY symbols are `InputColumn`
-                // Here we have a case where there is a function or something in the orderBy expression that is *not*
-                // already provided by the source.
-                // -> Inject `eval` so that the `orderBy` of the window-function will turn into a `InputColumn`
+                // and the distribution by the first partition key requires the key to be part of the source outputs.
+                // Here we have a case where there is a function or something in the partition by or order by
+                // expressions that is *not* already provided by the source.
+                // -> Inject `eval` so that these expressions of the window-function will turn into `InputColumn`s
                 Eval eval = new Eval(
-                    lastWindowAgg, Lists2.concatUnique(lastWindowAgg.outputs(), orderBy.orderBySymbols()));
+                    lastWindowAgg,
+                    Lists2.concatUnique(Lists2.concatUnique(sourceOutputs, partitions), orderBySymbols));
                 lastWindowAgg = new WindowAgg(eval, windowDefinition, functions, eval.outputs());
             }
         }
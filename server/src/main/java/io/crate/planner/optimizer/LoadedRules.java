@@ -34,6 +34,7 @@ import io.crate.metadata.settings.session.SessionSetting;
 import io.crate.metadata.settings.session.SessionSettingProvider;
 import io.crate.planner.operators.RewriteInsertFromSubQueryToInsertFromValues;
 import io.crate.planner.optimizer.rule.DeduplicateOrder;
+import io.crate.planner.optimizer.rule.FilterHashJoinProbeSideByBuildSideKeys;
 import io.crate.planner.optimizer.rule.MergeAggregateAndCollectToCount;
 import io.crate.planner.optimizer.rule.MergeAggregateRenameAndCollectToCount;
 import io.crate.planner.optimizer.rule.MergeFilterAndCollect;
@@ -55,6 +56,9 @@ import io.crate.planner.optimizer.rule.RemoveRedundantFetchOrEval;
 import io.crate.planner.optimizer.rule.RewriteCollectToGet;
 import io.crate.planner.optimizer.rule.RewriteFilterOnOuterJoinToInnerJoin;
 import io.crate.planner.optimizer.rule.RewriteGroupByKeysLimitToTopNDistinct;
+import io.crate.planner.optimizer.rule.RewriteHashJoinToMergeJoin;
+import io.crate.planner.optimizer.rule.RewriteNestedLoopJoinToHashJoin;
+import io.crate.planner.optimizer.rule.RewriteNestedLoopJoinToMergeJoin;
 import io.crate.planner.optimizer.rule.RewriteToQueryThenFetch;
 import io.crate.types.DataTypes;
 
@@ -86,6 +90,10 @@ public class LoadedRules implements SessionSettingProvider {
         DeduplicateOrder.class,
         RewriteCollectToGet.class,
         RewriteGroupByKeysLimitToTopNDistinct.class,
+        FilterHashJoinProbeSideByBuildSideKeys.class,
+        RewriteNestedLoopJoinToHashJoin.class,
+        RewriteNestedLoopJoinToMergeJoin.class,
+        RewriteHashJoinToMergeJoin.class,
         RewriteInsertFromSubQueryToInsertFromValues.class,
         RewriteToQueryThenFetch.class
     );
@@ -0,0 +1,179 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.planner.optimizer.rule;
+
+import static io.crate.planner.optimizer.matcher.Pattern.typeOf;
+
+import java.util.List;
+import java.util.Map;
+
+import io.crate.analyze.OrderBy;
+import io.crate.common.annotations.VisibleForTesting;
+import io.crate.expression.operator.any.AnyOperators;
+import io.crate.expression.symbol.SelectSymbol;
+import io.crate.expression.symbol.Symbol;
+import io.crate.expression.symbol.SymbolVisitors;
+import io.crate.metadata.NodeContext;
+import io.crate.metadata.Reference;
+import io.crate.metadata.RelationName;
+import io.crate.metadata.TransactionContext;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.planner.operators.Collect;
+import io.crate.planner.operators.HashJoin;
+import io.crate.planner.operators.HashJoinConditionSymbolsExtractor;
+import io.crate.planner.operators.LogicalPlan;
+import io.crate.planner.operators.MultiPhase;
+import io.crate.planner.operators.Order;
+import io.crate.planner.operators.RootRelationBoundary;
+import io.crate.planner.optimizer.Rule;
+import io.crate.planner.optimizer.matcher.Captures;
+import io.crate.planner.optimizer.matcher.Pattern;
+import io.crate.statistics.TableStats;
+import io.crate.types.ArrayType;
+import io.crate.types.DataTypes;
+
+/**
+ * Filters the probe side of a hash join by the join keys of a small build side.
+ * <p>
+ * The build side is the side which is buffered into the hash table and the probe side the side which is streamed
+ * against it, see {@link io.crate.execution.engine.join.HashInnerJoinBatchIterator}. By default a hash join uses the
+ * larger side as build side. This rule uses the smaller side as build side instead and filters the larger probe side:
+ *
+ * <pre>
+ *     HashJoin (fact.dim_id = dim.id)
+ *       - Collect fact
+ *       - Collect dim [region = 'EU']
+ *
+ *     HashJoin (fact.dim_id = dim.id)
+ *       - MultiPhase
+ *         - Collect fact [dim_id = ANY(SELECT id FROM dim WHERE region = 'EU')]
+ *         - Collect dim [id] [region = 'EU']
+ *       - Collect dim [region = 'EU']
+ * </pre>
+ *
+ * The keys of the build side are collected before the join is executed and pushed into the
+ * Lucene query of the probe side, so that rows which can't match aren't collected and distributed.
+ * The build side is executed twice, so this is only done if it is estimated to be small
+ * compared to the probe side. The small build side fits into a single block of the hash table,
+ * so the filtered probe side is only read once and is never buffered into the hash table.
+ * <p>
+ * This must only be applied after filters have been merged into the Collect operators, as
+ * no further filters can be pushed beneath the {@link MultiPhase}.
+ */
+public final class FilterHashJoinProbeSideByBuildSideKeys implements Rule<HashJoin> {
+
+    @VisibleForTesting
+    static final long MAX_BUILD_SIDE_ROWS = 10_000;
+
+    @VisibleForTesting
+    static final long MIN_PROBE_TO_BUILD_SIDE_RATIO = 10;
+
+    private final Pattern<HashJoin> pattern;
+
+    public FilterHashJoinProbeSideByBuildSideKeys() {
+        // Rows of the probe side without a matching key are only dropped by inner joins
+        this.pattern = typeOf(HashJoin.class)
+            .with(hashJoin -> hashJoin.joinType() == JoinType.INNER);
+    }
+
+    @Override
+    public Pattern<HashJoin> pattern() {
+        return pattern;
+    }
+
+    @Override
+    public LogicalPlan apply(HashJoin hashJoin,
+                             Captures captures,
+                             TableStats tableStats,
+                             TransactionContext txnCtx,
+                             NodeContext nodeCtx) {
+        // Same build side as HashJoin.build with buildOnSmallerSide: The smaller side, or lhs if both are equal
+        boolean rhsIsBuildSide = hashJoin.lhs().numExpectedRows() > hashJoin.rhs().numExpectedRows();
+        LogicalPlan build = rhsIsBuildSide ? hashJoin.rhs() : hashJoin.lhs();
+        LogicalPlan probe = rhsIsBuildSide ? hashJoin.lhs() : hashJoin.rhs();
+        if (!(build instanceof Collect) || !(probe instanceof Collect)) {
+            return null;
+        }
+        long buildRows = build.numExpectedRows();
+        long probeRows = probe.numExpectedRows();
+        if (buildRows < 0 || buildRows > MAX_BUILD_SIDE_ROWS || probeRows < buildRows * MIN_PROBE_TO_BUILD_SIDE_RATIO) {
+            return null;
+        }
+        Collect buildCollect = (Collect) build;
+        Collect probeCollect = (Collect) probe;
+        if (!(probeCollect.relation().tableInfo() instanceof DocTableInfo)
+            || SymbolVisitors.any(s -> s instanceof SelectSymbol, probeCollect.where().queryOrFallback())) {
+            return null;
+        }
+        Map<RelationName, List<Symbol>> keysByRelation = HashJoinConditionSymbolsExtractor.extract(hashJoin.joinCondition());
+        List<Symbol> probeKeys = keysByRelation.get(probeCollect.relation().relationName());
+        List<Symbol> buildKeys = keysByRelation.get(buildCollect.relation().relationName());
+        if (probeKeys == null || buildKeys == null || probeKeys.size() != buildKeys.size()) {
+            return null;
+        }
+        for (int i = 0; i < probeKeys.size(); i++) {
+            Symbol probeKey = probeKeys.get(i);
+            Symbol buildKey = buildKeys.get(i);
+            if (probeKey instanceof Reference
+                && buildKey instanceof Reference
+                && probeKey.valueType().equals(buildKey.valueType())
+                && DataTypes.isPrimitive(probeKey.valueType())
+                && probeCollect.outputs().contains(probeKey)
+                && buildCollect.outputs().contains(buildKey)) {
+
+                return filterProbeSide(hashJoin, rhsIsBuildSide, probeCollect, probeKey, buildCollect, buildKey);
+            }
+        }
+        return null;
+    }
+
+    private static LogicalPlan filterProbeSide(HashJoin hashJoin,
+                                               boolean rhsIsBuildSide,
+                                               Collect probe,
+                                               Symbol probeKey,
+                                               Collect build,
+                                               Symbol buildKey) {
+        SelectSymbol buildKeys = new SelectSymbol(
+            build.relation(),
+            new ArrayType<>(buildKey.valueType()),
+            SelectSymbol.ResultType.SINGLE_COLUMN_MULTIPLE_VALUES
+        );
+        // Sorted keys speed up the creation of the TermInSetQuery, see LogicalPlanner.tryOptimizeForInSubquery
+        LogicalPlan buildKeysPlan = new RootRelationBoundary(new Order(
+            new Collect(build.relation(), List.of(buildKey), build.where(), build.numExpectedRows(), build.estimatedRowSize()),
+            new OrderBy(List.of(buildKey))
+        ));
+        // The number of expected rows is kept, the join must use the same build side
+        // as the one the estimates were used for to decide that the keys are worth collecting.
+        Collect filteredProbe = new Collect(
+            probe.relation(),
+            probe.outputs(),
+            probe.where().add(AnyOperators.of(AnyOperators.Type.EQ, probeKey, buildKeys)),
+            probe.numExpectedRows(),
+            probe.estimatedRowSize()
+        );
+        LogicalPlan newProbe = MultiPhase.createIfNeeded(filteredProbe, Map.of(buildKeysPlan, buildKeys));
+        return hashJoin.replaceSources(rhsIsBuildSide ? List.of(newProbe, build) : List.of(build, newProbe), true);
+    }
+}
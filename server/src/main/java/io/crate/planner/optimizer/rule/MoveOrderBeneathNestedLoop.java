@@ -105,7 +105,8 @@ public final class MoveOrderBeneathNestedLoop implements Rule<Order> {
                     nestedLoop.isFiltered(),
                     nestedLoop.topMostLeftRelation(),
                     true,
-                    nestedLoop.isRewriteFilterOnOuterJoinToInnerJoinDone()
+                    nestedLoop.isRewriteFilterOnOuterJoinToInnerJoinDone(),
+                    nestedLoop.joinSelectivity()
                 );
             }
         }
@@ -0,0 +1,96 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.planner.optimizer.rule;
+
+import static io.crate.planner.optimizer.matcher.Pattern.typeOf;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+
+import io.crate.common.annotations.VisibleForTesting;
+import io.crate.metadata.NodeContext;
+import io.crate.metadata.TransactionContext;
+import io.crate.planner.operators.HashJoin;
+import io.crate.planner.operators.LogicalPlan;
+import io.crate.planner.operators.MergeJoin;
+import io.crate.planner.optimizer.Rule;
+import io.crate.planner.optimizer.matcher.Captures;
+import io.crate.planner.optimizer.matcher.Pattern;
+import io.crate.statistics.TableStats;
+
+/**
+ * Hash joins with a large build side are executed as {@link MergeJoin} if both sides can be sorted
+ * by the join keys in Lucene. The merge join streams both sides instead of building a hash table
+ * which would have to be processed in blocks or partitioned to disk.
+ * <p>
+ * Requires statistics, without them the size of the build side is unknown.
+ */
+public final class RewriteHashJoinToMergeJoin implements Rule<HashJoin> {
+
+    @VisibleForTesting
+    static final long MIN_BUILD_SIDE_BYTES = ByteSizeUnit.MB.toBytes(256);
+
+    private final Pattern<HashJoin> pattern;
+
+    public RewriteHashJoinToMergeJoin() {
+        this.pattern = typeOf(HashJoin.class);
+    }
+
+    @Override
+    public Pattern<HashJoin> pattern() {
+        return pattern;
+    }
+
+    @Override
+    public LogicalPlan apply(HashJoin hashJoin,
+                             Captures captures,
+                             TableStats tableStats,
+                             TransactionContext txnCtx,
+                             NodeContext nodeCtx) {
+        long lhsBytes = estimatedBytes(hashJoin.lhs());
+        long rhsBytes = estimatedBytes(hashJoin.rhs());
+        if (lhsBytes < 0 || rhsBytes < 0 || Math.min(lhsBytes, rhsBytes) < MIN_BUILD_SIDE_BYTES) {
+            return null;
+        }
+        return MergeJoin.createIfSortedByLucene(
+            hashJoin.lhs(),
+            hashJoin.rhs(),
+            hashJoin.joinType(),
+            hashJoin.joinCondition()
+        );
+    }
+
+    private static long estimatedBytes(LogicalPlan plan) {
+        long numRows = plan.numExpectedRows();
+        long rowSize = plan.estimatedRowSize();
+        if (numRows < 0 || rowSize < 0) {
+            return -1;
+        }
+        return numRows * rowSize;
+    }
+
+    @Override
+    public Version requiredVersion() {
+        return Version.V_4_7_0;
+    }
+}
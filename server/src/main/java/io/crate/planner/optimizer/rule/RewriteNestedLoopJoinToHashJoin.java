@@ -0,0 +1,101 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.planner.optimizer.rule;
+
+import static io.crate.planner.optimizer.matcher.Pattern.typeOf;
+
+import org.elasticsearch.Version;
+
+import io.crate.metadata.NodeContext;
+import io.crate.metadata.TransactionContext;
+import io.crate.planner.operators.EquiJoinDetector;
+import io.crate.planner.operators.HashJoin;
+import io.crate.planner.operators.LogicalPlan;
+import io.crate.planner.operators.NestedLoopJoin;
+import io.crate.planner.optimizer.Rule;
+import io.crate.planner.optimizer.matcher.Captures;
+import io.crate.planner.optimizer.matcher.Pattern;
+import io.crate.statistics.TableStats;
+
+/**
+ * Equi-joins which aren't inner joins are planned as {@link NestedLoopJoin} so that
+ * {@link RewriteFilterOnOuterJoinToInnerJoin} can still apply. Once the filters are pushed down,
+ * they're executed as {@link HashJoin}:
+ *
+ * <pre>
+ *     NestedLoopJoin[LEFT | (t1.x = t2.y)]
+ *       - Collect t1
+ *       - Collect t2
+ *
+ *     HashJoin[LEFT | (t1.x = t2.y)]
+ *       - Collect t1
+ *       - Collect t2
+ * </pre>
+ *
+ * This also applies to outer joins which were rewritten to inner joins.
+ * Nested loops with an ORDER BY pushed into the left side are kept, as the hash join doesn't preserve the order.
+ */
+public final class RewriteNestedLoopJoinToHashJoin implements Rule<NestedLoopJoin> {
+
+    private final Pattern<NestedLoopJoin> pattern;
+
+    public RewriteNestedLoopJoinToHashJoin() {
+        this.pattern = typeOf(NestedLoopJoin.class)
+            .with(nl -> !nl.orderByWasPushedDown()
+                        && nl.joinCondition() != null
+                        && EquiJoinDetector.isHashJoinPossible(
+                            nl.joinType(),
+                            nl.joinCondition(),
+                            nl.sources().get(0).getRelationNames(),
+                            nl.sources().get(1).getRelationNames()));
+    }
+
+    @Override
+    public Pattern<NestedLoopJoin> pattern() {
+        return pattern;
+    }
+
+    @Override
+    public LogicalPlan apply(NestedLoopJoin nl,
+                             Captures captures,
+                             TableStats tableStats,
+                             TransactionContext txnCtx,
+                             NodeContext nodeCtx) {
+        if (txnCtx.sessionSettings().hashJoinsEnabled() == false) {
+            return null;
+        }
+        return new HashJoin(
+            nl.sources().get(0),
+            nl.sources().get(1),
+            nl.joinType(),
+            nl.joinCondition(),
+            null,
+            nl.joinSelectivity()
+        );
+    }
+
+    @Override
+    public Version requiredVersion() {
+        return Version.V_4_7_0;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.planner.optimizer.rule;
+
+import static io.crate.planner.optimizer.matcher.Pattern.typeOf;
+
+import org.elasticsearch.Version;
+
+import io.crate.common.annotations.VisibleForTesting;
+import io.crate.metadata.NodeContext;
+import io.crate.metadata.TransactionContext;
+import io.crate.planner.operators.LogicalPlan;
+import io.crate.planner.operators.MergeJoin;
+import io.crate.planner.operators.NestedLoopJoin;
+import io.crate.planner.optimizer.Rule;
+import io.crate.planner.optimizer.matcher.Captures;
+import io.crate.planner.optimizer.matcher.Pattern;
+import io.crate.statistics.TableStats;
+
+/**
+ * Outer equi-joins are executed as {@link MergeJoin} instead of a nested loop if both sides can be
+ * sorted by the join keys in Lucene:
+ *
+ * <pre>
+ *     NestedLoopJoin[LEFT | (t1.x = t2.y)]
+ *       - Collect t1
+ *       - Collect t2
+ *
+ *     MergeJoin[LEFT | (t1.x = t2.y)]
+ *       - Collect t1 [ORDER BY x]
+ *       - Collect t2 [ORDER BY y]
+ * </pre>
+ *
+ * Only applies if hash joins are disabled, otherwise the join is turned into a {@link io.crate.planner.operators.HashJoin}
+ * by {@link RewriteNestedLoopJoinToHashJoin} and {@link RewriteHashJoinToMergeJoin} decides about the merge join.
+ * Inner joins are not rewritten, they only use a nested loop if hash joins are disabled.
+ * <p>
+ * Sorting both sides is only cheaper than the nested loop if it has to compare many row pairs.
+ * Requires statistics, without them the number of rows of both sides is unknown.
+ */
+public final class RewriteNestedLoopJoinToMergeJoin implements Rule<NestedLoopJoin> {
+
+    @VisibleForTesting
+    static final double MIN_ROW_PAIRS = 100_000_000;
+
+    private final Pattern<NestedLoopJoin> pattern;
+
+    public RewriteNestedLoopJoinToMergeJoin() {
+        this.pattern = typeOf(NestedLoopJoin.class)
+            .with(nl -> nl.joinType().isOuter());
+    }
+
+    @Override
+    public Pattern<NestedLoopJoin> pattern() {
+        return pattern;
+    }
+
+    @Override
+    public LogicalPlan apply(NestedLoopJoin nl,
+                             Captures captures,
+                             TableStats tableStats,
+                             TransactionContext txnCtx,
+                             NodeContext nodeCtx) {
+        if (txnCtx.sessionSettings().hashJoinsEnabled()) {
+            return null;
+        }
+        long lhsRows = nl.sources().get(0).numExpectedRows();
+        long rhsRows = nl.sources().get(1).numExpectedRows();
+        if (lhsRows < 0 || rhsRows < 0 || (double) lhsRows * rhsRows < MIN_ROW_PAIRS) {
+            return null;
+        }
+        return MergeJoin.createIfSortedByLucene(
+            nl.sources().get(0),
+            nl.sources().get(1),
+            nl.joinType(),
+            nl.joinCondition()
+        );
+    }
+
+    @Override
+    public Version requiredVersion() {
+        return Version.V_4_7_0;
+    }
+}
@@ -24,7 +24,13 @@ package io.crate.planner.selectivity;
 import io.crate.data.Row;
 import io.crate.expression.operator.AndOperator;
 import io.crate.expression.operator.EqOperator;
+import io.crate.expression.operator.GtOperator;
+import io.crate.expression.operator.GteOperator;
+import io.crate.expression.operator.LikeOperators;
+import io.crate.expression.operator.LtOperator;
+import io.crate.expression.operator.LteOperator;
 import io.crate.expression.operator.OrOperator;
+import io.crate.expression.operator.any.AnyOperators;
 import io.crate.expression.predicate.IsNullPredicate;
 import io.crate.expression.predicate.NotPredicate;
 import io.crate.expression.symbol.Function;
@@ -36,11 +42,18 @@ import io.crate.expression.symbol.SymbolVisitor;
 import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.Reference;
 import io.crate.statistics.ColumnStats;
+import io.crate.statistics.MostCommonValues;
 import io.crate.statistics.Stats;
+import io.crate.types.DataType;
+import io.crate.types.StringType;
 
 import javax.annotation.Nullable;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * Used to estimate the number of rows returned after applying a given query.
@@ -57,9 +70,22 @@ public class SelectivityFunctions {
      */
     private static final double MAGIC_SEL = 0.333;
 
+    /**
+     * Minimum number of histogram entries required to estimate the selectivity of
+     * an arbitrary LIKE pattern by matching the pattern against the histogram entries.
+     */
+    private static final int MIN_HISTOGRAM_SIZE_FOR_PATTERN_MATCH = 10;
+
     public static long estimateNumRows(Stats stats, Symbol query, @Nullable Row params) {
+        return (long) (stats.numDocs() * selectivity(stats, query, params));
+    }
+
+    /**
+     * @return the estimated fraction of rows matching the query, between 0.0 and 1.0
+     */
+    public static double selectivity(Stats stats, Symbol query, @Nullable Row params) {
         var estimator = new SelectivityEstimator(stats, params);
-        return (long) (stats.numDocs() * query.accept(estimator, null));
+        return query.accept(estimator, null);
     }
 
     static class SelectivityEstimator extends SymbolVisitor<Void, Double> {
@@ -95,9 +121,17 @@ public class SelectivityFunctions {
         public Double visitFunction(Function function, Void context) {
             switch (function.name()) {
                 case AndOperator.NAME: {
+                    // Range bounds on the same column are combined (x >= 10 AND x < 20 or BETWEEN),
+                    // multiplying them would treat them as independent and underestimate the selectivity.
                     double selectivity = 1.0;
+                    HashMap<ColumnIdent, RangeClause> rangeClauses = new HashMap<>();
                     for (Symbol argument : function.arguments()) {
-                        selectivity *= argument.accept(this, context);
+                        if (!RangeClause.add(rangeClauses, argument, stats, params)) {
+                            selectivity *= argument.accept(this, context);
+                        }
+                    }
+                    for (RangeClause rangeClause : rangeClauses.values()) {
+                        selectivity *= rangeClause.selectivity();
                     }
                     return selectivity;
                 }
@@ -125,13 +159,452 @@ public class SelectivityFunctions {
                     return isNullSelectivity(arguments.get(0), stats);
                 }
 
+                case LtOperator.NAME:
+                case LteOperator.NAME:
+                case GtOperator.NAME:
+                case GteOperator.NAME: {
+                    List<Symbol> arguments = function.arguments();
+                    return rangeSelectivity(function.name(), arguments.get(0), arguments.get(1), stats, params);
+                }
+
+                case LikeOperators.OP_LIKE:
+                case LikeOperators.OP_ILIKE: {
+                    List<Symbol> arguments = function.arguments();
+                    return likeSelectivity(
+                        arguments.get(0),
+                        arguments.get(1),
+                        function.name().equals(LikeOperators.OP_ILIKE),
+                        stats,
+                        params
+                    );
+                }
+
                 default:
+                    if (AnyOperators.OPERATOR_NAMES.contains(function.name())) {
+                        return anySelectivity(function, stats, params);
+                    }
                     return MAGIC_SEL;
             }
         }
 
     }
 
+    private static final Map<String, String> ANY_RANGE_OPERATORS = Map.of(
+        AnyOperators.Type.LT.opName(), LtOperator.NAME,
+        AnyOperators.Type.LTE.opName(), LteOperator.NAME,
+        AnyOperators.Type.GT.opName(), GtOperator.NAME,
+        AnyOperators.Type.GTE.opName(), GteOperator.NAME
+    );
+
+    /**
+     * A comparison of a column against a value, normalized to {@code <column> <operator> <value>}
+     */
+    private static class RangeBound {
+
+        private final ColumnIdent column;
+        private final String operator;
+        @Nullable
+        private final Object value;
+
+        private RangeBound(ColumnIdent column, String operator, @Nullable Object value) {
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Nullable
+        static RangeBound of(String operator, Symbol left, Symbol right, @Nullable Row params) {
+            ColumnIdent column = getColumn(left);
+            if (column != null && isValue(right, params)) {
+                return new RangeBound(column, operator, value(right, params));
+            }
+            column = getColumn(right);
+            if (column != null && isValue(left, params)) {
+                // 10 < x -> x > 10
+                return new RangeBound(column, flip(operator), value(left, params));
+            }
+            return null;
+        }
+
+        private static String flip(String operator) {
+            switch (operator) {
+                case LtOperator.NAME:
+                    return GtOperator.NAME;
+                case LteOperator.NAME:
+                    return GteOperator.NAME;
+                case GtOperator.NAME:
+                    return LtOperator.NAME;
+                case GteOperator.NAME:
+                    return LteOperator.NAME;
+                default:
+                    throw new IllegalArgumentException("Not a range operator: " + operator);
+            }
+        }
+
+        boolean isUpperBound() {
+            return operator.equals(LtOperator.NAME) || operator.equals(LteOperator.NAME);
+        }
+    }
+
+    /**
+     * Lower and upper bounds on the same column within an AND.
+     * Similar to `addRangeClause` in PostgreSQL's `clausesel.c`
+     */
+    private static class RangeClause {
+
+        private final ColumnStats<?> columnStats;
+        private double lowerBoundSelectivity = -1.0;
+        private double upperBoundSelectivity = -1.0;
+
+        private RangeClause(ColumnStats<?> columnStats) {
+            this.columnStats = columnStats;
+        }
+
+        /**
+         * @return true if the symbol is a range bound on a column with statistics and was added to the clauses.
+         */
+        static boolean add(Map<ColumnIdent, RangeClause> clauses, Symbol symbol, Stats stats, @Nullable Row params) {
+            if (!(symbol instanceof Function)) {
+                return false;
+            }
+            Function function = (Function) symbol;
+            if (!isRangeOperator(function.name())) {
+                return false;
+            }
+            List<Symbol> arguments = function.arguments();
+            RangeBound bound = RangeBound.of(function.name(), arguments.get(0), arguments.get(1), params);
+            if (bound == null || bound.value == null) {
+                return false;
+            }
+            ColumnStats<?> columnStats = stats.statsByColumn().get(bound.column);
+            if (columnStats == null) {
+                return false;
+            }
+            double selectivity = rangeSelectivity(bound, columnStats);
+            RangeClause clause = clauses.computeIfAbsent(bound.column, c -> new RangeClause(columnStats));
+            if (bound.isUpperBound()) {
+                clause.upperBoundSelectivity = clause.upperBoundSelectivity < 0
+                    ? selectivity
+                    : Math.min(clause.upperBoundSelectivity, selectivity);
+            } else {
+                clause.lowerBoundSelectivity = clause.lowerBoundSelectivity < 0
+                    ? selectivity
+                    : Math.min(clause.lowerBoundSelectivity, selectivity);
+            }
+            return true;
+        }
+
+        double selectivity() {
+            if (lowerBoundSelectivity < 0) {
+                return upperBoundSelectivity;
+            }
+            if (upperBoundSelectivity < 0) {
+                return lowerBoundSelectivity;
+            }
+            // Both bounds exclude the null values, so they have to be added back
+            double selectivity = lowerBoundSelectivity + upperBoundSelectivity - 1.0 + columnStats.nullFraction();
+            return clamp(Math.max(selectivity, 1.0 / Math.max(1.0, columnStats.approxDistinct())));
+        }
+    }
+
+    private static boolean isRangeOperator(String name) {
+        switch (name) {
+            case LtOperator.NAME:
+            case LteOperator.NAME:
+            case GtOperator.NAME:
+            case GteOperator.NAME:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static double rangeSelectivity(String operator,
+                                           Symbol leftArg,
+                                           Symbol rightArg,
+                                           Stats stats,
+                                           @Nullable Row params) {
+        RangeBound bound = RangeBound.of(operator, leftArg, rightArg, params);
+        if (bound == null) {
+            return MAGIC_SEL;
+        }
+        if (bound.value == null) {
+            // x < null -> is always false
+            return 0.0;
+        }
+        var columnStats = stats.statsByColumn().get(bound.column);
+        if (columnStats == null) {
+            return MAGIC_SEL;
+        }
+        return rangeSelectivity(bound, columnStats);
+    }
+
+    /**
+     * Estimates the selectivity of a range bound using the most common values and the histogram.
+     * Similar to `scalarineqsel` in PostgreSQL's `selfuncs.c`
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static double rangeSelectivity(RangeBound bound, ColumnStats columnStats) {
+        DataType type = columnStats.type();
+        Object value;
+        try {
+            value = type.implicitCast(bound.value);
+        } catch (ClassCastException | IllegalArgumentException e) {
+            return MAGIC_SEL;
+        }
+        boolean upperBound = bound.isUpperBound();
+        boolean orEqual = bound.operator.equals(LteOperator.NAME) || bound.operator.equals(GteOperator.NAME);
+
+        MostCommonValues mcv = columnStats.mostCommonValues();
+        Object[] mcvValues = mcv.values();
+        double[] frequencies = mcv.frequencies();
+        double mcvSelectivity = 0.0;
+        double sumCommon = 0.0;
+        for (int i = 0; i < mcvValues.length; i++) {
+            int cmp = type.compare(mcvValues[i], value);
+            if ((upperBound ? cmp < 0 : cmp > 0) || (orEqual && cmp == 0)) {
+                mcvSelectivity += frequencies[i];
+            }
+            sumCommon += frequencies[i];
+        }
+
+        List histogram = columnStats.histogram();
+        double histogramSelectivity;
+        if (histogram.size() < 2) {
+            histogramSelectivity = MAGIC_SEL;
+        } else {
+            double fractionBelow = histogramFraction(type, histogram, value);
+            histogramSelectivity = upperBound ? fractionBelow : 1.0 - fractionBelow;
+        }
+        double histogramShare = Math.max(0.0, 1.0 - columnStats.nullFraction() - sumCommon);
+        return clamp(mcvSelectivity + histogramSelectivity * histogramShare);
+    }
+
+    /**
+     * @param histogram equi-depth histogram, the entries are the bounds of the bins
+     * @return the fraction of the histogram population which is less than {@code value}.
+     *         Numeric values are interpolated within a bin, otherwise the middle of the bin is assumed.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static double histogramFraction(DataType type, List histogram, Object value) {
+        int lastIdx = histogram.size() - 1;
+        if (type.compare(value, histogram.get(0)) <= 0) {
+            return 0.0;
+        }
+        if (type.compare(value, histogram.get(lastIdx)) >= 0) {
+            return 1.0;
+        }
+        int low = 0;
+        int high = lastIdx;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (type.compare(histogram.get(mid), value) <= 0) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        Object lowerBound = histogram.get(low);
+        Object upperBound = histogram.get(high);
+        double binFraction = 0.5;
+        if (value instanceof Number && lowerBound instanceof Number && upperBound instanceof Number) {
+            double lower = ((Number) lowerBound).doubleValue();
+            double upper = ((Number) upperBound).doubleValue();
+            if (upper > lower) {
+                binFraction = (((Number) value).doubleValue() - lower) / (upper - lower);
+            }
+        }
+        return (low + binFraction) / lastIdx;
+    }
+
+    /**
+     * Estimates the selectivity of `x LIKE pattern`.
+     * Most common values are matched against the pattern directly.
+     * For the remaining values a fixed prefix is estimated as range using the histogram,
+     * other patterns are matched against the histogram entries.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static double likeSelectivity(Symbol leftArg,
+                                          Symbol rightArg,
+                                          boolean ignoreCase,
+                                          Stats stats,
+                                          @Nullable Row params) {
+        ColumnIdent column = getColumn(leftArg);
+        if (column == null || !isValue(rightArg, params)) {
+            return MAGIC_SEL;
+        }
+        ColumnStats columnStats = stats.statsByColumn().get(column);
+        if (columnStats == null || !(columnStats.type() instanceof StringType)) {
+            return MAGIC_SEL;
+        }
+        Object patternValue = value(rightArg, params);
+        if (patternValue == null) {
+            return 0.0;
+        }
+        String pattern = patternValue.toString();
+        Pattern regex = LikeOperators.makePattern(
+            pattern,
+            ignoreCase ? LikeOperators.CASE_INSENSITIVE : LikeOperators.CASE_SENSITIVE
+        );
+
+        MostCommonValues mcv = columnStats.mostCommonValues();
+        Object[] mcvValues = mcv.values();
+        double[] frequencies = mcv.frequencies();
+        double mcvSelectivity = 0.0;
+        double sumCommon = 0.0;
+        for (int i = 0; i < mcvValues.length; i++) {
+            if (regex.matcher((String) mcvValues[i]).matches()) {
+                mcvSelectivity += frequencies[i];
+            }
+            sumCommon += frequencies[i];
+        }
+
+        List<String> histogram = columnStats.histogram();
+        String prefix = ignoreCase ? "" : fixedPrefix(pattern);
+        double histogramSelectivity;
+        if (histogram.size() >= 2 && !prefix.isEmpty()) {
+            DataType type = columnStats.type();
+            double fractionBelowPrefix = histogramFraction(type, histogram, prefix);
+            String prefixEnd = incrementLastChar(prefix);
+            double fractionBelowPrefixEnd = prefixEnd == null ? 1.0 : histogramFraction(type, histogram, prefixEnd);
+            histogramSelectivity = fractionBelowPrefixEnd - fractionBelowPrefix;
+        } else if (histogram.size() >= MIN_HISTOGRAM_SIZE_FOR_PATTERN_MATCH) {
+            int matches = 0;
+            for (String value : histogram) {
+                if (regex.matcher(value).matches()) {
+                    matches++;
+                }
+            }
+            histogramSelectivity = (double) matches / histogram.size();
+        } else {
+            histogramSelectivity = MAGIC_SEL;
+        }
+        // A pattern matching no histogram entry can still match rows in between
+        histogramSelectivity = Math.max(histogramSelectivity, 1.0 / Math.max(1.0, columnStats.approxDistinct()));
+        double histogramShare = Math.max(0.0, 1.0 - columnStats.nullFraction() - sumCommon);
+        return clamp(mcvSelectivity + histogramSelectivity * histogramShare);
+    }
+
+    /**
+     * @return the part of the pattern before the first wildcard, with escape characters removed.
+     */
+    private static String fixedPrefix(String pattern) {
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == LikeOperators.DEFAULT_ESCAPE && i + 1 < pattern.length()) {
+                i++;
+                prefix.append(pattern.charAt(i));
+            } else if (c == '%' || c == '_') {
+                break;
+            } else {
+                prefix.append(c);
+            }
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * @return the smallest string greater than all strings starting with {@code prefix}, or null if there is none.
+     */
+    @Nullable
+    private static String incrementLastChar(String prefix) {
+        for (int i = prefix.length() - 1; i >= 0; i--) {
+            char c = prefix.charAt(i);
+            if (c != Character.MAX_VALUE) {
+                return prefix.substring(0, i) + (char) (c + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * `x = ANY([..])` is estimated as the sum of the equality selectivity of each value.
+     * `x < ANY([..])` and `x > ANY([..])` are estimated as range on the largest or smallest value.
+     */
+    private static double anySelectivity(Function function, Stats stats, @Nullable Row params) {
+        List<Symbol> arguments = function.arguments();
+        ColumnIdent column = getColumn(arguments.get(0));
+        Symbol arraySymbol = arguments.get(1);
+        if (column == null || !isValue(arraySymbol, params)) {
+            return MAGIC_SEL;
+        }
+        ColumnStats<?> columnStats = stats.statsByColumn().get(column);
+        if (columnStats == null) {
+            return MAGIC_SEL;
+        }
+        Object arrayValue = value(arraySymbol, params);
+        if (arrayValue == null) {
+            return 0.0;
+        }
+        if (!(arrayValue instanceof List)) {
+            return MAGIC_SEL;
+        }
+        List<?> values = (List<?>) arrayValue;
+        String name = function.name();
+        if (name.equals(AnyOperators.Type.EQ.opName())) {
+            double selectivity = 0.0;
+            for (Object value : new HashSet<>(values)) {
+                selectivity += eqSelectivityFromValueAndStats(value, columnStats);
+            }
+            return clamp(selectivity);
+        }
+        String rangeOperator = ANY_RANGE_OPERATORS.get(name);
+        if (rangeOperator == null) {
+            return MAGIC_SEL;
+        }
+        return anyRangeSelectivity(column, rangeOperator, values, columnStats);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static double anyRangeSelectivity(ColumnIdent column,
+                                              String rangeOperator,
+                                              List<?> values,
+                                              ColumnStats columnStats) {
+        DataType type = columnStats.type();
+        boolean upperBound = rangeOperator.equals(LtOperator.NAME) || rangeOperator.equals(LteOperator.NAME);
+        Object bound = null;
+        try {
+            for (Object value : values) {
+                if (value == null) {
+                    continue;
+                }
+                Object castValue = type.implicitCast(value);
+                if (bound == null) {
+                    bound = castValue;
+                } else {
+                    int cmp = type.compare(castValue, bound);
+                    if (upperBound ? cmp > 0 : cmp < 0) {
+                        bound = castValue;
+                    }
+                }
+            }
+        } catch (ClassCastException | IllegalArgumentException e) {
+            return MAGIC_SEL;
+        }
+        if (bound == null) {
+            return 0.0;
+        }
+        return rangeSelectivity(new RangeBound(column, rangeOperator, bound), columnStats);
+    }
+
+    private static double clamp(double selectivity) {
+        return Math.min(1.0, Math.max(0.0, selectivity));
+    }
+
+    private static boolean isValue(Symbol symbol, @Nullable Row params) {
+        return symbol instanceof Literal || (symbol instanceof ParameterSymbol && params != null);
+    }
+
+    @Nullable
+    private static Object value(Symbol symbol, @Nullable Row params) {
+        if (symbol instanceof ParameterSymbol) {
+            assert params != null : "params must not be null if value is a ParameterSymbol";
+            return params.get(((ParameterSymbol) symbol).index());
+        }
+        return ((Literal<?>) symbol).value();
+    }
+
     private static double isNullSelectivity(Symbol arg, Stats stats) {
         ColumnIdent column = getColumn(arg);
         if (column == null) {
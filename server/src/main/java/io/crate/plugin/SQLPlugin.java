@@ -62,12 +62,23 @@ import io.crate.auth.AuthenticationModule;
 import io.crate.cluster.gracefulstop.DecommissionAllocationDecider;
 import io.crate.cluster.gracefulstop.DecommissioningService;
 import io.crate.execution.TransportExecutorModule;
+import io.crate.execution.engine.aggregation.GroupBySpiller;
+import io.crate.execution.engine.cache.QueryResultCache;
+import io.crate.execution.engine.cache.ShardRequestCache;
 import io.crate.execution.engine.collect.CollectOperationModule;
+import io.crate.execution.engine.collect.LuceneShardCollectorProvider;
 import io.crate.execution.engine.collect.files.FileCollectModule;
 import io.crate.execution.engine.collect.stats.JobsLogService;
+import io.crate.execution.engine.distribution.DistributingConsumerFactory;
+import io.crate.execution.engine.distribution.PageCompression;
+import io.crate.execution.jobs.QueryAdmissionController;
+import io.crate.execution.engine.sort.ExternalSorter;
+import io.crate.execution.engine.spill.SpillFile;
+import io.crate.execution.engine.window.WindowProjector;
 import io.crate.execution.jobs.JobModule;
 import io.crate.execution.jobs.TasksService;
 import io.crate.execution.jobs.transport.NodeDisconnectJobMonitorService;
+import io.crate.expression.compile.ExpressionCompiler;
 import io.crate.expression.operator.OperatorModule;
 import io.crate.expression.predicate.PredicateModule;
 import io.crate.expression.reference.sys.check.SysChecksModule;
@@ -90,9 +101,11 @@ import io.crate.metadata.upgrade.MetadataIndexUpgrader;
 import io.crate.metadata.view.ViewsMetadata;
 import io.crate.module.CrateCommonModule;
 import io.crate.monitor.MonitorModule;
+import io.crate.planner.PlanCache;
 import io.crate.protocols.postgres.PostgresNetty;
 import io.crate.protocols.ssl.SslSettings;
 import io.crate.protocols.ssl.SslContextProviderService;
+import io.crate.statistics.ColumnSketcher;
 import io.crate.user.UserManagementModule;
 import io.crate.user.metadata.UsersMetadata;
 import io.crate.user.metadata.UsersPrivilegesMetadata;
@@ -113,6 +126,24 @@ public class SQLPlugin extends Plugin implements ActionPlugin, MapperPlugin, Clu
         List<Setting<?>> settings = new ArrayList<>();
         settings.add(AnalyzerSettings.CUSTOM_ANALYSIS_SETTING_GROUP);
         settings.add(SQLOperations.NODE_READ_ONLY_SETTING);
+        settings.add(SpillFile.SPILL_PATH_SETTING);
+        settings.add(ExternalSorter.SPILL_THRESHOLD_SETTING);
+        settings.add(GroupBySpiller.SPILL_THRESHOLD_SETTING);
+        settings.add(WindowProjector.SPILL_THRESHOLD_SETTING);
+        settings.add(PlanCache.SIZE_SETTING);
+        settings.add(QueryResultCache.SIZE_SETTING);
+        settings.add(ShardRequestCache.SIZE_SETTING);
+        settings.add(ColumnSketcher.CACHE_SIZE_SETTING);
+        settings.add(DistributingConsumerFactory.COLUMNAR_PAGES_SETTING);
+        settings.add(PageCompression.THRESHOLD_SETTING);
+        settings.add(ExpressionCompiler.ENABLED_SETTING);
+        settings.add(LuceneShardCollectorProvider.MIN_DOCS_PER_SLICE_SETTING);
+        settings.add(QueryAdmissionController.ENABLED_SETTING);
+        settings.add(QueryAdmissionController.INITIAL_CONCURRENCY_SETTING);
+        settings.add(QueryAdmissionController.MAX_CONCURRENCY_SETTING);
+        settings.add(QueryAdmissionController.QUEUE_SIZE_SETTING);
+        settings.add(QueryAdmissionController.QUEUE_TIMEOUT_SETTING);
+        settings.add(QueryAdmissionController.MEMORY_THRESHOLD_SETTING);
 
         // Postgres settings are node settings
         settings.add(PostgresNetty.PSQL_ENABLED_SETTING);
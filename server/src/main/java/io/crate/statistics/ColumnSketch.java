@@ -0,0 +1,180 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.statistics;
+
+import io.crate.Streamer;
+import io.crate.breaker.SizeEstimator;
+import io.crate.breaker.SizeEstimatorFactory;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import io.crate.types.FixedWidthType;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mergeable sketches over all values of a column, used to create {@link ColumnStats} without sampling.
+ *
+ * <ul>
+ *     <li>{@link HyperLogLog} for the number of distinct values</li>
+ *     <li>{@link FrequentItems} for the most common values</li>
+ *     <li>{@link QuantileSketch} for the histogram</li>
+ * </ul>
+ */
+final class ColumnSketch<T> implements Writeable {
+
+    private final DataType<T> type;
+    private final HyperLogLog distinctValues;
+    private final FrequentItems<T> frequentItems;
+    private final QuantileSketch<T> quantiles;
+    private final SizeEstimator<T> sizeEstimator;
+    private long numValues = 0;
+    private long numNulls = 0;
+    private long totalSizeInBytes = 0;
+
+    ColumnSketch(DataType<T> type) {
+        this.type = type;
+        this.distinctValues = new HyperLogLog();
+        this.frequentItems = new FrequentItems<>(2 * MostCommonValues.MCV_TARGET);
+        this.quantiles = new QuantileSketch<>(QuantileSketch.DEFAULT_K, type::compare);
+        this.sizeEstimator = SizeEstimatorFactory.create(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    ColumnSketch(StreamInput in) throws IOException {
+        this.type = (DataType<T>) DataTypes.fromStream(in);
+        Streamer<T> streamer = type.streamer();
+        this.numValues = in.readVLong();
+        this.numNulls = in.readVLong();
+        this.totalSizeInBytes = in.readVLong();
+        this.distinctValues = new HyperLogLog(in);
+        this.frequentItems = new FrequentItems<>(streamer, in);
+        this.quantiles = new QuantileSketch<>(type::compare, streamer, in);
+        this.sizeEstimator = SizeEstimatorFactory.create(type);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        DataTypes.toStream(type, out);
+        Streamer<T> streamer = type.streamer();
+        out.writeVLong(numValues);
+        out.writeVLong(numNulls);
+        out.writeVLong(totalSizeInBytes);
+        distinctValues.writeTo(out);
+        frequentItems.writeTo(streamer, out);
+        quantiles.writeTo(streamer, out);
+    }
+
+    /**
+     * @param value a non-null value
+     * @param hash a well distributed 64 bit hash of the value
+     * @param count the number of occurrences of the value
+     */
+    void add(T value, long hash, long count) {
+        numValues += count;
+        if (!(type instanceof FixedWidthType)) {
+            totalSizeInBytes += sizeEstimator.estimateSize(value) * count;
+        }
+        distinctValues.add(hash);
+        frequentItems.add(value, count);
+        quantiles.add(value, count);
+    }
+
+    void addNulls(long count) {
+        numNulls += count;
+    }
+
+    void merge(ColumnSketch<T> other) {
+        numValues += other.numValues;
+        numNulls += other.numNulls;
+        totalSizeInBytes += other.totalSizeInBytes;
+        distinctValues.merge(other.distinctValues);
+        frequentItems.merge(other.frequentItems);
+        quantiles.merge(other.quantiles);
+    }
+
+    DataType<T> type() {
+        return type;
+    }
+
+    /**
+     * @return the estimated memory used by the sketch
+     */
+    long ramBytesUsed() {
+        return distinctValues.ramBytesUsed()
+            + frequentItems.ramBytesUsed(sizeEstimator)
+            + quantiles.ramBytesUsed(sizeEstimator);
+    }
+
+    ColumnStats<T> toColumnStats() {
+        double averageSizeInBytes = type instanceof FixedWidthType
+            ? ((FixedWidthType) type).fixedSize()
+            : (numValues == 0 ? 0.0 : (double) totalSizeInBytes / numValues);
+        if (numValues == 0) {
+            double nullFraction = numNulls > 0 ? 1.0 : 0.0;
+            return new ColumnStats<>(nullFraction, averageSizeInBytes, 1, type, MostCommonValues.EMPTY, List.of());
+        }
+        double nullFraction = (double) numNulls / (numValues + numNulls);
+        long maxError = frequentItems.maxError();
+        boolean allValuesTracked = maxError == 0;
+        double approxDistinct = allValuesTracked
+            ? frequentItems.size()
+            : Math.max(1.0, Math.min(numValues, Math.floor(distinctValues.cardinality() + 0.5)));
+
+        // Like in PostgreSQL, keep all values if the column can be completely represented by the most common values.
+        // Otherwise keep only the values which are notably more common than the average value.
+        List<Map.Entry<T, Long>> candidates = frequentItems.top(MostCommonValues.MCV_TARGET);
+        boolean keepAll = allValuesTracked && candidates.size() == frequentItems.size();
+        double minCount = 1.25 * numValues / approxDistinct;
+        int numMcv = 0;
+        while (numMcv < candidates.size()) {
+            long count = candidates.get(numMcv).getValue();
+            if (!keepAll && (count <= maxError || count <= minCount)) {
+                break;
+            }
+            numMcv++;
+        }
+        Object[] values = new Object[numMcv];
+        double[] frequencies = new double[numMcv];
+        HashSet<T> mostCommonValues = new HashSet<>(numMcv);
+        for (int i = 0; i < numMcv; i++) {
+            Map.Entry<T, Long> candidate = candidates.get(i);
+            values[i] = candidate.getKey();
+            frequencies[i] = (double) candidate.getValue() / numValues;
+            mostCommonValues.add(candidate.getKey());
+        }
+        return new ColumnStats<>(
+            nullFraction,
+            averageSizeInBytes,
+            approxDistinct,
+            type,
+            numMcv == 0 ? MostCommonValues.EMPTY : new MostCommonValues(values, frequencies),
+            quantiles.quantiles(MostCommonValues.MCV_TARGET, mostCommonValues::contains)
+        );
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.statistics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+import javax.annotation.Nullable;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.shard.IllegalIndexShardStateException;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+
+import com.carrotsearch.hppc.BitMixer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+
+import io.crate.common.annotations.VisibleForTesting;
+import io.crate.exceptions.RelationUnknown;
+import io.crate.metadata.Reference;
+import io.crate.metadata.RelationName;
+import io.crate.metadata.Schemas;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.metadata.table.TableInfo;
+import io.crate.types.BooleanType;
+import io.crate.types.ByteType;
+import io.crate.types.DataType;
+import io.crate.types.DoubleType;
+import io.crate.types.FloatType;
+import io.crate.types.IntegerType;
+import io.crate.types.LongType;
+import io.crate.types.ShortType;
+import io.crate.types.StringType;
+import io.crate.types.TimestampType;
+
+/**
+ * Creates {@link ColumnSketch}es from the doc values of all values of a table.
+ * <p>
+ * Segments are immutable, so the sketches are created once per column and segment reader and cached until the
+ * reader is closed. Gathering statistics for a table only reads the segments which have been created or which had
+ * documents deleted since the last run, e.g. by a refresh or by merging segments, and merges the cached sketches of
+ * all other segments.
+ * <p>
+ * The cache is limited to {@link #CACHE_SIZE_SETTING}, the least recently used sketches are evicted first.
+ * Cached sketches are accounted for in the query circuit breaker. If the breaker trips, the sketch is used without
+ * caching it.
+ * <p>
+ * Deleted documents are excluded from the sketches.
+ */
+@Singleton
+public final class ColumnSketcher {
+
+    public static final Setting<ByteSizeValue> CACHE_SIZE_SETTING = Setting.memorySizeSetting(
+        "node.sql.statistics.sketch_cache.size",
+        "1%",
+        Setting.Property.NodeScope
+    );
+
+    private static final String BREAKER_LABEL = "column-sketch-cache";
+
+    private final ClusterService clusterService;
+    private final Schemas schemas;
+    private final IndicesService indicesService;
+    private final CircuitBreaker breaker;
+    @Nullable
+    private final Cache<SegmentColumn, Entry> cache;
+    private final Set<IndexReader.CacheKey> cachedSegments = ConcurrentHashMap.newKeySet();
+    private final LongAdder sizeInBytes = new LongAdder();
+
+    @Inject
+    public ColumnSketcher(Settings settings,
+                          ClusterService clusterService,
+                          Schemas schemas,
+                          IndicesService indicesService,
+                          CircuitBreakerService breakerService) {
+        this(
+            CACHE_SIZE_SETTING.get(settings).getBytes(),
+            clusterService,
+            schemas,
+            indicesService,
+            breakerService.getBreaker(HierarchyCircuitBreakerService.QUERY)
+        );
+    }
+
+    @VisibleForTesting
+    ColumnSketcher(long maxCacheSizeInBytes,
+                   ClusterService clusterService,
+                   Schemas schemas,
+                   IndicesService indicesService,
+                   CircuitBreaker breaker) {
+        this.clusterService = clusterService;
+        this.schemas = schemas;
+        this.indicesService = indicesService;
+        this.breaker = breaker;
+        if (maxCacheSizeInBytes > 0) {
+            this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxCacheSizeInBytes)
+                .weigher((SegmentColumn key, Entry entry) -> (int) Math.min(entry.sizeInBytes, Integer.MAX_VALUE))
+                .removalListener(this::onRemoval)
+                .build();
+        } else {
+            this.cache = null;
+        }
+    }
+
+    /**
+     * @return true if statistics of the column can be created from sketches.
+     *         This requires the values to be available in the doc values and not to be analyzed.
+     */
+    public static boolean supports(DocTableInfo table, Reference column) {
+        return !column.isColumnStoreDisabled()
+            && column.indexType() != Reference.IndexType.FULLTEXT
+            && !table.partitionedBy().contains(column.column())
+            && (column.valueType().id() == StringType.ID || decoder(column.valueType()) != null);
+    }
+
+    public Sketches getSketches(RelationName relationName, List<Reference> columns) {
+        TableInfo table;
+        try {
+            table = schemas.getTableInfo(relationName);
+        } catch (RelationUnknown e) {
+            return Sketches.EMPTY;
+        }
+        if (!(table instanceof DocTableInfo)) {
+            return Sketches.EMPTY;
+        }
+        List<ColumnSketch<?>> sketches = new ArrayList<>(columns.size());
+        for (Reference column : columns) {
+            sketches.add(new ColumnSketch<>(column.valueType()));
+        }
+        Metadata metadata = clusterService.state().metadata();
+        long totalNumDocs = 0;
+        long totalSizeInBytes = 0;
+        for (String index : ((DocTableInfo) table).concreteOpenIndices()) {
+            var indexMetadata = metadata.index(index);
+            if (indexMetadata == null) {
+                continue;
+            }
+            var indexService = indicesService.indexService(indexMetadata.getIndex());
+            if (indexService == null) {
+                continue;
+            }
+            for (IndexShard indexShard : indexService) {
+                if (!indexShard.routingEntry().primary()) {
+                    continue;
+                }
+                try (Engine.Searcher searcher = indexShard.acquireSearcher("update-table-statistics")) {
+                    totalNumDocs += searcher.getIndexReader().numDocs();
+                    totalSizeInBytes += indexShard.storeStats().getSizeInBytes();
+                    for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                        addSegmentSketches(leaf.reader(), columns, sketches);
+                    }
+                } catch (IllegalIndexShardStateException | AlreadyClosedException ignored) {
+                }
+            }
+        }
+        return new Sketches(sketches, totalNumDocs, totalSizeInBytes);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void addSegmentSketches(LeafReader reader, List<Reference> columns, List<ColumnSketch<?>> sketches) {
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnSketch segmentSketch = segmentSketch(reader, columns.get(i));
+            ((ColumnSketch) sketches.get(i)).merge(segmentSketch);
+        }
+    }
+
+    @VisibleForTesting
+    ColumnSketch<?> segmentSketch(LeafReader reader, Reference column) {
+        String field = column.column().fqn();
+        // The reader cache key changes if documents of the segment are deleted, other than the core cache key
+        IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+        if (cache == null || cacheHelper == null) {
+            return createSketch(reader, field, column.valueType());
+        }
+        IndexReader.CacheKey segment = cacheHelper.getKey();
+        SegmentColumn key = new SegmentColumn(segment, field);
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null) {
+            return entry.sketch;
+        }
+        ColumnSketch<?> sketch = createSketch(reader, field, column.valueType());
+        long bytes = sketch.ramBytesUsed();
+        try {
+            breaker.addEstimateBytesAndMaybeBreak(bytes, BREAKER_LABEL);
+        } catch (CircuitBreakingException e) {
+            return sketch;
+        }
+        if (cachedSegments.add(segment)) {
+            cacheHelper.addClosedListener(this::invalidateSegment);
+        }
+        sizeInBytes.add(bytes);
+        cache.put(key, new Entry(sketch, bytes));
+        return sketch;
+    }
+
+    private void invalidateSegment(IndexReader.CacheKey segment) {
+        cachedSegments.remove(segment);
+        if (cache != null) {
+            cache.asMap().keySet().removeIf(key -> key.segment == segment);
+        }
+    }
+
+    private void onRemoval(RemovalNotification<SegmentColumn, Entry> notification) {
+        long bytes = notification.getValue().sizeInBytes;
+        sizeInBytes.add(-bytes);
+        breaker.addWithoutBreaking(-bytes);
+    }
+
+    /**
+     * @return the estimated memory used by the cached sketches
+     */
+    @VisibleForTesting
+    long cacheSizeInBytes() {
+        return sizeInBytes.sum();
+    }
+
+    @VisibleForTesting
+    static <T> ColumnSketch<T> createSketch(LeafReader reader, String field, DataType<T> type) {
+        ColumnSketch<T> sketch = new ColumnSketch<>(type);
+        try {
+            int numDocsWithValue = type.id() == StringType.ID
+                ? addOrdinals(reader, field, sketch)
+                : addNumbers(reader, field, sketch);
+            sketch.addNulls(reader.numDocs() - numDocsWithValue);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sketch;
+    }
+
+    /**
+     * Counts the occurrences of each ordinal, so every distinct value is only looked up and added once
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> int addOrdinals(LeafReader reader, String field, ColumnSketch<T> sketch) throws IOException {
+        SortedSetDocValues values = DocValues.getSortedSet(reader, field);
+        Bits liveDocs = reader.getLiveDocs();
+        int[] counts = new int[(int) values.getValueCount()];
+        int numDocsWithValue = 0;
+        for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+            if (liveDocs != null && !liveDocs.get(doc)) {
+                continue;
+            }
+            numDocsWithValue++;
+            counts[(int) values.nextOrd()]++;
+        }
+        for (int ord = 0; ord < counts.length; ord++) {
+            if (counts[ord] > 0) {
+                BytesRef term = values.lookupOrd(ord);
+                long hash = MurmurHash3.hash64(term.bytes, term.offset, term.length);
+                sketch.add((T) term.utf8ToString(), hash, counts[ord]);
+            }
+        }
+        return numDocsWithValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> int addNumbers(LeafReader reader, String field, ColumnSketch<T> sketch) throws IOException {
+        LongFunction<Object> decoder = decoder(sketch.type());
+        assert decoder != null : "Column type must be supported, see ColumnSketcher.supports";
+        SortedNumericDocValues values = DocValues.getSortedNumeric(reader, field);
+        Bits liveDocs = reader.getLiveDocs();
+        int numDocsWithValue = 0;
+        for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+            if (liveDocs != null && !liveDocs.get(doc)) {
+                continue;
+            }
+            numDocsWithValue++;
+            long value = values.nextValue();
+            sketch.add((T) decoder.apply(value), BitMixer.mix64(value), 1);
+        }
+        return numDocsWithValue;
+    }
+
+    /**
+     * @return function to convert the numeric doc value representation to the value; null if the type isn't supported
+     */
+    @Nullable
+    private static LongFunction<Object> decoder(DataType<?> type) {
+        switch (type.id()) {
+            case BooleanType.ID:
+                return value -> value == 1;
+            case ByteType.ID:
+                return value -> (byte) value;
+            case ShortType.ID:
+                return value -> (short) value;
+            case IntegerType.ID:
+                return value -> (int) value;
+            case LongType.ID:
+            case TimestampType.ID_WITH_TZ:
+            case TimestampType.ID_WITHOUT_TZ:
+                return value -> value;
+            case FloatType.ID:
+                return value -> NumericUtils.sortableIntToFloat((int) value);
+            case DoubleType.ID:
+                return NumericUtils::sortableLongToDouble;
+            default:
+                return null;
+        }
+    }
+
+    private static final class SegmentColumn {
+
+        private final IndexReader.CacheKey segment;
+        private final String field;
+
+        private SegmentColumn(IndexReader.CacheKey segment, String field) {
+            this.segment = segment;
+            this.field = field;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            SegmentColumn that = (SegmentColumn) o;
+            return segment == that.segment && field.equals(that.field);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * segment.hashCode() + field.hashCode();
+        }
+    }
+
+    private static final class Entry {
+
+        private final ColumnSketch<?> sketch;
+        private final long sizeInBytes;
+
+        private Entry(ColumnSketch<?> sketch, long sizeInBytes) {
+            this.sketch = sketch;
+            this.sizeInBytes = sizeInBytes;
+        }
+    }
+}
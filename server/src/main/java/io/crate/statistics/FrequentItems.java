@@ -0,0 +1,143 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.statistics;
+
+import io.crate.Streamer;
+import io.crate.breaker.SizeEstimator;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mergeable summary of the most frequent values using the Misra-Gries algorithm, see
+ * "Mergeable Summaries" (Agarwal et al.)
+ * <p>
+ * Up to {@code capacity} counters are kept. If more values are tracked, all counters are decremented
+ * by the count of the {@code capacity + 1}th largest counter and counters which drop to zero are removed.
+ * A count is therefore at most {@link #maxError()} smaller than the real count.
+ * To amortize the purging, up to {@code 2 * capacity} counters are tracked in between.
+ */
+final class FrequentItems<T> {
+
+    /**
+     * Size of a counter without its value: the map node, its slot in the table and the boxed count
+     */
+    private static final long COUNTER_BYTES = 2L * RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+                                              + 4L * RamUsageEstimator.NUM_BYTES_OBJECT_REF
+                                              + Integer.BYTES
+                                              + Long.BYTES;
+
+    private final int capacity;
+    private final HashMap<T, Long> counters;
+    private long maxError = 0;
+
+    FrequentItems(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>();
+    }
+
+    FrequentItems(Streamer<T> streamer, StreamInput in) throws IOException {
+        this(in.readVInt());
+        this.maxError = in.readVLong();
+        int numCounters = in.readVInt();
+        for (int i = 0; i < numCounters; i++) {
+            counters.put(streamer.readValueFrom(in), in.readVLong());
+        }
+    }
+
+    void writeTo(Streamer<T> streamer, StreamOutput out) throws IOException {
+        out.writeVInt(capacity);
+        out.writeVLong(maxError);
+        out.writeVInt(counters.size());
+        for (Map.Entry<T, Long> entry : counters.entrySet()) {
+            streamer.writeValueTo(out, entry.getKey());
+            out.writeVLong(entry.getValue());
+        }
+    }
+
+    void add(T value, long count) {
+        counters.merge(value, count, Long::sum);
+        if (counters.size() > 2 * capacity) {
+            purge();
+        }
+    }
+
+    void merge(FrequentItems<T> other) {
+        for (Map.Entry<T, Long> entry : other.counters.entrySet()) {
+            counters.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+        maxError += other.maxError;
+        if (counters.size() > capacity) {
+            purge();
+        }
+    }
+
+    /**
+     * Upper bound of the difference between the tracked count and the real count of a value.
+     * 0 if all values are tracked with their exact count.
+     */
+    long maxError() {
+        return maxError;
+    }
+
+    int size() {
+        return counters.size();
+    }
+
+    long ramBytesUsed(SizeEstimator<T> valueSizeEstimator) {
+        long bytes = 0;
+        for (T value : counters.keySet()) {
+            bytes += COUNTER_BYTES + valueSizeEstimator.estimateSize(value);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return up to {@code limit} tracked values, ordered by their count descending
+     */
+    List<Map.Entry<T, Long>> top(int limit) {
+        ArrayList<Map.Entry<T, Long>> entries = new ArrayList<>(counters.entrySet());
+        entries.sort(Map.Entry.<T, Long>comparingByValue().reversed());
+        return entries.size() > limit ? entries.subList(0, limit) : entries;
+    }
+
+    private void purge() {
+        long[] counts = new long[counters.size()];
+        int i = 0;
+        for (long count : counters.values()) {
+            counts[i++] = count;
+        }
+        Arrays.sort(counts);
+        long decrement = counts[counts.length - capacity - 1];
+        counters.replaceAll((value, count) -> count - decrement);
+        counters.values().removeIf(count -> count <= 0);
+        maxError += decrement;
+    }
+}
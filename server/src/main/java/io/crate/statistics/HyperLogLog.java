@@ -0,0 +1,103 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.statistics;
+
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+
+import java.io.IOException;
+
+/**
+ * Sketch to estimate the number of distinct values as described in
+ * "HyperLogLog: the analysis of a near-optimal cardinality estimation algorithm" (Flajolet et al.)
+ * <p>
+ * Sketches are merged by keeping the maximum of each register, so a merged sketch is the same as
+ * if all values had been added to a single sketch.
+ */
+final class HyperLogLog implements Writeable {
+
+    /**
+     * 4096 registers, which results in a standard error of about 1.6%
+     */
+    static final int PRECISION = 12;
+    private static final int NUM_REGISTERS = 1 << PRECISION;
+
+    private final byte[] registers;
+
+    HyperLogLog() {
+        this.registers = new byte[NUM_REGISTERS];
+    }
+
+    HyperLogLog(StreamInput in) throws IOException {
+        this.registers = in.readByteArray();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeByteArray(registers);
+    }
+
+    /**
+     * @param hash a well distributed 64 bit hash of the value
+     */
+    void add(long hash) {
+        int register = (int) (hash >>> (Long.SIZE - PRECISION));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << PRECISION), Long.SIZE - PRECISION) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    void merge(HyperLogLog other) {
+        for (int i = 0; i < NUM_REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    long ramBytesUsed() {
+        return RamUsageEstimator.sizeOf(registers);
+    }
+
+    double cardinality() {
+        double sum = 0.0;
+        int numZeroRegisters = 0;
+        for (byte rank : registers) {
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) {
+                numZeroRegisters++;
+            }
+        }
+        double m = NUM_REGISTERS;
+        double estimate = (0.7213 / (1.0 + 1.079 / m)) * m * m / sum;
+        if (estimate <= 2.5 * m && numZeroRegisters > 0) {
+            // Small range correction: linear counting is more accurate for low cardinalities
+            return m * Math.log(m / numZeroRegisters);
+        }
+        // No large range correction required as the hashes have 64 bits
+        return estimate;
+    }
+}
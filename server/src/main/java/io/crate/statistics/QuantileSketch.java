@@ -0,0 +1,204 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.statistics;
+
+import io.crate.Streamer;
+import io.crate.breaker.SizeEstimator;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.Randomness;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Mergeable sketch to approximate the quantiles of values of any type, as described in
+ * "Optimal Quantile Approximation in Streams" (Karnin, Lang, Liberty).
+ * <p>
+ * Values are kept in levels of compactors. An item on level {@code h} represents {@code 2^h} values.
+ * If a compactor is full, its items are sorted and every other item is promoted to the next level.
+ * The capacity of the levels decreases geometrically from the top level downwards, so the size of the
+ * sketch is bounded by about {@code 3 * k} items.
+ */
+final class QuantileSketch<T> {
+
+    static final int DEFAULT_K = 200;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+
+    private final int k;
+    private final Comparator<? super T> comparator;
+    private final ArrayList<List<T>> levels;
+    private final Random random;
+    private long numValues = 0;
+
+    QuantileSketch(int k, Comparator<? super T> comparator) {
+        this.k = k;
+        this.comparator = comparator;
+        this.levels = new ArrayList<>();
+        this.random = Randomness.get();
+    }
+
+    QuantileSketch(Comparator<? super T> comparator, Streamer<T> streamer, StreamInput in) throws IOException {
+        this(in.readVInt(), comparator);
+        this.numValues = in.readVLong();
+        int numLevels = in.readVInt();
+        for (int h = 0; h < numLevels; h++) {
+            int numItems = in.readVInt();
+            List<T> level = level(h);
+            for (int i = 0; i < numItems; i++) {
+                level.add(streamer.readValueFrom(in));
+            }
+        }
+    }
+
+    void writeTo(Streamer<T> streamer, StreamOutput out) throws IOException {
+        out.writeVInt(k);
+        out.writeVLong(numValues);
+        out.writeVInt(levels.size());
+        for (List<T> level : levels) {
+            out.writeVInt(level.size());
+            for (T item : level) {
+                streamer.writeValueTo(out, item);
+            }
+        }
+    }
+
+    /**
+     * Adds {@code count} occurrences of {@code value}.
+     * The count is split into its binary representation, every set bit {@code h} adds the value to level {@code h}.
+     */
+    void add(T value, long count) {
+        assert count > 0 : "count must be greater than 0";
+        numValues += count;
+        for (int h = 0; count != 0; h++, count >>>= 1) {
+            if ((count & 1) == 1) {
+                level(h).add(value);
+            }
+        }
+        compress();
+    }
+
+    void merge(QuantileSketch<T> other) {
+        numValues += other.numValues;
+        for (int h = 0; h < other.levels.size(); h++) {
+            level(h).addAll(other.levels.get(h));
+        }
+        compress();
+    }
+
+    long numValues() {
+        return numValues;
+    }
+
+    long ramBytesUsed(SizeEstimator<T> itemSizeEstimator) {
+        long bytes = 0;
+        for (List<T> level : levels) {
+            for (T item : level) {
+                bytes += RamUsageEstimator.NUM_BYTES_OBJECT_REF + itemSizeEstimator.estimateSize(item);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns {@code numBins} values which split the values, excluding the values matching {@code exclude},
+     * into buckets of about equal size. Empty if less than 2 values are available.
+     */
+    List<T> quantiles(int numBins, Predicate<? super T> exclude) {
+        ArrayList<T> items = new ArrayList<>();
+        ArrayList<Long> weights = new ArrayList<>();
+        for (int h = 0; h < levels.size(); h++) {
+            for (T item : levels.get(h)) {
+                if (!exclude.test(item)) {
+                    items.add(item);
+                    weights.add(1L << h);
+                }
+            }
+        }
+        Integer[] order = new Integer[items.size()];
+        long totalWeight = 0;
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            totalWeight += weights.get(i);
+        }
+        int numHist = (int) Math.min(numBins, totalWeight);
+        if (numHist < 2) {
+            return List.of();
+        }
+        Arrays.sort(order, (a, b) -> comparator.compare(items.get(a), items.get(b)));
+        ArrayList<T> quantiles = new ArrayList<>(numHist);
+        long cumulativeWeight = 0;
+        int pos = 0;
+        for (int i = 0; i < numHist; i++) {
+            long rank = (long) Math.floor((double) i * (totalWeight - 1) / (numHist - 1));
+            while (pos < order.length - 1 && cumulativeWeight + weights.get(order[pos]) <= rank) {
+                cumulativeWeight += weights.get(order[pos]);
+                pos++;
+            }
+            quantiles.add(items.get(order[pos]));
+        }
+        return quantiles;
+    }
+
+    private List<T> level(int h) {
+        while (levels.size() <= h) {
+            levels.add(new ArrayList<>());
+        }
+        return levels.get(h);
+    }
+
+    private int capacity(int h) {
+        int depth = levels.size() - h - 1;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private void compress() {
+        for (int h = 0; h < levels.size(); h++) {
+            if (levels.get(h).size() >= capacity(h)) {
+                compact(h);
+            }
+        }
+    }
+
+    private void compact(int h) {
+        List<T> items = levels.get(h);
+        items.sort(comparator);
+        int numPromoted = items.size() - items.size() % 2;
+        List<T> nextLevel = level(h + 1);
+        for (int i = random.nextBoolean() ? 1 : 0; i < numPromoted; i += 2) {
+            nextLevel.add(items.get(i));
+        }
+        // An odd item stays on this level to keep the total weight
+        T remaining = numPromoted < items.size() ? items.get(items.size() - 1) : null;
+        items.clear();
+        if (remaining != null) {
+            items.add(remaining);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.statistics;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+class Sketches implements Writeable {
+
+    static final Sketches EMPTY = new Sketches(List.of(), 0L, 0L);
+
+    final List<ColumnSketch<?>> columnSketches;
+    final long numTotalDocs;
+    final long numTotalSizeInBytes;
+
+    Sketches(List<ColumnSketch<?>> columnSketches, long numTotalDocs, long numTotalSizeInBytes) {
+        this.columnSketches = columnSketches;
+        this.numTotalDocs = numTotalDocs;
+        this.numTotalSizeInBytes = numTotalSizeInBytes;
+    }
+
+    Sketches(StreamInput in) throws IOException {
+        this.numTotalDocs = in.readLong();
+        this.numTotalSizeInBytes = in.readLong();
+        int numColumns = in.readVInt();
+        this.columnSketches = new ArrayList<>(numColumns);
+        for (int i = 0; i < numColumns; i++) {
+            columnSketches.add(new ColumnSketch<>(in));
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeLong(numTotalDocs);
+        out.writeLong(numTotalSizeInBytes);
+        out.writeVInt(columnSketches.size());
+        for (ColumnSketch<?> columnSketch : columnSketches) {
+            columnSketch.writeTo(out);
+        }
+    }
+
+    /**
+     * Merges the sketches of s2 into the sketches of s1
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Sketches merge(Sketches s1, Sketches s2) {
+        if (s1.columnSketches.isEmpty()) {
+            return new Sketches(s2.columnSketches, s1.numTotalDocs + s2.numTotalDocs, s1.numTotalSizeInBytes + s2.numTotalSizeInBytes);
+        }
+        if (!s2.columnSketches.isEmpty()) {
+            assert s1.columnSketches.size() == s2.columnSketches.size()
+                : "Sketches must be created for the same columns";
+            for (int i = 0; i < s1.columnSketches.size(); i++) {
+                ((ColumnSketch) s1.columnSketches.get(i)).merge(s2.columnSketches.get(i));
+            }
+        }
+        return new Sketches(s1.columnSketches, s1.numTotalDocs + s2.numTotalDocs, s1.numTotalSizeInBytes + s2.numTotalSizeInBytes);
+    }
+}
@@ -35,6 +35,7 @@ import io.crate.metadata.Reference;
 import io.crate.metadata.RelationName;
 import io.crate.metadata.Schemas;
 import io.crate.metadata.doc.DocSchemaInfo;
+import io.crate.metadata.doc.DocTableInfo;
 import io.crate.metadata.table.SchemaInfo;
 import io.crate.metadata.table.TableInfo;
 import io.crate.types.DataType;
@@ -65,6 +66,7 @@ public final class TransportAnalyzeAction {
 
     private static final String INVOKE_ANALYZE = "internal:crate:sql/analyze/invoke";
     private static final String FETCH_SAMPLES = "internal:crate:sql/analyze/fetch_samples";
+    private static final String FETCH_SKETCHES = "internal:crate:sql/analyze/fetch_sketches";
     private static final String RECEIVE_TABLE_STATS = "internal:crate:sql/analyze/receive_stats";
 
     /**
@@ -89,6 +91,7 @@ public final class TransportAnalyzeAction {
     @Inject
     public TransportAnalyzeAction(TransportService transportService,
                                   ReservoirSampler reservoirSampler,
+                                  ColumnSketcher columnSketcher,
                                   Schemas schemas,
                                   ClusterService clusterService,
                                   TableStats tableStats) {
@@ -114,6 +117,16 @@ public final class TransportAnalyzeAction {
                     reservoirSampler.getSamples(req.relation(), req.columns(), req.maxSamples())))
             )
         );
+        transportService.registerRequestHandler(
+            FETCH_SKETCHES,
+            ThreadPool.Names.SEARCH,
+            FetchSketchesRequest::new,
+            // Explicit generic is required for eclipse JDT, otherwise it won't compile
+            new NodeActionRequestHandler<FetchSketchesRequest, FetchSketchesResponse>(
+                req -> completedFuture(new FetchSketchesResponse(
+                    columnSketcher.getSketches(req.relation(), req.columns())))
+            )
+        );
         transportService.registerRequestHandler(
             RECEIVE_TABLE_STATS,
             ThreadPool.Names.SAME, // cheap operation
@@ -142,16 +155,50 @@ public final class TransportAnalyzeAction {
                     .map(x -> table.getReadReference(x.column()))
                     .collect(Collectors.toList());
 
-                futures.add(fetchSamples(
-                    table.ident(),
+                futures.add(fetchStats(
+                    (DocTableInfo) table,
                     primitiveColumns
-                ).thenApply(samples -> Map.entry(table.ident(), createTableStats(samples, primitiveColumns))));
+                ).thenApply(stats -> Map.entry(table.ident(), stats)));
             }
         }
         return CompletableFutures.allAsList(futures)
             .thenCompose(entries -> publishTableStats(Map.ofEntries(entries.toArray(new Map.Entry[0]))));
     }
 
+    /**
+     * Creates the statistics of the columns which are stored in doc values from sketches, see {@link ColumnSketcher}.
+     * Samples are only fetched for the remaining columns or if not all nodes support sketches.
+     */
+    private CompletableFuture<Stats> fetchStats(DocTableInfo table, List<Reference> primitiveColumns) {
+        boolean sketchesSupported = clusterService.state().nodes().getMinNodeVersion().onOrAfter(Version.V_4_7_0);
+        List<Reference> sketchColumns = new ArrayList<>();
+        List<Reference> sampleColumns = new ArrayList<>();
+        for (Reference column : primitiveColumns) {
+            if (sketchesSupported && ColumnSketcher.supports(table, column)) {
+                sketchColumns.add(column);
+            } else {
+                sampleColumns.add(column);
+            }
+        }
+        if (sketchColumns.isEmpty()) {
+            return fetchSamples(table.ident(), sampleColumns)
+                .thenApply(samples -> createTableStats(samples, sampleColumns));
+        }
+        CompletableFuture<Stats> sketchStats = fetchSketches(table.ident(), sketchColumns)
+            .thenApply(sketches -> createTableStats(sketches, sketchColumns));
+        if (sampleColumns.isEmpty()) {
+            return sketchStats;
+        }
+        return sketchStats.thenCombine(
+            fetchSamples(table.ident(), sampleColumns).thenApply(samples -> createTableStats(samples, sampleColumns)),
+            (stats, sampledStats) -> {
+                Map<ColumnIdent, ColumnStats> statsByColumn = new HashMap<>(sampledStats.statsByColumn());
+                statsByColumn.putAll(stats.statsByColumn());
+                return new Stats(stats.numDocs, stats.sizeInBytes, statsByColumn);
+            }
+        );
+    }
+
     private CompletableFuture<AcknowledgedResponse> publishTableStats(Map<RelationName, Stats> newTableStats) {
         List<DiscoveryNode> nodesOn41OrAfter = StreamSupport.stream(clusterService.state().nodes().spliterator(), false)
             .filter(x -> x.getVersion().onOrAfter(Version.V_4_1_0))
@@ -208,6 +255,40 @@ public final class TransportAnalyzeAction {
         return new Stats(samples.numTotalDocs, samples.numTotalSizeInBytes, statsByColumn);
     }
 
+    @VisibleForTesting
+    static Stats createTableStats(Sketches sketches, List<Reference> columns) {
+        Map<ColumnIdent, ColumnStats> statsByColumn = new HashMap<>(columns.size());
+        for (int i = 0; i < sketches.columnSketches.size(); i++) {
+            statsByColumn.put(columns.get(i).column(), sketches.columnSketches.get(i).toColumnStats());
+        }
+        return new Stats(sketches.numTotalDocs, sketches.numTotalSizeInBytes, statsByColumn);
+    }
+
+    private CompletableFuture<Sketches> fetchSketches(RelationName relationName, List<Reference> columns) {
+        FutureActionListener<FetchSketchesResponse, Sketches> listener = new FutureActionListener<>(FetchSketchesResponse::sketches);
+        List<DiscoveryNode> nodes = StreamSupport.stream(clusterService.state().nodes().spliterator(), false)
+            .collect(Collectors.toList());
+        MultiActionListener<FetchSketchesResponse, ?, FetchSketchesResponse> multiListener = new MultiActionListener<>(
+            nodes.size(),
+            Collectors.reducing(new FetchSketchesResponse(Sketches.EMPTY), FetchSketchesResponse::merge),
+            listener
+        );
+        ActionListenerResponseHandler<FetchSketchesResponse> responseHandler = new ActionListenerResponseHandler<>(
+            multiListener,
+            FetchSketchesResponse::new,
+            ThreadPool.Names.SAME
+        );
+        for (DiscoveryNode node : nodes) {
+            transportService.sendRequest(
+                node,
+                FETCH_SKETCHES,
+                new FetchSketchesRequest(relationName, columns),
+                responseHandler
+            );
+        }
+        return listener;
+    }
+
     private CompletableFuture<Samples> fetchSamples(RelationName relationName, List<Reference> columns) {
         FutureActionListener<FetchSampleResponse, Samples> listener = new FutureActionListener<>(FetchSampleResponse::samples);
         List<DiscoveryNode> nodesOn41OrAfter = StreamSupport.stream(clusterService.state().nodes().spliterator(), false)
@@ -34,9 +34,10 @@
  *          AnalyzePlan -> invokes TransportAnalyzeAction
  *
  *      TransportAnalyzeAction
- *          - fetches samples of table from all data nodes
- *          - merges samples
- *          - creates statistics based on the samples
+ *          - fetches sketches of columns stored in doc values from all data nodes
+ *          - fetches samples of the remaining columns from all data nodes
+ *          - merges sketches and samples
+ *          - creates statistics based on the sketches and samples
  *          - publishes the statistics to all nodes
  *
  *          - receives statistics and calls TableStats.updateStats
@@ -46,6 +47,10 @@
  *          - Contains logic to get sample rows of a table
  *
  *
+ *       ColumnSketcher
+ *          - Creates and caches sketches (distinct values, most common values, quantiles) per segment
+ *
+ *
  *       TableStats
  *          - Singleton providing access to the currently available statistics
  *
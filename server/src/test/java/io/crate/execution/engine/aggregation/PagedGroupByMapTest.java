@@ -0,0 +1,137 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.aggregation;
+
+import io.crate.breaker.ConcurrentRamAccounting;
+import io.crate.breaker.RamAccounting;
+import io.crate.memory.OffHeapMemoryManager;
+import io.crate.memory.OnHeapMemoryManager;
+import io.crate.types.DataTypes;
+import org.elasticsearch.test.ESTestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class PagedGroupByMapTest extends ESTestCase {
+
+    @Test
+    public void testPutAndGetStringKeys() {
+        try (var memoryManager = new OffHeapMemoryManager()) {
+            PagedGroupByMap<String, Object[]> map = new PagedGroupByMap<>(
+                DataTypes.STRING.streamer(), RamAccounting.NO_ACCOUNTING, memoryManager);
+            Object[] fooStates = new Object[] {1L};
+            assertThat(map.put("foo", fooStates), nullValue());
+            map.put("bar", new Object[] {2L});
+            map.put(null, new Object[] {3L});
+
+            assertThat(map.size(), is(3));
+            assertThat(map.get("foo"), is(fooStates));
+            assertThat(map.get(null)[0], is(3L));
+            assertThat(map.get("baz"), nullValue());
+            assertThat(map.containsKey("bar"), is(true));
+
+            Object[] newFooStates = new Object[] {4L};
+            assertThat(map.put("foo", newFooStates), is(fooStates));
+            assertThat(map.get("foo"), is(newFooStates));
+            assertThat(map.size(), is(3));
+        }
+    }
+
+    @Test
+    public void testMultiKeysWithNullsAndGrowingTable() {
+        var keyTypes = List.of(DataTypes.STRING, DataTypes.LONG, DataTypes.DOUBLE);
+        try (var memoryManager = new OffHeapMemoryManager()) {
+            PagedGroupByMap<List<Object>, Object[]> map = new PagedGroupByMap<>(
+                PagedGroupByMap.keysStreamer(keyTypes), RamAccounting.NO_ACCOUNTING, memoryManager);
+            Map<List<Object>, Object[]> expected = new HashMap<>();
+            for (int i = 0; i < 10_000; i++) {
+                List<Object> keys = Arrays.asList(
+                    i % 7 == 0 ? null : "key-" + (i % 500),
+                    i % 11 == 0 ? null : (long) (i % 300),
+                    (double) (i % 3)
+                );
+                Object[] states = map.get(keys);
+                if (states == null) {
+                    states = new Object[] {0L};
+                    map.put(keys, states);
+                    expected.put(keys, states);
+                }
+                states[0] = (long) states[0] + 1;
+            }
+            assertThat(map.size(), is(expected.size()));
+
+            int numEntries = 0;
+            for (Map.Entry<List<Object>, Object[]> entry : map.entrySet()) {
+                assertThat(entry.getValue(), is(expected.get(entry.getKey())));
+                numEntries++;
+            }
+            assertThat(numEntries, is(expected.size()));
+        }
+    }
+
+    @Test
+    public void testKeysLargerThanPageSize() {
+        try (var memoryManager = new OffHeapMemoryManager()) {
+            PagedGroupByMap<String, Object[]> map = new PagedGroupByMap<>(
+                DataTypes.STRING.streamer(), RamAccounting.NO_ACCOUNTING, memoryManager);
+            String largeKey = "x".repeat(PagedGroupByMap.PAGE_SIZE * 2);
+            map.put("small", new Object[] {1});
+            map.put(largeKey, new Object[] {2});
+            map.put("small2", new Object[] {3});
+
+            assertThat(map.get(largeKey)[0], is(2));
+            assertThat(map.get("small2")[0], is(3));
+
+            List<String> keys = new ArrayList<>();
+            map.entrySet().forEach(e -> keys.add(e.getKey()));
+            assertThat(keys.contains(largeKey), is(true));
+        }
+    }
+
+    @Test
+    public void testSlotsAndPagesAreAccounted() {
+        ConcurrentRamAccounting ramAccounting = new ConcurrentRamAccounting(bytes -> { }, bytes -> { });
+        try (var memoryManager = new OnHeapMemoryManager(ramAccounting::addBytes)) {
+            PagedGroupByMap<String, Object[]> map = new PagedGroupByMap<>(
+                DataTypes.STRING.streamer(), ramAccounting, memoryManager);
+            long emptyMapBytes = ramAccounting.totalBytes();
+            assertThat(emptyMapBytes > 0, is(true));
+
+            map.put("foo", new Object[0]);
+            assertThat(ramAccounting.totalBytes(), is(emptyMapBytes + PagedGroupByMap.PAGE_SIZE));
+
+            for (int i = 0; i < 100; i++) {
+                map.put("foo" + i, new Object[0]);
+            }
+            // slot table grew from 16 to 256 slots, only the current table remains accounted
+            assertThat(ramAccounting.totalBytes(), is(emptyMapBytes * 16 + PagedGroupByMap.PAGE_SIZE));
+        }
+    }
+}
@@ -23,12 +23,27 @@ package io.crate.execution.engine.aggregation.impl;
 
 import io.crate.breaker.RamAccounting;
 import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.aggregation.DocValueAggregator;
 import io.crate.expression.symbol.Literal;
+import io.crate.metadata.Reference;
+import io.crate.metadata.ReferenceIdent;
+import io.crate.metadata.RelationName;
+import io.crate.metadata.RowGranularity;
+import io.crate.metadata.doc.DocTableInfo;
 import io.crate.metadata.functions.Signature;
 import io.crate.operation.aggregation.AggregationTestCase;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.NumericUtils;
 import org.elasticsearch.Version;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -40,6 +55,7 @@ import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
 
 public class PercentileAggregationTest extends AggregationTestCase {
 
@@ -247,4 +263,42 @@ public class PercentileAggregationTest extends AggregationTestCase {
 
         assertThat("result must be an array", result, instanceOf(List.class));
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void test_doc_value_aggregator_uses_literal_fraction() throws Exception {
+        var docValueAggregator = (DocValueAggregator<TDigestState>) singleArgPercentile.getDocValueAggregator(
+            List.of(new Reference(
+                new ReferenceIdent(RelationName.fromIndexName("test"), "value"),
+                RowGranularity.DOC,
+                DataTypes.DOUBLE,
+                0,
+                null)
+            ),
+            x -> List.of(new NumberFieldMapper.NumberFieldType("value", NumberFieldMapper.NumberType.DOUBLE)),
+            mock(DocTableInfo.class),
+            List.of(Literal.of(0.5))
+        );
+        assertThat(docValueAggregator, notNullValue());
+
+        try (var writer = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig())) {
+            for (int i = 0; i < 10; i++) {
+                Document doc = new Document();
+                doc.add(new SortedNumericDocValuesField("value", NumericUtils.doubleToSortableLong(i)));
+                writer.addDocument(doc);
+            }
+            writer.commit();
+            try (var reader = DirectoryReader.open(writer)) {
+                RamAccounting ramAccounting = RamAccounting.NO_ACCOUNTING;
+                TDigestState state = docValueAggregator.initialState(ramAccounting, memoryManager, Version.CURRENT);
+                for (LeafReaderContext leaf : reader.leaves()) {
+                    docValueAggregator.loadDocValues(leaf.reader());
+                    for (int doc = 0; doc < leaf.reader().maxDoc(); doc++) {
+                        docValueAggregator.apply(ramAccounting, doc, state);
+                    }
+                }
+                assertThat(singleArgPercentile.terminatePartial(ramAccounting, state), is(4.5));
+            }
+        }
+    }
 }
@@ -0,0 +1,209 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.execution.engine.cache;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.crate.analyze.AnalyzedStatement;
+import io.crate.data.InMemoryBatchIterator;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.data.SentinelRow;
+import io.crate.planner.PlanCache;
+import io.crate.planner.PlannerContext;
+import io.crate.planner.operators.LogicalPlan;
+import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
+import io.crate.testing.SQLExecutor;
+import io.crate.testing.TestingRowConsumer;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+
+public class QueryResultCacheTest extends CrateDummyClusterServiceUnitTest {
+
+    private static final DataType<?>[] PARAM_TYPES = new DataType<?>[] { DataTypes.LONG };
+    private static final List<Row> ROWS = List.of(new RowN(1L, "Arthur"), new RowN(2L, "Trillian"));
+
+    private SQLExecutor e;
+    private final AtomicInteger numExecuted = new AtomicInteger();
+
+    @Before
+    public void prepare() throws Exception {
+        e = SQLExecutor.builder(clusterService)
+            .enableDefaultTables()
+            .build();
+    }
+
+    private QueryResultCache.Key createKey(String statement, List<Object> params) {
+        return createKey(statement, params, clusterService.state().metadata().version());
+    }
+
+    private QueryResultCache.Key createKey(String statement, List<Object> params, long version) {
+        AnalyzedStatement stmt = e.analyze(statement);
+        PlannerContext plannerContext = e.getPlannerContext(clusterService.state());
+        PlanCache.Key statementKey = PlanCache.createKey(
+            statement,
+            PARAM_TYPES,
+            stmt,
+            plannerContext.transactionContext().sessionSettings(),
+            version
+        );
+        LogicalPlan plan = e.logicalPlan(statement);
+        return QueryResultCache.createKey(statementKey, stmt, plan, params);
+    }
+
+    private static QueryResultCache newCache(long maxSizeInBytes) {
+        return newCache(maxSizeInBytes, new NoopCircuitBreaker(HierarchyCircuitBreakerService.QUERY));
+    }
+
+    private static QueryResultCache newCache(long maxSizeInBytes, CircuitBreaker breaker) {
+        return new QueryResultCache(maxSizeInBytes, mock(TransportShardVersionsAction.class), breaker);
+    }
+
+    private List<Object[]> execute(QueryResultCache cache, QueryResultCache.Key key) throws Exception {
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        cache.execute(key, clusterService.state(), consumer, c -> {
+            numExecuted.incrementAndGet();
+            c.accept(InMemoryBatchIterator.of(ROWS, SentinelRow.SENTINEL, true), null);
+        });
+        return consumer.getResult();
+    }
+
+    @Test
+    public void test_result_is_served_from_cache_for_same_statement_and_params() throws Exception {
+        QueryResultCache cache = newCache(1024 * 1024);
+        String statement = "select id, name from users where id > ?";
+
+        List<Object[]> result1 = execute(cache, createKey(statement, List.of(0L)));
+        List<Object[]> result2 = execute(cache, createKey(statement, List.of(0L)));
+
+        assertThat(numExecuted.get(), is(1));
+        assertThat(result2.size(), is(2));
+        assertThat(result2.get(1), is(result1.get(1)));
+        QueryResultCacheStats stats = cache.stats();
+        assertThat(stats.hits(), is(1L));
+        assertThat(stats.misses(), is(1L));
+        assertThat(stats.entries(), is(1L));
+    }
+
+    @Test
+    public void test_result_is_not_served_from_cache_for_different_params() throws Exception {
+        QueryResultCache cache = newCache(1024 * 1024);
+        String statement = "select id, name from users where id > ?";
+
+        execute(cache, createKey(statement, List.of(0L)));
+        execute(cache, createKey(statement, List.of(1L)));
+
+        assertThat(numExecuted.get(), is(2));
+        assertThat(cache.stats().entries(), is(2L));
+    }
+
+    @Test
+    public void test_result_is_not_served_from_cache_if_metadata_version_differs() throws Exception {
+        QueryResultCache cache = newCache(1024 * 1024);
+        String statement = "select id, name from users where id > ?";
+
+        execute(cache, createKey(statement, List.of(0L)));
+        execute(cache, createKey(statement, List.of(0L), clusterService.state().metadata().version() + 1));
+
+        assertThat(numExecuted.get(), is(2));
+        assertThat(cache.stats().hits(), is(0L));
+    }
+
+    @Test
+    public void test_results_exceeding_the_entry_size_are_not_cached() throws Exception {
+        QueryResultCache cache = newCache(100);
+        String statement = "select id, name from users where id > ?";
+
+        execute(cache, createKey(statement, List.of(0L)));
+        List<Object[]> result = execute(cache, createKey(statement, List.of(0L)));
+
+        assertThat(numExecuted.get(), is(2));
+        assertThat(result.size(), is(2));
+        assertThat(cache.stats().entries(), is(0L));
+    }
+
+    @Test
+    public void test_result_is_not_cached_if_recording_trips_the_circuit_breaker() throws Exception {
+        CircuitBreaker breaker = new MemoryCircuitBreaker(
+            new ByteSizeValue(10), 1.0, LogManager.getLogger(QueryResultCacheTest.class));
+        QueryResultCache cache = newCache(1024 * 1024, breaker);
+        String statement = "select id, name from users where id > ?";
+
+        execute(cache, createKey(statement, List.of(0L)));
+        List<Object[]> result = execute(cache, createKey(statement, List.of(0L)));
+
+        assertThat(numExecuted.get(), is(2));
+        assertThat(result.size(), is(2));
+        assertThat(cache.stats().entries(), is(0L));
+        assertThat(breaker.getUsed(), is(0L));
+    }
+
+    @Test
+    public void test_disabled_cache_always_executes() throws Exception {
+        QueryResultCache cache = newCache(0);
+        String statement = "select id, name from users where id > ?";
+
+        execute(cache, createKey(statement, List.of(0L)));
+        execute(cache, createKey(statement, List.of(0L)));
+
+        assertThat(numExecuted.get(), is(2));
+        assertThat(cache.stats().misses(), is(0L));
+    }
+
+    @Test
+    public void test_key_is_only_created_for_statements_on_user_tables() {
+        assertThat(createKey("select id from users where id > ?", List.of(0L)), notNullValue());
+        assertThat(createKey("select * from users u join t1 on u.id = t1.x where u.id > ?", List.of(0L)), notNullValue());
+        assertThat(createKey("select name from sys.nodes where load['1'] > ?", List.of(0L)), nullValue());
+        assertThat(createKey("select ? + 1", List.of(0L)), nullValue());
+    }
+
+    @Test
+    public void test_key_is_not_created_for_primary_key_lookups() {
+        assertThat(createKey("select id, name from users where id = ?", List.of(1L)), nullValue());
+    }
+
+    @Test
+    public void test_key_is_not_created_for_non_deterministic_statements() {
+        assertThat(createKey("select id, random() from users where id > ?", List.of(0L)), nullValue());
+        assertThat(createKey("select id from users where id > ? and date > now()", List.of(0L)), nullValue());
+        assertThat(
+            createKey("select id from users where id > ? and id in (select id from sys.nodes)", List.of(0L)),
+            nullValue()
+        );
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.execution.engine.cache;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.test.ESTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.crate.Streamer;
+import io.crate.breaker.ConcurrentRamAccounting;
+import io.crate.breaker.RamAccounting;
+import io.crate.data.BatchIterator;
+import io.crate.data.InMemoryBatchIterator;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.data.SentinelRow;
+import io.crate.expression.symbol.Symbol;
+import io.crate.testing.SqlExpressions;
+import io.crate.testing.TestingRowConsumer;
+import io.crate.types.DataTypes;
+
+public class ShardRequestCacheTest extends ESTestCase {
+
+    private static final Streamer<?>[] STREAMERS = new Streamer[] { DataTypes.LONG, DataTypes.STRING };
+    private static final ShardId SHARD_ID = new ShardId("t", "_na_", 0);
+
+    private final SqlExpressions expressions = new SqlExpressions(Map.of());
+    private ByteBuffersDirectory directory;
+    private IndexWriter writer;
+
+    @Before
+    public void setupIndex() throws Exception {
+        directory = new ByteBuffersDirectory();
+        writer = new IndexWriter(directory, new IndexWriterConfig());
+        writer.addDocument(new Document());
+        writer.commit();
+    }
+
+    @After
+    public void closeIndex() throws Exception {
+        writer.close();
+        directory.close();
+    }
+
+    private ShardRequestCache.Key createKey(ShardRequestCache cache, String expression) throws Exception {
+        try (DirectoryReader reader = DirectoryReader.open(writer)) {
+            List<Symbol> symbols = List.of(expressions.asSymbol(expression));
+            return cache.createKey(SHARD_ID, new IndexSearcher(reader), symbols, null);
+        }
+    }
+
+    @Test
+    public void test_cached_rows_are_returned_for_same_reader_version() throws Exception {
+        ShardRequestCache cache = new ShardRequestCache(1024 * 1024);
+        List<Row> rows = List.of(new RowN(1L, "a"), new RowN(2L, "b"));
+
+        cache.put(createKey(cache, "abs(-1) = 1"), STREAMERS, rows);
+        List<Row> cachedRows = cache.get(createKey(cache, "abs(-1) = 1"), STREAMERS, RamAccounting.NO_ACCOUNTING);
+
+        assertThat(cachedRows, notNullValue());
+        assertThat(cachedRows.size(), is(2));
+        assertThat(cachedRows.get(1).materialize(), is(new Object[] { 2L, "b" }));
+        assertThat(cache.get(createKey(cache, "abs(-2) = 2"), STREAMERS, RamAccounting.NO_ACCOUNTING), nullValue());
+    }
+
+    @Test
+    public void test_returned_rows_are_accounted() throws Exception {
+        ShardRequestCache cache = new ShardRequestCache(1024 * 1024);
+        cache.put(createKey(cache, "abs(-1) = 1"), STREAMERS, List.of(new RowN(1L, "a"), new RowN(2L, "b")));
+        RamAccounting ramAccounting = new ConcurrentRamAccounting(bytes -> {}, bytes -> {});
+
+        cache.get(createKey(cache, "abs(-1) = 1"), STREAMERS, ramAccounting);
+
+        assertThat(ramAccounting.totalBytes() > 0L, is(true));
+    }
+
+    @Test
+    public void test_cached_rows_are_not_returned_after_the_shard_changed() throws Exception {
+        ShardRequestCache cache = new ShardRequestCache(1024 * 1024);
+
+        cache.put(createKey(cache, "abs(-1) = 1"), STREAMERS, List.of(new RowN(1L, "a")));
+        writer.addDocument(new Document());
+
+        assertThat(cache.get(createKey(cache, "abs(-1) = 1"), STREAMERS, RamAccounting.NO_ACCOUNTING), nullValue());
+    }
+
+    @Test
+    public void test_rows_of_fully_consumed_iterator_are_cached() throws Exception {
+        ShardRequestCache cache = new ShardRequestCache(1024 * 1024);
+        ShardRequestCache.Key key = createKey(cache, "abs(-1) = 1");
+        BatchIterator<Row> source = InMemoryBatchIterator.of(
+            List.of(new RowN(1L, "a"), new RowN(2L, "b")),
+            SentinelRow.SENTINEL,
+            true
+        );
+
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(cache.recording(key, STREAMERS, source), null);
+        consumer.getResult();
+
+        List<Row> cachedRows = cache.get(key, STREAMERS, RamAccounting.NO_ACCOUNTING);
+        assertThat(cachedRows, notNullValue());
+        assertThat(cachedRows.get(0).materialize(), is(new Object[] { 1L, "a" }));
+    }
+
+    @Test
+    public void test_key_is_not_created_for_non_deterministic_symbols() throws Exception {
+        ShardRequestCache cache = new ShardRequestCache(1024 * 1024);
+
+        assertThat(createKey(cache, "random() > 0.5"), nullValue());
+    }
+
+    @Test
+    public void test_key_is_not_created_if_cache_is_disabled() throws Exception {
+        ShardRequestCache cache = new ShardRequestCache(0);
+
+        assertThat(createKey(cache, "abs(-1) = 1"), nullValue());
+    }
+
+    @Test
+    public void test_invalidate_removes_entries_of_shard() throws Exception {
+        ShardRequestCache cache = new ShardRequestCache(1024 * 1024);
+        ShardRequestCache.Key key = createKey(cache, "abs(-1) = 1");
+        cache.put(key, STREAMERS, List.of(new RowN(1L, "a")));
+
+        cache.invalidate(SHARD_ID);
+
+        assertThat(cache.get(key, STREAMERS, RamAccounting.NO_ACCOUNTING), nullValue());
+    }
+}
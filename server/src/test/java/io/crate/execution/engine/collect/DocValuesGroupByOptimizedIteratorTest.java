@@ -41,11 +41,13 @@ import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
 import io.crate.testing.TestingRowConsumer;
 import io.crate.types.DataTypes;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.store.ByteBuffersDirectory;
@@ -63,6 +65,7 @@ import java.util.function.Consumer;
 
 import static io.crate.testing.TestingHelpers.createNodeContext;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.mockito.Mockito.mock;
 
@@ -211,6 +214,105 @@ public class DocValuesGroupByOptimizedIteratorTest extends CrateDummyClusterServ
         );
     }
 
+    @Test
+    public void test_group_by_many_keys_uses_packed_segment_keys_across_segments() throws Exception {
+        var indexWriter = new IndexWriter(
+            new ByteBuffersDirectory(),
+            new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE)
+        );
+        List<List<Object[]>> segments = List.of(
+            List.of(
+                new Object[]{"a", 1L, 1L},
+                new Object[]{"b", 2L, 2L},
+                new Object[]{"a", 1L, 3L},
+                new Object[]{null, 2L, 4L}
+            ),
+            List.of(
+                new Object[]{"b", 2L, 5L},
+                new Object[]{"c", 5L, 6L},
+                new Object[]{null, 2L, 7L}
+            )
+        );
+        for (var segment : segments) {
+            for (var row : segment) {
+                Document doc = new Document();
+                if (row[0] != null) {
+                    doc.add(new SortedSetDocValuesField("x", BytesRefs.toBytesRef(row[0])));
+                }
+                doc.add(new LongPoint("y", (Long) row[1]));
+                doc.add(new NumericDocValuesField("y", (Long) row[1]));
+                doc.add(new NumericDocValuesField("z", (Long) row[2]));
+                indexWriter.addDocument(doc);
+            }
+            indexWriter.commit();
+        }
+        var searcher = new IndexSearcher(DirectoryReader.open(indexWriter));
+        assertThat(searcher.getIndexReader().leaves().size(), is(2));
+
+        SumAggregation<?> sumAggregation = (SumAggregation<?>) functions.getQualified(
+            Signature.aggregate(
+                SumAggregation.NAME,
+                DataTypes.LONG.getTypeSignature(),
+                DataTypes.LONG.getTypeSignature()
+            ),
+            List.of(DataTypes.LONG),
+            DataTypes.LONG
+        );
+        var aggregationField = new NumberFieldMapper.NumberFieldType("z", NumberFieldMapper.NumberType.LONG);
+        var sumDocValuesAggregator = sumAggregation.getDocValueAggregator(
+            List.of(new Reference(
+                new ReferenceIdent(RelationName.fromIndexName("test"), "z"),
+                RowGranularity.DOC,
+                DataTypes.LONG,
+                0,
+                null)
+            ),
+            (x) -> List.of(aggregationField),
+            mock(DocTableInfo.class),
+            List.of()
+        );
+        var keyRefs = List.of(
+            new Reference(
+                new ReferenceIdent(RelationName.fromIndexName("test"), "x"),
+                RowGranularity.DOC,
+                DataTypes.STRING,
+                1,
+                null
+            ),
+            new Reference(
+                new ReferenceIdent(RelationName.fromIndexName("test"), "y"),
+                RowGranularity.DOC,
+                DataTypes.LONG,
+                2,
+                null
+            )
+        );
+        var it = DocValuesGroupByOptimizedIterator.GroupByIterator.forManyKeys(
+            List.of(sumDocValuesAggregator),
+            searcher,
+            keyRefs,
+            List.of(new BytesRefColumnReference("x"), new LongColumnReference("y")),
+            RamAccounting.NO_ACCOUNTING,
+            null,
+            null,
+            new MatchAllDocsQuery(),
+            new CollectorContext()
+        );
+
+        var rowConsumer = new TestingRowConsumer();
+        rowConsumer.accept(it, null);
+
+        assertThat(
+            rowConsumer.getResult(),
+            containsInAnyOrder(
+                new Object[]{"a", 1L, 4L},
+                new Object[]{"b", 2L, 7L},
+                new Object[]{"c", 5L, 6L},
+                new Object[]{null, 2L, 11L}
+            )
+        );
+    }
+
     @Test
     public void test_optimized_iterator_stop_processing_on_kill() throws Exception {
         Throwable expectedException = stopOnInterrupting(it -> it.kill(new InterruptedException("killed")));
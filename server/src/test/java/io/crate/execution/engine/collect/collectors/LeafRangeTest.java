@@ -0,0 +1,119 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.collect.collectors;
+
+import io.crate.common.collections.Lists2;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+public class LeafRangeTest {
+
+    private DirectoryReader reader;
+
+    @Before
+    public void createSegments() throws IOException {
+        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer())
+            .setMergePolicy(NoMergePolicy.INSTANCE);
+        try (IndexWriter iw = new IndexWriter(new ByteBuffersDirectory(), config)) {
+            // segments with 10, 30 and 20 docs
+            for (int numDocs : new int[] { 10, 30, 20 }) {
+                for (int i = 0; i < numDocs; i++) {
+                    Document doc = new Document();
+                    doc.add(new NumericDocValuesField("x", i));
+                    iw.addDocument(doc);
+                }
+                iw.commit();
+            }
+            reader = DirectoryReader.open(iw);
+        }
+    }
+
+    @After
+    public void closeReader() throws IOException {
+        reader.close();
+    }
+
+    @Test
+    public void test_ranges_cover_all_docs_of_leaves() {
+        List<LeafReaderContext> leaves = reader.leaves();
+        assertThat(leaves.size(), is(3));
+        List<LeafRange> ranges = LeafRange.of(leaves);
+        assertThat(
+            Lists2.map(ranges, LeafRange::toString),
+            contains(
+                "LeafRange{ord=0, from=0, to=10}",
+                "LeafRange{ord=1, from=0, to=30}",
+                "LeafRange{ord=2, from=0, to=20}"
+            )
+        );
+    }
+
+    @Test
+    public void test_single_slice_if_there_are_not_enough_docs_for_multiple_slices() {
+        List<List<LeafRange>> slices = LeafRange.slices(reader.leaves(), 4, 40);
+        assertThat(slices.size(), is(1));
+        assertThat(slices.get(0).size(), is(3));
+    }
+
+    @Test
+    public void test_slices_split_leaves_into_ranges_of_same_size() {
+        List<List<LeafRange>> slices = LeafRange.slices(reader.leaves(), 3, 10);
+        assertThat(
+            Lists2.map(slices, Object::toString),
+            contains(
+                "[LeafRange{ord=0, from=0, to=10}, LeafRange{ord=1, from=0, to=10}]",
+                "[LeafRange{ord=1, from=10, to=30}]",
+                "[LeafRange{ord=2, from=0, to=20}]"
+            )
+        );
+    }
+
+    @Test
+    public void test_number_of_slices_is_limited_by_min_docs_per_slice() {
+        List<List<LeafRange>> slices = LeafRange.slices(reader.leaves(), 32, 25);
+        assertThat(
+            Lists2.map(slices, Object::toString),
+            contains(
+                "[LeafRange{ord=0, from=0, to=10}, LeafRange{ord=1, from=0, to=20}]",
+                "[LeafRange{ord=1, from=20, to=30}, LeafRange{ord=2, from=0, to=20}]"
+            )
+        );
+    }
+}
@@ -41,6 +41,9 @@ import io.crate.expression.reference.doc.lucene.CollectorContext;
 import io.crate.expression.reference.doc.lucene.LongColumnReference;
 import io.crate.testing.BatchIteratorTester;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
 public class LuceneBatchIteratorTest {
 
     private List<LongColumnReference> columnRefs;
@@ -80,4 +83,32 @@ public class LuceneBatchIteratorTest {
         );
         tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
     }
+
+    @Test
+    public void test_lucene_batch_iterator_only_emits_docs_within_ranges() throws Exception {
+        List<List<LeafRange>> slices = LeafRange.slices(indexSearcher.getTopReaderContext().leaves(), 3, 5);
+        assertThat(slices.size(), is(3));
+        int fromIdx = 0;
+        for (List<LeafRange> slice : slices) {
+            int numDocs = 0;
+            for (LeafRange range : slice) {
+                numDocs += range.toDoc() - range.fromDoc();
+            }
+            BatchIteratorTester tester = new BatchIteratorTester(
+                () -> new LuceneBatchIterator(
+                    indexSearcher,
+                    slice,
+                    new MatchAllDocsQuery(),
+                    null,
+                    false,
+                    new CollectorContext(),
+                    columnRefs,
+                    columnRefs
+                )
+            );
+            tester.verifyResultAndEdgeCaseBehaviour(expectedResult.subList(fromIdx, fromIdx + numDocs));
+            fromIdx += numDocs;
+        }
+        assertThat(fromIdx, is(expectedResult.size()));
+    }
 }
@@ -23,6 +23,7 @@ package io.crate.execution.engine.collect.files;
 
 import io.crate.analyze.CopyFromParserProperties;
 import io.crate.data.BatchIterator;
+import io.crate.data.BatchIterators;
 import io.crate.data.Input;
 import io.crate.data.Row;
 import io.crate.execution.dsl.phases.FileUriCollectPhase;
@@ -39,22 +40,30 @@ import org.elasticsearch.test.ESTestCase;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static io.crate.execution.dsl.phases.FileUriCollectPhase.InputFormat.CSV;
 import static io.crate.execution.dsl.phases.FileUriCollectPhase.InputFormat.JSON;
 import static io.crate.testing.TestingHelpers.createReference;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 
 public class FileReadingIteratorTest extends ESTestCase {
@@ -194,6 +203,61 @@ public class FileReadingIteratorTest extends ESTestCase {
         )));
     }
 
+    @Test
+    public void test_lines_are_parsed_in_parallel_in_batches() throws Exception {
+        tempFilePath = createTempFile("tempfile", ".csv");
+        tmpFile = tempFilePath.toFile();
+        int numLines = FileReadingIterator.BATCH_SIZE * 2 + 10;
+        List<Object[]> expectedResult = new ArrayList<>(numLines);
+        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            writer.write("name,id\n");
+            for (int i = 0; i < numLines; i++) {
+                writer.write("Arthur" + i + "," + i + "\n");
+                expectedResult.add(new Object[] { "{\"name\":\"Arthur" + i + "\",\"id\":\"" + i + "\"}" });
+            }
+        }
+        fileUri = tempFilePath.toUri().toString();
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Supplier<BatchIterator<Row>> batchIteratorSupplier = () -> createBatchIterator(
+                List.of(fileUri), CSV, false, 1, 0, executor, FileReadingIterator.MIN_SPLIT_SIZE_IN_BYTES);
+            BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
+            tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void test_large_file_on_shared_storage_is_read_in_ranges_by_all_readers() throws Exception {
+        tempFilePath = createTempFile("tempfile", ".csv");
+        tmpFile = tempFilePath.toFile();
+        List<Object[]> expectedResult = new ArrayList<>();
+        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            writer.write("name,id\n");
+            for (int i = 0; i < 100; i++) {
+                // varying line lengths to have range boundaries within and at the end of lines
+                String name = "Arthur".repeat(i % 7 + 1);
+                writer.write(name + "," + i + "\n");
+                expectedResult.add(new Object[] { "{\"name\":\"" + name + "\",\"id\":\"" + i + "\"}" });
+            }
+        }
+        fileUri = tempFilePath.toUri().toString();
+
+        int numReaders = 3;
+        List<Object[]> result = new ArrayList<>();
+        for (int readerNumber = 0; readerNumber < numReaders; readerNumber++) {
+            BatchIterator<Row> it = createBatchIterator(List.of(fileUri), CSV, true, numReaders, readerNumber, null, 1L);
+            List<Object[]> rows = BatchIterators.collect(it, Collectors.mapping(Row::materialize, Collectors.toList()))
+                .get(5, TimeUnit.SECONDS);
+            assertThat(rows.isEmpty(), is(false));
+            result.addAll(rows);
+        }
+        assertThat(result, contains(expectedResult.toArray()));
+    }
+
     private BatchIterator<Row> createBatchIterator(Collection<String> fileUris,
                                                    FileUriCollectPhase.InputFormat format) {
         Reference raw = createReference("_raw", DataTypes.STRING);
@@ -213,4 +277,32 @@ public class FileReadingIteratorTest extends ESTestCase {
             CopyFromParserProperties.DEFAULT,
             format);
     }
+
+    private BatchIterator<Row> createBatchIterator(Collection<String> fileUris,
+                                                   FileUriCollectPhase.InputFormat format,
+                                                   boolean shared,
+                                                   int numReaders,
+                                                   int readerNumber,
+                                                   @Nullable Executor executor,
+                                                   long minSplitSize) {
+        Reference raw = createReference("_raw", DataTypes.STRING);
+        InputFactory.Context<LineCollectorExpression<?>> ctx =
+            inputFactory.ctxForRefs(txnCtx, FileLineReferenceResolver::getImplementation);
+
+        List<Input<?>> inputs = Collections.singletonList(ctx.add(raw));
+        return new FileReadingIterator(
+            fileUris,
+            inputs,
+            ctx.expressions(),
+            null,
+            Map.of(LocalFsFileInputFactory.NAME, new LocalFsFileInputFactory()),
+            shared,
+            numReaders,
+            readerNumber,
+            CopyFromParserProperties.DEFAULT,
+            format,
+            executor,
+            () -> 3,
+            minSplitSize);
+    }
 }
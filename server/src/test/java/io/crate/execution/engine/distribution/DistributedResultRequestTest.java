@@ -23,7 +23,9 @@ package io.crate.execution.engine.distribution;
 
 import io.crate.Streamer;
 import io.crate.breaker.RamAccounting;
+import io.crate.data.Bucket;
 import io.crate.data.RowN;
+import org.elasticsearch.Version;
 import org.elasticsearch.test.ESTestCase;
 import io.crate.types.DataTypes;
 import org.elasticsearch.common.bytes.BytesReference;
@@ -31,6 +33,8 @@ import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.junit.Test;
 
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static io.crate.testing.TestingHelpers.isNullRow;
@@ -79,4 +83,138 @@ public class DistributedResultRequestTest extends ESTestCase {
         assertThat(r2.throwable(), instanceOf(throwable.getClass()));
         assertThat(r2.isKilled(), is(r1.isKilled()));
     }
+
+    private static final Streamer<?>[] COLUMNAR_STREAMERS = new Streamer[] {
+        DataTypes.LONG.streamer(),
+        DataTypes.INTEGER.streamer(),
+        DataTypes.SHORT.streamer(),
+        DataTypes.BYTE.streamer(),
+        DataTypes.DOUBLE.streamer(),
+        DataTypes.FLOAT.streamer(),
+        DataTypes.BOOLEAN.streamer(),
+        DataTypes.STRING.streamer(),
+        DataTypes.TIMESTAMPZ.streamer(),
+        DataTypes.UNTYPED_OBJECT.streamer()
+    };
+
+    private static StreamBucket columnarBucket() {
+        StreamBucket.Builder builder = new StreamBucket.Builder(COLUMNAR_STREAMERS, RamAccounting.NO_ACCOUNTING, true, null);
+        builder.add(new RowN(1L, 2, (short) 3, (byte) 4, 5.5d, 6.5f, true, "a", 7L, Map.of("x", 1)));
+        builder.add(new RowN(null, null, null, null, null, null, null, null, null, null));
+        builder.add(new RowN(-1L, -2, (short) -3, (byte) -4, -5.5d, -6.5f, false, "a", -7L, Map.of()));
+        builder.add(new RowN(1L, 2, (short) 3, (byte) 4, 5.5d, 6.5f, true, "a", 7L, null));
+        return builder.build();
+    }
+
+    private static DistributedResultRequest streamWithVersion(DistributedResultRequest request, Version version) throws Exception {
+        BytesStreamOutput out = new BytesStreamOutput();
+        out.setVersion(version);
+        request.writeTo(out);
+        StreamInput in = out.bytes().streamInput();
+        in.setVersion(version);
+        return new DistributedResultRequest(in);
+    }
+
+    @Test
+    public void test_streaming_of_columnar_bucket() throws Exception {
+        DistributedResultRequest r1 = new DistributedResultRequest(UUID.randomUUID(), 1, (byte) 3, 1, columnarBucket(), false);
+        DistributedResultRequest r2 = streamWithVersion(r1, Version.CURRENT);
+
+        Bucket rows = r2.readRows(COLUMNAR_STREAMERS);
+        assertThat(rows.size(), is(4));
+        assertThat(rows, contains(
+            isRow(1L, 2, (short) 3, (byte) 4, 5.5d, 6.5f, true, "a", 7L, Map.of("x", 1)),
+            isRow(new Object[10]),
+            isRow(-1L, -2, (short) -3, (byte) -4, -5.5d, -6.5f, false, "a", -7L, Map.of()),
+            isRow(1L, 2, (short) 3, (byte) 4, 5.5d, 6.5f, true, "a", 7L, null)
+        ));
+    }
+
+    @Test
+    public void test_columnar_bucket_is_sent_in_row_format_to_nodes_not_supporting_it() throws Exception {
+        DistributedResultRequest r1 = new DistributedResultRequest(UUID.randomUUID(), 1, (byte) 3, 1, columnarBucket(), false);
+        DistributedResultRequest r2 = streamWithVersion(r1, Version.V_4_6_0);
+
+        assertThat(r2.readRows(COLUMNAR_STREAMERS), contains(
+            isRow(1L, 2, (short) 3, (byte) 4, 5.5d, 6.5f, true, "a", 7L, Map.of("x", 1)),
+            isRow(new Object[10]),
+            isRow(-1L, -2, (short) -3, (byte) -4, -5.5d, -6.5f, false, "a", -7L, Map.of()),
+            isRow(1L, 2, (short) 3, (byte) 4, 5.5d, 6.5f, true, "a", 7L, null)
+        ));
+    }
+
+    @Test
+    public void test_columnar_text_column_with_repeating_values_is_dictionary_encoded() throws Exception {
+        Streamer<?>[] streamers = new Streamer[] { DataTypes.STRING.streamer() };
+        StreamBucket.Builder rowBuilder = new StreamBucket.Builder(streamers, RamAccounting.NO_ACCOUNTING);
+        StreamBucket.Builder columnarBuilder = new StreamBucket.Builder(streamers, RamAccounting.NO_ACCOUNTING, true, null);
+        List<String> values = List.of("apple", "banana", "cherry");
+        for (int i = 0; i < 300; i++) {
+            RowN row = new RowN(values.get(i % values.size()));
+            rowBuilder.add(row);
+            columnarBuilder.add(row);
+        }
+        BytesStreamOutput rowOut = new BytesStreamOutput();
+        rowBuilder.build().writeTo(rowOut);
+        BytesStreamOutput columnarOut = new BytesStreamOutput();
+        StreamBucket columnarBucket = columnarBuilder.build();
+        columnarBucket.writeTo(columnarOut);
+
+        assertThat(columnarOut.size() < rowOut.size() / 2, is(true));
+        StreamBucket received = new StreamBucket(columnarOut.bytes().streamInput(), streamers);
+        int i = 0;
+        for (var row : received) {
+            assertThat(row.get(0), is(values.get(i % values.size())));
+            i++;
+        }
+        assertThat(i, is(300));
+    }
+
+    @Test
+    public void test_large_bucket_is_sent_compressed_and_small_bucket_uncompressed() throws Exception {
+        Streamer<?>[] streamers = new Streamer[] { DataTypes.STRING.streamer(), DataTypes.LONG.streamer() };
+        PageCompression compression = new PageCompression(1024L);
+        StreamBucket.Builder builder = new StreamBucket.Builder(streamers, RamAccounting.NO_ACCOUNTING, false, compression);
+        for (int i = 0; i < 1000; i++) {
+            builder.add(new RowN("foo", (long) i % 10));
+        }
+        DistributedResultRequest r1 = new DistributedResultRequest(UUID.randomUUID(), 1, (byte) 3, 1, builder.build(), false);
+        builder.reset();
+        builder.add(new RowN("bar", 1L));
+        DistributedResultRequest small = new DistributedResultRequest(UUID.randomUUID(), 1, (byte) 3, 1, builder.build(), false);
+
+        DistributedResultRequest r2 = streamWithVersion(r1, Version.CURRENT);
+        DistributedResultRequest small2 = streamWithVersion(small, Version.CURRENT);
+
+        PageCompressionStats stats = compression.stats();
+        assertThat(stats.pagesCompressed(), is(1L));
+        assertThat(stats.bytesSaved() > 0, is(true));
+        int i = 0;
+        for (var row : r2.readRows(streamers)) {
+            assertThat(row.get(0), is("foo"));
+            assertThat(row.get(1), is((long) i % 10));
+            i++;
+        }
+        assertThat(i, is(1000));
+        assertThat(small2.readRows(streamers), contains(isRow("bar", 1L)));
+    }
+
+    @Test
+    public void test_compressed_bucket_is_sent_uncompressed_to_nodes_not_supporting_it() throws Exception {
+        Streamer<?>[] streamers = new Streamer[] { DataTypes.STRING.streamer() };
+        PageCompression compression = new PageCompression(0L);
+        StreamBucket.Builder builder = new StreamBucket.Builder(streamers, RamAccounting.NO_ACCOUNTING, false, compression);
+        for (int i = 0; i < 100; i++) {
+            builder.add(new RowN("foo"));
+        }
+        DistributedResultRequest r1 = new DistributedResultRequest(UUID.randomUUID(), 1, (byte) 3, 1, builder.build(), false);
+
+        DistributedResultRequest r2 = streamWithVersion(r1, Version.V_4_6_0);
+
+        assertThat(compression.stats().pagesCompressed(), is(0L));
+        assertThat(r2.readRows(streamers).size(), is(100));
+        for (var row : r2.readRows(streamers)) {
+            assertThat(row.get(0), is("foo"));
+        }
+    }
 }
@@ -34,6 +34,7 @@ import io.crate.metadata.RowGranularity;
 import io.crate.planner.distribution.DistributionInfo;
 import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
 import io.crate.types.LongType;
+import org.elasticsearch.common.settings.Settings;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -52,9 +53,11 @@ public class DistributingConsumerFactoryTest extends CrateDummyClusterServiceUni
     @Before
     public void prepare() {
         rowDownstreamFactory = new DistributingConsumerFactory(
+            Settings.EMPTY,
             clusterService,
             THREAD_POOL,
-            mock(TransportDistributedResultAction.class)
+            mock(TransportDistributedResultAction.class),
+            new PageCompression(-1L)
         );
     }
 
@@ -25,6 +25,7 @@ import com.carrotsearch.randomizedtesting.RandomizedRunner;
 import com.carrotsearch.randomizedtesting.annotations.Name;
 import com.carrotsearch.randomizedtesting.annotations.ParametersFactory;
 import com.carrotsearch.randomizedtesting.annotations.ThreadLeakScope;
+import io.crate.Streamer;
 import io.crate.breaker.RowAccounting;
 import io.crate.data.BatchIterator;
 import io.crate.data.Row;
@@ -32,7 +33,10 @@ import io.crate.data.join.CombinedRow;
 import io.crate.testing.BatchIteratorTester;
 import io.crate.testing.BatchSimulatingIterator;
 import io.crate.testing.TestingBatchIterators;
+import io.crate.execution.engine.spill.SpillFile;
+import io.crate.types.DataTypes;
 import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.settings.Settings;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -187,4 +191,86 @@ public class HashInnerJoinBatchIteratorTest {
         BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
         tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
     }
+
+    @Test
+    public void testGraceHashJoin() throws Exception {
+        Supplier<BatchIterator<Row>> batchIteratorSupplier = () -> new GraceHashJoinBatchIterator(
+            leftIterator.get(),
+            rightIterator.get(),
+            mock(RowAccounting.class),
+            new CombinedRow(1, 1),
+            getCol0EqCol1JoinCondition(),
+            getHashForLeft(),
+            getHashForRight(),
+            new Streamer[] { DataTypes.INTEGER.streamer() },
+            new Streamer[] { DataTypes.INTEGER.streamer() },
+            3,
+            Integer.MAX_VALUE,
+            SpillFile.directory(Settings.EMPTY)
+        );
+        BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
+        tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
+    }
+
+    @Test
+    public void testGraceHashJoinWithHashCollisions() throws Exception {
+        Supplier<BatchIterator<Row>> batchIteratorSupplier = () -> new GraceHashJoinBatchIterator(
+            leftIterator.get(),
+            rightIterator.get(),
+            mock(RowAccounting.class),
+            new CombinedRow(1, 1),
+            getCol0EqCol1JoinCondition(),
+            getHashWithCollisions(),
+            getHashWithCollisions(),
+            new Streamer[] { DataTypes.INTEGER.streamer() },
+            new Streamer[] { DataTypes.INTEGER.streamer() },
+            2,
+            Integer.MAX_VALUE,
+            SpillFile.directory(Settings.EMPTY)
+        );
+        BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
+        tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
+    }
+
+    @Test
+    public void testGraceHashJoinWithPartitionsExceedingMaxRows() throws Exception {
+        // partitions are split into sub-partitions, duplicate values are joined block-wise
+        Supplier<BatchIterator<Row>> batchIteratorSupplier = () -> new GraceHashJoinBatchIterator(
+            leftIterator.get(),
+            rightIterator.get(),
+            mock(RowAccounting.class),
+            new CombinedRow(1, 1),
+            getCol0EqCol1JoinCondition(),
+            getHashForLeft(),
+            getHashForRight(),
+            new Streamer[] { DataTypes.INTEGER.streamer() },
+            new Streamer[] { DataTypes.INTEGER.streamer() },
+            2,
+            1,
+            SpillFile.directory(Settings.EMPTY)
+        );
+        BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
+        tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
+    }
+
+    @Test
+    public void testGraceHashJoinWithHashCollisionsExceedingMaxRows() throws Exception {
+        // rows with the same hash can't be split into sub-partitions and are joined block-wise
+        Supplier<BatchIterator<Row>> batchIteratorSupplier = () -> new GraceHashJoinBatchIterator(
+            leftIterator.get(),
+            rightIterator.get(),
+            mock(RowAccounting.class),
+            new CombinedRow(1, 1),
+            getCol0EqCol1JoinCondition(),
+            getHashWithCollisions(),
+            getHashWithCollisions(),
+            new Streamer[] { DataTypes.INTEGER.streamer() },
+            new Streamer[] { DataTypes.INTEGER.streamer() },
+            2,
+            2,
+            SpillFile.directory(Settings.EMPTY)
+        );
+        BatchIteratorTester tester = new BatchIteratorTester(batchIteratorSupplier);
+        tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.join;
+
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HashJoinOperationTest {
+
+    private final CircuitBreaker circuitBreaker = mock(CircuitBreaker.class);
+
+    @Test
+    public void testNoGracePartitionsIfLeftSideFitsIntoMemory() {
+        when(circuitBreaker.getLimit()).thenReturn(110L);
+        when(circuitBreaker.getUsed()).thenReturn(10L);
+        assertThat(HashJoinOperation.numGracePartitions(circuitBreaker, 10, 10), is(0));
+    }
+
+    @Test
+    public void testNoGracePartitionsWithMissingStats() {
+        when(circuitBreaker.getLimit()).thenReturn(-1L);
+        assertThat(HashJoinOperation.numGracePartitions(circuitBreaker, 10, 1_000), is(0));
+
+        when(circuitBreaker.getLimit()).thenReturn(110L);
+        when(circuitBreaker.getUsed()).thenReturn(10L);
+        assertThat(HashJoinOperation.numGracePartitions(circuitBreaker, -1, 1_000), is(0));
+        assertThat(HashJoinOperation.numGracePartitions(circuitBreaker, 10, -1), is(0));
+    }
+
+    @Test
+    public void testGracePartitionsFitIntoHalfOfTheAvailableMemory() {
+        when(circuitBreaker.getLimit()).thenReturn(110L);
+        when(circuitBreaker.getUsed()).thenReturn(10L);
+        // 1000 bytes required, 50 bytes per partition
+        assertThat(HashJoinOperation.numGracePartitions(circuitBreaker, 10, 100), is(20));
+    }
+
+    @Test
+    public void testGracePartitionsAreCapped() {
+        when(circuitBreaker.getLimit()).thenReturn(110L);
+        when(circuitBreaker.getUsed()).thenReturn(110L);
+        assertThat(
+            HashJoinOperation.numGracePartitions(circuitBreaker, 100, 1_000_000),
+            is(HashJoinOperation.MAX_GRACE_PARTITIONS));
+    }
+
+    @Test
+    public void testMaxGracePartitionRowsFitIntoHalfOfTheAvailableMemory() {
+        when(circuitBreaker.getLimit()).thenReturn(110L);
+        when(circuitBreaker.getUsed()).thenReturn(10L);
+        assertThat(HashJoinOperation.maxGracePartitionRows(circuitBreaker, 10), is(5));
+
+        when(circuitBreaker.getUsed()).thenReturn(110L);
+        assertThat(HashJoinOperation.maxGracePartitionRows(circuitBreaker, 10), is(1));
+    }
+}
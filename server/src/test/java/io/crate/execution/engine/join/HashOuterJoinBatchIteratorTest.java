@@ -0,0 +1,189 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.join;
+
+import io.crate.breaker.ConcurrentRamAccounting;
+import io.crate.breaker.RamAccounting;
+import io.crate.breaker.RowAccounting;
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.data.join.CombinedRow;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.testing.BatchIteratorTester;
+import io.crate.testing.BatchSimulatingIterator;
+import io.crate.testing.TestingBatchIterators;
+import io.crate.testing.TestingRowConsumer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+public class HashOuterJoinBatchIteratorTest {
+
+    private static final ToIntFunction<Row> HASH = row -> Objects.hashCode(row.get(0));
+
+    private static final List<Integer> LEFT = Arrays.asList(0, 0, 1, 2, 2, 3, 4, 4, null);
+    private static final List<Integer> RIGHT = Arrays.asList(1, 1, 2, 3, 4, 4, 5, 5, 6, null);
+
+    private static final List<Object[]> INNER_JOIN_RESULT = Arrays.asList(
+        new Object[] { 1, 1 }, new Object[] { 1, 1 },
+        new Object[] { 2, 2 }, new Object[] { 2, 2 },
+        new Object[] { 3, 3 },
+        new Object[] { 4, 4 }, new Object[] { 4, 4 }, new Object[] { 4, 4 }, new Object[] { 4, 4 }
+    );
+
+    private static void verify(JoinType joinType, List<Object[]> expectedResult) throws Exception {
+        // block sizes smaller than the left side make the join re-read the right side for every block
+        for (int blockSize : new int[] { 1, 4, 100 }) {
+            verify(
+                () -> TestingBatchIterators.ofValues(LEFT),
+                () -> TestingBatchIterators.ofValues(RIGHT),
+                joinType,
+                blockSize,
+                expectedResult
+            );
+            verify(
+                () -> new BatchSimulatingIterator<>(TestingBatchIterators.ofValues(LEFT), 2, 5, null),
+                () -> new BatchSimulatingIterator<>(TestingBatchIterators.ofValues(RIGHT), 3, 4, null),
+                joinType,
+                blockSize,
+                expectedResult
+            );
+        }
+    }
+
+    private static void verify(Supplier<BatchIterator<Row>> left,
+                               Supplier<BatchIterator<Row>> right,
+                               JoinType joinType,
+                               int blockSize,
+                               List<Object[]> expectedResult) throws Exception {
+        //noinspection unchecked
+        BatchIteratorTester tester = new BatchIteratorTester(() -> new HashOuterJoinBatchIterator(
+            left.get(),
+            right.get(),
+            mock(RowAccounting.class),
+            RamAccounting.NO_ACCOUNTING,
+            new CombinedRow(1, 1),
+            row -> Objects.equals(row.get(0), row.get(1)),
+            HASH,
+            HASH,
+            () -> blockSize,
+            joinType
+        ));
+        tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
+    }
+
+    @Test
+    public void test_left_hash_join_emits_unmatched_left_rows() throws Exception {
+        List<Object[]> expectedResult = new ArrayList<>(INNER_JOIN_RESULT);
+        expectedResult.add(new Object[] { 0, null });
+        expectedResult.add(new Object[] { 0, null });
+        expectedResult.add(new Object[] { null, null });
+        verify(JoinType.LEFT, expectedResult);
+    }
+
+    @Test
+    public void test_right_hash_join_emits_unmatched_right_rows_once() throws Exception {
+        List<Object[]> expectedResult = new ArrayList<>(INNER_JOIN_RESULT);
+        expectedResult.add(new Object[] { null, 5 });
+        expectedResult.add(new Object[] { null, 5 });
+        expectedResult.add(new Object[] { null, 6 });
+        expectedResult.add(new Object[] { null, null });
+        verify(JoinType.RIGHT, expectedResult);
+    }
+
+    @Test
+    public void test_full_hash_join_emits_unmatched_rows_of_both_sides() throws Exception {
+        List<Object[]> expectedResult = new ArrayList<>(INNER_JOIN_RESULT);
+        expectedResult.add(new Object[] { 0, null });
+        expectedResult.add(new Object[] { 0, null });
+        expectedResult.add(new Object[] { null, null });
+        expectedResult.add(new Object[] { null, 5 });
+        expectedResult.add(new Object[] { null, 5 });
+        expectedResult.add(new Object[] { null, 6 });
+        expectedResult.add(new Object[] { null, null });
+        verify(JoinType.FULL, expectedResult);
+    }
+
+    @Test
+    public void test_semi_hash_join_emits_matching_left_rows_once() throws Exception {
+        verify(JoinType.SEMI, Arrays.asList(
+            new Object[] { 1 },
+            new Object[] { 2 }, new Object[] { 2 },
+            new Object[] { 3 },
+            new Object[] { 4 }, new Object[] { 4 }
+        ));
+    }
+
+    @Test
+    public void test_anti_hash_join_emits_left_rows_without_match() throws Exception {
+        verify(JoinType.ANTI, Arrays.asList(
+            new Object[] { 0 }, new Object[] { 0 },
+            new Object[] { null }
+        ));
+    }
+
+    @Test
+    public void test_right_hash_join_with_empty_left_side() throws Exception {
+        verify(
+            () -> TestingBatchIterators.range(0, 0),
+            () -> TestingBatchIterators.range(0, 3),
+            JoinType.RIGHT,
+            2,
+            Arrays.asList(new Object[] { null, 0 }, new Object[] { null, 1 }, new Object[] { null, 2 })
+        );
+    }
+
+    @Test
+    public void test_matched_right_rows_are_accounted() throws Exception {
+        ConcurrentRamAccounting ramAccounting = new ConcurrentRamAccounting(bytes -> { }, bytes -> { });
+        //noinspection unchecked
+        BatchIterator<Row> it = new HashOuterJoinBatchIterator(
+            TestingBatchIterators.range(9_990, 10_000),
+            TestingBatchIterators.range(0, 10_000),
+            mock(RowAccounting.class),
+            ramAccounting,
+            new CombinedRow(1, 1),
+            row -> Objects.equals(row.get(0), row.get(1)),
+            HASH,
+            HASH,
+            () -> 4,
+            JoinType.RIGHT
+        );
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(it, null);
+
+        assertThat(consumer.getResult().size(), is(10_000));
+        // One bit per right row up to the last matched one at position 9999
+        assertThat(ramAccounting.totalBytes(), greaterThanOrEqualTo(10_000L / Byte.SIZE));
+    }
+}
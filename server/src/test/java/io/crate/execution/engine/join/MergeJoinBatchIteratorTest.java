@@ -0,0 +1,163 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.join;
+
+import io.crate.breaker.RowAccounting;
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.data.join.CombinedRow;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.testing.BatchIteratorTester;
+import io.crate.testing.BatchSimulatingIterator;
+import io.crate.testing.TestingBatchIterators;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.mockito.Mockito.mock;
+
+public class MergeJoinBatchIteratorTest {
+
+    private static final Function<Row, Object[]> KEY = row -> new Object[] { row.get(0) };
+
+    private static final List<Integer> LEFT = Arrays.asList(0, 0, 1, 2, 2, 3, 4, 4, null);
+    private static final List<Integer> RIGHT = Arrays.asList(1, 1, 2, 3, 4, 4, 5, 5, 6, null);
+
+    private static Supplier<BatchIterator<Row>> mergeJoin(Supplier<BatchIterator<Row>> left,
+                                                          Supplier<BatchIterator<Row>> right,
+                                                          JoinType joinType) {
+        //noinspection unchecked
+        return () -> new MergeJoinBatchIterator(
+            left.get(),
+            right.get(),
+            mock(RowAccounting.class),
+            new CombinedRow(1, 1),
+            row -> Objects.equals(row.get(0), row.get(1)),
+            KEY,
+            KEY,
+            MergeJoinOperation.keyComparator(1),
+            joinType
+        );
+    }
+
+    private static List<Object[]> innerJoinResult() {
+        return Arrays.asList(
+            new Object[] { 1, 1 }, new Object[] { 1, 1 },
+            new Object[] { 2, 2 }, new Object[] { 2, 2 },
+            new Object[] { 3, 3 },
+            new Object[] { 4, 4 }, new Object[] { 4, 4 }, new Object[] { 4, 4 }, new Object[] { 4, 4 }
+        );
+    }
+
+    private static List<Object[]> leftJoinResult() {
+        List<Object[]> result = new ArrayList<>(innerJoinResult());
+        result.add(new Object[] { 0, null });
+        result.add(new Object[] { 0, null });
+        result.add(new Object[] { null, null });
+        return result;
+    }
+
+    private static List<Object[]> rightJoinResult() {
+        List<Object[]> result = new ArrayList<>(innerJoinResult());
+        result.add(new Object[] { null, 5 });
+        result.add(new Object[] { null, 5 });
+        result.add(new Object[] { null, 6 });
+        result.add(new Object[] { null, null });
+        return result;
+    }
+
+    private static List<Object[]> fullJoinResult() {
+        List<Object[]> result = new ArrayList<>(leftJoinResult());
+        result.add(new Object[] { null, 5 });
+        result.add(new Object[] { null, 5 });
+        result.add(new Object[] { null, 6 });
+        result.add(new Object[] { null, null });
+        return result;
+    }
+
+    @Test
+    public void test_inner_merge_join_with_duplicate_keys() throws Exception {
+        BatchIteratorTester tester = new BatchIteratorTester(mergeJoin(
+            () -> TestingBatchIterators.ofValues(LEFT),
+            () -> TestingBatchIterators.ofValues(RIGHT),
+            JoinType.INNER
+        ));
+        tester.verifyResultAndEdgeCaseBehaviour(innerJoinResult());
+    }
+
+    @Test
+    public void test_inner_merge_join_with_batched_sources() throws Exception {
+        BatchIteratorTester tester = new BatchIteratorTester(mergeJoin(
+            () -> new BatchSimulatingIterator<>(TestingBatchIterators.ofValues(LEFT), 2, 5, null),
+            () -> new BatchSimulatingIterator<>(TestingBatchIterators.ofValues(RIGHT), 3, 4, null),
+            JoinType.INNER
+        ));
+        tester.verifyResultAndEdgeCaseBehaviour(innerJoinResult());
+    }
+
+    @Test
+    public void test_left_merge_join_emits_unmatched_left_rows() throws Exception {
+        BatchIteratorTester tester = new BatchIteratorTester(mergeJoin(
+            () -> new BatchSimulatingIterator<>(TestingBatchIterators.ofValues(LEFT), 2, 5, null),
+            () -> TestingBatchIterators.ofValues(RIGHT),
+            JoinType.LEFT
+        ));
+        tester.verifyResultAndEdgeCaseBehaviour(leftJoinResult());
+    }
+
+    @Test
+    public void test_right_merge_join_emits_unmatched_right_rows() throws Exception {
+        BatchIteratorTester tester = new BatchIteratorTester(mergeJoin(
+            () -> TestingBatchIterators.ofValues(LEFT),
+            () -> new BatchSimulatingIterator<>(TestingBatchIterators.ofValues(RIGHT), 3, 4, null),
+            JoinType.RIGHT
+        ));
+        tester.verifyResultAndEdgeCaseBehaviour(rightJoinResult());
+    }
+
+    @Test
+    public void test_full_merge_join_emits_unmatched_rows_of_both_sides() throws Exception {
+        BatchIteratorTester tester = new BatchIteratorTester(mergeJoin(
+            () -> new BatchSimulatingIterator<>(TestingBatchIterators.ofValues(LEFT), 2, 5, null),
+            () -> new BatchSimulatingIterator<>(TestingBatchIterators.ofValues(RIGHT), 3, 4, null),
+            JoinType.FULL
+        ));
+        tester.verifyResultAndEdgeCaseBehaviour(fullJoinResult());
+    }
+
+    @Test
+    public void test_merge_join_with_empty_right_side() throws Exception {
+        BatchIteratorTester tester = new BatchIteratorTester(mergeJoin(
+            () -> TestingBatchIterators.range(0, 3),
+            () -> TestingBatchIterators.range(0, 0),
+            JoinType.LEFT
+        ));
+        tester.verifyResultAndEdgeCaseBehaviour(Arrays.asList(
+            new Object[] { 0, null }, new Object[] { 1, null }, new Object[] { 2, null }));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.pipeline;
+
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.analyze.relations.DocTableRelation;
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.execution.dsl.projection.builder.InputColumns;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.expression.InputFactory;
+import io.crate.expression.RowFilter;
+import io.crate.expression.batch.BatchExpression;
+import io.crate.expression.batch.BatchExpressions;
+import io.crate.expression.batch.BooleanVector;
+import io.crate.expression.symbol.Symbol;
+import io.crate.metadata.CoordinatorTxnCtx;
+import io.crate.metadata.RelationName;
+import io.crate.metadata.TransactionContext;
+import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
+import io.crate.testing.BatchIteratorTester;
+import io.crate.testing.BatchSimulatingIterator;
+import io.crate.testing.SqlExpressions;
+import io.crate.testing.T3;
+import io.crate.testing.TestingBatchIterators;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.is;
+
+public class BatchEvaluatingProjectorTest extends CrateDummyClusterServiceUnitTest {
+
+    private SqlExpressions sqlExpressions;
+    private InputFactory inputFactory;
+    private InputColumns.SourceSymbols sourceSymbols;
+    private final TransactionContext txnCtx = CoordinatorTxnCtx.systemTransactionContext();
+
+    @Before
+    public void prepare() throws Exception {
+        Map<RelationName, AnalyzedRelation> sources = T3.sources(List.of(T3.T1), clusterService);
+        DocTableRelation tr1 = (DocTableRelation) sources.get(T3.T1);
+        sqlExpressions = new SqlExpressions(sources, tr1);
+        inputFactory = new InputFactory(sqlExpressions.nodeCtx);
+        sourceSymbols = new InputColumns.SourceSymbols(List.of(sqlExpressions.asSymbol("x")));
+    }
+
+    private Symbol toInputColumns(String expression) {
+        Symbol symbol = sqlExpressions.normalize(sqlExpressions.asSymbol(expression));
+        return InputColumns.create(symbol, sourceSymbols);
+    }
+
+    private BatchEvaluatingProjector filter(String expression) {
+        Symbol query = toInputColumns(expression);
+        BatchExpression<BooleanVector> batchFilter = BatchExpressions.compilePredicate(query);
+        return BatchEvaluatingProjector.filter(batchFilter, RowFilter.create(txnCtx, inputFactory, query));
+    }
+
+    private BatchEvaluatingProjector eval(String ... expressions) {
+        List<Symbol> outputs = new ArrayList<>();
+        List<BatchExpression<?>> batchOutputs = new ArrayList<>();
+        for (String expression : expressions) {
+            Symbol output = toInputColumns(expression);
+            outputs.add(output);
+            batchOutputs.add(BatchExpressions.compile(output));
+        }
+        InputFactory.Context<CollectExpression<Row, ?>> ctx = inputFactory.ctxForInputColumns(txnCtx, outputs);
+        return BatchEvaluatingProjector.eval(batchOutputs, new MapRowUsingInputs(ctx.topLevelInputs(), ctx.expressions()));
+    }
+
+    @Test
+    public void test_filter_spanning_multiple_batches_and_source_pages() throws Exception {
+        List<Object[]> expectedResult = IntStream.range(0, 3000)
+            .filter(x -> x % 3 == 0)
+            .mapToObj(x -> new Object[] { x })
+            .collect(Collectors.toList());
+
+        BatchIteratorTester tester = new BatchIteratorTester(
+            () -> filter("x::bigint % 3 = 0").apply(
+                new BatchSimulatingIterator<>(TestingBatchIterators.range(0, 3000), 700, 5, null))
+        );
+        tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
+    }
+
+    @Test
+    public void test_eval_spanning_multiple_batches_and_source_pages() throws Exception {
+        List<Object[]> expectedResult = IntStream.range(0, 3000)
+            .mapToObj(x -> new Object[] { x, x * 2L + 1L })
+            .collect(Collectors.toList());
+
+        BatchIteratorTester tester = new BatchIteratorTester(
+            () -> eval("x", "x::bigint * 2 + 1").apply(
+                new BatchSimulatingIterator<>(TestingBatchIterators.range(0, 3000), 700, 5, null))
+        );
+        tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
+    }
+
+    @Test
+    public void test_errors_are_raised_for_the_row_causing_them() throws Exception {
+        // The first batch contains the row with x = 5, but the rows before it must still be emitted
+        BatchIterator<Row> it = eval("10 / (x::bigint - 5)").apply(TestingBatchIterators.range(0, 10));
+        for (int x = 0; x < 5; x++) {
+            assertThat(it.moveNext(), is(true));
+            assertThat(it.currentElement().get(0), is(10L / (x - 5L)));
+        }
+        assertThat(it.moveNext(), is(true));
+        expectThrows(ArithmeticException.class, () -> it.currentElement().get(0));
+    }
+}
@@ -35,10 +35,12 @@ import io.crate.execution.dsl.projection.GroupProjection;
 import io.crate.execution.dsl.projection.OrderedTopNProjection;
 import io.crate.execution.dsl.projection.TopNProjection;
 import io.crate.execution.engine.aggregation.AggregationPipe;
+import io.crate.execution.engine.aggregation.GroupBySpiller;
 import io.crate.execution.engine.aggregation.GroupingProjector;
 import io.crate.execution.engine.aggregation.impl.CountAggregation;
 import io.crate.execution.engine.sort.SortingProjector;
 import io.crate.execution.engine.sort.SortingTopNProjector;
+import io.crate.execution.engine.spill.SpillFile;
 import io.crate.execution.jobs.NodeLimits;
 import io.crate.expression.InputFactory;
 import io.crate.expression.eval.EvaluatingNormalizer;
@@ -67,11 +69,16 @@ import org.junit.Test;
 import org.mockito.Answers;
 import org.mockito.MockitoAnnotations;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static com.carrotsearch.randomizedtesting.RandomizedTest.$;
 import static io.crate.data.SentinelRow.SENTINEL;
@@ -250,6 +257,130 @@ public class ProjectionToProjectorVisitorTest extends CrateDummyClusterServiceUn
         ));
     }
 
+    @Test
+    public void testGroupProjectorWithSpilling() throws Exception {
+        // The spill directory is only created once the first spill file is written
+        Path spillDirectory = createTempDir().resolve("spill");
+        ProjectionToProjectorVisitor spillingVisitor = new ProjectionToProjectorVisitor(
+            clusterService,
+            new NodeLimits(),
+            new NoneCircuitBreakerService(),
+            nodeCtx,
+            THREAD_POOL,
+            Settings.builder()
+                .put(GroupBySpiller.SPILL_THRESHOLD_SETTING.getKey(), "64b")
+                .put(SpillFile.SPILL_PATH_SETTING.getKey(), spillDirectory.toString())
+                .build(),
+            mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS),
+            new InputFactory(nodeCtx),
+            EvaluatingNormalizer.functionOnlyNormalizer(nodeCtx),
+            t -> null,
+            t -> null
+        );
+        // select race, gender, avg(age), count(race) ... group by race, gender
+        List<Symbol> keys = Arrays.asList(new InputColumn(0, DataTypes.STRING), new InputColumn(2, DataTypes.STRING));
+        List<Aggregation> aggregations = Arrays.asList(
+            new Aggregation(
+                avgSignature,
+                avgSignature.getReturnType().createType(),
+                Collections.singletonList(new InputColumn(1))),
+            new Aggregation(
+                CountAggregation.SIGNATURE,
+                CountAggregation.SIGNATURE.getReturnType().createType(),
+                Collections.singletonList(new InputColumn(0)))
+        );
+        GroupProjection projection = new GroupProjection(
+            keys, aggregations, AggregateMode.ITER_FINAL, RowGranularity.CLUSTER);
+        Projector projector = spillingVisitor.create(
+            projection, txnCtx, RamAccounting.NO_ACCOUNTING, memoryManager, UUID.randomUUID());
+
+        List<Symbol> outputs = Arrays.asList(
+            new InputColumn(0, DataTypes.STRING), new InputColumn(1, DataTypes.STRING),
+            new InputColumn(2, DataTypes.DOUBLE), new InputColumn(3, DataTypes.LONG));
+        OrderedTopNProjection topNProjection = new OrderedTopNProjection(10, 0, outputs,
+            List.of(new InputColumn(2, DataTypes.DOUBLE)),
+            new boolean[]{false},
+            new boolean[]{false});
+        Projector topNProjector = visitor.create(
+            topNProjection, txnCtx, RamAccounting.NO_ACCOUNTING, memoryManager, UUID.randomUUID());
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add($("human", 20 + (i % 3), "female"));
+            rows.add($("human", 34, "male"));
+            rows.add($("vogon", 40 + (i % 2) * 8, "male"));
+        }
+        BatchIterator<Row> batchIterator = topNProjector.apply(projector.apply(
+            InMemoryBatchIterator.of(new CollectionBucket(rows), SENTINEL, true)));
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(batchIterator, null);
+
+        assertThat(consumer.getBucket(), contains(
+            isRow("human", "female", 20.99, 100L),
+            isRow("human", "male", 34.0, 100L),
+            isRow("vogon", "male", 44.0, 100L)
+        ));
+        assertThat(Files.isDirectory(spillDirectory), is(true));
+        try (Stream<Path> spillFiles = Files.list(spillDirectory)) {
+            assertThat("spill files must be deleted", spillFiles.count(), is(0L));
+        }
+    }
+
+    @Test
+    public void testGroupProjectorWithSpillingRepartitionsPartitionsExceedingTheThreshold() throws Exception {
+        Path spillDirectory = createTempDir().resolve("spill");
+        ProjectionToProjectorVisitor spillingVisitor = new ProjectionToProjectorVisitor(
+            clusterService,
+            new NodeLimits(),
+            new NoneCircuitBreakerService(),
+            nodeCtx,
+            THREAD_POOL,
+            Settings.builder()
+                .put(GroupBySpiller.SPILL_THRESHOLD_SETTING.getKey(), "64b")
+                .put(SpillFile.SPILL_PATH_SETTING.getKey(), spillDirectory.toString())
+                .build(),
+            mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS),
+            new InputFactory(nodeCtx),
+            EvaluatingNormalizer.functionOnlyNormalizer(nodeCtx),
+            t -> null,
+            t -> null
+        );
+        // select id, count(id) ... group by id
+        // Each partition contains many more groups than fit into the threshold
+        GroupProjection projection = new GroupProjection(
+            List.of(new InputColumn(0, DataTypes.INTEGER)),
+            List.of(new Aggregation(
+                CountAggregation.SIGNATURE,
+                CountAggregation.SIGNATURE.getReturnType().createType(),
+                List.of(new InputColumn(0)))),
+            AggregateMode.ITER_FINAL,
+            RowGranularity.CLUSTER);
+        Projector projector = spillingVisitor.create(
+            projection, txnCtx, RamAccounting.NO_ACCOUNTING, memoryManager, UUID.randomUUID());
+
+        int numGroups = 2_000;
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            for (int id = 0; id < numGroups; id++) {
+                rows.add($(id));
+            }
+        }
+        BatchIterator<Row> batchIterator = projector.apply(
+            InMemoryBatchIterator.of(new CollectionBucket(rows), SENTINEL, true));
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(batchIterator, null);
+
+        Set<Object> ids = new HashSet<>();
+        for (Row row : consumer.getBucket()) {
+            assertThat(row.get(1), is(3L));
+            ids.add(row.get(0));
+        }
+        assertThat(ids.size(), is(numGroups));
+        try (Stream<Path> spillFiles = Files.list(spillDirectory)) {
+            assertThat("spill files must be deleted", spillFiles.count(), is(0L));
+        }
+    }
+
     @Test
     public void testFilterProjection() throws Exception {
         List<Symbol> arguments = Arrays.asList(Literal.of(2), new InputColumn(1));
@@ -274,4 +405,29 @@ public class ProjectionToProjectorVisitorTest extends CrateDummyClusterServiceUn
         Bucket bucket = consumer.getBucket();
         assertThat(bucket.size(), is(1));
     }
+
+    @Test
+    public void test_filter_projection_uses_batch_evaluation_if_all_functions_support_it() throws Exception {
+        List<Symbol> arguments = Arrays.asList(Literal.of(2), new InputColumn(1, DataTypes.INTEGER));
+        EqOperator op =
+            (EqOperator) nodeCtx.functions().get(null, EqOperator.NAME, arguments, SearchPath.pathWithPGCatalogAndDoc());
+        Function function = new Function(op.signature(), arguments, EqOperator.RETURN_TYPE);
+        FilterProjection projection = new FilterProjection(function,
+            Arrays.asList(new InputColumn(0), new InputColumn(1)));
+
+        Projector projector = visitor.create(
+            projection, txnCtx, RamAccounting.NO_ACCOUNTING, memoryManager, UUID.randomUUID());
+        assertThat(projector, instanceOf(BatchEvaluatingProjector.class));
+
+        List<Object[]> rows = new ArrayList<>();
+        rows.add($("human", 2));
+        rows.add($("vogon", 1));
+        rows.add($("human", null));
+
+        BatchIterator<Row> filteredBI = projector.apply(
+            InMemoryBatchIterator.of(new CollectionBucket(rows), SENTINEL, true));
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(filteredBI, null);
+        assertThat(consumer.getBucket(), contains(isRow("human", 2)));
+    }
 }
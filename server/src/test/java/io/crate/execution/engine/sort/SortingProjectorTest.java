@@ -42,9 +42,12 @@ import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.junit.Test;
 
+import java.util.Comparator;
 import java.util.List;
 
 import static io.crate.testing.TestingHelpers.isRow;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.core.Is.is;
 
 public class SortingProjectorTest extends ESTestCase {
@@ -96,6 +99,68 @@ public class SortingProjectorTest extends ESTestCase {
         }
     }
 
+    @Test
+    public void testOrderByWithSpillingMergesSortedRuns() throws Exception {
+        ConcurrentRamAccounting ramAccounting = new ConcurrentRamAccounting(bytes -> { }, bytes -> { });
+        RowCellsAccountingWithEstimators rowAccounting = new RowCellsAccountingWithEstimators(
+            List.of(DataTypes.INTEGER, DataTypes.BOOLEAN), ramAccounting, 0);
+        Comparator<Object[]> descending = OrderingByPosition.arrayOrdering(0, true, false);
+        // threshold is low enough to spill the rows in several runs
+        ExternalSorter sorter = new ExternalSorter(
+            DataTypes.getStreamers(List.of(DataTypes.INTEGER, DataTypes.BOOLEAN)), descending, ramAccounting, 24, createTempDir());
+        InputCollectExpression input = new InputCollectExpression(0);
+        SortingProjector projector = new SortingProjector(
+            rowAccounting,
+            List.of(input, Literal.of(true)),
+            List.<CollectExpression<Row, ?>>of(input),
+            2,
+            descending,
+            3,
+            sorter
+        );
+
+        consumer.accept(projector.apply(TestingBatchIterators.range(1, 11)), null);
+        Bucket rows = consumer.getBucket();
+
+        assertThat(sorter.numRuns(), greaterThan(1));
+        assertThat(rows.size(), is(7));
+        int expected = 7;
+        for (Row row : rows) {
+            assertThat(row, isRow(expected--, true));
+        }
+    }
+
+    @Test
+    public void testOrderByWithSpillingMergesRunsInSeveralPassesIfFanInIsExceeded() throws Exception {
+        ConcurrentRamAccounting ramAccounting = new ConcurrentRamAccounting(bytes -> { }, bytes -> { });
+        RowCellsAccountingWithEstimators rowAccounting = new RowCellsAccountingWithEstimators(
+            List.of(DataTypes.INTEGER, DataTypes.BOOLEAN), ramAccounting, 0);
+        Comparator<Object[]> descending = OrderingByPosition.arrayOrdering(0, true, false);
+        ExternalSorter sorter = new ExternalSorter(
+            DataTypes.getStreamers(List.of(DataTypes.INTEGER, DataTypes.BOOLEAN)), descending, ramAccounting, 24, createTempDir(), 3);
+        InputCollectExpression input = new InputCollectExpression(0);
+        SortingProjector projector = new SortingProjector(
+            rowAccounting,
+            List.of(input, Literal.of(true)),
+            List.<CollectExpression<Row, ?>>of(input),
+            2,
+            descending,
+            0,
+            sorter
+        );
+
+        consumer.accept(projector.apply(TestingBatchIterators.range(1, 101)), null);
+        Bucket rows = consumer.getBucket();
+
+        // the runs are merged into intermediate runs, so that the final merge reads at most 2 runs + in-memory rows
+        assertThat(sorter.numRuns(), lessThan(3));
+        assertThat(rows.size(), is(100));
+        int expected = 100;
+        for (Row row : rows) {
+            assertThat(row, isRow(expected--, true));
+        }
+    }
+
     @Test
     public void testInvalidOffset() throws Exception {
         expectedException.expect(IllegalArgumentException.class);
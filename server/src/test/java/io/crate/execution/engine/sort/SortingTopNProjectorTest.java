@@ -47,6 +47,7 @@ import java.util.Comparator;
 import java.util.List;
 
 import static io.crate.testing.TestingHelpers.isRow;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.core.Is.is;
 
 public class SortingTopNProjectorTest extends ESTestCase {
@@ -122,6 +123,36 @@ public class SortingTopNProjectorTest extends ESTestCase {
         assertThat(iterateLength, is(10));
     }
 
+    @Test
+    public void testOrderByWithSpillingMergesSortedRuns() throws Exception {
+        ConcurrentRamAccounting ramAccounting = new ConcurrentRamAccounting(bytes -> { }, bytes -> { });
+        RowCellsAccountingWithEstimators rowAccounting = new RowCellsAccountingWithEstimators(
+            List.of(DataTypes.INTEGER, DataTypes.BOOLEAN), ramAccounting, 0);
+        Comparator<Object[]> descending = OrderingByPosition.arrayOrdering(0, true, false);
+        ExternalSorter sorter = new ExternalSorter(
+            DataTypes.getStreamers(List.of(DataTypes.INTEGER, DataTypes.BOOLEAN)), descending, ramAccounting, 24, createTempDir());
+        Projector projector = new SortingTopNProjector(
+            rowAccounting,
+            INPUT_LITERAL_LIST,
+            COLLECT_EXPRESSIONS,
+            1,
+            descending,
+            4,
+            2,
+            1,
+            sorter
+        );
+        consumer.accept(projector.apply(TestingBatchIterators.range(1, 11)), null);
+
+        Bucket rows = consumer.getBucket();
+        assertThat(sorter.numRuns(), greaterThan(1));
+        assertThat(rows.size(), is(4));
+        int expected = 8;
+        for (Row row : rows) {
+            assertThat(row, isRow(expected--));
+        }
+    }
+
     @Test
     public void testUsedMemoryIsAccountedFor() throws Exception {
         MemoryCircuitBreaker circuitBreaker = new MemoryCircuitBreaker(new ByteSizeValue(30, ByteSizeUnit.BYTES),
@@ -0,0 +1,72 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.engine.spill;
+
+import io.crate.types.DataTypes;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PagedSpillFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_rows_can_be_accessed_in_any_order_across_pages() {
+        try (PagedSpillFile file = PagedSpillFile.create(
+                DataTypes.getStreamers(List.of(DataTypes.INTEGER, DataTypes.STRING)), folder.getRoot().toPath(), 3, 2)) {
+            for (int i = 0; i < 10; i++) {
+                file.add(new Object[] { i, i % 2 == 0 ? null : "v" + i });
+            }
+            file.finishWriting();
+
+            assertThat(file.size(), is(10));
+            assertThat(file.get(9), is(new Object[] { 9, "v9" }));
+            assertThat(file.get(0), is(new Object[] { 0, null }));
+            assertThat(file.get(5), is(new Object[] { 5, "v5" }));
+            assertThat(file.get(3), is(new Object[] { 3, "v3" }));
+            assertThat(file.get(9), is(new Object[] { 9, "v9" }));
+            for (int i = 9; i >= 0; i--) {
+                assertThat(file.get(i)[0], is(i));
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> file.get(10));
+        }
+    }
+
+    @Test
+    public void test_get_on_closed_file_fails() {
+        PagedSpillFile file = PagedSpillFile.create(
+            DataTypes.getStreamers(List.of(DataTypes.INTEGER)), folder.getRoot().toPath(), 2, 1);
+        file.add(new Object[] { 1 });
+        file.finishWriting();
+        file.close();
+        assertThrows(IllegalStateException.class, () -> file.get(0));
+    }
+}
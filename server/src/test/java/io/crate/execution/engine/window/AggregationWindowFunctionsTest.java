@@ -299,6 +299,41 @@ public class AggregationWindowFunctionsTest extends AbstractWindowFunctionTest {
                        new Object[]{12.0, 12.0});
     }
 
+    @Test
+    public void test_max_over_sliding_rows_frames() throws Throwable {
+        Object[] expected = new Object[]{3, 4, 4, 5, 9, 9, 9, 6};
+
+        assertEvaluate("max(x) OVER(" +
+                            "ORDER BY y ROWS BETWEEN 1 PRECEDING and 1 FOLLOWING" +
+                       ")",
+                       contains(expected),
+                       List.of(new ColumnIdent("x"), new ColumnIdent("y")),
+                       new Object[]{3, 1L},
+                       new Object[]{1, 2L},
+                       new Object[]{4, 3L},
+                       new Object[]{1, 4L},
+                       new Object[]{5, 5L},
+                       new Object[]{9, 6L},
+                       new Object[]{2, 7L},
+                       new Object[]{6, 8L});
+    }
+
+    @Test
+    public void test_min_over_sliding_rows_frames_with_null_values() throws Throwable {
+        Object[] expected = new Object[]{3, 3, 1, 1, 1};
+
+        assertEvaluate("min(x) OVER(" +
+                            "ORDER BY y ROWS BETWEEN 1 PRECEDING and 1 FOLLOWING" +
+                       ")",
+                       contains(expected),
+                       List.of(new ColumnIdent("x"), new ColumnIdent("y")),
+                       new Object[]{3, 1L},
+                       new Object[]{null, 2L},
+                       new Object[]{4, 3L},
+                       new Object[]{1, 4L},
+                       new Object[]{5, 5L});
+    }
+
     @Test
     public void test_sum_with_range_offset_preceding_following_including_partitions() throws Throwable {
         Object[][] rows = new Object[][] {
@@ -26,10 +26,14 @@ import io.crate.breaker.RamAccounting;
 import io.crate.breaker.RowAccountingWithEstimators;
 import io.crate.common.collections.Lists2;
 import io.crate.data.BatchIterator;
+import io.crate.data.InMemoryBatchIterator;
 import io.crate.data.Input;
 import io.crate.data.Row;
+import io.crate.data.RowN;
 import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.execution.engine.sort.ExternalSorter;
 import io.crate.execution.engine.sort.OrderingByPosition;
+import io.crate.execution.engine.spill.SpillFile;
 import io.crate.metadata.functions.Signature;
 import io.crate.sql.tree.FrameBound;
 import io.crate.sql.tree.WindowFrame;
@@ -39,6 +43,7 @@ import io.crate.testing.TestingBatchIterators;
 import io.crate.testing.TestingRowConsumer;
 import io.crate.types.DataTypes;
 import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.settings.Settings;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -46,16 +51,20 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
 import static com.carrotsearch.randomizedtesting.RandomizedTest.$;
 import static io.crate.common.collections.Tuple.tuple;
+import static io.crate.data.SentinelRow.SENTINEL;
 import static io.crate.execution.engine.window.WindowFunctionBatchIterator.sortAndComputeWindowFunctions;
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 
 public class WindowBatchIteratorTest {
@@ -390,6 +399,118 @@ public class WindowBatchIteratorTest {
         );
     }
 
+    @Test
+    public void testPartitionRangesEndAtPartitionBoundaries() {
+        var rows = Lists2.map(List.of(0, 0, 0, 1, 1, 2, 2, 2, 2, 3), i -> new Object[] { i });
+        var ranges = WindowFunctionBatchIterator.partitionRanges(
+            rows, OrderingByPosition.arrayOrdering(0, false, false), 3, 1);
+        assertThat(
+            ranges,
+            contains(new int[] { 0, 3 }, new int[] { 3, 9 }, new int[] { 9, 10 })
+        );
+    }
+
+    @Test
+    public void testPartitionRangesWithTooFewRowsResultInSingleRange() {
+        var rows = Lists2.map(List.of(0, 1, 2, 3), i -> new Object[] { i });
+        var ranges = WindowFunctionBatchIterator.partitionRanges(
+            rows, OrderingByPosition.arrayOrdering(0, false, false), 4, 2);
+        assertThat(ranges, contains(new int[] { 0, 4 }));
+    }
+
+    @Test
+    public void testPartitionsAreComputedConcurrentlyWithSeparateFunctions() throws Exception {
+        int numRows = WindowFunctionBatchIterator.MIN_ROWS_PER_THREAD * 4;
+        int numPartitions = 100;
+        var rows = new ArrayList<Object[]>(numRows);
+        for (int i = 0; i < numRows; i++) {
+            rows.add(new Object[] { i % numPartitions, i, null });
+        }
+        Comparator<Object[]> cmpOrderBy = OrderingByPosition.arrayOrdering(1, false, false);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            var result = sortAndComputeWindowFunctions(
+                rows,
+                OrderingByPosition.arrayOrdering(0, false, false),
+                cmpOrderBy,
+                2,
+                () -> 4,
+                executor,
+                new WindowFunctionBatchIterator.Functions(
+                    getComputeFrameStart(cmpOrderBy, FrameBound.Type.UNBOUNDED_PRECEDING),
+                    getComputeFrameEnd(cmpOrderBy, FrameBound.Type.CURRENT_ROW),
+                    List.of(rowNumberWindowFunction()),
+                    List.of(),
+                    new Boolean[]{null},
+                    args
+                ),
+                () -> new WindowFunctionBatchIterator.Functions(
+                    getComputeFrameStart(cmpOrderBy, FrameBound.Type.UNBOUNDED_PRECEDING),
+                    getComputeFrameEnd(cmpOrderBy, FrameBound.Type.CURRENT_ROW),
+                    List.of(rowNumberWindowFunction()),
+                    List.of(),
+                    new Boolean[]{null},
+                    args
+                )
+            ).get(5, TimeUnit.SECONDS);
+            int numResults = 0;
+            for (Object[] row : result) {
+                int value = (int) row[1];
+                assertThat(row[2], is(value / numPartitions + 1));
+                numResults++;
+            }
+            assertThat(numResults, is(numRows));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testWindowBatchIteratorWithSpillingComputesPartitionsFromSortedRuns() throws Exception {
+        ArrayList<Row> rows = new ArrayList<>();
+        for (int i = 29; i >= 0; i--) {
+            rows.add(new RowN(i % 3, i));
+        }
+        ConcurrentRamAccounting ramAccounting = new ConcurrentRamAccounting(bytes -> { }, bytes -> { });
+        Comparator<Object[]> cmpPartitionBy = OrderingByPosition.arrayOrdering(0, false, false);
+        Comparator<Object[]> cmpOrderBy = OrderingByPosition.arrayOrdering(1, false, false);
+        var streamers = DataTypes.getStreamers(List.of(DataTypes.INTEGER, DataTypes.INTEGER, DataTypes.INTEGER));
+        // threshold is low enough to spill the rows in several runs and to spill each partition
+        ExternalSorter sorter = new ExternalSorter(
+            streamers, cmpPartitionBy.thenComparing(cmpOrderBy), ramAccounting, 100, SpillFile.directory(Settings.EMPTY));
+        BatchIterator<Row> iterator = WindowFunctionBatchIterator.of(
+            InMemoryBatchIterator.of(rows, SENTINEL, true),
+            new RowAccountingWithEstimators(List.of(DataTypes.INTEGER, DataTypes.INTEGER), ramAccounting, 32),
+            cmpPartitionBy,
+            cmpOrderBy,
+            2,
+            () -> 1,
+            Runnable::run,
+            new WindowFunctionBatchIterator.Functions(
+                getComputeFrameStart(cmpOrderBy, FrameBound.Type.UNBOUNDED_PRECEDING),
+                getComputeFrameEnd(cmpOrderBy, FrameBound.Type.CURRENT_ROW),
+                List.of(rowNumberWindowFunction()),
+                List.of(),
+                new Boolean[]{null},
+                args
+            ),
+            null,
+            sorter,
+            streamers
+        );
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(iterator, null);
+        List<Object[]> result = consumer.getResult();
+
+        assertThat(sorter.numRuns(), greaterThan(1));
+        assertThat(result.size(), is(30));
+        for (int i = 0; i < 30; i++) {
+            int partition = i / 10;
+            int value = partition + (i % 10) * 3;
+            assertThat(result.get(i), is(new Object[] { partition, value, i % 10 + 1 }));
+        }
+    }
+
     private static WindowFunction firstCellValue() {
         return new WindowFunction() {
             @Override
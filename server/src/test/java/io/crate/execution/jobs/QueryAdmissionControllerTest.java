@@ -0,0 +1,190 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.execution.jobs;
+
+import io.crate.common.unit.TimeValue;
+import io.crate.exceptions.JobKilledException;
+import org.apache.logging.log4j.LogManager;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class QueryAdmissionControllerTest extends ESTestCase {
+
+    private ThreadPool threadPool;
+
+    @Before
+    public void setupThreadPool() {
+        threadPool = new TestThreadPool(getClass().getSimpleName());
+    }
+
+    @After
+    public void shutdownThreadPool() throws Exception {
+        threadPool.shutdown();
+        threadPool.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private QueryAdmissionController newController(int concurrency, int queueSize, TimeValue queueTimeout) {
+        return newController(concurrency, queueSize, queueTimeout, new NoopCircuitBreaker("query"));
+    }
+
+    private QueryAdmissionController newController(int concurrency,
+                                                   int queueSize,
+                                                   TimeValue queueTimeout,
+                                                   CircuitBreaker breaker) {
+        return new QueryAdmissionController(
+            true,
+            concurrency,
+            concurrency,
+            queueSize,
+            queueTimeout,
+            0.5,
+            breaker,
+            threadPool
+        );
+    }
+
+    @Test
+    public void test_queries_are_admitted_immediately_if_disabled() {
+        var controller = new QueryAdmissionController(
+            false,
+            1,
+            1,
+            0,
+            TimeValue.timeValueSeconds(5),
+            0.5,
+            new NoopCircuitBreaker("query"),
+            threadPool
+        );
+        assertThat(controller.acquire(UUID.randomUUID(), "crate").isDone(), is(true));
+        assertThat(controller.acquire(UUID.randomUUID(), "crate").isDone(), is(true));
+        assertThat(controller.stats().limit(), is(-1));
+        assertThat(controller.stats().running(), is(0));
+    }
+
+    @Test
+    public void test_query_exceeding_the_limit_is_queued_and_admitted_once_running_query_finishes() throws Exception {
+        var controller = newController(1, 10, TimeValue.timeValueSeconds(30));
+        CompletableFuture<Releasable> first = controller.acquire(UUID.randomUUID(), "crate");
+        CompletableFuture<Releasable> second = controller.acquire(UUID.randomUUID(), "crate");
+        assertThat(first.isDone(), is(true));
+        assertThat(second.isDone(), is(false));
+        assertThat(controller.stats().running(), is(1));
+        assertThat(controller.stats().queued(), is(1));
+
+        first.get().close();
+        Releasable secondAdmission = second.get(5, TimeUnit.SECONDS);
+        assertThat(controller.stats().running(), is(1));
+        assertThat(controller.stats().queued(), is(0));
+
+        secondAdmission.close();
+        // Closing twice must not release another admission
+        secondAdmission.close();
+        assertThat(controller.stats().running(), is(0));
+    }
+
+    @Test
+    public void test_query_is_rejected_if_queue_is_full() throws Exception {
+        var controller = newController(1, 1, TimeValue.timeValueSeconds(30));
+        controller.acquire(UUID.randomUUID(), "crate");
+        controller.acquire(UUID.randomUUID(), "crate");
+        CompletableFuture<Releasable> rejected = controller.acquire(UUID.randomUUID(), "crate");
+
+        assertThat(rejected.isCompletedExceptionally(), is(true));
+        assertThrows(ExecutionException.class, rejected::get);
+        assertThat(controller.stats().rejected(), is(1L));
+    }
+
+    @Test
+    public void test_queued_query_is_rejected_after_timeout() throws Exception {
+        var controller = newController(1, 10, TimeValue.timeValueMillis(10));
+        controller.acquire(UUID.randomUUID(), "crate");
+        CompletableFuture<Releasable> queued = controller.acquire(UUID.randomUUID(), "crate");
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertThat(e.getCause(), instanceOf(EsRejectedExecutionException.class));
+        assertThat(controller.stats().timedOut(), is(1L));
+        assertThat(controller.stats().queued(), is(0));
+    }
+
+    @Test
+    public void test_queries_are_queued_while_memory_threshold_is_exceeded() throws Exception {
+        var breaker = new MemoryCircuitBreaker(new ByteSizeValue(100), 1.0, LogManager.getLogger(getClass()));
+        var controller = newController(10, 10, TimeValue.timeValueSeconds(30), breaker);
+
+        CompletableFuture<Releasable> first = controller.acquire(UUID.randomUUID(), "crate");
+        assertThat(first.isDone(), is(true));
+
+        breaker.addWithoutBreaking(60);
+        CompletableFuture<Releasable> second = controller.acquire(UUID.randomUUID(), "crate");
+        assertThat(second.isDone(), is(false));
+
+        breaker.addWithoutBreaking(-60);
+        first.get().close();
+        second.get(5, TimeUnit.SECONDS).close();
+        assertThat(controller.stats().running(), is(0));
+    }
+
+    @Test
+    public void test_killed_queued_query_is_removed_from_queue() throws Exception {
+        var controller = newController(1, 10, TimeValue.timeValueMinutes(10));
+        CompletableFuture<Releasable> first = controller.acquire(UUID.randomUUID(), "crate");
+        UUID jobId = UUID.randomUUID();
+        CompletableFuture<Releasable> queued = controller.acquire(jobId, "arthur");
+        CompletableFuture<Releasable> other = controller.acquire(UUID.randomUUID(), "arthur");
+        assertThat(controller.stats().queued(), is(2));
+
+        // Another user can't kill the query
+        controller.killJob(jobId, "trillian");
+        assertThat(queued.isDone(), is(false));
+
+        controller.killJob(jobId, "arthur");
+        var e = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertThat(e.getCause(), instanceOf(JobKilledException.class));
+        assertThat(controller.stats().queued(), is(1));
+
+        controller.killAllJobs();
+        e = assertThrows(ExecutionException.class, () -> other.get(5, TimeUnit.SECONDS));
+        assertThat(e.getCause(), instanceOf(JobKilledException.class));
+        assertThat(controller.stats().queued(), is(0));
+        first.get().close();
+    }
+}
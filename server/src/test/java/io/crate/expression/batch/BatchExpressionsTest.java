@@ -0,0 +1,185 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.batch;
+
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.analyze.relations.DocTableRelation;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.dsl.projection.builder.InputColumns;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.expression.InputFactory;
+import io.crate.expression.symbol.Symbol;
+import io.crate.metadata.CoordinatorTxnCtx;
+import io.crate.metadata.RelationName;
+import io.crate.metadata.TransactionContext;
+import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
+import io.crate.testing.SqlExpressions;
+import io.crate.testing.T3;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class BatchExpressionsTest extends CrateDummyClusterServiceUnitTest {
+
+    private SqlExpressions sqlExpressions;
+    private InputFactory inputFactory;
+    private InputColumns.SourceSymbols sourceSymbols;
+    private final TransactionContext txnCtx = CoordinatorTxnCtx.systemTransactionContext();
+    private final List<Object[]> rows = new ArrayList<>();
+
+    @Before
+    public void prepare() throws Exception {
+        Map<RelationName, AnalyzedRelation> sources = T3.sources(List.of(T3.T1), clusterService);
+        DocTableRelation tr1 = (DocTableRelation) sources.get(T3.T1);
+        sqlExpressions = new SqlExpressions(sources, tr1);
+        inputFactory = new InputFactory(sqlExpressions.nodeCtx);
+        sourceSymbols = new InputColumns.SourceSymbols(List.of(
+            sqlExpressions.asSymbol("a"),
+            sqlExpressions.asSymbol("x"),
+            sqlExpressions.asSymbol("i")
+        ));
+        // More than two batches to cover re-use of the vectors and a partially filled batch
+        int numRows = RowBatch.CAPACITY * 2 + randomIntBetween(1, RowBatch.CAPACITY - 1);
+        for (int i = 0; i < numRows; i++) {
+            rows.add(new Object[] {
+                randomFrom("foo", "Foo", "bar", "foobar", null),
+                randomBoolean() ? null : randomIntBetween(-5, 5),
+                randomBoolean() ? null : randomIntBetween(-5, 5)
+            });
+        }
+    }
+
+    private Symbol toInputColumns(String expression) {
+        Symbol symbol = sqlExpressions.normalize(sqlExpressions.asSymbol(expression));
+        return InputColumns.create(symbol, sourceSymbols);
+    }
+
+    private List<Object> evaluateRowByRow(Symbol symbol) {
+        InputFactory.Context<CollectExpression<Row, ?>> ctx = inputFactory.ctxForInputColumns(txnCtx, List.of(symbol));
+        Input<?> input = ctx.topLevelInputs().get(0);
+        List<Object> result = new ArrayList<>(rows.size());
+        for (Object[] cells : rows) {
+            Row row = new RowN(cells);
+            for (CollectExpression<Row, ?> expression : ctx.expressions()) {
+                expression.setNextRow(row);
+            }
+            result.add(input.value());
+        }
+        return result;
+    }
+
+    private List<Object> evaluateInBatches(BatchExpression<?> expression) {
+        RowBatch batch = new RowBatch();
+        List<Object> result = new ArrayList<>(rows.size());
+        for (Object[] cells : rows) {
+            batch.add(new RowN(cells));
+            if (batch.isFull()) {
+                collect(expression, batch, result);
+                batch.clear();
+            }
+        }
+        collect(expression, batch, result);
+        return result;
+    }
+
+    private static void collect(BatchExpression<?> expression, RowBatch batch, List<Object> result) {
+        if (batch.size() == 0) {
+            return;
+        }
+        ColumnVector vector = expression.evaluate(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            result.add(vector.get(i));
+        }
+    }
+
+    private void assertBatchEvaluationMatchesRowByRow(String expression) {
+        Symbol symbol = toInputColumns(expression);
+        BatchExpression<?> batchExpression = BatchExpressions.compile(symbol);
+        assertThat("Must be able to compile " + symbol, batchExpression, notNullValue());
+        assertThat(expression, evaluateInBatches(batchExpression), is(evaluateRowByRow(symbol)));
+    }
+
+    @Test
+    public void test_comparisons_match_row_by_row_evaluation() {
+        assertBatchEvaluationMatchesRowByRow("x = i");
+        assertBatchEvaluationMatchesRowByRow("x > 2");
+        assertBatchEvaluationMatchesRowByRow("x >= i");
+        assertBatchEvaluationMatchesRowByRow("x < 0");
+        assertBatchEvaluationMatchesRowByRow("x <= i");
+        assertBatchEvaluationMatchesRowByRow("a = 'foo'");
+        assertBatchEvaluationMatchesRowByRow("a > 'bar'");
+    }
+
+    @Test
+    public void test_logical_operators_match_row_by_row_evaluation() {
+        assertBatchEvaluationMatchesRowByRow("x > 2 and i < 0");
+        assertBatchEvaluationMatchesRowByRow("x > 2 or i < 0");
+        assertBatchEvaluationMatchesRowByRow("not (x = i)");
+        assertBatchEvaluationMatchesRowByRow("x is null");
+        assertBatchEvaluationMatchesRowByRow("a is null or not (x > 1 and i is null)");
+    }
+
+    @Test
+    public void test_like_matches_row_by_row_evaluation() {
+        assertBatchEvaluationMatchesRowByRow("a like 'foo%'");
+        assertBatchEvaluationMatchesRowByRow("a ilike 'foo%'");
+        assertBatchEvaluationMatchesRowByRow("a like '_oo'");
+    }
+
+    @Test
+    public void test_arithmetic_and_casts_match_row_by_row_evaluation() {
+        assertBatchEvaluationMatchesRowByRow("x::bigint");
+        assertBatchEvaluationMatchesRowByRow("x::bigint * 3 + i::bigint");
+        assertBatchEvaluationMatchesRowByRow("x::bigint - 10 > i::bigint");
+        assertBatchEvaluationMatchesRowByRow("x::double / i::double");
+        assertBatchEvaluationMatchesRowByRow("x::double % i::double >= 1.0");
+    }
+
+    @Test
+    public void test_batch_evaluation_fails_like_row_by_row_evaluation_on_division_by_zero() {
+        rows.clear();
+        rows.add(new Object[] { "foo", 1, 0 });
+        Symbol symbol = toInputColumns("x::bigint / i::bigint");
+        BatchExpression<?> batchExpression = BatchExpressions.compile(symbol);
+        assertThat(batchExpression, notNullValue());
+        expectThrows(ArithmeticException.class, () -> evaluateInBatches(batchExpression));
+        expectThrows(ArithmeticException.class, () -> evaluateRowByRow(symbol));
+    }
+
+    @Test
+    public void test_compile_returns_null_for_unsupported_functions() {
+        assertThat(BatchExpressions.compile(toInputColumns("upper(a) = 'FOO'")), nullValue());
+        assertThat(BatchExpressions.compile(toInputColumns("x + 1")), nullValue());
+        assertThat(BatchExpressions.compile(toInputColumns("x::real")), nullValue());
+        assertThat(BatchExpressions.compilePredicate(toInputColumns("x")), nullValue());
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.expression.compile;
+
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.analyze.relations.DocTableRelation;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.dsl.projection.builder.InputColumns;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.expression.InputCondition;
+import io.crate.expression.InputFactory;
+import io.crate.expression.symbol.Symbol;
+import io.crate.metadata.CoordinatorTxnCtx;
+import io.crate.metadata.RelationName;
+import io.crate.metadata.TransactionContext;
+import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
+import io.crate.testing.SqlExpressions;
+import io.crate.testing.T3;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ExpressionCompilerTest extends CrateDummyClusterServiceUnitTest {
+
+    private SqlExpressions sqlExpressions;
+    private InputFactory inputFactory;
+    private ExpressionCompiler compiler;
+    private InputColumns.SourceSymbols sourceSymbols;
+    private final TransactionContext txnCtx = CoordinatorTxnCtx.systemTransactionContext();
+    private final List<Object[]> rows = new ArrayList<>();
+
+    @Before
+    public void prepare() throws Exception {
+        Map<RelationName, AnalyzedRelation> sources = T3.sources(List.of(T3.T1), clusterService);
+        DocTableRelation tr1 = (DocTableRelation) sources.get(T3.T1);
+        sqlExpressions = new SqlExpressions(sources, tr1);
+        inputFactory = new InputFactory(sqlExpressions.nodeCtx);
+        compiler = new ExpressionCompiler(txnCtx, sqlExpressions.nodeCtx);
+        sourceSymbols = new InputColumns.SourceSymbols(List.of(
+            sqlExpressions.asSymbol("a"),
+            sqlExpressions.asSymbol("x"),
+            sqlExpressions.asSymbol("i")
+        ));
+        for (int i = 0; i < 200; i++) {
+            rows.add(new Object[] {
+                randomFrom("foo", "Foo", "bar", null),
+                randomBoolean() ? null : randomIntBetween(-3, 3),
+                randomBoolean() ? null : randomIntBetween(-3, 3)
+            });
+        }
+    }
+
+    private Symbol toInputColumns(String expression) {
+        Symbol symbol = sqlExpressions.normalize(sqlExpressions.asSymbol(expression));
+        return InputColumns.create(symbol, sourceSymbols);
+    }
+
+    private void assertPredicateMatchesInterpreted(String expression) {
+        Symbol query = toInputColumns(expression);
+        Predicate<Row> compiled = compiler.compilePredicate(query);
+        assertThat(compiled, notNullValue());
+
+        InputFactory.Context<CollectExpression<Row, ?>> ctx = inputFactory.ctxForInputColumns(txnCtx);
+        @SuppressWarnings("unchecked")
+        Input<Boolean> condition = (Input<Boolean>) ctx.add(query);
+        for (Object[] cells : rows) {
+            Row row = new RowN(cells);
+            for (CollectExpression<Row, ?> collectExpression : ctx.expressions()) {
+                collectExpression.setNextRow(row);
+            }
+            assertThat(expression + " on " + row, compiled.test(row), is(InputCondition.matches(condition)));
+        }
+    }
+
+    private void assertOutputsMatchInterpreted(String ... expressions) {
+        List<Symbol> outputs = new ArrayList<>();
+        for (String expression : expressions) {
+            outputs.add(toInputColumns(expression));
+        }
+        Function<Row, Row> compiled = compiler.compileRowMapper(outputs);
+        assertThat(compiled, notNullValue());
+
+        InputFactory.Context<CollectExpression<Row, ?>> ctx = inputFactory.ctxForInputColumns(txnCtx, outputs);
+        for (Object[] cells : rows) {
+            Row row = new RowN(cells);
+            for (CollectExpression<Row, ?> expression : ctx.expressions()) {
+                expression.setNextRow(row);
+            }
+            Row result = compiled.apply(row);
+            for (int i = 0; i < outputs.size(); i++) {
+                assertThat(outputs.get(i) + " on " + row, result.get(i), is(ctx.topLevelInputs().get(i).value()));
+            }
+        }
+    }
+
+    @Test
+    public void test_compiled_predicates_match_interpreted_predicates() {
+        assertPredicateMatchesInterpreted("x = i");
+        assertPredicateMatchesInterpreted("x > 1 and i <= 0");
+        assertPredicateMatchesInterpreted("x < 1 or i >= 2");
+        assertPredicateMatchesInterpreted("not (x = 2)");
+        assertPredicateMatchesInterpreted("a is null or x is null");
+        assertPredicateMatchesInterpreted("a like 'f%' and x + i > 0");
+        assertPredicateMatchesInterpreted("upper(a) = 'FOO'");
+    }
+
+    @Test
+    public void test_compiled_outputs_match_interpreted_outputs() {
+        assertOutputsMatchInterpreted("x", "a", "x + i", "x * 2 > i", "concat(a, '_suffix')", "coalesce(x, i, 10)");
+    }
+
+    @Test
+    public void test_arguments_of_scalars_are_evaluated_lazily() {
+        // The division must only be evaluated if i != 0
+        assertOutputsMatchInterpreted("case when i = 0 then null else x / i end");
+    }
+
+    @Test
+    public void test_expressions_which_only_differ_in_literals_share_a_template() {
+        compiler.compilePredicate(toInputColumns("x > 1 and a = 'foo' and x + 3 < 10"));
+        long numTemplates = ExpressionCompiler.numCachedTemplates();
+        Predicate<Row> predicate = compiler.compilePredicate(toInputColumns("x > 2 and a = 'bar' and x + 4 < 12"));
+        assertThat(ExpressionCompiler.numCachedTemplates(), is(numTemplates));
+
+        assertThat(predicate.test(new RowN("bar", 3, null)), is(true));
+        assertThat(predicate.test(new RowN("bar", 8, null)), is(false));
+        assertThat(predicate.test(new RowN("foo", 3, null)), is(false));
+    }
+
+    @Test
+    public void test_symbols_which_are_not_bound_to_inputs_cannot_be_compiled() {
+        Symbol query = sqlExpressions.normalize(sqlExpressions.asSymbol("x > 1"));
+        assertThat(compiler.compilePredicate(query), nullValue());
+    }
+}
@@ -21,7 +21,10 @@
 
 package io.crate.expression.reference.sys.node;
 
+import io.crate.execution.engine.cache.QueryResultCacheStats;
 import io.crate.execution.engine.collect.NestableCollectExpression;
+import io.crate.execution.engine.distribution.PageCompressionStats;
+import io.crate.execution.jobs.QueryAdmissionStats;
 import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.expressions.RowCollectExpressionFactory;
 import io.crate.metadata.sys.SysNodesTableInfo;
@@ -80,6 +83,9 @@ public class NodeStatsContextFieldResolverTest {
             () -> new ConnectionStats(2L, 4L),
             () -> postgresAddress,
             () -> 12L,
+            () -> new PageCompressionStats(3L, 1L, 2048L, 500L),
+            () -> new QueryAdmissionStats(8, 8, 3, 2L, 1L),
+            () -> new QueryResultCacheStats(5L, 7L, 1L, 2L, 4096L),
             () -> 1L
         );
     }
@@ -142,6 +148,59 @@ public class NodeStatsContextFieldResolverTest {
         assertThat(open.value(), is(12L));
     }
 
+    @Test
+    public void test_page_compression_stats_can_be_retrieved() {
+        NodeStatsContext statsContext = resolver.forTopColumnIdents(
+            Collections.singletonList(SysNodesTableInfo.Columns.CONNECTIONS));
+        RowCollectExpressionFactory<NodeStatsContext> expressionFactory =
+            SysNodesTableInfo.create().expressions().get(SysNodesTableInfo.Columns.CONNECTIONS);
+        NestableCollectExpression<NodeStatsContext, ?> expression = expressionFactory.create();
+
+        NestableCollectExpression transport = (NestableCollectExpression) expression.getChild("transport");
+        NestableCollectExpression compression = (NestableCollectExpression) transport.getChild("page_compression");
+        NestableCollectExpression pagesCompressed = (NestableCollectExpression) compression.getChild("pages_compressed");
+        pagesCompressed.setNextRow(statsContext);
+        assertThat(pagesCompressed.value(), is(3L));
+
+        NestableCollectExpression bytesSaved = (NestableCollectExpression) compression.getChild("bytes_saved");
+        bytesSaved.setNextRow(statsContext);
+        assertThat(bytesSaved.value(), is(2048L));
+    }
+
+    @Test
+    public void test_query_admission_stats_can_be_retrieved() {
+        NodeStatsContext statsContext = resolver.forTopColumnIdents(
+            Collections.singletonList(SysNodesTableInfo.Columns.QUERY_ADMISSION));
+        RowCollectExpressionFactory<NodeStatsContext> expressionFactory =
+            SysNodesTableInfo.create().expressions().get(SysNodesTableInfo.Columns.QUERY_ADMISSION);
+        NestableCollectExpression<NodeStatsContext, ?> expression = expressionFactory.create();
+
+        NestableCollectExpression queued = (NestableCollectExpression) expression.getChild("queued");
+        queued.setNextRow(statsContext);
+        assertThat(queued.value(), is(3));
+
+        NestableCollectExpression timedOut = (NestableCollectExpression) expression.getChild("timed_out");
+        timedOut.setNextRow(statsContext);
+        assertThat(timedOut.value(), is(1L));
+    }
+
+    @Test
+    public void test_query_result_cache_stats_can_be_retrieved() {
+        NodeStatsContext statsContext = resolver.forTopColumnIdents(
+            Collections.singletonList(SysNodesTableInfo.Columns.QUERY_RESULT_CACHE));
+        RowCollectExpressionFactory<NodeStatsContext> expressionFactory =
+            SysNodesTableInfo.create().expressions().get(SysNodesTableInfo.Columns.QUERY_RESULT_CACHE);
+        NestableCollectExpression<NodeStatsContext, ?> expression = expressionFactory.create();
+
+        NestableCollectExpression hits = (NestableCollectExpression) expression.getChild("hits");
+        hits.setNextRow(statsContext);
+        assertThat(hits.value(), is(5L));
+
+        NestableCollectExpression size = (NestableCollectExpression) expression.getChild("size");
+        size.setNextRow(statsContext);
+        assertThat(size.value(), is(4096L));
+    }
+
     @Test
     public void testColumnIdentsResolution() {
         NodeStatsContext context = resolver.forTopColumnIdents(Set.of(
@@ -712,7 +712,7 @@ public class InformationSchemaTest extends SQLIntegrationTestCase {
         execute("select max(ordinal_position) from information_schema.columns");
         assertEquals(1, response.rowCount());
 
-        assertEquals(119, response.rows()[0][0]);
+        assertEquals(136, response.rows()[0][0]);
 
         execute("create table t1 (id integer, col1 string)");
         ensureGreen();
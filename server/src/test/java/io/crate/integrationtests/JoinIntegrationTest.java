@@ -1155,7 +1155,7 @@ public class JoinIntegrationTest extends SQLIntegrationTestCase {
         // This should prevent from the test case becoming invalid
         assertThat(printedTable(response.rows()), is(
             "Eval[id, a, id, b, id, c, id, d]\n" +
-            "  └ NestedLoopJoin[LEFT | (id = id)]\n" +
+            "  └ HashJoin[LEFT | (id = id)]\n" +
             "    ├ HashJoin[(id = id)]\n" +
             "    │  ├ HashJoin[(id = id)]\n" +
             "    │  │  ├ Get[doc.t2 | id, b | DocKeys{1; 2} | ((id = 1) OR (id = 2))]\n" +
@@ -0,0 +1,66 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.integrationtests;
+
+import static io.crate.testing.TestingHelpers.printedTable;
+import static org.hamcrest.Matchers.is;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+import io.crate.action.sql.Session;
+import io.crate.execution.engine.collect.LuceneShardCollectorProvider;
+
+public class ParallelCollectIntegrationTest extends SQLIntegrationTestCase {
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        return Settings.builder()
+            .put(super.nodeSettings(nodeOrdinal))
+            .put(LuceneShardCollectorProvider.MIN_DOCS_PER_SLICE_SETTING.getKey(), 10)
+            .build();
+    }
+
+    @Test
+    public void test_parallel_partial_aggregations_match_serial_collect() throws Exception {
+        execute("create table t (x int, g int) clustered into 1 shards with (number_of_replicas = 0)");
+        execute("insert into t (x, g) (select col1, col1 % 7 from generate_series(1, 1000))");
+        execute("refresh table t");
+
+        String[] statements = new String[] {
+            "select count(*), sum(x), min(x), max(x), avg(x) from t",
+            "select count(*), sum(x) from t where x > 100",
+            "select g, count(*), sum(x), max(x) from t group by g order by g"
+        };
+        String[] serialResults = new String[statements.length];
+        for (int i = 0; i < statements.length; i++) {
+            serialResults[i] = printedTable(execute(statements[i]).rows());
+        }
+        try (Session session = createSession(null)) {
+            execute("set max_parallel_workers_per_shard = 4", null, session);
+            for (int i = 0; i < statements.length; i++) {
+                assertThat(printedTable(execute(statements[i], null, session).rows()), is(serialResults[i]));
+            }
+        }
+        assertThat(serialResults[0], is("1000| 500500| 1| 1000| 500.5\n"));
+    }
+}
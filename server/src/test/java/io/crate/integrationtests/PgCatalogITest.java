@@ -108,7 +108,9 @@ public class PgCatalogITest extends SQLIntegrationTestCase {
         assertThat(printedTable(response.rows()), is(
             "enable_hashjoin| false| Considers using the Hash Join instead of the Nested Loop Join implementation.| NULL| NULL\n" +
             "max_index_keys| 32| Shows the maximum number of index keys.| NULL| NULL\n" +
+            "max_parallel_workers_per_shard| 1| Sets the maximum number of threads used to collect a single shard.| NULL| NULL\n" +
             "optimizer_deduplicate_order| true| Indicates if the optimizer rule DeduplicateOrder is activated.| NULL| NULL\n" +
+            "optimizer_filter_hash_join_probe_side_by_build_side_keys| true| Indicates if the optimizer rule FilterHashJoinProbeSideByBuildSideKeys is activated.| NULL| NULL\n" +
             "optimizer_merge_aggregate_and_collect_to_count| true| Indicates if the optimizer rule MergeAggregateAndCollectToCount is activated.| NULL| NULL\n" +
             "optimizer_merge_aggregate_rename_and_collect_to_count| true| Indicates if the optimizer rule MergeAggregateRenameAndCollectToCount is activated.| NULL| NULL\n" +
             "optimizer_merge_filter_and_collect| true| Indicates if the optimizer rule MergeFilterAndCollect is activated.| NULL| NULL\n" +
@@ -130,7 +132,10 @@ public class PgCatalogITest extends SQLIntegrationTestCase {
             "optimizer_rewrite_collect_to_get| true| Indicates if the optimizer rule RewriteCollectToGet is activated.| NULL| NULL\n" +
             "optimizer_rewrite_filter_on_outer_join_to_inner_join| true| Indicates if the optimizer rule RewriteFilterOnOuterJoinToInnerJoin is activated.| NULL| NULL\n" +
             "optimizer_rewrite_group_by_keys_limit_to_top_n_distinct| true| Indicates if the optimizer rule RewriteGroupByKeysLimitToTopNDistinct is activated.| NULL| NULL\n" +
+            "optimizer_rewrite_hash_join_to_merge_join| true| Indicates if the optimizer rule RewriteHashJoinToMergeJoin is activated.| NULL| NULL\n" +
             "optimizer_rewrite_insert_from_sub_query_to_insert_from_values| true| Indicates if the optimizer rule RewriteInsertFromSubQueryToInsertFromValues is activated.| NULL| NULL\n" +
+            "optimizer_rewrite_nested_loop_join_to_hash_join| true| Indicates if the optimizer rule RewriteNestedLoopJoinToHashJoin is activated.| NULL| NULL\n" +
+            "optimizer_rewrite_nested_loop_join_to_merge_join| true| Indicates if the optimizer rule RewriteNestedLoopJoinToMergeJoin is activated.| NULL| NULL\n" +
             "optimizer_rewrite_to_query_then_fetch| true| Indicates if the optimizer rule RewriteToQueryThenFetch is activated.| NULL| NULL\n" +
             "search_path| pg_catalog, doc| Sets the schema search order.| NULL| NULL\n" +
             "server_version| 10.5| Reports the emulated PostgreSQL version number| NULL| NULL\n" +
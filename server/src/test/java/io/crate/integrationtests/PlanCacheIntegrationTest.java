@@ -0,0 +1,63 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.integrationtests;
+
+import static io.crate.testing.TestingHelpers.printedTable;
+import static org.hamcrest.Matchers.is;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+import io.crate.action.sql.Session;
+import io.crate.planner.PlanCache;
+
+public class PlanCacheIntegrationTest extends SQLIntegrationTestCase {
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        return Settings.builder()
+            .put(super.nodeSettings(nodeOrdinal))
+            .put(PlanCache.SIZE_SETTING.getKey(), 10)
+            .build();
+    }
+
+    @Test
+    public void test_cached_plan_returns_the_rows_matching_the_parameters_of_each_execution() throws Exception {
+        execute("create table t (id int, p int) partitioned by (p) with (number_of_replicas = 0)");
+        execute("insert into t (id, p) values (1, 1), (2, 1), (3, 2), (4, 2), (5, 3)");
+        execute("refresh table t");
+
+        try (Session session = createSession(null)) {
+            String filterById = "select id from t where id > ? order by id";
+            assertThat(printedTable(execute(filterById, new Object[] { 3 }, session).rows()), is("4\n5\n"));
+            assertThat(printedTable(execute(filterById, new Object[] { 1 }, session).rows()), is("2\n3\n4\n5\n"));
+
+            String filterByPartition = "select id from t where p = ? order by id";
+            assertThat(printedTable(execute(filterByPartition, new Object[] { 1 }, session).rows()), is("1\n2\n"));
+            assertThat(printedTable(execute(filterByPartition, new Object[] { 3 }, session).rows()), is("5\n"));
+
+            String groupByPartition = "select p, count(*) from t where p = ? group by p";
+            assertThat(printedTable(execute(groupByPartition, new Object[] { 2 }, session).rows()), is("2| 2\n"));
+            assertThat(printedTable(execute(groupByPartition, new Object[] { 1 }, session).rows()), is("1| 2\n"));
+        }
+    }
+}
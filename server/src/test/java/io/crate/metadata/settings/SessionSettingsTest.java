@@ -24,7 +24,9 @@ package io.crate.metadata.settings;
 
 import io.crate.metadata.SearchPath;
 import io.crate.planner.optimizer.rule.MergeFilters;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -36,12 +38,27 @@ public class SessionSettingsTest {
 
     @Test
     public void testSessionSettingsStreaming() throws IOException {
-        SessionSettings s1 = new SessionSettings("user", SearchPath.createSearchPathFrom("crate"), true, Set.of(
+        SessionSettings s1 = new SessionSettings("user", SearchPath.createSearchPathFrom("crate"), true, 4, Set.of(
             MergeFilters.class));
         BytesStreamOutput out = new BytesStreamOutput();
         s1.writeTo(out);
 
         SessionSettings s2 = new SessionSettings(out.bytes().streamInput());
         assertEquals(s1, s2);
+        assertEquals(4, s2.maxParallelWorkersPerShard());
+    }
+
+    @Test
+    public void test_max_parallel_workers_per_shard_defaults_to_one_when_streamed_from_older_node() throws IOException {
+        SessionSettings s1 = new SessionSettings("user", SearchPath.createSearchPathFrom("crate"), true, 4, Set.of());
+        BytesStreamOutput out = new BytesStreamOutput();
+        out.setVersion(Version.V_4_6_0);
+        s1.writeTo(out);
+
+        StreamInput in = out.bytes().streamInput();
+        in.setVersion(Version.V_4_6_0);
+        SessionSettings s2 = new SessionSettings(in);
+        assertEquals(1, s2.maxParallelWorkersPerShard());
+        assertEquals(s1.hashJoinsEnabled(), s2.hashJoinsEnabled());
     }
 }
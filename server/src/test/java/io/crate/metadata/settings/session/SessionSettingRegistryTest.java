@@ -66,6 +66,22 @@ public class SessionSettingRegistryTest {
         assertBooleanNonEmptySetting(sessionContext::isHashJoinEnabled, setting, true);
     }
 
+    @Test
+    public void test_max_parallel_workers_per_shard_session_setting() {
+        SessionSetting<?> setting = new SessionSettingRegistry(Set.of(new LoadedRules())).settings()
+            .get(SessionSettingRegistry.MAX_PARALLEL_WORKERS_PER_SHARD_KEY);
+        assertThat(sessionContext.maxParallelWorkersPerShard(), is(1));
+        setting.apply(sessionContext, generateInput("8"), eval);
+        assertThat(sessionContext.maxParallelWorkersPerShard(), is(8));
+        assertThrows(IllegalArgumentException.class,
+                     () -> setting.apply(sessionContext, generateInput("0"), eval),
+                     "max_parallel_workers_per_shard must be greater than or equal to 1.");
+        assertThrows(IllegalArgumentException.class,
+                     () -> setting.apply(sessionContext, generateInput("2", "4"), eval),
+                     "max_parallel_workers_per_shard should have only one argument.");
+        assertThat(sessionContext.maxParallelWorkersPerShard(), is(8));
+    }
+
     private void assertBooleanNonEmptySetting(Supplier<Boolean> contextBooleanSupplier,
                                               SessionSetting<?> sessionSetting,
                                               boolean defaultValue) {
@@ -187,4 +187,28 @@ public class CSVLineParserTest {
 
         assertThat(new String(result, StandardCharsets.UTF_8), is("{\"Code\":\"GER\",\"Country\":\"Germany\"}"));
     }
+
+    @Test
+    public void test_parse_quoted_values_with_escaped_quotes_keeps_spaces_within_quotes() throws IOException {
+        String header = "Code,Country\n";
+        csvParser.parseHeader(header);
+        result = csvParser.parse("  \" GER \"  ,\"The \"\"Germany\"\", Europe\"\n");
+
+        assertThat(
+            new String(result, StandardCharsets.UTF_8),
+            is("{\"Code\":\" GER \",\"Country\":\"The \\\"Germany\\\", Europe\"}")
+        );
+    }
+
+    @Test
+    public void test_parse_escapes_json_special_chars_and_encodes_non_ascii_chars() throws IOException {
+        String header = "Code,Country\n";
+        csvParser.parseHeader(header);
+        result = csvParser.parse("C:\\de\t,Deutschland \uD83C\uDDE9\uD83C\uDDEA Köln\n");
+
+        assertThat(
+            new String(result, StandardCharsets.UTF_8),
+            is("{\"Code\":\"C:\\\\de\",\"Country\":\"Deutschland \uD83C\uDDE9\uD83C\uDDEA Köln\"}")
+        );
+    }
 }
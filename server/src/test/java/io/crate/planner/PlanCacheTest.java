@@ -0,0 +1,233 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.planner;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.crate.analyze.AnalyzedStatement;
+import io.crate.data.Row;
+import io.crate.data.Row1;
+import io.crate.execution.dsl.phases.RoutedCollectPhase;
+import io.crate.execution.dsl.projection.builder.ProjectionBuilder;
+import io.crate.execution.engine.pipeline.TopN;
+import io.crate.metadata.CoordinatorTxnCtx;
+import io.crate.metadata.RoutingProvider;
+import io.crate.planner.node.dql.Collect;
+import io.crate.planner.operators.LogicalPlan;
+import io.crate.planner.operators.SubQueryResults;
+import io.crate.statistics.TableStats;
+import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
+import io.crate.testing.SQLExecutor;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+
+public class PlanCacheTest extends CrateDummyClusterServiceUnitTest {
+
+    private static final DataType<?>[] PARAM_TYPES = new DataType<?>[] { DataTypes.LONG };
+
+    private SQLExecutor e;
+    private final AtomicInteger numPlanned = new AtomicInteger();
+    private final List<Row> plannedParams = new ArrayList<>();
+    private final TableStats tableStats = new TableStats();
+
+    @Before
+    public void prepare() throws Exception {
+        e = SQLExecutor.builder(clusterService)
+            .enableDefaultTables()
+            .build();
+    }
+
+    private Plan plan(PlanCache cache, PlanCache.Key key, AnalyzedStatement stmt, PlannerContext plannerContext) {
+        return cache.getOrPlan(key, stmt, plannerContext, (s, ctx) -> {
+            numPlanned.incrementAndGet();
+            plannedParams.add(ctx.params());
+            return e.planner.plan(s, ctx);
+        });
+    }
+
+    private PlanCache.Key createKey(String statement, AnalyzedStatement stmt, PlannerContext plannerContext, long version) {
+        return PlanCache.createKey(
+            statement,
+            PARAM_TYPES,
+            stmt,
+            plannerContext.transactionContext().sessionSettings(),
+            version
+        );
+    }
+
+    @Test
+    public void test_plan_is_reused_for_same_statement_and_metadata_version() {
+        String statement = "select name from users where id = ?";
+        AnalyzedStatement stmt = e.analyze(statement);
+        PlannerContext plannerContext = e.getPlannerContext(clusterService.state());
+        long version = clusterService.state().metadata().version();
+        PlanCache cache = new PlanCache(10, tableStats);
+
+        Plan plan1 = plan(cache, createKey(statement, stmt, plannerContext, version), stmt, plannerContext);
+        Plan plan2 = plan(cache, createKey(statement, stmt, plannerContext, version), stmt, plannerContext);
+
+        assertThat(plan2, sameInstance(plan1));
+        assertThat(numPlanned.get(), is(1));
+        assertThat(cache.hitCount(), is(1L));
+        assertThat(cache.size(), is(1L));
+    }
+
+    private String buildAndGetQuery(Plan plan, Row params) {
+        ExecutionPlan executionPlan = ((LogicalPlan) plan).build(
+            e.getPlannerContext(clusterService.state()),
+            Set.of(),
+            new ProjectionBuilder(e.nodeCtx),
+            TopN.NO_LIMIT,
+            0,
+            null,
+            null,
+            params,
+            SubQueryResults.EMPTY
+        );
+        return ((RoutedCollectPhase) ((Collect) executionPlan).collectPhase()).where().toString();
+    }
+
+    @Test
+    public void test_cached_plan_binds_the_parameters_of_each_execution() {
+        String statement = "select name from users where id > ?";
+        AnalyzedStatement stmt = e.analyze(statement);
+        PlannerContext plannerContext = e.getPlannerContext(clusterService.state());
+        long version = clusterService.state().metadata().version();
+        PlanCache cache = new PlanCache(10, tableStats);
+
+        Plan plan1 = plan(cache, createKey(statement, stmt, plannerContext, version), stmt, plannerContext);
+        String query1 = buildAndGetQuery(plan1, new Row1(5L));
+        Plan plan2 = plan(cache, createKey(statement, stmt, plannerContext, version), stmt, plannerContext);
+        String query2 = buildAndGetQuery(plan2, new Row1(7L));
+
+        assertThat(plan2, sameInstance(plan1));
+        assertThat(query1, containsString("> 5"));
+        assertThat(query2, containsString("> 7"));
+    }
+
+    @Test
+    public void test_plan_is_not_reused_if_metadata_version_differs() {
+        String statement = "select name from users where id = ?";
+        AnalyzedStatement stmt = e.analyze(statement);
+        PlannerContext plannerContext = e.getPlannerContext(clusterService.state());
+        long version = clusterService.state().metadata().version();
+        PlanCache cache = new PlanCache(10, tableStats);
+
+        plan(cache, createKey(statement, stmt, plannerContext, version), stmt, plannerContext);
+        // analyzed with a schema which isn't part of the cluster state yet
+        plan(cache, createKey(statement, stmt, plannerContext, version + 1), stmt, plannerContext);
+
+        assertThat(numPlanned.get(), is(2));
+        assertThat(cache.hitCount(), is(0L));
+        assertThat(cache.size(), is(1L));
+    }
+
+    @Test
+    public void test_plan_is_not_reused_after_table_stats_changed() {
+        String statement = "select name from users where id = ?";
+        AnalyzedStatement stmt = e.analyze(statement);
+        PlannerContext plannerContext = e.getPlannerContext(clusterService.state());
+        long version = clusterService.state().metadata().version();
+        PlanCache cache = new PlanCache(10, tableStats);
+
+        plan(cache, createKey(statement, stmt, plannerContext, version), stmt, plannerContext);
+        tableStats.updateTableStats(Map.of());
+        plan(cache, createKey(statement, stmt, plannerContext, version), stmt, plannerContext);
+
+        assertThat(numPlanned.get(), is(2));
+        assertThat(cache.hitCount(), is(0L));
+    }
+
+    @Test
+    public void test_cached_plan_is_created_without_parameter_values() {
+        String statement = "select name from users where id > ?";
+        AnalyzedStatement stmt = e.analyze(statement);
+        PlannerContext plannerContext = new PlannerContext(
+            clusterService.state(),
+            new RoutingProvider(0, List.of()),
+            UUID.randomUUID(),
+            new CoordinatorTxnCtx(e.getSessionContext()),
+            e.nodeCtx,
+            -1,
+            new Row1(10L)
+        );
+        long version = clusterService.state().metadata().version();
+        PlanCache cache = new PlanCache(10, tableStats);
+
+        Plan plan = plan(cache, createKey(statement, stmt, plannerContext, version), stmt, plannerContext);
+
+        assertThat(plan instanceof LogicalPlan, is(true));
+        assertThat(plannedParams, contains(nullValue()));
+    }
+
+    @Test
+    public void test_disabled_cache_always_plans() {
+        String statement = "select name from users where id = ?";
+        AnalyzedStatement stmt = e.analyze(statement);
+        PlannerContext plannerContext = e.getPlannerContext(clusterService.state());
+        long version = clusterService.state().metadata().version();
+        PlanCache cache = new PlanCache(0, tableStats);
+
+        plan(cache, createKey(statement, stmt, plannerContext, version), stmt, plannerContext);
+        plan(cache, createKey(statement, stmt, plannerContext, version), stmt, plannerContext);
+
+        assertThat(numPlanned.get(), is(2));
+        assertThat(cache.size(), is(0L));
+    }
+
+    @Test
+    public void test_no_key_for_statement_with_non_deterministic_function() {
+        String statement = "select name from users where id = ? and random() > 0.5";
+        AnalyzedStatement stmt = e.analyze(statement);
+        PlannerContext plannerContext = e.getPlannerContext(clusterService.state());
+
+        assertThat(createKey(statement, stmt, plannerContext, 1L), nullValue());
+    }
+
+    @Test
+    public void test_no_key_for_write_statement() {
+        String statement = "delete from users where id = ?";
+        AnalyzedStatement stmt = e.analyze(statement);
+        PlannerContext plannerContext = e.getPlannerContext(clusterService.state());
+
+        assertThat(createKey(statement, stmt, plannerContext, 1L), nullValue());
+        assertThat(
+            createKey("select name from users where id = ?", e.analyze("select name from users where id = ?"), plannerContext, 1L),
+            notNullValue()
+        );
+    }
+}
@@ -29,8 +29,10 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.hamcrest.Matchers.contains;
@@ -78,4 +80,50 @@ public class JoinOrderingTest {
         );
         assertThat(qualifiedNames, contains(T3.T1, T3.T2, T3.T3));
     }
+
+    @Test
+    public void test_order_by_cost_starts_with_most_selective_join() {
+        // SELECT * FROM t1, t2, t3 WHERE t1.id = t2.id AND t2.id = t3.id
+        List<RelationName> order = JoinOrdering.orderByCost(
+            List.of(T3.T1, T3.T2, T3.T3),
+            Map.of(T3.T1, 1000L, T3.T2, 1000L, T3.T3, 10L),
+            Map.of(
+                Set.of(T3.T1, T3.T2), 1.0 / 1000,
+                Set.of(T3.T2, T3.T3), 1.0 / 1000
+            )
+        );
+        assertThat(order, contains(T3.T2, T3.T3, T3.T1));
+    }
+
+    @Test
+    public void test_order_by_cost_keeps_query_order_without_join_conditions() {
+        List<RelationName> order = JoinOrdering.orderByCost(
+            List.of(T3.T1, T3.T2, T3.T3),
+            Map.of(T3.T1, 10L, T3.T2, 10L, T3.T3, 10L),
+            Map.of()
+        );
+        assertThat(order, contains(T3.T1, T3.T2, T3.T3));
+    }
+
+    @Test
+    public void test_order_by_cost_uses_greedy_search_for_many_relations() {
+        int numRelations = JoinOrdering.MAX_RELATIONS_FOR_EXHAUSTIVE_SEARCH + 2;
+        List<RelationName> relations = new ArrayList<>(numRelations);
+        Map<RelationName, Long> numRows = new HashMap<>();
+        Map<Set<RelationName>, Double> selectivity = new HashMap<>();
+        for (int i = 0; i < numRelations; i++) {
+            RelationName relation = new RelationName("doc", "t" + i);
+            relations.add(relation);
+            numRows.put(relation, 100L);
+            if (i > 0) {
+                selectivity.put(Set.of(relations.get(i - 1), relation), 1.0 / 100);
+            }
+        }
+        selectivity.put(Set.of(relations.get(5), relations.get(6)), 1.0 / 10_000);
+
+        List<RelationName> order = JoinOrdering.orderByCost(relations, numRows, selectivity);
+        assertThat(order.size(), is(numRelations));
+        assertThat(order.subList(0, 2), contains(relations.get(5), relations.get(6)));
+        assertThat(Set.copyOf(order), is(Set.copyOf(relations)));
+    }
 }
@@ -25,7 +25,10 @@ import io.crate.analyze.QueriedSelectRelation;
 import io.crate.data.Row;
 import io.crate.execution.dsl.phases.HashJoinPhase;
 import io.crate.execution.dsl.phases.NestedLoopPhase;
+import io.crate.execution.dsl.phases.RoutedCollectPhase;
 import io.crate.execution.dsl.projection.builder.ProjectionBuilder;
+import io.crate.expression.operator.any.AnyOperators;
+import io.crate.expression.symbol.SelectSymbol;
 import io.crate.metadata.CoordinatorTxnCtx;
 import io.crate.metadata.Reference;
 import io.crate.metadata.RelationName;
@@ -37,6 +40,11 @@ import io.crate.planner.SubqueryPlanner;
 import io.crate.planner.node.dql.Collect;
 import io.crate.planner.node.dql.join.Join;
 import io.crate.planner.node.dql.join.JoinType;
+import io.crate.planner.optimizer.matcher.Captures;
+import io.crate.planner.optimizer.rule.FilterHashJoinProbeSideByBuildSideKeys;
+import io.crate.planner.optimizer.rule.RewriteHashJoinToMergeJoin;
+import io.crate.planner.optimizer.rule.RewriteNestedLoopJoinToHashJoin;
+import io.crate.planner.optimizer.rule.RewriteNestedLoopJoinToMergeJoin;
 import io.crate.statistics.Stats;
 import io.crate.statistics.TableStats;
 import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
@@ -57,13 +65,16 @@ import static io.crate.analyze.TableDefinitions.TEST_DOC_LOCATIONS_TABLE_DEFINIT
 import static io.crate.analyze.TableDefinitions.USER_TABLE_DEFINITION;
 import static io.crate.analyze.TableDefinitions.USER_TABLE_IDENT;
 import static io.crate.planner.operators.LogicalPlannerTest.isPlan;
+import static io.crate.testing.SymbolMatchers.isFunction;
 import static io.crate.testing.SymbolMatchers.isInputColumn;
+import static io.crate.testing.SymbolMatchers.isLiteral;
 import static io.crate.testing.SymbolMatchers.isReference;
 import static io.crate.testing.TestingHelpers.isSQL;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
 
 public class JoinTest extends CrateDummyClusterServiceUnitTest {
@@ -106,7 +117,8 @@ public class JoinTest extends CrateDummyClusterServiceUnitTest {
             mss.where(),
             mss.joinPairs(),
             rel -> logicalPlanner.plan(rel, plannerCtx, subqueryPlanner, true),
-            txnCtx.sessionContext().isHashJoinEnabled()
+            txnCtx.sessionContext().isHashJoinEnabled(),
+            tableStats
         );
     }
 
@@ -196,7 +208,8 @@ public class JoinTest extends CrateDummyClusterServiceUnitTest {
             mss.where(),
             mss.joinPairs(),
             rel -> logicalPlanner.plan(rel, plannerCtx, subqueryPlanner, false),
-            false
+            false,
+            tableStats
         );
         Join nl = (Join) operator.build(
             context, Set.of(), projectionBuilder, -1, 0, null, null, Row.EMPTY, SubQueryResults.EMPTY);
@@ -269,6 +282,152 @@ public class JoinTest extends CrateDummyClusterServiceUnitTest {
         assertThat(((Collect) join.left()).collectPhase().toCollect().get(1), isReference("loc"));
     }
 
+    @Test
+    public void test_hash_join_probe_side_filtered_by_build_side_keys_is_not_buffered() {
+        QueriedSelectRelation mss = e.analyze("select users.name, locations.id " +
+                                              "from users " +
+                                              "join locations on users.id = locations.id");
+
+        TableStats tableStats = new TableStats();
+        Map<RelationName, Stats> rowCountByTable = new HashMap<>();
+        rowCountByTable.put(USER_TABLE_IDENT, new Stats(10, 0, Map.of()));
+        rowCountByTable.put(TEST_DOC_LOCATIONS_TABLE_IDENT, new Stats(100_000, 0, Map.of()));
+        tableStats.updateTableStats(rowCountByTable);
+
+        HashJoin hashJoin = (HashJoin) createLogicalPlan(mss, tableStats);
+        LogicalPlan operator = new FilterHashJoinProbeSideByBuildSideKeys()
+            .apply(hashJoin, Captures.empty(), tableStats, txnCtx, e.nodeCtx);
+        assertThat(operator, instanceOf(HashJoin.class));
+        assertThat(((HashJoin) operator).buildOnSmallerSide(), is(true));
+        LogicalPlan probe = ((HashJoin) operator).rhs();
+        assertThat(probe, instanceOf(MultiPhase.class));
+
+        SelectSymbol buildSideKeys = probe.dependencies().values().iterator().next();
+        Join join = (Join) operator.build(
+            plannerCtx,
+            Set.of(),
+            projectionBuilder,
+            -1,
+            0,
+            null,
+            null,
+            Row.EMPTY,
+            new SubQueryResults(Map.of(buildSideKeys, List.of(1L, 2L)))
+        );
+        // The small build side is buffered into the hash table, the filtered probe side is streamed
+        RoutedCollectPhase left = (RoutedCollectPhase) ((Collect) join.left()).collectPhase();
+        RoutedCollectPhase right = (RoutedCollectPhase) ((Collect) join.right()).collectPhase();
+        assertThat(left.where(), isLiteral(true));
+        assertThat(left.toCollect(), hasItem(isReference("name")));
+        assertThat(right.where(), isFunction(AnyOperators.Type.EQ.opName()));
+        assertThat(right.toCollect(), hasItem(isReference("loc")));
+    }
+
+    private static TableStats tableStats(long numUsers, long numLocations) {
+        TableStats tableStats = new TableStats();
+        Map<RelationName, Stats> rowCountByTable = new HashMap<>();
+        rowCountByTable.put(USER_TABLE_IDENT, new Stats(numUsers, 0, Map.of()));
+        rowCountByTable.put(TEST_DOC_LOCATIONS_TABLE_IDENT, new Stats(numLocations, 0, Map.of()));
+        tableStats.updateTableStats(rowCountByTable);
+        return tableStats;
+    }
+
+    @Test
+    public void test_outer_join_rewritten_to_hash_join_keeps_join_selectivity() {
+        QueriedSelectRelation mss = e.analyze("select users.name, locations.id " +
+                                              "from users " +
+                                              "left join locations on users.id = locations.id");
+        TableStats tableStats = tableStats(10_000, 10_000);
+        LogicalPlan nl = createLogicalPlan(mss, tableStats);
+        assertThat(nl, instanceOf(NestedLoopJoin.class));
+
+        LogicalPlan operator = new RewriteNestedLoopJoinToHashJoin()
+            .apply((NestedLoopJoin) nl, Captures.empty(), tableStats, txnCtx, e.nodeCtx);
+        assertThat(operator, instanceOf(HashJoin.class));
+        // 10_000 * 10_000 * 0.333 (default selectivity without column stats) instead of max(lhs, rhs)
+        assertThat(operator.numExpectedRows(), is(33_300_000L));
+    }
+
+    @Test
+    public void test_large_outer_nested_loop_join_is_rewritten_to_merge_join() {
+        txnCtx.sessionContext().setHashJoinEnabled(false);
+        QueriedSelectRelation mss = e.analyze("select users.name, locations.id " +
+                                              "from users " +
+                                              "left join locations on users.id = locations.id");
+        TableStats tableStats = tableStats(100_000, 100_000);
+        LogicalPlan nl = createLogicalPlan(mss, tableStats);
+        assertThat(nl, instanceOf(NestedLoopJoin.class));
+
+        LogicalPlan operator = new RewriteNestedLoopJoinToMergeJoin()
+            .apply((NestedLoopJoin) nl, Captures.empty(), tableStats, txnCtx, e.nodeCtx);
+        assertThat(operator, instanceOf(MergeJoin.class));
+        assertThat(((MergeJoin) operator).joinType(), is(JoinType.LEFT));
+    }
+
+    @Test
+    public void test_small_outer_nested_loop_join_is_not_rewritten_to_merge_join() {
+        txnCtx.sessionContext().setHashJoinEnabled(false);
+        QueriedSelectRelation mss = e.analyze("select users.name, locations.id " +
+                                              "from users " +
+                                              "left join locations on users.id = locations.id");
+        TableStats tableStats = tableStats(10, 100_000);
+        LogicalPlan nl = createLogicalPlan(mss, tableStats);
+
+        LogicalPlan operator = new RewriteNestedLoopJoinToMergeJoin()
+            .apply((NestedLoopJoin) nl, Captures.empty(), tableStats, txnCtx, e.nodeCtx);
+        assertThat(operator, nullValue());
+
+        // Without statistics the number of rows is unknown
+        nl = createLogicalPlan(mss, new TableStats());
+        operator = new RewriteNestedLoopJoinToMergeJoin()
+            .apply((NestedLoopJoin) nl, Captures.empty(), new TableStats(), txnCtx, e.nodeCtx);
+        assertThat(operator, nullValue());
+    }
+
+    @Test
+    public void test_outer_nested_loop_join_is_not_rewritten_to_merge_join_if_hash_joins_are_enabled() {
+        txnCtx.sessionContext().setHashJoinEnabled(false);
+        QueriedSelectRelation mss = e.analyze("select users.name, locations.id " +
+                                              "from users " +
+                                              "left join locations on users.id = locations.id");
+        TableStats tableStats = tableStats(100_000, 100_000);
+        LogicalPlan nl = createLogicalPlan(mss, tableStats);
+
+        // The join is turned into a hash join by RewriteNestedLoopJoinToHashJoin instead
+        txnCtx.sessionContext().setHashJoinEnabled(true);
+        LogicalPlan operator = new RewriteNestedLoopJoinToMergeJoin()
+            .apply((NestedLoopJoin) nl, Captures.empty(), tableStats, txnCtx, e.nodeCtx);
+        assertThat(operator, nullValue());
+    }
+
+    @Test
+    public void test_hash_join_with_large_build_side_is_rewritten_to_merge_join() {
+        QueriedSelectRelation mss = e.analyze("select users.name, locations.id " +
+                                              "from users " +
+                                              "join locations on users.id = locations.id");
+        TableStats tableStats = tableStats(100_000_000, 100_000_000);
+        LogicalPlan hashJoin = createLogicalPlan(mss, tableStats);
+        assertThat(hashJoin, instanceOf(HashJoin.class));
+
+        LogicalPlan operator = new RewriteHashJoinToMergeJoin()
+            .apply((HashJoin) hashJoin, Captures.empty(), tableStats, txnCtx, e.nodeCtx);
+        assertThat(operator, instanceOf(MergeJoin.class));
+        assertThat(((MergeJoin) operator).joinType(), is(JoinType.INNER));
+    }
+
+    @Test
+    public void test_hash_join_with_small_build_side_is_not_rewritten_to_merge_join() {
+        QueriedSelectRelation mss = e.analyze("select users.name, locations.id " +
+                                              "from users " +
+                                              "join locations on users.id = locations.id");
+        TableStats tableStats = tableStats(10, 100_000_000);
+        LogicalPlan hashJoin = createLogicalPlan(mss, tableStats);
+
+        LogicalPlan operator = new RewriteHashJoinToMergeJoin()
+            .apply((HashJoin) hashJoin, Captures.empty(), tableStats, txnCtx, e.nodeCtx);
+        assertThat(operator, nullValue());
+    }
+
     @Test
     public void testMultipleHashJoins() {
         QueriedSelectRelation mss = e.analyze("select * " +
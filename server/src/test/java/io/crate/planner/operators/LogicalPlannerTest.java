@@ -46,9 +46,11 @@ import java.util.Map;
 
 import static io.crate.testing.MemoryLimits.assertMaxBytesAllocated;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 
 public class LogicalPlannerTest extends CrateDummyClusterServiceUnitTest {
 
@@ -472,6 +474,31 @@ public class LogicalPlannerTest extends CrateDummyClusterServiceUnitTest {
         ));
     }
 
+    @Test
+    public void test_probe_side_of_hash_join_is_filtered_by_keys_of_small_build_side() {
+        TableInfo t1 = sqlExecutor.resolveTableInfo("t1");
+        TableInfo t2 = sqlExecutor.resolveTableInfo("t2");
+        tableStats.updateTableStats(Map.of(
+            t1.ident(), new Stats(100_000L, 100_000L * 16, Map.of()),
+            t2.ident(), new Stats(100L, 100L * 16, Map.of())
+        ));
+        LogicalPlan plan = plan("select t1.a, t2.b from t1 inner join t2 on t1.x = t2.y where t2.b = 'foo'");
+        var printContext = new PrintContext();
+        plan.print(printContext);
+        String printedPlan = printContext.toString();
+        assertThat(printedPlan, containsString("HashJoin[(x = y)]"));
+        assertThat(printedPlan, containsString("MultiPhase"));
+        assertThat(printedPlan, containsString("(x = ANY((DocTableRelation{doc.t2})))]"));
+        assertThat(printedPlan, containsString("Collect[doc.t2 | [y] | (b = 'foo')]"));
+    }
+
+    @Test
+    public void test_probe_side_of_hash_join_is_not_filtered_without_stats() {
+        LogicalPlan plan = plan("select t1.a, t2.b from t1 inner join t2 on t1.x = t2.y where t2.b = 'foo'");
+        var printContext = new PrintContext();
+        plan.print(printContext);
+        assertThat(printContext.toString(), not(containsString("MultiPhase")));
+    }
 
     public static Matcher<LogicalPlan> isPlan(String expectedPlan) {
         return new FeatureMatcher<>(equalTo(expectedPlan), "same output", "output ") {
@@ -23,6 +23,7 @@ package io.crate.planner.operators;
 
 import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
 import io.crate.testing.SQLExecutor;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -42,6 +43,11 @@ public class OuterJoinRewriteTest extends CrateDummyClusterServiceUnitTest {
             .build();
     }
 
+    @After
+    public void resetEnableHashJoinFlag() {
+        sqlExecutor.getSessionContext().setHashJoinEnabled(true);
+    }
+
     @Test
     public void testFilterAndOuterJoinIsRewrittenToInnerJoinIfFilterEliminatesNullRow() {
         var plan = sqlExecutor.logicalPlan(
@@ -49,7 +55,7 @@ public class OuterJoinRewriteTest extends CrateDummyClusterServiceUnitTest {
             "WHERE t2.x = '10'"
         );
         var expectedPlan =
-            "NestedLoopJoin[INNER | (x = x)]\n" +
+            "HashJoin[(x = x)]\n" +
             "  ├ Collect[doc.t1 | [x] | true]\n" +
             "  └ Collect[doc.t2 | [x] | (x = 10)]";
         assertThat(plan, isPlan(expectedPlan));
@@ -63,7 +69,7 @@ public class OuterJoinRewriteTest extends CrateDummyClusterServiceUnitTest {
         );
         var expectedPlan =
             "Filter[(coalesce(x, 10) = 10)]\n" +
-            "  └ NestedLoopJoin[LEFT | (x = x)]\n" +
+            "  └ HashJoin[LEFT | (x = x)]\n" +
             "    ├ Collect[doc.t1 | [x] | true]\n" +
             "    └ Collect[doc.t2 | [x] | true]";
         assertThat(plan, isPlan(expectedPlan));
@@ -77,7 +83,7 @@ public class OuterJoinRewriteTest extends CrateDummyClusterServiceUnitTest {
         );
         var expectedPlan =
             "Filter[(coalesce(x, 10) = 10)]\n" +
-            "  └ NestedLoopJoin[LEFT | (x = x)]\n" +
+            "  └ HashJoin[LEFT | (x = x)]\n" +
             "    ├ Collect[doc.t1 | [x] | (x > 5)]\n" +
             "    └ Collect[doc.t2 | [x] | true]";
         assertThat(plan, isPlan(expectedPlan));
@@ -91,7 +97,7 @@ public class OuterJoinRewriteTest extends CrateDummyClusterServiceUnitTest {
         );
         var expectedPlan =
             "Filter[(coalesce(x, 10) = 10)]\n" +
-            "  └ NestedLoopJoin[RIGHT | (x = x)]\n" +
+            "  └ HashJoin[RIGHT | (x = x)]\n" +
             "    ├ Collect[doc.t1 | [x] | true]\n" +
             "    └ Collect[doc.t2 | [x] | (x > 5)]";
         assertThat(plan, isPlan(expectedPlan));
@@ -105,9 +111,24 @@ public class OuterJoinRewriteTest extends CrateDummyClusterServiceUnitTest {
         );
         var expectedPlan =
             "Filter[((coalesce(x, 10) = 10) AND (x > 5))]\n" +
-            "  └ NestedLoopJoin[FULL | (x = x)]\n" +
+            "  └ HashJoin[FULL | (x = x)]\n" +
             "    ├ Collect[doc.t1 | [x] | true]\n" +
             "    └ Collect[doc.t2 | [x] | (x > 5)]";
         assertThat(plan, isPlan(expectedPlan));
     }
+
+    @Test
+    public void testOuterJoinWithoutStatsStaysNestedLoopIfHashJoinsAreDisabled() {
+        sqlExecutor.getSessionContext().setHashJoinEnabled(false);
+        var plan = sqlExecutor.logicalPlan(
+            "SELECT * FROM t1 LEFT JOIN t2 ON t1.x = t2.x " +
+            "WHERE coalesce(t2.x, 10) = 10"
+        );
+        var expectedPlan =
+            "Filter[(coalesce(x, 10) = 10)]\n" +
+            "  └ NestedLoopJoin[LEFT | (x = x)]\n" +
+            "    ├ Collect[doc.t1 | [x] | true]\n" +
+            "    └ Collect[doc.t2 | [x] | true]";
+        assertThat(plan, isPlan(expectedPlan));
+    }
 }
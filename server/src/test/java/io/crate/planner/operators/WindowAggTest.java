@@ -21,20 +21,30 @@
 
 package io.crate.planner.operators;
 
+import com.carrotsearch.randomizedtesting.RandomizedTest;
 import io.crate.analyze.OrderBy;
 import io.crate.analyze.WindowDefinition;
+import io.crate.execution.dsl.projection.EvalProjection;
+import io.crate.execution.dsl.projection.WindowAggProjection;
 import io.crate.expression.symbol.Symbol;
 import io.crate.expression.symbol.WindowFunction;
+import io.crate.planner.distribution.DistributionInfo;
+import io.crate.planner.distribution.DistributionType;
+import io.crate.planner.Merge;
+import io.crate.planner.node.dql.Collect;
 import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
 import io.crate.testing.SQLExecutor;
 import org.hamcrest.Matchers;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.List;
+
 import static io.crate.planner.operators.LogicalPlannerTest.isPlan;
 import static io.crate.testing.SymbolMatchers.isReference;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 
 public class WindowAggTest extends CrateDummyClusterServiceUnitTest {
@@ -83,6 +93,39 @@ public class WindowAggTest extends CrateDummyClusterServiceUnitTest {
         assertThat(plan, isPlan(expectedPlan));
     }
 
+    @Test
+    public void test_partition_by_expression_not_provided_by_source_is_evaluated_below_window_agg() {
+        var plan = plan("SELECT avg(x) OVER (PARTITION BY x + 1) FROM t1");
+        var expectedPlan =
+            "Eval[avg(x) OVER (PARTITION BY (x + 1))]\n" +
+            "  └ WindowAgg[x, (x + 1), avg(x) OVER (PARTITION BY (x + 1))]\n" +
+            "    └ Eval[x, (x + 1)]\n" +
+            "      └ Collect[doc.t1 | [x] | true]";
+        assertThat(plan, isPlan(expectedPlan));
+    }
+
+    @Test
+    public void test_window_agg_with_partition_by_expression_is_distributed_by_the_evaluated_key() throws Exception {
+        SQLExecutor e = SQLExecutor.builder(clusterService, 2, RandomizedTest.getRandom(), List.of())
+            .addTable("create table t1 (x int, y int)")
+            .build();
+
+        Merge localMerge = e.plan("SELECT avg(x) OVER (PARTITION BY x + 1) FROM t1");
+        Merge distMerge = (Merge) localMerge.subPlan();
+        assertThat(distMerge.nodeIds().size(), is(2));
+        assertThat(distMerge.mergePhase().projections(), contains(
+            instanceOf(WindowAggProjection.class),
+            instanceOf(EvalProjection.class)
+        ));
+        Collect collect = (Collect) distMerge.subPlan();
+        assertThat(collect.collectPhase().projections(), contains(instanceOf(EvalProjection.class)));
+        // The partition key (x + 1) is the second output of the Eval below the WindowAgg
+        assertThat(
+            collect.collectPhase().distributionInfo(),
+            is(new DistributionInfo(DistributionType.MODULO, 1))
+        );
+    }
+
     @Test
     public void testNoOrderByIfNoPartitionsAndNoOrderBy() {
         OrderBy orderBy = WindowAgg.createOrderByInclPartitionBy(wd("avg(x) OVER ()"));
@@ -34,12 +34,19 @@ import io.crate.types.DataTypes;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
 public class SelectivityFunctionsTest extends CrateDummyClusterServiceUnitTest {
 
     @Test
@@ -122,4 +129,90 @@ public class SelectivityFunctionsTest extends CrateDummyClusterServiceUnitTest {
         Stats stats = new Stats(100, 16, Map.of(new ColumnIdent("x"), columnStats));
         assertThat(SelectivityFunctions.estimateNumRows(stats, query, null), Matchers.is(50L));
     }
+
+    private static Stats uniformIntStats() {
+        var numbers = IntStream.range(1, 20_001)
+            .boxed()
+            .collect(Collectors.toList());
+        var columnStats = ColumnStats.fromSortedValues(numbers, DataTypes.INTEGER, 0, 20_000L);
+        return new Stats(20_000, 16, Map.of(new ColumnIdent("x"), columnStats));
+    }
+
+    @Test
+    public void test_range_selectivity_is_interpolated_from_histogram() {
+        SqlExpressions expressions = new SqlExpressions(T3.sources(clusterService));
+        Stats stats = uniformIntStats();
+        assertThat(
+            SelectivityFunctions.estimateNumRows(stats, expressions.asSymbol("x < 5000"), null),
+            allOf(greaterThan(4900L), lessThan(5100L))
+        );
+        assertThat(
+            SelectivityFunctions.estimateNumRows(stats, expressions.asSymbol("x >= ?"), new Row1(15_000)),
+            allOf(greaterThan(4900L), lessThan(5100L))
+        );
+        assertThat(
+            SelectivityFunctions.estimateNumRows(stats, expressions.asSymbol("x > 30000"), null),
+            Matchers.is(0L)
+        );
+    }
+
+    @Test
+    public void test_between_combines_lower_and_upper_bound_selectivity() {
+        SqlExpressions expressions = new SqlExpressions(T3.sources(clusterService));
+        Stats stats = uniformIntStats();
+        Symbol query = expressions.asSymbol("x between 5000 and 6000");
+        assertThat(
+            SelectivityFunctions.estimateNumRows(stats, query, null),
+            allOf(greaterThan(900L), lessThan(1100L))
+        );
+    }
+
+    @Test
+    public void test_range_selectivity_includes_matching_most_common_values() {
+        SqlExpressions expressions = new SqlExpressions(T3.sources(clusterService));
+        var numbers = Lists2.concat(
+            Collections.nCopies(50, 1),
+            IntStream.range(2, 52).boxed().collect(Collectors.toList())
+        );
+        var columnStats = ColumnStats.fromSortedValues(numbers, DataTypes.INTEGER, 0, numbers.size());
+        Stats stats = new Stats(numbers.size(), 16, Map.of(new ColumnIdent("x"), columnStats));
+        assertThat(
+            SelectivityFunctions.estimateNumRows(stats, expressions.asSymbol("x < 2"), null),
+            Matchers.is(50L)
+        );
+    }
+
+    @Test
+    public void test_eq_any_sums_up_eq_selectivity_of_values() {
+        SqlExpressions expressions = new SqlExpressions(T3.sources(clusterService));
+        Stats stats = uniformIntStats();
+        assertThat(
+            SelectivityFunctions.estimateNumRows(stats, expressions.asSymbol("x = ANY([1, 2, 3])"), null),
+            Matchers.is(3L)
+        );
+        assertThat(
+            SelectivityFunctions.estimateNumRows(stats, expressions.asSymbol("x in (1, 2, 3, 4)"), null),
+            Matchers.is(4L)
+        );
+    }
+
+    @Test
+    public void test_prefix_like_selectivity_is_estimated_from_histogram() {
+        SqlExpressions expressions = new SqlExpressions(T3.sources(clusterService));
+        var values = new ArrayList<String>();
+        for (int i = 0; i < 10_000; i++) {
+            values.add(String.format(Locale.ENGLISH, "%s%04d", i < 2000 ? "foo" : "bar", i));
+        }
+        Collections.sort(values);
+        var columnStats = ColumnStats.fromSortedValues(values, DataTypes.STRING, 0, values.size());
+        Stats stats = new Stats(values.size(), 16, Map.of(new ColumnIdent("a"), columnStats));
+        assertThat(
+            SelectivityFunctions.estimateNumRows(stats, expressions.asSymbol("a like 'foo%'"), null),
+            allOf(greaterThan(1800L), lessThan(2200L))
+        );
+        assertThat(
+            SelectivityFunctions.estimateNumRows(stats, expressions.asSymbol("a like '%99'"), null),
+            lessThan(500L)
+        );
+    }
 }
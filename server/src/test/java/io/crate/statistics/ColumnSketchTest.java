@@ -0,0 +1,171 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.statistics;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.test.ESTestCase;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.BitMixer;
+
+import io.crate.types.DataTypes;
+
+public class ColumnSketchTest extends ESTestCase {
+
+    private static ColumnSketch<Long> sketchOf(long from, long to) {
+        ColumnSketch<Long> sketch = new ColumnSketch<>(DataTypes.LONG);
+        for (long i = from; i < to; i++) {
+            sketch.add(i, BitMixer.mix64(i), 1);
+        }
+        return sketch;
+    }
+
+    @Test
+    public void test_stats_of_column_with_few_distinct_values_are_exact() {
+        ColumnSketch<Integer> sketch = new ColumnSketch<>(DataTypes.INTEGER);
+        for (int i = 0; i < 1000; i++) {
+            int value = i % 4 == 0 ? 1 : 2;
+            sketch.add(value, BitMixer.mix64(value), 1);
+        }
+        sketch.addNulls(250);
+
+        ColumnStats<Integer> stats = sketch.toColumnStats();
+        assertThat(stats.nullFraction(), is(0.2));
+        assertThat(stats.approxDistinct(), is(2.0));
+        assertThat(stats.averageSizeInBytes(), is((double) DataTypes.INTEGER.fixedSize()));
+        assertThat(List.of(stats.mostCommonValues().values()), contains(2, 1));
+        assertThat(stats.mostCommonValues().frequencies()[0], is(0.75));
+        assertThat(stats.mostCommonValues().frequencies()[1], is(0.25));
+        assertThat(stats.histogram(), is(List.of()));
+    }
+
+    @Test
+    public void test_stats_of_unique_column() {
+        ColumnStats<Long> stats = sketchOf(0, 100_000).toColumnStats();
+        assertThat(stats.nullFraction(), is(0.0));
+        assertThat(stats.approxDistinct(), closeTo(100_000, 5_000));
+        assertThat(stats.mostCommonValues().values().length, is(0));
+
+        List<Long> histogram = stats.histogram();
+        assertThat(histogram.size(), is(MostCommonValues.MCV_TARGET));
+        assertThat((double) histogram.get(0), closeTo(0, 2_000));
+        assertThat((double) histogram.get(49), closeTo(49_495, 2_000));
+        assertThat((double) histogram.get(99), closeTo(99_999, 2_000));
+    }
+
+    @Test
+    public void test_merged_sketches_match_sketch_of_all_values() {
+        ColumnSketch<Long> sketch = sketchOf(0, 50_000);
+        sketch.merge(sketchOf(25_000, 75_000));
+
+        ColumnStats<Long> stats = sketch.toColumnStats();
+        assertThat(stats.approxDistinct(), closeTo(75_000, 3_750));
+        assertThat((double) stats.histogram().get(99), closeTo(74_999, 2_000));
+    }
+
+    @Test
+    public void test_sketch_streaming() throws Exception {
+        ColumnSketch<Long> sketch = sketchOf(0, 10_000);
+        sketch.addNulls(10);
+        BytesStreamOutput out = new BytesStreamOutput();
+        sketch.writeTo(out);
+
+        StreamInput in = out.bytes().streamInput();
+        ColumnSketch<Long> streamed = new ColumnSketch<>(in);
+        assertThat(streamed.toColumnStats(), is(sketch.toColumnStats()));
+    }
+
+    @Test
+    public void test_create_sketch_from_doc_values() throws Exception {
+        try (var writer = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig())) {
+            for (int i = 0; i < 100; i++) {
+                Document doc = new Document();
+                if (i % 10 != 0) {
+                    doc.add(new SortedSetDocValuesField("name", new BytesRef(i % 2 == 0 ? "foo" : "bar")));
+                    doc.add(new SortedNumericDocValuesField("value", NumericUtils.doubleToSortableLong(i % 5)));
+                }
+                writer.addDocument(doc);
+            }
+            writer.commit();
+            try (var reader = DirectoryReader.open(writer)) {
+                var leaf = reader.leaves().get(0).reader();
+
+                ColumnStats<String> names = ColumnSketcher.createSketch(leaf, "name", DataTypes.STRING).toColumnStats();
+                assertThat(names.nullFraction(), is(0.1));
+                assertThat(names.approxDistinct(), is(2.0));
+                assertThat(List.of(names.mostCommonValues().values()), contains("bar", "foo"));
+
+                ColumnStats<Double> values = ColumnSketcher.createSketch(leaf, "value", DataTypes.DOUBLE).toColumnStats();
+                assertThat(values.nullFraction(), is(0.1));
+                assertThat(values.approxDistinct(), is(5.0));
+                assertThat(values.mostCommonValues().values().length, is(5));
+            }
+        }
+    }
+
+    @Test
+    public void test_create_sketch_skips_deleted_docs() throws Exception {
+        try (var writer = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig())) {
+            for (int i = 0; i < 100; i++) {
+                Document doc = new Document();
+                doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+                if (i % 10 != 0) {
+                    doc.add(new SortedNumericDocValuesField("value", i < 50 ? 1 : 2));
+                }
+                writer.addDocument(doc);
+            }
+            writer.commit();
+            for (int i = 50; i < 100; i++) {
+                writer.deleteDocuments(new Term("id", Integer.toString(i)));
+            }
+            try (var reader = DirectoryReader.open(writer)) {
+                var leaf = reader.leaves().get(0).reader();
+                assertThat(leaf.numDocs(), is(50));
+
+                ColumnStats<Long> values = ColumnSketcher.createSketch(leaf, "value", DataTypes.LONG).toColumnStats();
+                assertThat(values.nullFraction(), is(0.1));
+                assertThat(values.approxDistinct(), is(1.0));
+                assertThat(List.of(values.mostCommonValues().values()), contains(1L));
+            }
+        }
+    }
+}
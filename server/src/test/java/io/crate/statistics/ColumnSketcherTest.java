@@ -0,0 +1,128 @@
+/*
+ * Licensed to Crate.io GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.statistics;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.junit.Test;
+
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.Reference;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
+import io.crate.testing.SQLExecutor;
+
+public class ColumnSketcherTest extends CrateDummyClusterServiceUnitTest {
+
+    @Test
+    public void test_analyzed_and_partition_columns_are_not_sketched() throws Exception {
+        SQLExecutor e = SQLExecutor.builder(clusterService)
+            .addPartitionedTable(
+                "create table tbl (" +
+                "   name text," +
+                "   content text index using fulltext with (analyzer = 'standard')," +
+                "   x int," +
+                "   y text storage with (columnstore = false)," +
+                "   p int" +
+                ") partitioned by (p)")
+            .build();
+        DocTableInfo table = e.resolveTableInfo("tbl");
+
+        assertThat(ColumnSketcher.supports(table, table.getReference(new ColumnIdent("name"))), is(true));
+        assertThat(ColumnSketcher.supports(table, table.getReference(new ColumnIdent("x"))), is(true));
+        assertThat(ColumnSketcher.supports(table, table.getReference(new ColumnIdent("content"))), is(false));
+        assertThat(ColumnSketcher.supports(table, table.getReference(new ColumnIdent("y"))), is(false));
+        assertThat(ColumnSketcher.supports(table, table.getReference(new ColumnIdent("p"))), is(false));
+    }
+
+    @Test
+    public void test_cached_sketches_are_accounted_and_released_when_the_segment_is_closed() throws Exception {
+        SQLExecutor e = SQLExecutor.builder(clusterService)
+            .addTable("create table tbl (x bigint)")
+            .build();
+        Reference x = e.resolveTableInfo("tbl").getReference(new ColumnIdent("x"));
+        MemoryCircuitBreaker breaker = new MemoryCircuitBreaker(
+            new ByteSizeValue(1, ByteSizeUnit.MB), 1, LogManager.getLogger(ColumnSketcherTest.class));
+        ColumnSketcher sketcher = new ColumnSketcher(
+            new ByteSizeValue(1, ByteSizeUnit.MB).getBytes(), clusterService, null, null, breaker);
+
+        try (var writer = newWriterWithValues()) {
+            try (var reader = DirectoryReader.open(writer)) {
+                LeafReader leaf = reader.leaves().get(0).reader();
+                ColumnSketch<?> sketch = sketcher.segmentSketch(leaf, x);
+
+                assertThat(sketcher.segmentSketch(leaf, x), sameInstance(sketch));
+                assertThat(sketcher.cacheSizeInBytes(), greaterThan(0L));
+                assertThat(breaker.getUsed(), is(sketcher.cacheSizeInBytes()));
+            }
+        }
+        assertThat(sketcher.cacheSizeInBytes(), is(0L));
+        assertThat(breaker.getUsed(), is(0L));
+    }
+
+    @Test
+    public void test_sketches_exceeding_the_cache_size_are_not_kept() throws Exception {
+        SQLExecutor e = SQLExecutor.builder(clusterService)
+            .addTable("create table tbl (x bigint)")
+            .build();
+        Reference x = e.resolveTableInfo("tbl").getReference(new ColumnIdent("x"));
+        MemoryCircuitBreaker breaker = new MemoryCircuitBreaker(
+            new ByteSizeValue(1, ByteSizeUnit.MB), 1, LogManager.getLogger(ColumnSketcherTest.class));
+        ColumnSketcher sketcher = new ColumnSketcher(1024, clusterService, null, null, breaker);
+
+        try (var writer = newWriterWithValues()) {
+            try (var reader = DirectoryReader.open(writer)) {
+                LeafReader leaf = reader.leaves().get(0).reader();
+                ColumnSketch<?> sketch = sketcher.segmentSketch(leaf, x);
+
+                assertThat(sketcher.segmentSketch(leaf, x), not(sameInstance(sketch)));
+                assertThat(sketcher.cacheSizeInBytes(), is(0L));
+                assertThat(breaker.getUsed(), is(0L));
+            }
+        }
+    }
+
+    private static IndexWriter newWriterWithValues() throws Exception {
+        IndexWriter writer = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig());
+        for (int i = 0; i < 100; i++) {
+            Document doc = new Document();
+            doc.add(new SortedNumericDocValuesField("x", i));
+            writer.addDocument(doc);
+        }
+        writer.commit();
+        return writer;
+    }
+}